@@ -41,6 +41,17 @@ public class CompositeObjectConfig {
 		_keyFieldNames = new ArrayList<>();
 	}
 	
+	/**
+	 * Create a copy of a composite object config
+	 * @param compositeObjectConfig the composite object config to copy
+	 */
+	public CompositeObjectConfig(CompositeObjectConfig compositeObjectConfig) {
+		this._name = compositeObjectConfig._name;
+		this._keyTables = new ArrayList<>(compositeObjectConfig._keyTables);
+		this._contextTables = new ArrayList<>(compositeObjectConfig._contextTables);
+		this._keyFieldNames = new ArrayList<>(compositeObjectConfig._keyFieldNames);
+	}
+	
 	@XmlAttribute(name="name")
 	public String getName() {
 		return this._name;
@@ -87,10 +98,21 @@ public class CompositeObjectConfig {
 	public void setKeyFieldNamesFromString(String keyFieldNames) {
 		//Clear existing key fields
 		this._keyFieldNames.clear();
+		this._keyFieldNames.addAll(parseKeyFieldNames(keyFieldNames));
+	}
+	
+	/***
+	 * Get the key field names from a comma separated string
+	 * @param keyFieldNames comma separated string with the key field names
+	 * If the string contains parenthesis as first and last character, remove them first
+	 * @return the key field names
+	 */
+	public static ArrayList<String> parseKeyFieldNames(String keyFieldNames) {
+		ArrayList<String> parsedKeyFieldNames = new ArrayList<>();
 		
 		//If string is empty, exit method
-		if (keyFieldNames == null)
-			return;
+		if (keyFieldNames == null || keyFieldNames.isEmpty())
+			return parsedKeyFieldNames;
 		
 		//If input is wrapped in (), remove the parenthesis
 		if ((keyFieldNames.charAt(0) == '(') && (keyFieldNames.charAt(keyFieldNames.length()-1) == ')')) {
@@ -100,8 +122,9 @@ public class CompositeObjectConfig {
 		//Add each item as key field. except empty strings
 		for(String keyField: keyFieldNames.split(",")) {
 			if (keyField.trim().length() > 0)
-				this._keyFieldNames.add(keyField.trim());
-		}	
+				parsedKeyFieldNames.add(keyField.trim());
+		}
+		return parsedKeyFieldNames;
 	}
 	
 	public void addKeyTable(String tableName, String databaseConfigName) {
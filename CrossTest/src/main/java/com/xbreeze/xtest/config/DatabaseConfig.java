@@ -23,6 +23,9 @@
 package com.xbreeze.xtest.config;
 
 
+import java.util.HashMap;
+import java.util.function.Function;
+
 import javax.xml.bind.annotation.XmlAttribute;
 import com.xbreeze.xtest.exception.XTestException;
 
@@ -36,6 +39,18 @@ public class DatabaseConfig {
 	private ObjectTemplateConfig _template;
 	private boolean _quoteObjectNames = false;	
 	private Integer _commandTimeOut = 0;
+	private Integer _insertBatchSize;
+	private String _compareMode;
+	private Integer _fetchSize;
+	private String _probeResult;
+	private Integer _maxKeyFilterParameters;
+	private Boolean _fullReport;
+	private Integer _maxDifferences;
+	private Boolean _bindVariables;
+	// Qualified table names on table name, valid for the template (version) they were created with
+	private HashMap<String, String> _qualifiedTableNames = new HashMap<>();
+	private ObjectTemplateConfig _qualifiedTableNamesTemplate;
+	private long _qualifiedTableNamesTemplateVersion;
 	
 	public DatabaseConfig(String name, String JDBCUrl, String username, String password, String schema) {
 		this._name = name;		
@@ -46,6 +61,28 @@ public class DatabaseConfig {
 		super();
 	}
 	
+	/**
+	 * Create a copy of a database config, the database server and template config are not linked
+	 * @param databaseConfig the database config to copy
+	 */
+	public DatabaseConfig(DatabaseConfig databaseConfig) {
+		this._name = databaseConfig._name;
+		this._catalog = databaseConfig._catalog;
+		this._schema = databaseConfig._schema;
+		this._databaseServerConfigName = databaseConfig._databaseServerConfigName;
+		this._templateName = databaseConfig._templateName;
+		this._quoteObjectNames = databaseConfig._quoteObjectNames;
+		this._commandTimeOut = databaseConfig._commandTimeOut;
+		this._insertBatchSize = databaseConfig._insertBatchSize;
+		this._compareMode = databaseConfig._compareMode;
+		this._fetchSize = databaseConfig._fetchSize;
+		this._probeResult = databaseConfig._probeResult;
+		this._maxKeyFilterParameters = databaseConfig._maxKeyFilterParameters;
+		this._fullReport = databaseConfig._fullReport;
+		this._maxDifferences = databaseConfig._maxDifferences;
+		this._bindVariables = databaseConfig._bindVariables;
+	}
+	
 	@XmlAttribute(name="name")
 	public String getName() {
 		return this._name;
@@ -71,6 +108,7 @@ public class DatabaseConfig {
 	
 	public void setSchema(String schema) {
 		this._schema = schema;
+		this._qualifiedTableNames.clear();
 	}
 	
 	@XmlAttribute(name="quoteObjectNames", required=false)
@@ -80,6 +118,7 @@ public class DatabaseConfig {
 	
 	public void setQuoteObjectNames(boolean quoteObjectNames) {
 		this._quoteObjectNames = quoteObjectNames;
+		this._qualifiedTableNames.clear();
 	}
 	@XmlAttribute(name="databaseServerConfigName")
 	public String getDatabaseServerConfigName() {
@@ -99,6 +138,159 @@ public class DatabaseConfig {
 		this._commandTimeOut = commandTimeOut;
 	}
 	
+	@XmlAttribute(name="insertBatchSize", required=false)
+	public Integer getInsertBatchSize() {
+		return this._insertBatchSize;
+	}
+	
+	public void setInsertBatchSize(Integer insertBatchSize) {
+		this._insertBatchSize = insertBatchSize;
+	}
+	
+	/**
+	 * Get the insert batch size to use
+	 * @return the number of rows per insert batch, 0 or less means all rows are sent in a single batch
+	 */
+	public int getResolvedInsertBatchSize() {
+		return resolve(this._insertBatchSize, DatabaseServerConfig::getInsertBatchSize, 0);
+	}
+	
+	@XmlAttribute(name="compareMode", required=false)
+	public String getCompareMode() {
+		return this._compareMode;
+	}
+	
+	public void setCompareMode(String compareMode) {
+		this._compareMode = compareMode;
+	}
+	
+	/**
+	 * Get the compare mode to use
+	 * @return the compare mode, memory if not set
+	 */
+	public String getResolvedCompareMode() {
+		return resolve(this._compareMode, DatabaseServerConfig::getCompareMode, DatabaseServerConfig.COMPARE_MODE_MEMORY);
+	}
+	
+	@XmlAttribute(name="fetchSize", required=false)
+	public Integer getFetchSize() {
+		return this._fetchSize;
+	}
+	
+	public void setFetchSize(Integer fetchSize) {
+		this._fetchSize = fetchSize;
+	}
+	
+	/**
+	 * Get the fetch size to use
+	 * @return the number of rows fetched at once when a result is streamed, 0 or less means the default of the JDBC driver
+	 */
+	public int getResolvedFetchSize() {
+		return resolve(this._fetchSize, DatabaseServerConfig::getFetchSize, 0);
+	}
+	
+	@XmlAttribute(name="probeResult", required=false)
+	public String getProbeResult() {
+		return this._probeResult;
+	}
+	
+	public void setProbeResult(String probeResult) {
+		this._probeResult = probeResult;
+	}
+	
+	/**
+	 * Get whether a table is probed before its data is compared
+	 * @return the probe setting, false if not set
+	 */
+	public String getResolvedProbeResult() {
+		return resolve(this._probeResult, DatabaseServerConfig::getProbeResult, DatabaseServerConfig.PROBE_RESULT_FALSE);
+	}
+	
+	@XmlAttribute(name="maxKeyFilterParameters", required=false)
+	public Integer getMaxKeyFilterParameters() {
+		return this._maxKeyFilterParameters;
+	}
+	
+	public void setMaxKeyFilterParameters(Integer maxKeyFilterParameters) {
+		this._maxKeyFilterParameters = maxKeyFilterParameters;
+	}
+	
+	/**
+	 * Get the maximum number of key values bound as parameters
+	 * @return the maximum number of parameters, 0 or less means the keys are always written to a temporary table
+	 */
+	public int getResolvedMaxKeyFilterParameters() {
+		return resolve(this._maxKeyFilterParameters, DatabaseServerConfig::getMaxKeyFilterParameters, 0);
+	}
+	
+	@XmlAttribute(name="fullReport", required=false)
+	public Boolean getFullReport() {
+		return this._fullReport;
+	}
+	
+	public void setFullReport(Boolean fullReport) {
+		this._fullReport = fullReport;
+	}
+	
+	/**
+	 * Get whether all records which aren't expected are reported in a spot check
+	 * @return true if all records are reported, false if they are counted and only the first ones are shown
+	 */
+	public boolean getResolvedFullReport() {
+		return resolve(this._fullReport, DatabaseServerConfig::getFullReport, false);
+	}
+	
+	@XmlAttribute(name="maxDifferences", required=false)
+	public Integer getMaxDifferences() {
+		return this._maxDifferences;
+	}
+	
+	public void setMaxDifferences(Integer maxDifferences) {
+		this._maxDifferences = maxDifferences;
+	}
+	
+	/**
+	 * Get the number of differences after which a comparison is stopped
+	 * @return the number of differences, 0 or less means all differences are determined
+	 */
+	public int getResolvedMaxDifferences() {
+		return resolve(this._maxDifferences, DatabaseServerConfig::getMaxDifferences, 0);
+	}
+	
+	@XmlAttribute(name="bindVariables", required=false)
+	public Boolean getBindVariables() {
+		return this._bindVariables;
+	}
+	
+	public void setBindVariables(Boolean bindVariables) {
+		this._bindVariables = bindVariables;
+	}
+	
+	/**
+	 * Get whether variables in statements and queries are bound as parameters
+	 * @return true if variables are bound as parameters, false if their values are substituted in the text
+	 */
+	public boolean getResolvedBindVariables() {
+		return resolve(this._bindVariables, DatabaseServerConfig::getBindVariables, false);
+	}
+	
+	/**
+	 * Resolve a setting which can be set on both the database config and its database server config, the value on the database config overrides the one on the database server config
+	 * @param value the value on the database config, null if it isn't set
+	 * @param serverValue the getter of the value on the database server config
+	 * @param defaultValue the value used when it isn't set on either config
+	 * @return the resolved value
+	 */
+	private <T> T resolve(T value, Function<DatabaseServerConfig, T> serverValue, T defaultValue) {
+		if (value != null) {
+			return value;
+		}
+		if (this._databaseServerConfig != null && serverValue.apply(this._databaseServerConfig) != null) {
+			return serverValue.apply(this._databaseServerConfig);
+		}
+		return defaultValue;
+	}
+	
 	public void setDatabaseServerConfig(DatabaseServerConfig databaseServerConfig) {
 		this._databaseServerConfig = databaseServerConfig;
 	}
@@ -130,11 +322,41 @@ public class DatabaseConfig {
 	}
 	
 	
+	/**
+	 * Get the qualified table name, the name is only created once for a table name as long as the schema, quoting and template don't change
+	 * @param tableName the table name to qualify
+	 * @return the table name with the template, schema and quotes applied
+	 */
 	public String getQualifiedTableName(String tableName) {
-		// Apply template naming if needed
+		long templateVersion = this._template != null ? this._template.getStructureVersion() : 0;
+		if (this._template != this._qualifiedTableNamesTemplate || templateVersion != this._qualifiedTableNamesTemplateVersion) {
+			this._qualifiedTableNames.clear();
+			this._qualifiedTableNamesTemplate = this._template;
+			this._qualifiedTableNamesTemplateVersion = templateVersion;
+		}
+		String qualifiedTableName = this._qualifiedTableNames.get(tableName);
+		if (qualifiedTableName == null) {
+			qualifiedTableName = createQualifiedTableName(tableName);
+			this._qualifiedTableNames.put(tableName, qualifiedTableName);
+		}
+		return qualifiedTableName;
+	}
+	
+	/**
+	 * Get the table name with the template applied, but without schema and quotes
+	 * @param tableName the table name
+	 * @return the table name with the template applied
+	 */
+	public String getTemplatedTableName(String tableName) {
 		if (this.getTemplate() != null) {
-			tableName = this._template.applyTemplateToName(tableName);
+			return this._template.applyTemplateToName(tableName);
 		}
+		return tableName;
+	}
+	
+	private String createQualifiedTableName(String tableName) {
+		// Apply template naming if needed
+		tableName = this.getTemplatedTableName(tableName);
 		
 		// If the schema is empty, return only the table name.
 		if (this.getSchema() == null || this.getSchema().isEmpty()) {
@@ -39,6 +39,35 @@ public class DatabaseServerConfig {
 	private String _setSchemaTemplate;
 	private String _credentialProvider;
 	private boolean _transactional = false;
+	private Integer _insertBatchSize = 1000;
+	private String _metaDataCache = METADATA_CACHE_SCENARIO;
+	private boolean _preloadMetaData = false;
+	private String _compareMode = COMPARE_MODE_MEMORY;
+	private Integer _fetchSize = 1000;
+	private String _probeResult = PROBE_RESULT_FALSE;
+	private Integer _maxKeyFilterParameters = 1000;
+	private Boolean _fullReport = false;
+	private Integer _maxDifferences = 0;
+	private Boolean _bindVariables = false;
+	private Integer _poolMaxSize = 0;
+	private Integer _poolMinSize = 0;
+	private Integer _poolIdleTimeOut = 300;
+	private Integer _poolValidationTimeOut = 5;
+	private Integer _poolWaitTimeOut = 300;
+	
+	public static final String METADATA_CACHE_NONE = "none";
+	public static final String METADATA_CACHE_SCENARIO = "scenario";
+	public static final String METADATA_CACHE_RUN = "run";
+	
+	public static final String COMPARE_MODE_MEMORY = "memory";
+	public static final String COMPARE_MODE_DATABASE = "database";
+	public static final String COMPARE_MODE_STREAM = "stream";
+	public static final String COMPARE_MODE_SORTED = "sorted";
+	public static final String COMPARE_MODE_SPOTCHECK = "spotcheck";
+	
+	public static final String PROBE_RESULT_FALSE = "false";
+	public static final String PROBE_RESULT_TRUE = "true";
+	public static final String PROBE_RESULT_SKIP = "skip";
 	
 	
 	private ArrayList<DatabaseCustomDataTypeConfig> _customDataTypes;
@@ -160,6 +189,234 @@ public class DatabaseServerConfig {
 		this._transactional = isTransactional;
 	}
 	
+	/**
+	 * @return the number of rows that are sent to the database in one insert batch.
+	 */
+	@XmlAttribute(name="insertBatchSize", required=false)
+	public Integer getInsertBatchSize() {
+		return _insertBatchSize;
+	}
+	/**
+	 * @param insertBatchSize the number of rows per insert batch, 0 or less sends all rows in a single batch.
+	 */
+	public void setInsertBatchSize(Integer insertBatchSize) {
+		this._insertBatchSize = insertBatchSize;
+	}
+	
+	/**
+	 * @return how long table definitions are cached: none, scenario or run.
+	 */
+	@XmlAttribute(name="metaDataCache", required=false)
+	public String getMetaDataCache() {
+		return _metaDataCache;
+	}
+	/**
+	 * @param metaDataCache how long table definitions are cached: none, scenario (default) or run.
+	 */
+	public void setMetaDataCache(String metaDataCache) {
+		this._metaDataCache = metaDataCache;
+	}
+	
+	public boolean isMetaDataCacheEnabled() {
+		return this._metaDataCache != null && !this._metaDataCache.equalsIgnoreCase(METADATA_CACHE_NONE);
+	}
+	
+	public boolean isMetaDataCachedForRun() {
+		return METADATA_CACHE_RUN.equalsIgnoreCase(this._metaDataCache);
+	}
+	
+	/**
+	 * @return how the data of a table is compared with the expected result: memory, stream, sorted, spotcheck or database.
+	 */
+	@XmlAttribute(name="compareMode", required=false)
+	public String getCompareMode() {
+		return _compareMode;
+	}
+	/**
+	 * @param compareMode how the data of a table is compared: memory (default) reads the table and compares it in memory, 
+	 * stream hashes the rows of the table while they are read, sorted merges the ordered table with the sorted expected result,
+	 * spotcheck streams the table through a Bloom filter of the expected result and database compares it on the database server.
+	 */
+	public void setCompareMode(String compareMode) {
+		this._compareMode = compareMode;
+	}
+	
+	/**
+	 * @return the number of rows fetched from the database at once when a result is streamed.
+	 */
+	@XmlAttribute(name="fetchSize", required=false)
+	public Integer getFetchSize() {
+		return _fetchSize;
+	}
+	/**
+	 * @param fetchSize the number of rows fetched at once when a result is streamed, 0 or less uses the default of the JDBC driver.
+	 */
+	public void setFetchSize(Integer fetchSize) {
+		this._fetchSize = fetchSize;
+	}
+	
+	/**
+	 * @return whether the definitions of all tables in a schema are loaded at once when the first table of the schema is used.
+	 */
+	@XmlAttribute(name="preloadMetaData", required=false)
+	public boolean isPreloadMetaData() {
+		return _preloadMetaData;
+	}
+	/**
+	 * @param preloadMetaData whether the definitions of all tables in a schema are loaded at once, only applies if the metadata is cached.
+	 */
+	public void setPreloadMetaData(boolean preloadMetaData) {
+		this._preloadMetaData = preloadMetaData;
+	}
+	
+	/**
+	 * @return whether the number of records and the aggregates of the numeric columns of a table are checked on the database before its data is compared:
+	 * false, true (the data is still compared when the probe is equal) or skip (the data isn't compared when the probe is equal).
+	 */
+	@XmlAttribute(name="probeResult", required=false)
+	public String getProbeResult() {
+		return _probeResult;
+	}
+	/**
+	 * @param probeResult whether a table is probed before its data is compared, so a different table fails without reading its records.
+	 */
+	public void setProbeResult(String probeResult) {
+		this._probeResult = probeResult;
+	}
+	
+	/**
+	 * @return the maximum number of key values bound as parameters when the records of a table are filtered on the keys of the expected result.
+	 */
+	@XmlAttribute(name="maxKeyFilterParameters", required=false)
+	public Integer getMaxKeyFilterParameters() {
+		return _maxKeyFilterParameters;
+	}
+	/**
+	 * @param maxKeyFilterParameters the maximum number of key values bound as parameters, when there are more the keys are written to a temporary table.
+	 */
+	public void setMaxKeyFilterParameters(Integer maxKeyFilterParameters) {
+		this._maxKeyFilterParameters = maxKeyFilterParameters;
+	}
+	
+	/**
+	 * @return whether all records of a table which aren't expected are reported when comparing with compareMode spotcheck.
+	 */
+	@XmlAttribute(name="fullReport", required=false)
+	public Boolean getFullReport() {
+		return _fullReport;
+	}
+	/**
+	 * @param fullReport whether all records which aren't expected are reported, otherwise they are counted and only the first ones are shown.
+	 */
+	public void setFullReport(Boolean fullReport) {
+		this._fullReport = fullReport;
+	}
+	
+	/**
+	 * @return the number of differences after which the comparison of a result is stopped, 0 means all differences are determined.
+	 */
+	@XmlAttribute(name="maxDifferences", required=false)
+	public Integer getMaxDifferences() {
+		return _maxDifferences;
+	}
+	/**
+	 * @param maxDifferences the number of differences after which a comparison stops reading the result and reports at least this number of differences.
+	 */
+	public void setMaxDifferences(Integer maxDifferences) {
+		this._maxDifferences = maxDifferences;
+	}
+	
+	/**
+	 * @return whether variables in statements and queries are bound as parameters of a prepared statement instead of being substituted in the text.
+	 */
+	@XmlAttribute(name="bindVariables", required=false)
+	public Boolean getBindVariables() {
+		return _bindVariables;
+	}
+	/**
+	 * @param bindVariables whether variables with a number or quoted text value are bound as parameters, so the statement text is the same for every value.
+	 */
+	public void setBindVariables(Boolean bindVariables) {
+		this._bindVariables = bindVariables;
+	}
+	
+	/**
+	 * @return the maximum number of connections to the server kept in a pool shared by all scenarios, 0 means every scenario opens and closes its own connection.
+	 */
+	@XmlAttribute(name="poolMaxSize", required=false)
+	public Integer getPoolMaxSize() {
+		return _poolMaxSize;
+	}
+	/**
+	 * @param poolMaxSize the maximum number of pooled connections, a scenario waits for a connection to be returned when they are all in use.
+	 */
+	public void setPoolMaxSize(Integer poolMaxSize) {
+		this._poolMaxSize = poolMaxSize;
+	}
+	
+	/**
+	 * @return whether the connections to the server are pooled.
+	 */
+	public boolean isPooled() {
+		return this._poolMaxSize != null && this._poolMaxSize > 0;
+	}
+	
+	/**
+	 * @return the number of pooled connections which are kept open, even when they are idle longer than the idle time out.
+	 */
+	@XmlAttribute(name="poolMinSize", required=false)
+	public Integer getPoolMinSize() {
+		return _poolMinSize;
+	}
+	/**
+	 * @param poolMinSize the number of pooled connections which are opened when the pool is created and kept open.
+	 */
+	public void setPoolMinSize(Integer poolMinSize) {
+		this._poolMinSize = poolMinSize;
+	}
+	
+	/**
+	 * @return the number of seconds after which an idle pooled connection is closed.
+	 */
+	@XmlAttribute(name="poolIdleTimeOut", required=false)
+	public Integer getPoolIdleTimeOut() {
+		return _poolIdleTimeOut;
+	}
+	/**
+	 * @param poolIdleTimeOut the number of seconds after which an idle pooled connection is closed, 0 keeps idle connections open.
+	 */
+	public void setPoolIdleTimeOut(Integer poolIdleTimeOut) {
+		this._poolIdleTimeOut = poolIdleTimeOut;
+	}
+	
+	/**
+	 * @return the number of seconds to wait for the validation of a pooled connection before it is used.
+	 */
+	@XmlAttribute(name="poolValidationTimeOut", required=false)
+	public Integer getPoolValidationTimeOut() {
+		return _poolValidationTimeOut;
+	}
+	/**
+	 * @param poolValidationTimeOut the number of seconds to wait for a pooled connection to be validated, a connection which isn't valid is replaced.
+	 */
+	public void setPoolValidationTimeOut(Integer poolValidationTimeOut) {
+		this._poolValidationTimeOut = poolValidationTimeOut;
+	}
+	
+	/**
+	 * @return the number of seconds a scenario waits for a pooled connection to be returned when they are all in use.
+	 */
+	@XmlAttribute(name="poolWaitTimeOut", required=false)
+	public Integer getPoolWaitTimeOut() {
+		return _poolWaitTimeOut;
+	}
+	/**
+	 * @param poolWaitTimeOut the number of seconds to wait for a pooled connection, after which the step fails. 0 waits without a time out.
+	 */
+	public void setPoolWaitTimeOut(Integer poolWaitTimeOut) {
+		this._poolWaitTimeOut = poolWaitTimeOut;
+	}
+	
 	@XmlElement(name="CustomDataType")
 	@XmlElementWrapper(name="CustomDataTypes")
 	public ArrayList<DatabaseCustomDataTypeConfig> getCustomDataTypes(){
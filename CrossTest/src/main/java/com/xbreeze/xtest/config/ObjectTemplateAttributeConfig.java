@@ -32,6 +32,22 @@ public class ObjectTemplateAttributeConfig {
 		private Integer _increment;
 		private Integer _nextValue;
 		
+		public ObjectTemplateAttributeConfig() {
+			super();
+		}
+		
+		/**
+		 * Create a copy of an object template attribute config, including the auto increment state
+		 * @param attributeConfig the attribute config to copy
+		 */
+		public ObjectTemplateAttributeConfig(ObjectTemplateAttributeConfig attributeConfig) {
+			this._name = attributeConfig._name;
+			this._value = attributeConfig._value;
+			this._seed = attributeConfig._seed;
+			this._increment = attributeConfig._increment;
+			this._nextValue = attributeConfig._nextValue;
+		}
+		
 		@XmlAttribute(name="name")
 		public String getName() {
 			return _name;
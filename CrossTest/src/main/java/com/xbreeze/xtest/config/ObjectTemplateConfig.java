@@ -23,6 +23,9 @@
 package com.xbreeze.xtest.config;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
@@ -39,6 +42,13 @@ public class ObjectTemplateConfig {
 	private String _parentName = "";
 	private ObjectTemplateConfig _parent;
 	private ArrayList<ObjectTemplateAttributeConfig> _attributes;
+	// Version of the structure (attributes, parent, naming) of templates, every change gets a new version from the global counter
+	// so a change in a template or one of its ancestors can be detected by comparing the highest version in the hierarchy
+	private static final AtomicLong _structureVersionCounter = new AtomicLong();
+	private long _structureVersion = _structureVersionCounter.incrementAndGet();
+	// The attributes of this template and its ancestors on lower case field name
+	private HashMap<String, ObjectTemplateAttributeConfig> _resolvedAttributes;
+	private long _resolvedAttributesVersion;
 	
 	@XmlAttribute(name="parent")
 	public String getParentName() {
@@ -47,6 +57,7 @@ public class ObjectTemplateConfig {
 
 	public void setParentName(String parentName) {
 		this._parentName = parentName;
+		this.structureChanged();
 	}
 
 	@XmlElement(name="Attribute")
@@ -57,11 +68,28 @@ public class ObjectTemplateConfig {
 
 	public void setAttributes(ArrayList<ObjectTemplateAttributeConfig> attributes) {
 		this._attributes = attributes;
+		this.structureChanged();
 	}
 
 	public ObjectTemplateConfig() {		
 		this._attributes = new ArrayList<>();
 	}
+	
+	/**
+	 * Create a copy of an object template config, including its attributes. The parent template config is not linked
+	 * @param objectTemplateConfig the object template config to copy
+	 */
+	public ObjectTemplateConfig(ObjectTemplateConfig objectTemplateConfig) {
+		this._name = objectTemplateConfig._name;
+		this._prefix = objectTemplateConfig._prefix;
+		this._suffix = objectTemplateConfig._suffix;
+		this._appendPrefix = objectTemplateConfig._appendPrefix;
+		this._parentName = objectTemplateConfig._parentName;
+		this._attributes = new ArrayList<>();
+		for (ObjectTemplateAttributeConfig attribute:objectTemplateConfig._attributes) {
+			this._attributes.add(new ObjectTemplateAttributeConfig(attribute));
+		}
+	}
 
 	@XmlAttribute(name="name")
 	public String getName() {
@@ -79,6 +107,7 @@ public class ObjectTemplateConfig {
 
 	public void setPrefix(String prefix) {
 		this._prefix = prefix;
+		this.structureChanged();
 	}
 
 	@XmlAttribute(name="suffix")
@@ -88,6 +117,7 @@ public class ObjectTemplateConfig {
 
 	public void setSuffix(String suffix) {
 		this._suffix = suffix;
+		this.structureChanged();
 	}
 
 	@XmlAttribute(name="appendPrefix")
@@ -97,6 +127,7 @@ public class ObjectTemplateConfig {
 
 	public void setAppendPrefix(String appendPrefix) {
 		this._appendPrefix = appendPrefix;
+		this.structureChanged();
 	}
 
 	public ObjectTemplateConfig getParent() {
@@ -105,10 +136,52 @@ public class ObjectTemplateConfig {
 
 	public void setParent(ObjectTemplateConfig parent) {
 		this._parent = parent;
+		this.structureChanged();
 	}
 	
 	public void setParentTemplateConfig(XTestConfig config) throws XTestException{		
 		this._parent = config.getObjectTemplateConfig(_parentName);
+		this.structureChanged();
+	}
+	
+	private void structureChanged() {
+		this._structureVersion = _structureVersionCounter.incrementAndGet();
+	}
+	
+	/**
+	 * Get the version of the structure of this template and its ancestors
+	 * @return the highest structure version in the template hierarchy
+	 */
+	long getStructureVersion() {
+		if (this._parent != null) {
+			return Math.max(this._structureVersion, this._parent.getStructureVersion());
+		}
+		return this._structureVersion;
+	}
+	
+	/**
+	 * Get the attributes of this template and its ancestors, an attribute of a template overrides the one of its ancestors
+	 * The map is created once and only recreated if the structure of the template hierarchy is changed
+	 * @return the attributes on lower case field name
+	 */
+	private HashMap<String, ObjectTemplateAttributeConfig> getResolvedAttributes() {
+		long structureVersion = this.getStructureVersion();
+		if (this._resolvedAttributes == null || this._resolvedAttributesVersion != structureVersion) {
+			HashMap<String, ObjectTemplateAttributeConfig> resolvedAttributes = new HashMap<>();
+			for (ObjectTemplateAttributeConfig attribute:this._attributes) {
+				if (attribute.getName() != null) {
+					resolvedAttributes.putIfAbsent(attribute.getName().toLowerCase(), attribute);
+				}
+			}
+			if (this._parent != null) {
+				for (Map.Entry<String, ObjectTemplateAttributeConfig> parentAttribute:this._parent.getResolvedAttributes().entrySet()) {
+					resolvedAttributes.putIfAbsent(parentAttribute.getKey(), parentAttribute.getValue());
+				}
+			}
+			this._resolvedAttributes = resolvedAttributes;
+			this._resolvedAttributesVersion = structureVersion;
+		}
+		return this._resolvedAttributes;
 	}
 	
 	/**
@@ -120,17 +193,16 @@ public class ObjectTemplateConfig {
 		return this.getRecursivePrefix().concat(this.getRecursiveAppendPrefix()).concat(name).concat(this.getRecursiveSuffix());
 	}
 	
-	private ObjectTemplateAttributeConfig getTemplateAttribute(String fieldName) {
-		for (ObjectTemplateAttributeConfig attribute:this._attributes) {
-			if (attribute.getName().equalsIgnoreCase(fieldName)) {
-				return attribute;
-			}
-		}
-		if (_parent != null) {
-			return _parent.getTemplateAttribute(fieldName);
-		} else {
+	/**
+	 * Get the attribute config for a field from the object template or, if not found, from one of its parents
+	 * @param fieldName the field to get the attribute config for
+	 * @return the attribute config or null if not found
+	 */
+	public ObjectTemplateAttributeConfig getTemplateAttribute(String fieldName) {
+		if (fieldName == null) {
 			return null;
 		}
+		return this.getResolvedAttributes().get(fieldName.toLowerCase());
 	}
 	
 	/**
@@ -239,6 +311,7 @@ public class ObjectTemplateConfig {
 				attributeConfig.setIncrement(objAttributeConfigFromAncestor.getIncrement());
 			}
 			this._attributes.add(attributeConfig);			
+			this.structureChanged();
 		}
 		
 		//Now override the value
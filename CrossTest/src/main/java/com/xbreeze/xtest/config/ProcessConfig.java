@@ -53,6 +53,21 @@ public class ProcessConfig {
 		super();
 	}
 	
+	/**
+	 * Create a copy of a process config, the process server and template config are not linked
+	 * @param processConfig the process config to copy
+	 */
+	public ProcessConfig(ProcessConfig processConfig) {
+		this._name = processConfig._name;
+		this._container = processConfig._container;
+		this._processServerConfigName = processConfig._processServerConfigName;
+		this._processNamePrefix = processConfig._processNamePrefix;
+		this._templateName = processConfig._templateName;
+		for (ConfigProperty parameter:processConfig._parameters) {
+			this._parameters.add(new ConfigProperty(parameter.getName(), parameter.getValue()));
+		}
+	}
+	
 	@XmlAttribute(name="container")
 	public String getContainer() {
 		return this._container;
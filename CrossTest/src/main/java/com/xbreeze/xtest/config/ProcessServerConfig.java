@@ -47,6 +47,19 @@ public class ProcessServerConfig {
 		super();
 	}
 	
+	/**
+	 * Create a copy of a process server config, including its properties
+	 * @param processServerConfig the process server config to copy
+	 */
+	public ProcessServerConfig(ProcessServerConfig processServerConfig) {
+		this(processServerConfig._name, processServerConfig._executionClass, processServerConfig._serverUrl);
+		if (processServerConfig._properties != null) {
+			for (SecurableConfigProperty property:processServerConfig._properties) {
+				this.setProperty(property.getName(), property.getValue(), property.getCredentialProvider());
+			}
+		}
+	}
+	
 	public void setName(String name) {
 		this._name = name;
 	}
@@ -35,6 +35,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
 
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.parsers.ParserConfigurationException;
@@ -84,6 +86,13 @@ public class XTestConfig {
 
 	private XTestConfig _config = null;
 	static final Logger logger = Logger.getLogger("");
+	// The config read from file, shared by all scenarios in the JVM. It is never handed out, every scenario gets its own copy of the mutable parts.
+	private static XTestConfig _sharedConfig = null;
+	private static String _sharedConfigFile = null;
+	// The modification time of the config file and all files it includes when the shared config was read
+	private static HashMap<URI, Long> _sharedConfigFileTimes = null;
+	private static JAXBContext _jaxbContext = null;
+	private static Schema _configSchema = null;
 	private ArrayList<DatabaseConfig> _databaseConfigs;
 	private ArrayList<DatabaseServerConfig> _databaseServerConfigs;
 	private ArrayList<ProcessConfig> _processConfigs;
@@ -91,8 +100,21 @@ public class XTestConfig {
 	private ArrayList<CompositeObjectConfig> _compositeObjects;
 	private ArrayList<ObjectTemplateConfig> _objectTemplates;
 	private ArrayList<CredentialProviderConfig> _credentialProviders;
+	// Indexes on config name, created on first lookup
+	private HashMap<String, DatabaseConfig> _databaseConfigIndex;
+	private HashMap<String, DatabaseServerConfig> _databaseServerConfigIndex;
+	private HashMap<String, ProcessConfig> _processConfigIndex;
+	private HashMap<String, ProcessServerConfig> _processServerConfigIndex;
+	private HashMap<String, CompositeObjectConfig> _compositeObjectIndex;
+	private HashMap<String, ObjectTemplateConfig> _objectTemplateIndex;
+	private HashMap<String, CredentialProviderConfig> _credentialProviderIndex;
 	private Boolean _debug = false; 
 	private String _emptyStringValue;
+	private Integer _maxInlineDifferences = 100;
+	private Integer _maxSummarizedDifferences = 100;
+	private String _differenceReportFolder = "target/differences";
+	private Integer _sortBufferSize = 100000;
+	private Integer _compareThreads = 1;
 	
 	public XTestConfig() throws XTestException {
 		_databaseConfigs = new ArrayList<>();
@@ -114,7 +136,98 @@ public class XTestConfig {
 		return _config;
 	}
 	
+	/**
+	 * Get the config for a scenario. The config file is only read if it wasn't read before or if the config file or one of its
+	 * includes was modified since. The scenario gets a copy of the configs that can be changed by scenarios (database configs, 
+	 * object templates, composite objects and process configs), server and credential provider configs are shared.
+	 * @param file the config file
+	 * @return the config for the scenario
+	 * @throws XTestException
+	 */
 	private XTestConfig fromFile(String file) throws XTestException{
+		return getSharedConfig(file).createScenarioConfig();
+	}
+	
+	/**
+	 * Get the config shared by all scenarios, (re)reading it from file if needed
+	 * @param file the config file
+	 * @return the shared config
+	 * @throws XTestException
+	 */
+	private static synchronized XTestConfig getSharedConfig(String file) throws XTestException {
+		if (_sharedConfig != null && file.equals(_sharedConfigFile) && !isModified(_sharedConfigFileTimes)) {
+			return _sharedConfig;
+		}
+		HashMap<URI, Integer> resolvedIncludes = new HashMap<>();
+		XTestConfig cfg = readFromFile(file, resolvedIncludes);
+		HashMap<URI, Long> configFileTimes = new HashMap<>();
+		for (URI configFileUri:resolvedIncludes.keySet()) {
+			configFileTimes.put(configFileUri, new File(configFileUri).lastModified());
+		}
+		_sharedConfig = cfg;
+		_sharedConfigFile = file;
+		_sharedConfigFileTimes = configFileTimes;
+		return cfg;
+	}
+	
+	/**
+	 * Check if any of the config files was modified since the config was read
+	 * @param configFileTimes the modification times of the config files when the config was read
+	 * @return true if a file was modified or removed
+	 */
+	private static boolean isModified(HashMap<URI, Long> configFileTimes) {
+		for (URI configFileUri:configFileTimes.keySet()) {
+			if (new File(configFileUri).lastModified() != configFileTimes.get(configFileUri)) {
+				logger.info(String.format("Config file %s was modified, config will be read again", configFileUri.toString()));
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Create a copy of the config for a scenario, so changes made by a scenario are not visible in other scenarios
+	 * @return the copy of the config
+	 * @throws XTestException
+	 */
+	private XTestConfig createScenarioConfig() throws XTestException {
+		XTestConfig cfg = new XTestConfig();
+		cfg._debug = this._debug;
+		cfg._emptyStringValue = this._emptyStringValue;
+		cfg._maxInlineDifferences = this._maxInlineDifferences;
+		cfg._maxSummarizedDifferences = this._maxSummarizedDifferences;
+		cfg._differenceReportFolder = this._differenceReportFolder;
+		cfg._sortBufferSize = this._sortBufferSize;
+		cfg._compareThreads = this._compareThreads;
+		cfg._databaseServerConfigs.addAll(this._databaseServerConfigs);
+		cfg._credentialProviders.addAll(this._credentialProviders);
+		for (ProcessServerConfig processServerConfig:this._processServerConfigs) {
+			cfg._processServerConfigs.add(new ProcessServerConfig(processServerConfig));
+		}
+		for (CompositeObjectConfig compositeObjectConfig:this._compositeObjects) {
+			cfg._compositeObjects.add(new CompositeObjectConfig(compositeObjectConfig));
+		}
+		for (ObjectTemplateConfig objectTemplateConfig:this._objectTemplates) {
+			cfg._objectTemplates.add(new ObjectTemplateConfig(objectTemplateConfig));
+		}
+		for (DatabaseConfig databaseConfig:this._databaseConfigs) {
+			cfg._databaseConfigs.add(new DatabaseConfig(databaseConfig));
+		}
+		for (ProcessConfig processConfig:this._processConfigs) {
+			cfg._processConfigs.add(new ProcessConfig(processConfig));
+		}
+		cfg.linkConfigs();
+		return cfg;
+	}
+	
+	/**
+	 * Read the config from file
+	 * @param file the config file
+	 * @param resolvedIncludes collection which is filled with the config file and all files it includes
+	 * @return the config
+	 * @throws XTestException
+	 */
+	private static XTestConfig readFromFile(String file, HashMap<URI, Integer> resolvedIncludes) throws XTestException{
 		XTestConfig cfg = null;
 		// Setup the global LogManager.
 		LogManager logManager = LogManager.getLogManager();
@@ -131,10 +244,16 @@ public class XTestConfig {
 		try {
 			//Read file into string and resolve any includes
 		
-			String resolvedConfig = getResolvedConfig(file);
-			JAXBContext jaxbContext = JAXBContext.newInstance(XTestConfig.class);
-			Unmarshaller xTestConfigUnmarshaller = jaxbContext.createUnmarshaller();
-			Schema configSchema = getSchema();
+			String resolvedConfig = getResolvedConfig(file, resolvedIncludes);
+			//The JAXB context and schema are thread safe, so create them only once
+			if (_jaxbContext == null) {
+				_jaxbContext = JAXBContext.newInstance(XTestConfig.class);
+			}
+			Unmarshaller xTestConfigUnmarshaller = _jaxbContext.createUnmarshaller();
+			if (_configSchema == null) {
+				_configSchema = getSchema();
+			}
+			Schema configSchema = _configSchema;
 			xTestConfigUnmarshaller.setSchema(configSchema);
 			//Create a SAXParser factory
 			 SAXParserFactory spf = SAXParserFactory.newInstance();
@@ -185,26 +304,33 @@ public class XTestConfig {
 			
 			//TODO how to package signed jars?
 		
-			//Assign all object template configs their parent
-			for(ObjectTemplateConfig oConfig:cfg._objectTemplates) {
-				oConfig.setParentTemplateConfig(cfg);
-			}
-			
-			//Assign all database configs their corresponding database server config so when used, no reference to global 
-			//config is required.
-			for(DatabaseConfig dConfig:cfg._databaseConfigs) {
-				dConfig.setDatabaseServerAndTemplateConfig(cfg);				
-			}
-			
-			//Assign all process configs their corresponding process server config so when used, no reference to global 
-			//config is required.
-			for(ProcessConfig pConfig:cfg._processConfigs) {
-				pConfig.setProcessServerAndTemplateConfig(cfg);
-			}
-			
+			cfg.linkConfigs();
 			return cfg;
 	}
 	
+	/**
+	 * Link all configs to the configs they reference by name
+	 * @throws XTestException when a referenced config does not exist
+	 */
+	private void linkConfigs() throws XTestException {
+		//Assign all object template configs their parent
+		for(ObjectTemplateConfig oConfig:this._objectTemplates) {
+			oConfig.setParentTemplateConfig(this);
+		}
+		
+		//Assign all database configs their corresponding database server config so when used, no reference to global 
+		//config is required.
+		for(DatabaseConfig dConfig:this._databaseConfigs) {
+			dConfig.setDatabaseServerAndTemplateConfig(this);				
+		}
+		
+		//Assign all process configs their corresponding process server config so when used, no reference to global 
+		//config is required.
+		for(ProcessConfig pConfig:this._processConfigs) {
+			pConfig.setProcessServerAndTemplateConfig(this);
+		}
+	}
+	
 	/**
 	 * Reads the xtest config file, resolves all includes and returns the content in a string
 	 * @param xtestConfigFileName
@@ -213,8 +339,18 @@ public class XTestConfig {
 	 * @throws XTestException 
 	 */
 	public static String getResolvedConfig(String xtestConfigFileName) throws XTestException {
+		return getResolvedConfig(xtestConfigFileName, new HashMap<>());
+	}
+	
+	/**
+	 * Reads the xtest config file, resolves all includes and returns the content in a string
+	 * @param xtestConfigFileName
+	 * @param resolvedIncludes collection which is filled with the config file and all files it includes
+	 * @return the filename found at the given path, with all includes resolved
+	 * @throws XTestException 
+	 */
+	public static String getResolvedConfig(String xtestConfigFileName, HashMap<URI, Integer> resolvedIncludes) throws XTestException {
 		URI configFileUri = Paths.get("", xtestConfigFileName).toAbsolutePath().toUri();
-		HashMap<URI, Integer> resolvedIncludes = new HashMap<>();	
 		try {
 			return getConfigWithResolvedIncludes(FileUtils.getFileContent(configFileUri), configFileUri, 0, resolvedIncludes);
 		} 
@@ -359,20 +495,55 @@ public class XTestConfig {
 		return configSchema;
 	}
 	
+	/**
+	 * Create an index on the name of configs, the first config with a name is indexed like the lookups did with a linear search
+	 * @param configs the configs to index
+	 * @param nameGetter function to get the name of a config
+	 * @param ignoreCase whether the index is case insensitive, if so the key is the lower case name
+	 * @return the index
+	 */
+	private static <T> HashMap<String, T> createIndex(List<T> configs, Function<T, String> nameGetter, boolean ignoreCase) {
+		HashMap<String, T> index = new HashMap<>();
+		for (T config:configs) {
+			String name = nameGetter.apply(config);
+			if (name != null) {
+				index.putIfAbsent(ignoreCase ? name.toLowerCase() : name, config);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Get a config from a case insensitive index
+	 * @param index the index
+	 * @param configName the name of the config to find
+	 * @return the config or null if not found
+	 */
+	private static <T> T getFromIndex(HashMap<String, T> index, String configName) {
+		if (configName == null) {
+			return null;
+		}
+		return index.get(configName.toLowerCase());
+	}
+	
 	public DatabaseConfig getDatabaseConfig(String configName) throws XTestDatabaseException {
-		for (DatabaseConfig dbc:_databaseConfigs) {
-			if (dbc.getName().equalsIgnoreCase(configName))
-				return dbc;
+		if (_databaseConfigIndex == null) {
+			_databaseConfigIndex = createIndex(_databaseConfigs, DatabaseConfig::getName, true);
 		}
+		DatabaseConfig dbc = getFromIndex(_databaseConfigIndex, configName);
+		if (dbc != null)
+			return dbc;
 		//Throw exception if config was not found
 		throw new XTestDatabaseException(String.format("Database config [%s] does not exist", configName));		
 	}
 	
 	public DatabaseServerConfig getDatabaseServerConfig(String configName) throws XTestDatabaseException {
-		for (DatabaseServerConfig dbc:_databaseServerConfigs) {
-			if (dbc.getName().equalsIgnoreCase(configName))
-				return dbc;
+		if (_databaseServerConfigIndex == null) {
+			_databaseServerConfigIndex = createIndex(_databaseServerConfigs, DatabaseServerConfig::getName, true);
 		}
+		DatabaseServerConfig dbc = getFromIndex(_databaseServerConfigIndex, configName);
+		if (dbc != null)
+			return dbc;
 		//Throw exception if config was not found
 		throw new XTestDatabaseException(String.format("Database server config [%s] does not exist", configName));		
 	}
@@ -381,29 +552,35 @@ public class XTestConfig {
 		if (configName == null || configName.isEmpty()) {
 			return null;
 		}
-		for (ObjectTemplateConfig otc:_objectTemplates) {
-			if (otc.getName().equalsIgnoreCase(configName))
-				return otc;
+		if (_objectTemplateIndex == null) {
+			_objectTemplateIndex = createIndex(_objectTemplates, ObjectTemplateConfig::getName, true);
 		}
+		ObjectTemplateConfig otc = getFromIndex(_objectTemplateIndex, configName);
+		if (otc != null)
+			return otc;
 		//Throw exception if config was not found
 		throw new XTestDatabaseException(String.format("Object template config [%s] does not exist", configName));		
 	}
 	
 	public ProcessConfig getProcessConfig(String configName) throws XTestProcessException {
-		for (ProcessConfig pc:_processConfigs) {
-			if (pc.getName().equalsIgnoreCase(configName))
-				return pc;
+		if (_processConfigIndex == null) {
+			_processConfigIndex = createIndex(_processConfigs, ProcessConfig::getName, true);
 		}
+		ProcessConfig pc = getFromIndex(_processConfigIndex, configName);
+		if (pc != null)
+			return pc;
 		
 		//throw new exception if config was not found
 		throw new XTestProcessException(String.format("Process config [%s] does not exist", configName));
 	}
 	
 	public ProcessServerConfig getProcessServerConfig(String configName) throws XTestProcessException {
-		for (ProcessServerConfig psc:_processServerConfigs) {
-			if (psc.getName().equalsIgnoreCase(configName))
-				return psc;
+		if (_processServerConfigIndex == null) {
+			_processServerConfigIndex = createIndex(_processServerConfigs, ProcessServerConfig::getName, true);
 		}
+		ProcessServerConfig psc = getFromIndex(_processServerConfigIndex, configName);
+		if (psc != null)
+			return psc;
 		
 		//throw new exception if config was not found
 		throw new XTestProcessException(String.format("Process server config [%s] does not exist", configName));
@@ -414,10 +591,12 @@ public class XTestConfig {
 		if (configName==null || configName.isEmpty()) {
 			return null;
 		}
-		for (CredentialProviderConfig cpc:_credentialProviders) {
-			if (cpc.getName().equalsIgnoreCase(configName))
-				return cpc;
+		if (_credentialProviderIndex == null) {
+			_credentialProviderIndex = createIndex(_credentialProviders, CredentialProviderConfig::getName, true);
 		}
+		CredentialProviderConfig cpc = getFromIndex(_credentialProviderIndex, configName);
+		if (cpc != null)
+			return cpc;
 		//Throw exception if config was not found
 		throw new XTestException(String.format("Credential provider config [%s] does not exist", configName));		
 	}
@@ -444,6 +623,72 @@ public class XTestConfig {
 		return this._emptyStringValue != null;
 	}
 	
+	/**
+	 * The maximum number of expected not found and found not expected records shown in a comparison message, 0 means no limit.
+	 * @return the maximum number of records
+	 */
+	@XmlAttribute(name="maxInlineDifferences", required = false)
+	public Integer getMaxInlineDifferences() {
+		return this._maxInlineDifferences;
+	}
+	
+	public void setMaxInlineDifferences(Integer maxInlineDifferences) {
+		this._maxInlineDifferences = maxInlineDifferences;
+	}
+	
+	/**
+	 * The maximum number of found not expected records shown when they are only counted (compareMode spotcheck without a full report)
+	 * and maxInlineDifferences has no limit, the other records are counted without keeping them.
+	 * @return the maximum number of records
+	 */
+	@XmlAttribute(name="maxSummarizedDifferences", required = false)
+	public Integer getMaxSummarizedDifferences() {
+		return this._maxSummarizedDifferences;
+	}
+	
+	public void setMaxSummarizedDifferences(Integer maxSummarizedDifferences) {
+		this._maxSummarizedDifferences = maxSummarizedDifferences;
+	}
+	
+	/**
+	 * The folder to write all expected not found and found not expected records to when there are more than shown in a comparison message.
+	 * @return the folder
+	 */
+	@XmlAttribute(name="differenceReportFolder", required = false)
+	public String getDifferenceReportFolder() {
+		return this._differenceReportFolder;
+	}
+	
+	public void setDifferenceReportFolder(String differenceReportFolder) {
+		this._differenceReportFolder = differenceReportFolder;
+	}
+	
+	/**
+	 * The maximum number of expected records sorted in memory when comparing in sort order, more records are sorted using temporary files.
+	 * @return the number of records
+	 */
+	@XmlAttribute(name="sortBufferSize", required = false)
+	public Integer getSortBufferSize() {
+		return this._sortBufferSize;
+	}
+	
+	public void setSortBufferSize(Integer sortBufferSize) {
+		this._sortBufferSize = sortBufferSize;
+	}
+	
+	/**
+	 * The number of threads converting and hashing the rows of a streamed actual result, 1 to hash the rows on the thread reading them.
+	 * @return the number of threads
+	 */
+	@XmlAttribute(name="compareThreads", required = false)
+	public Integer getCompareThreads() {
+		return this._compareThreads;
+	}
+	
+	public void setCompareThreads(Integer compareThreads) {
+		this._compareThreads = compareThreads;
+	}
+	
 	@XmlElement(name="DatabaseConfig")
 	@XmlElementWrapper(name="DatabaseConfigs")
 	public ArrayList<DatabaseConfig> getDatabaseConfigs(){
@@ -451,6 +696,7 @@ public class XTestConfig {
 	}
 	public void setDatabaseConfigs(ArrayList<DatabaseConfig> databaseConfigs) {
 		this._databaseConfigs = databaseConfigs;
+		this._databaseConfigIndex = null;
 	}
 	
 	@XmlElement(name="DatabaseServerConfig")
@@ -461,6 +707,7 @@ public class XTestConfig {
 	
 	public void setDatabaseServerConfigs(ArrayList<DatabaseServerConfig> databaseServerConfigs) {
 		this._databaseServerConfigs= databaseServerConfigs;
+		this._databaseServerConfigIndex = null;
 	}	
 	@XmlElement(name="ProcessConfig")
 	@XmlElementWrapper(name="ProcessConfigs")
@@ -470,6 +717,7 @@ public class XTestConfig {
 	
 	public void setProcessConfigs(ArrayList<ProcessConfig> processConfigs) {
 		this._processConfigs= processConfigs;
+		this._processConfigIndex = null;
 	}	
 	
 	@XmlElement(name="ProcessServerConfig")
@@ -480,6 +728,7 @@ public class XTestConfig {
 	
 	public void setProcessServerConfigs(ArrayList<ProcessServerConfig> processServerConfigs) {
 		this._processServerConfigs= processServerConfigs;
+		this._processServerConfigIndex = null;
 	}
 	
 	@XmlElement(name="CompositeObject")
@@ -490,6 +739,7 @@ public class XTestConfig {
 	
 	public void setCompositeObjects(ArrayList<CompositeObjectConfig> compositeObjectConfigs) {
 		this._compositeObjects = compositeObjectConfigs;
+		this._compositeObjectIndex = null;
 	}
 	
 	@XmlElement(name="ObjectTemplate")
@@ -502,6 +752,7 @@ public class XTestConfig {
 	
 	public void setObjectTemplateConfigs(ArrayList<ObjectTemplateConfig> objectTemplateConfigs) {
 		this._objectTemplates = objectTemplateConfigs;
+		this._objectTemplateIndex = null;
 	}
 	
 	
@@ -513,13 +764,17 @@ public class XTestConfig {
 	
 	public void setCredentialProviderConfigs(ArrayList<CredentialProviderConfig> credentialProviders) {
 		this._credentialProviders = credentialProviders;
+		this._credentialProviderIndex = null;
 	}
 	
 	public CompositeObjectConfig getCompositeObjectConfig(String objectName) throws XTestDatabaseException {
-		for (CompositeObjectConfig coc:this._compositeObjects) {
-			if (coc.getName().equals(objectName)) {
-				return coc;
-			}
+		//Composite object names are case sensitive
+		if (_compositeObjectIndex == null) {
+			_compositeObjectIndex = createIndex(_compositeObjects, CompositeObjectConfig::getName, false);
+		}
+		CompositeObjectConfig coc = objectName == null ? null : _compositeObjectIndex.get(objectName);
+		if (coc != null) {
+			return coc;
 		}
 		throw new XTestDatabaseException(String.format("There is no definition for composite object %s", objectName));
 	}
@@ -534,6 +789,7 @@ public class XTestConfig {
 			coc.setName(compositeObject);
 			coc.addKeyTable(keyTable, databaseConfig);
 			this._compositeObjects.add(coc);
+			this._compositeObjectIndex = null;
 		}
 	}
 	
@@ -547,6 +803,7 @@ public class XTestConfig {
 			coc.setName(compositeObject);
 			coc.addContextTable(contextTable, databaseConfig);
 			this._compositeObjects.add(coc);
+			this._compositeObjectIndex = null;
 		}
 	}
 }
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.util.Map;
+
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.config.XTestConfig;
+
+/**
+ * The converters for all columns of a table or query result, created once for the column definitions.
+ * Column positions are 1-based, like in JDBC.
+ * @author Willem
+ *
+ */
+public class ColumnConversionPlan {
+	
+	private final TableMetaData _metaData;
+	private final ColumnConverter[] _converters;
+	
+	/**
+	 * Create the conversion plan for a set of column definitions
+	 * @param metaData the column definitions
+	 * @param config the config, used for the empty string value
+	 * @param dbConfig the database config, used for the object template and custom datatypes, can be null
+	 */
+	public ColumnConversionPlan(TableMetaData metaData, XTestConfig config, DatabaseConfig dbConfig) {
+		this._metaData = metaData;
+		String emptyStringValue = config.hasEmptyStringValue() ? config.getEmptyStringValue() : null;
+		this._converters = new ColumnConverter[metaData.getColumnCount()];
+		for (int i = 1; i <= metaData.getColumnCount(); i++) {
+			this._converters[i - 1] = ColumnConverter.forColumn(metaData, i, emptyStringValue, dbConfig);
+		}
+	}
+	
+	public TableMetaData getMetaData() {
+		return this._metaData;
+	}
+	
+	public int getColumnCount() {
+		return this._converters.length;
+	}
+	
+	public ColumnConverter getConverter(int columnPosition) {
+		return this._converters[columnPosition - 1];
+	}
+	
+	/**
+	 * Get the values to set for all columns for a data table record
+	 * If a field is not specified in the data table, the default or next auto increment value from the object template is used
+	 * @param dataRecord the data table record with case insensitive keys
+	 * @return the values per column position (0-based), null if no value is specified
+	 */
+	public String[] getRowValues(Map<String, String> dataRecord) {
+		String[] rowValues = new String[this._converters.length];
+		for (int i = 0; i < this._converters.length; i++) {
+			ColumnConverter converter = this._converters[i];
+			String columnName = converter.getColumnName();
+			if (dataRecord.containsKey(columnName)) {
+				rowValues[i] = dataRecord.get(columnName);
+			}
+			else {
+				rowValues[i] = converter.getTemplateValue();
+			}
+		}
+		return rowValues;
+	}
+}
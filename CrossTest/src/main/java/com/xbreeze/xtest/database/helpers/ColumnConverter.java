@@ -0,0 +1,759 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Struct;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import javax.sql.RowSet;
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.config.ObjectTemplateAttributeConfig;
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+
+/**
+ * Converts the values of one column between the string representation used in Cucumber data tables and the JDBC datatype of the column.
+ * A converter is created once per column for a given datatype, so the datatype doesn't need to be determined for every value.
+ * An empty string or null value is always processed as null.
+ * @author Willem
+ *
+ */
+public abstract class ColumnConverter {
+	
+	protected final int _position;
+	protected final String _columnName;
+	protected final int _dataType;
+	private final ObjectTemplateAttributeConfig _templateAttribute;
+	
+	protected ColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+		this._position = position;
+		this._columnName = columnName;
+		this._dataType = dataType;
+		this._templateAttribute = templateAttribute;
+	}
+	
+	/**
+	 * Create the converter for a column, based on its datatype
+	 * @param meta the column definitions
+	 * @param position the column ordinal position
+	 * @param emptyStringValue the string constant for empty string values from the config, null if not specified
+	 * @param dbConfig the database config, used for the object template and custom datatypes, can be null
+	 * @return the converter for the column
+	 */
+	public static ColumnConverter forColumn(TableMetaData meta, int position, String emptyStringValue, DatabaseConfig dbConfig) {
+		String columnName = meta.getColumnName(position);
+		int dataType = meta.getColumnType(position);
+		ObjectTemplateAttributeConfig templateAttribute = null;
+		if (dbConfig != null && dbConfig.getTemplate() != null) {
+			templateAttribute = dbConfig.getTemplate().getTemplateAttribute(columnName);
+		}
+		switch (dataType) {
+		case java.sql.Types.DECIMAL:
+		case java.sql.Types.DOUBLE:
+		case java.sql.Types.REAL:
+		case java.sql.Types.FLOAT:
+		case java.sql.Types.NUMERIC:
+			return new DecimalColumnConverter(position, columnName, dataType, templateAttribute);
+		case java.sql.Types.VARCHAR:
+		case java.sql.Types.NVARCHAR:
+		case java.sql.Types.LONGNVARCHAR:
+		case java.sql.Types.LONGVARCHAR:
+			return new StringColumnConverter(position, columnName, dataType, templateAttribute, emptyStringValue, false);
+		case java.sql.Types.CHAR:
+		case java.sql.Types.NCHAR:
+			//In case of char datatype, trim result obtained from database
+			return new StringColumnConverter(position, columnName, dataType, templateAttribute, emptyStringValue, true);
+		case java.sql.Types.BIGINT:
+			return new BigIntColumnConverter(position, columnName, dataType, templateAttribute);
+		case java.sql.Types.INTEGER:
+		case java.sql.Types.SMALLINT:
+		case java.sql.Types.TINYINT:
+			return new IntColumnConverter(position, columnName, dataType, templateAttribute);
+		case java.sql.Types.BOOLEAN:
+		case java.sql.Types.BIT:
+			return new BooleanColumnConverter(position, columnName, dataType, templateAttribute);
+		case java.sql.Types.DATE:
+			return new DateColumnConverter(position, columnName, dataType, templateAttribute);
+		case java.sql.Types.TIME:
+			return new TimeColumnConverter(position, columnName, dataType, templateAttribute);
+		case java.sql.Types.TIMESTAMP:
+			return new TimestampColumnConverter(position, columnName, dataType, templateAttribute);
+		case java.sql.Types.CLOB:
+		case java.sql.Types.NCLOB:
+			return new LobColumnConverter(position, columnName, dataType, templateAttribute, false);
+		case java.sql.Types.BLOB:
+		case java.sql.Types.BINARY:
+		case java.sql.Types.VARBINARY:
+		case java.sql.Types.LONGVARBINARY:
+			return new LobColumnConverter(position, columnName, dataType, templateAttribute, true);
+		case java.sql.Types.STRUCT:
+			return new StructColumnConverter(position, columnName, dataType, templateAttribute, meta.getColumnTypeName(position), dbConfig);
+		default:
+			return new UnsupportedColumnConverter(position, columnName, dataType, templateAttribute);
+		}
+	}
+	
+	public int getPosition() {
+		return this._position;
+	}
+	
+	public String getColumnName() {
+		return this._columnName;
+	}
+	
+	public int getDataType() {
+		return this._dataType;
+	}
+	
+	/**
+	 * Get the value from the object template for a column that is not specified in the data table
+	 * @return the default value, the next auto increment value or null if the template doesn't specify the column
+	 */
+	public String getTemplateValue() {
+		if (this._templateAttribute != null) {
+			if (this._templateAttribute.getValue() != null) {
+				return this._templateAttribute.getValue();
+			}
+			else if (this._templateAttribute.isAutoIncrement()) {
+				return String.valueOf(this._templateAttribute.getNextValue());
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Set the column of the current row of a rowset
+	 * @param rowSet the rowset to update
+	 * @param fieldValue the value to set
+	 * @throws SQLException
+	 * @throws XTestDatabaseException
+	 */
+	public void update(RowSet rowSet, String fieldValue) throws SQLException, XTestDatabaseException {
+		if (fieldValue == null || fieldValue.length()==0) {
+			rowSet.updateNull(this._position);
+		}
+		else {
+			updateValue(rowSet, fieldValue);
+		}
+	}
+	
+	/**
+	 * Set the parameter for the column in a statement, the parameter position is the same as the column position
+	 * @param stmt the statement to set the parameter for
+	 * @param fieldValue the value to set
+	 * @throws SQLException
+	 * @throws XTestDatabaseException
+	 */
+	public void bind(PreparedStatement stmt, String fieldValue) throws SQLException, XTestDatabaseException {
+		if (fieldValue == null || fieldValue.length()==0) {
+			stmt.setNull(this._position, this._dataType);
+		}
+		else {
+			bindValue(stmt, fieldValue);
+		}
+	}
+	
+	/**
+	 * Get the column value of the current row of a resultset and convert it to string
+	 * @param rs the resultset to read from
+	 * @return the value converted to string, an empty string if the value is null
+	 * @throws SQLException
+	 * @throws XTestDatabaseException
+	 */
+	public String getValue(ResultSet rs) throws SQLException, XTestDatabaseException {
+		return formatValue(readValue(rs));
+	}
+	
+	/**
+	 * Read the column value of the current row of a resultset, without converting it to string.
+	 * Only the reading needs the resultset, so the value can be converted by another thread than the one reading the rows.
+	 * @param rs the resultset to read from
+	 * @return the value as read from the resultset, null if the value is null
+	 * @throws SQLException
+	 * @throws XTestDatabaseException
+	 */
+	public abstract Object readValue(ResultSet rs) throws SQLException, XTestDatabaseException;
+	
+	/**
+	 * Convert a value read by readValue to string, the conversion doesn't change the state of the converter
+	 * @param value the value read from the resultset
+	 * @return the value converted to string, an empty string if the value is null
+	 */
+	public String formatValue(Object value) {
+		return value == null ? "" : formatNonNullValue(value);
+	}
+	
+	protected abstract String formatNonNullValue(Object value);
+	
+	/**
+	 * Convert a value from a data table to the string which is returned by getValue when the value is stored in the column,
+	 * so a data table value can be compared with a value from the database without storing it in a rowset first
+	 * @param fieldValue the value from the data table
+	 * @return the normalized value, an empty string if the value is null or empty
+	 * @throws XTestDatabaseException
+	 */
+	public String normalize(String fieldValue) throws XTestDatabaseException {
+		if (fieldValue == null || fieldValue.length()==0) {
+			return "";
+		}
+		return normalizeValue(fieldValue);
+	}
+	
+	protected abstract String normalizeValue(String fieldValue) throws XTestDatabaseException;
+	
+	protected abstract void updateValue(RowSet rowSet, String fieldValue) throws SQLException, XTestDatabaseException;
+	
+	protected abstract void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException, XTestDatabaseException;
+	
+	private static final class DecimalColumnConverter extends ColumnConverter {
+		
+		private DecimalColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+			super(position, columnName, dataType, templateAttribute);
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			return rs.getBigDecimal(this._position);
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			//Remove trailing zeroes
+			return ((BigDecimal)value).stripTrailingZeros().toString();
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) {
+			return new BigDecimal(fieldValue).stripTrailingZeros().toString();
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException {
+			rowSet.updateBigDecimal(this._position, new BigDecimal(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException {
+			stmt.setBigDecimal(this._position, new BigDecimal(fieldValue));
+		}
+	}
+	
+	private static final class StringColumnConverter extends ColumnConverter {
+		
+		private final String _emptyStringValue;
+		private final boolean _trim;
+		
+		private StringColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute, String emptyStringValue, boolean trim) {
+			super(position, columnName, dataType, templateAttribute);
+			this._emptyStringValue = emptyStringValue;
+			this._trim = trim;
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			return rs.getString(this._position);
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			String strVal = (String)value;
+			if (this._trim) {
+				return strVal.trim();
+			}
+			//If the config defines an empty string constant, return it if the value is an empty string
+			if (this._emptyStringValue != null && strVal.length()==0) {
+				return this._emptyStringValue;
+			}
+			return strVal;
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) {
+			String strVal = getStringValue(fieldValue);
+			if (this._trim) {
+				return strVal.trim();
+			}
+			if (this._emptyStringValue != null && strVal.length()==0) {
+				return this._emptyStringValue;
+			}
+			return strVal;
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException {
+			rowSet.updateString(this._position, getStringValue(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException {
+			stmt.setString(this._position, getStringValue(fieldValue));
+		}
+		
+		private String getStringValue(String fieldValue) {
+			//If the config defines an empty string constant and the value is equal to it, store an empty string
+			if (this._emptyStringValue != null && this._emptyStringValue.equals(fieldValue)) {
+				return "";
+			}
+			return fieldValue;
+		}
+	}
+	
+	private static final class BigIntColumnConverter extends ColumnConverter {
+		
+		private BigIntColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+			super(position, columnName, dataType, templateAttribute);
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			long bigIntVal = rs.getLong(this._position);
+			return rs.wasNull() ? null : bigIntVal;
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			return Long.toString((Long)value);
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) {
+			return Long.toString(Long.parseLong(fieldValue));
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException {
+			rowSet.updateLong(this._position, Long.parseLong(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException {
+			stmt.setLong(this._position, Long.parseLong(fieldValue));
+		}
+	}
+	
+	private static final class IntColumnConverter extends ColumnConverter {
+		
+		private IntColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+			super(position, columnName, dataType, templateAttribute);
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			int intVal = rs.getInt(this._position);
+			return rs.wasNull() ? null : intVal;
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			return Integer.toString((Integer)value);
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) {
+			return Integer.toString(Integer.parseInt(fieldValue));
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException {
+			rowSet.updateInt(this._position, Integer.parseInt(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException {
+			stmt.setInt(this._position, Integer.parseInt(fieldValue));
+		}
+	}
+	
+	private static final class BooleanColumnConverter extends ColumnConverter {
+		
+		private BooleanColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+			super(position, columnName, dataType, templateAttribute);
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			boolean boolVal = rs.getBoolean(this._position);
+			return rs.wasNull() ? null : boolVal;
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			return Boolean.toString((Boolean)value);
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) {
+			return Boolean.toString(Boolean.parseBoolean(fieldValue));
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException {
+			rowSet.updateBoolean(this._position, Boolean.parseBoolean(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException {
+			stmt.setBoolean(this._position, Boolean.parseBoolean(fieldValue));
+		}
+	}
+	
+	private static final class DateColumnConverter extends ColumnConverter {
+		
+		private DateColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+			super(position, columnName, dataType, templateAttribute);
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			return rs.getDate(this._position);
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			//java.sql.Date is formatted as yyyy-mm-dd
+			return value.toString();
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) {
+			return Date.valueOf(fieldValue).toString();
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException {
+			rowSet.updateDate(this._position, Date.valueOf(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException {
+			stmt.setDate(this._position, Date.valueOf(fieldValue));
+		}
+	}
+	
+	private static final class TimeColumnConverter extends ColumnConverter {
+		
+		private TimeColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+			super(position, columnName, dataType, templateAttribute);
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			return rs.getTime(this._position);
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			return value.toString();
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) {
+			return Time.valueOf(fieldValue).toString();
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException {
+			rowSet.updateTime(this._position, Time.valueOf(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException {
+			stmt.setTime(this._position, Time.valueOf(fieldValue));
+		}
+	}
+	
+	private static final class TimestampColumnConverter extends ColumnConverter {
+		
+		//Length of a timestamp formatted as yyyy-mm-dd hh:mm:ss
+		private static final int TIMESTAMP_LENGTH = 19;
+		
+		private TimestampColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+			super(position, columnName, dataType, templateAttribute);
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			java.util.Date tsVal;
+			try {
+				tsVal = rs.getTimestamp(this._position);
+			}
+			catch (IllegalArgumentException exc) {
+				//If not readable as timestamp, read as date.
+				tsVal = rs.getDate(this._position);
+				if (tsVal != null) {
+					tsVal = new Timestamp(tsVal.getTime());
+				}
+			}
+			return tsVal;
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			//Timestamp is formatted as yyyy-mm-dd hh:mm:ss.fffffffff, fractional seconds are not compared
+			return value.toString().substring(0, TIMESTAMP_LENGTH);
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) {
+			return getTimestampValue(fieldValue).toString().substring(0, TIMESTAMP_LENGTH);
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException {
+			rowSet.updateTimestamp(this._position, getTimestampValue(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException {
+			stmt.setTimestamp(this._position, getTimestampValue(fieldValue));
+		}
+		
+		private Timestamp getTimestampValue(String fieldValue) {
+			try {
+				// try to parse the field value as a timestamp
+				return Timestamp.valueOf(fieldValue);
+			}
+			catch (IllegalArgumentException exc) {
+				//If not parseable as timestamp, process as date.
+				return new Timestamp(Date.valueOf(fieldValue).getTime());
+			}
+		}
+	}
+	
+	/**
+	 * Converter of large object and binary columns, the content is read as stream and compared on the string of LobValue.
+	 * In a data table the content of a binary column is specified as hexadecimal string, the content of both can be read from
+	 * a file with "@file:&lt;path&gt;". A referenced file is bound as stream, so its content isn't loaded in memory.
+	 */
+	private static final class LobColumnConverter extends ColumnConverter {
+		
+		private final boolean _binary;
+		
+		private LobColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute, boolean binary) {
+			super(position, columnName, dataType, templateAttribute);
+			this._binary = binary;
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException, XTestDatabaseException {
+			//The content is hashed while it is read, since the stream can only be read on the thread reading the result
+			return LobValue.read(rs, this._position, this._dataType);
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			return (String)value;
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) throws XTestDatabaseException {
+			return LobValue.normalize(fieldValue, this._binary);
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException, XTestDatabaseException {
+			//A rowset keeps its values in memory, so the content is loaded
+			if (this._binary) {
+				byte[] bytes = getBytes(fieldValue);
+				if (this._dataType == java.sql.Types.BLOB) {
+					rowSet.updateBlob(this._position, new SerialBlob(bytes));
+				}
+				else {
+					rowSet.updateBytes(this._position, bytes);
+				}
+			}
+			else {
+				rowSet.updateClob(this._position, new SerialClob(getCharacters(fieldValue).toCharArray()));
+			}
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException, XTestDatabaseException {
+			if (LobValue.isFileReference(fieldValue)) {
+				File file = LobValue.getReferencedFile(fieldValue);
+				if (this._binary) {
+					stmt.setBinaryStream(this._position, LobValue.openBinaryStream(file), file.length());
+				}
+				else {
+					stmt.setCharacterStream(this._position, LobValue.openCharacterStream(file));
+				}
+			}
+			else if (this._binary) {
+				stmt.setBytes(this._position, LobValue.parseHex(fieldValue));
+			}
+			else {
+				stmt.setString(this._position, fieldValue);
+			}
+		}
+		
+		private byte[] getBytes(String fieldValue) throws XTestDatabaseException {
+			if (LobValue.isFileReference(fieldValue)) {
+				try {
+					return Files.readAllBytes(LobValue.getReferencedFile(fieldValue).toPath());
+				}
+				catch (IOException exc) {
+					throw new XTestDatabaseException(String.format("Error reading %s: %s", fieldValue, exc.getMessage()));
+				}
+			}
+			return LobValue.parseHex(fieldValue);
+		}
+		
+		private String getCharacters(String fieldValue) throws XTestDatabaseException {
+			if (LobValue.isFileReference(fieldValue)) {
+				return new String(getBytes(fieldValue), StandardCharsets.UTF_8);
+			}
+			return fieldValue;
+		}
+	}
+	
+	private static final class StructColumnConverter extends ColumnConverter {
+		
+		private final String _customDataType;
+		private final DatabaseConfig _dbConfig;
+		private Class<?> _customDataTypeClass;
+		
+		private StructColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute, String customDataType, DatabaseConfig dbConfig) {
+			super(position, columnName, dataType, templateAttribute);
+			this._customDataType = customDataType;
+			this._dbConfig = dbConfig;
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException {
+			//Struct can be many things but support is implemented for Teradata Period datatypes
+			return (Struct) rs.getObject(this._position);
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			return value.toString();
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) throws XTestDatabaseException {
+			return getCustomDataTypeValue(fieldValue).toString();
+		}
+		
+		@Override
+		public void bind(PreparedStatement stmt, String fieldValue) throws SQLException, XTestDatabaseException {
+			if (fieldValue == null || fieldValue.length()==0) {
+				stmt.setNull(this._position, this._dataType, this._customDataType);
+			}
+			else {
+				bindValue(stmt, fieldValue);
+			}
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws SQLException, XTestDatabaseException {
+			rowSet.updateObject(this._position, getCustomDataTypeValue(fieldValue));
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws SQLException, XTestDatabaseException {
+			stmt.setObject(this._position, getCustomDataTypeValue(fieldValue));
+		}
+		
+		/**
+		 * Create an instance of the custom data type for a field value
+		 * Syntax of value is supposed to be "(<value1>, <value2>,...)"
+		 */
+		private CustomDataType getCustomDataTypeValue(String fieldValue) throws XTestDatabaseException {
+			if (fieldValue.indexOf("(") == -1 || fieldValue.indexOf(")") == -1) {
+				throw new XTestDatabaseException(String.format("Value specified for field %s with custom datatype should be speficied as \"(<value1>, <value2>,...)\"", this._columnName));
+			}
+			//Get custom data type class from the config once and dynamically instantiate instance of the appropriate class
+			if (this._customDataTypeClass == null) {
+				if (this._dbConfig == null) {
+					throw new XTestDatabaseException(String.format("No database config available to find custom datatype %s for field %s", this._customDataType, this._columnName));
+				}
+				this._customDataTypeClass = this._dbConfig.getDatabaseServerConfig().getCustomDataTypeConfig(this._customDataType).getClassRef();
+			}
+			CustomDataType val;
+			try {
+				val = (CustomDataType)this._customDataTypeClass.getDeclaredConstructor().newInstance();
+			} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+					| InvocationTargetException | NoSuchMethodException | SecurityException e) {
+				throw new XTestDatabaseException(String.format("Could not create an instance of class %s for the custom data type %s", this._customDataTypeClass.getName(), this._customDataType));
+			}
+			String[] arguments = fieldValue.substring(fieldValue.indexOf("(")+1, fieldValue.indexOf(")")).split(",");
+			val.initalize(arguments);
+			return val;
+		}
+	}
+	
+	private static final class UnsupportedColumnConverter extends ColumnConverter {
+		
+		private UnsupportedColumnConverter(int position, String columnName, int dataType, ObjectTemplateAttributeConfig templateAttribute) {
+			super(position, columnName, dataType, templateAttribute);
+		}
+		
+		@Override
+		public Object readValue(ResultSet rs) throws SQLException, XTestDatabaseException {
+			//Null values can be read for any datatype
+			rs.getObject(this._position);
+			if (rs.wasNull()) {
+				return null;
+			}
+			throw unsupportedDataType();
+		}
+		
+		@Override
+		protected String formatNonNullValue(Object value) {
+			//Only null values are read
+			return "";
+		}
+		
+		@Override
+		protected String normalizeValue(String fieldValue) throws XTestDatabaseException {
+			throw unsupportedDataType();
+		}
+		
+		@Override
+		protected void updateValue(RowSet rowSet, String fieldValue) throws XTestDatabaseException {
+			throw unsupportedDataType();
+		}
+		
+		@Override
+		protected void bindValue(PreparedStatement stmt, String fieldValue) throws XTestDatabaseException {
+			throw unsupportedDataType();
+		}
+		
+		private XTestDatabaseException unsupportedDataType() {
+			return new XTestDatabaseException(String.format("Unsupported datatype %d for field %s", this._dataType, this._columnName));
+		}
+	}
+}
@@ -2,9 +2,14 @@ package com.xbreeze.xtest.database.helpers;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Logger;
 
@@ -24,16 +29,76 @@ public class ConnectionHelper {
 	private String _currentCatalog = null;
 	// Store the current schema, so we know when to switch schema during test execution.
 	private String _currentSchema = null;
+	// Prepared statements on their text and the catalog and schema they were prepared in, the least recently used one is closed when there are too many
+	private static final int MAX_PREPARED_STATEMENTS = 100;
+	private final LinkedHashMap<String, PreparedStatement> _preparedStatements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+			if (size() > MAX_PREPARED_STATEMENTS) {
+				closePreparedStatement(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	// The session state when the connection was opened, which is restored before a pooled connection is used by another scenario
+	private DatabaseServerConfig _databaseServerConfig;
+	private String _initialCatalog;
+	private String _initialSchema;
+	private int _initialIsolation;
+	private Map<String, Class<?>> _initialTypeMap;
+	// Temporary tables which are kept for the session, dropped before a pooled connection is used by another scenario
+	private final List<String> _temporaryTables = new ArrayList<>();
+	// The pool the connection is borrowed from, null if it isn't pooled
+	private ConnectionPool _pool;
 
 	private ConnectionHelper(String connectionName, Connection connection) {
 		this._connectionName = connectionName;
 		this._connection = connection;
 	}
 	
+	void setPool(ConnectionPool pool) {
+		this._pool = pool;
+	}
+	
 	public Connection getConnection () {
 		return this._connection;
 	}
 	
+	/**
+	 * Get a prepared statement for a statement text, the statement is prepared once per connection and reused while the catalog and schema are the same.
+	 * @param sqlCommand the statement text, with a ? for every parameter
+	 * @return the prepared statement, which shouldn't be closed by the caller
+	 * @throws XTestDatabaseException
+	 */
+	public PreparedStatement getPreparedStatement(String sqlCommand) throws XTestDatabaseException {
+		String statementKey = String.format("%s|%s|%s", this._currentCatalog, this._currentSchema, sqlCommand);
+		PreparedStatement stmt = this._preparedStatements.get(statementKey);
+		try {
+			if (stmt == null || stmt.isClosed()) {
+				logger.info(String.format("Preparing statement on connection '%s': '%s'", this._connectionName, sqlCommand));
+				stmt = this._connection.prepareStatement(sqlCommand);
+				this._preparedStatements.put(statementKey, stmt);
+			}
+		}
+		catch (SQLException exc) {
+			throw new XTestDatabaseException(exc.getMessage());
+		}
+		return stmt;
+	}
+	
+	private void closePreparedStatement(PreparedStatement stmt) {
+		try {
+			stmt.close();
+		}
+		catch (SQLException exc) {
+			logger.warning(String.format("Could not close prepared statement on connection '%s': %s", this._connectionName, exc.getMessage()));
+		}
+	}
+	
 	/***
 	 * Create a new connection for a specific database server configuration object.
 	 * @param databaseServerConfig The database server configuration.
@@ -71,6 +136,7 @@ public class ConnectionHelper {
 
 	    // Create the ConnectionHelper object.
 	    ConnectionHelper connectionHelper = new ConnectionHelper(databaseServerConfig.getName(), conn);
+	    connectionHelper.storeInitialSessionState(databaseServerConfig);
 	    
 	    // If the configuration specifies on server configuration it should execute in transactional mode, enable it here.
 	    if (databaseServerConfig.isTransactional()) {
@@ -174,6 +240,125 @@ public class ConnectionHelper {
 
 	}
 
+	/**
+	 * Store the session state of a new connection, so it can be restored when the connection is returned to a pool
+	 */
+	private void storeInitialSessionState(DatabaseServerConfig databaseServerConfig) throws XTestDatabaseException {
+		this._databaseServerConfig = databaseServerConfig;
+		try {
+			this._initialCatalog = this._connection.getCatalog();
+			this._initialIsolation = this._connection.getTransactionIsolation();
+			this._initialTypeMap = new HashMap<>(this._connection.getTypeMap());
+		} catch (SQLException e) {
+			throw new XTestDatabaseException(String.format("Error reading the session state of connection '%s': %s", this._connectionName, e.getMessage()));
+		}
+		try {
+			this._initialSchema = this._connection.getSchema();
+		} catch (SQLException | AbstractMethodError exc) {
+			logger.fine(String.format("Could not get the schema of connection '%s': %s", this._connectionName, exc.getMessage()));
+		}
+	}
+	
+	/**
+	 * Register a temporary table which is kept for the session, so it is dropped before a pooled connection is used by another scenario
+	 * @param temporaryTableName the name of the temporary table
+	 */
+	public void registerTemporaryTable(String temporaryTableName) {
+		this._temporaryTables.add(temporaryTableName);
+	}
+	
+	/**
+	 * Restore the session state of the connection as it was when it was opened: the transaction is rolled back, temporary tables are dropped 
+	 * and the auto commit, isolation level, catalog, schema and type map are reset. Prepared statements are kept.
+	 * @throws XTestDatabaseException when the state can't be restored, the connection shouldn't be reused then
+	 */
+	public void resetSession() throws XTestDatabaseException {
+		logger.info(String.format("Resetting the session of connection '%s'", this._connectionName));
+		try {
+			if (!this._connection.getAutoCommit()) {
+				this._connection.rollback();
+				this._connection.setAutoCommit(true);
+			}
+			for (String temporaryTableName : this._temporaryTables) {
+				try (Statement stmt = this._connection.createStatement()) {
+					stmt.executeUpdate(SqlDialect.forConnection(this._connection).getDropTemporaryTableStatement(temporaryTableName));
+				}
+				catch (SQLException exc) {
+					// The table doesn't exist anymore if it was created in the transaction which is rolled back
+					logger.fine(String.format("Could not drop temporary table %s: %s", temporaryTableName, exc.getMessage()));
+				}
+			}
+			this._temporaryTables.clear();
+			if (this._connection.getTransactionIsolation() != this._initialIsolation) {
+				this._connection.setTransactionIsolation(this._initialIsolation);
+			}
+			if (this._currentSchema != null) {
+				if (this._databaseServerConfig.getSetSchemaTemplate() != null) {
+					if (this._initialSchema == null) {
+						throw new XTestDatabaseException(String.format("The initial schema of connection '%s' is unknown, it can't be restored", this._connectionName));
+					}
+					try (Statement stmt = this._connection.createStatement()) {
+						stmt.executeUpdate(this._databaseServerConfig.getSetSchemaTemplate().replace("{SCHEMA}", this._initialSchema));
+					}
+				}
+				else if (this._initialSchema != null) {
+					this._connection.setSchema(this._initialSchema);
+				}
+			}
+			if (this._initialCatalog != null && !this._initialCatalog.equals(this._connection.getCatalog())) {
+				this._connection.setCatalog(this._initialCatalog);
+			}
+			this._connection.setTypeMap(new HashMap<>(this._initialTypeMap));
+			this._connection.clearWarnings();
+		} catch (SQLException | AbstractMethodError exc) {
+			throw new XTestDatabaseException(String.format("Error resetting the session of connection '%s': %s", this._connectionName, exc.getMessage()));
+		}
+		this._currentCatalog = null;
+		this._currentSchema = null;
+		// Start a transaction again if the server config specifies it, like for a new connection
+		if (this._databaseServerConfig.isTransactional()) {
+			beginTransactionIfNotStarted();
+		}
+	}
+	
+	/**
+	 * Release the connection after the scenario, a pooled connection is returned to its pool and otherwise it is closed
+	 */
+	public void release() {
+		if (this._pool != null) {
+			this._pool.release(this);
+		}
+		else {
+			close();
+		}
+	}
+	
+	/**
+	 * Close the connection
+	 */
+	void close() {
+		logger.info(String.format("Closing connection %s", this._connectionName));
+		try {
+			this._connection.close();
+		} catch (SQLException exc) {
+			logger.severe(String.format("Error during close of connection to %s: %s", this._connectionName, exc.getMessage()));
+		}
+	}
+	
+	/**
+	 * Check whether the connection is still valid, before a pooled connection is used
+	 * @param timeOut the number of seconds to wait for the validation
+	 * @return true if the connection is valid
+	 */
+	boolean isValid(int timeOut) {
+		try {
+			return this._connection.isValid(timeOut);
+		} catch (SQLException exc) {
+			logger.warning(String.format("Error validating connection %s: %s", this._connectionName, exc.getMessage()));
+			return false;
+		}
+	}
+	
 	/**
 	 * Helper method to start a transaction on the server connection, if it isn't started yet.
 	 * This is called when:
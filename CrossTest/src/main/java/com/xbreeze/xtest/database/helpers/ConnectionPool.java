@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import com.xbreeze.xtest.config.DatabaseServerConfig;
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+import com.xbreeze.xtest.modules.security.CredentialProvider_Helper;
+
+/**
+ * Pool of validated connections to a database server, which are reused across scenarios instead of opening a connection per scenario.
+ * Connections are validated before they are borrowed and their session state is reset when they are returned.
+ * @author Willem
+ */
+public class ConnectionPool {
+	private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+	// The pools by database server config, the server configs are shared by all scenarios until the config file is read again
+	private static final ConcurrentHashMap<DatabaseServerConfig, ConnectionPool> _pools = new ConcurrentHashMap<>();
+	
+	private final DatabaseServerConfig _databaseServerConfig;
+	// The idle connections, the most recently returned connection first
+	private final Deque<IdleConnection> _idleConnections = new ArrayDeque<>();
+	// The number of connections which are open or being opened, idle or borrowed
+	private int _openConnections = 0;
+	private boolean _filled = false;
+	// Whether the pool is replaced by the pool of a new config of the server, its connections are closed when they are returned
+	private boolean _retired = false;
+	
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(ConnectionPool::closeAll));
+	}
+	
+	private ConnectionPool(DatabaseServerConfig databaseServerConfig) {
+		this._databaseServerConfig = databaseServerConfig;
+	}
+	
+	/**
+	 * Get the pool of a database server config, it is created and filled up to the minimum size on first use.
+	 * When the config file is read again the server gets a new config, which may have a different url or credentials,
+	 * so the pool of the previous config of the server is retired then.
+	 * @param databaseServerConfig the database server config
+	 * @param credentialProviderHelper the helper to resolve the credentials of the server
+	 * @return the connection pool
+	 * @throws XTestDatabaseException
+	 */
+	public static ConnectionPool forServer(DatabaseServerConfig databaseServerConfig, CredentialProvider_Helper credentialProviderHelper) throws XTestDatabaseException {
+		ConnectionPool pool = _pools.get(databaseServerConfig);
+		if (pool == null) {
+			synchronized (_pools) {
+				pool = _pools.get(databaseServerConfig);
+				if (pool == null) {
+					Iterator<ConnectionPool> poolIterator = _pools.values().iterator();
+					while (poolIterator.hasNext()) {
+						ConnectionPool previousPool = poolIterator.next();
+						if (previousPool._databaseServerConfig.getName().equals(databaseServerConfig.getName())) {
+							poolIterator.remove();
+							previousPool.retire();
+						}
+					}
+					pool = new ConnectionPool(databaseServerConfig);
+					_pools.put(databaseServerConfig, pool);
+				}
+			}
+		}
+		pool.fill(credentialProviderHelper);
+		return pool;
+	}
+	
+	/**
+	 * Close the idle connections of a pool which is replaced, the borrowed connections are closed when they are returned
+	 */
+	private synchronized void retire() {
+		logger.info(String.format("Closing the pool of the previous config of server '%s'", this._databaseServerConfig.getName()));
+		this._retired = true;
+		for (IdleConnection idle : this._idleConnections) {
+			idle._connectionHelper.close();
+		}
+		this._openConnections -= this._idleConnections.size();
+		this._idleConnections.clear();
+		notifyAll();
+	}
+	
+	private void fill(CredentialProvider_Helper credentialProviderHelper) throws XTestDatabaseException {
+		synchronized (this) {
+			if (this._filled) {
+				return;
+			}
+			this._filled = true;
+		}
+		int minSize = Math.min(this._databaseServerConfig.getPoolMinSize(), this._databaseServerConfig.getPoolMaxSize());
+		if (minSize > 0) {
+			logger.info(String.format("Opening %d connections for the pool of server '%s'", minSize, this._databaseServerConfig.getName()));
+		}
+		for (int i = 0; i < minSize; i++) {
+			synchronized (this) {
+				if (this._openConnections >= minSize) {
+					return;
+				}
+				this._openConnections++;
+			}
+			release(open(credentialProviderHelper));
+		}
+	}
+	
+	/**
+	 * Borrow a connection from the pool, an idle connection is validated before it is used and a new connection is opened if there is none and the pool isn't full.
+	 * When the pool is full, this waits until a connection is returned, at most the wait time out of the server.
+	 * @param credentialProviderHelper the helper to resolve the credentials of the server
+	 * @return the connection helper
+	 * @throws XTestDatabaseException
+	 */
+	public ConnectionHelper borrow(CredentialProvider_Helper credentialProviderHelper) throws XTestDatabaseException {
+		int waitTimeOut = (this._databaseServerConfig.getPoolWaitTimeOut() != null) ? this._databaseServerConfig.getPoolWaitTimeOut() : 0;
+		long waitUntil = System.currentTimeMillis() + waitTimeOut * 1000L;
+		while (true) {
+			ConnectionHelper idleConnection = null;
+			synchronized (this) {
+				evictIdle();
+				IdleConnection idle = this._idleConnections.pollFirst();
+				if (idle != null) {
+					idleConnection = idle._connectionHelper;
+				}
+				else if (this._openConnections < this._databaseServerConfig.getPoolMaxSize()) {
+					// Reserve the slot, the connection is opened outside the lock
+					this._openConnections++;
+				}
+				else {
+					logger.info(String.format("Waiting for a connection in the pool of server '%s'", this._databaseServerConfig.getName()));
+					long waitTime = waitUntil - System.currentTimeMillis();
+					if (waitTimeOut > 0 && waitTime <= 0) {
+						throw new XTestDatabaseException(String.format("No connection to server '%s' was returned to the pool within %d seconds, all %d pooled connections are in use", this._databaseServerConfig.getName(), waitTimeOut, this._databaseServerConfig.getPoolMaxSize()));
+					}
+					try {
+						wait((waitTimeOut > 0) ? waitTime : 0);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new XTestDatabaseException(String.format("Interrupted while waiting for a connection to server '%s'", this._databaseServerConfig.getName()));
+					}
+					continue;
+				}
+			}
+			if (idleConnection == null) {
+				return open(credentialProviderHelper);
+			}
+			if (idleConnection.isValid(this._databaseServerConfig.getPoolValidationTimeOut())) {
+				logger.info(String.format("Reusing pooled connection for server '%s'", this._databaseServerConfig.getName()));
+				return idleConnection;
+			}
+			logger.warning(String.format("Discarding invalid pooled connection for server '%s'", this._databaseServerConfig.getName()));
+			discard(idleConnection);
+		}
+	}
+	
+	/**
+	 * Open a new connection in a slot which is reserved already
+	 */
+	private ConnectionHelper open(CredentialProvider_Helper credentialProviderHelper) throws XTestDatabaseException {
+		try {
+			ConnectionHelper connectionHelper = ConnectionHelper.fromDatabaseServerConfig(this._databaseServerConfig, credentialProviderHelper);
+			connectionHelper.setPool(this);
+			return connectionHelper;
+		}
+		catch (XTestDatabaseException | RuntimeException exc) {
+			synchronized (this) {
+				this._openConnections--;
+				notifyAll();
+			}
+			throw exc;
+		}
+	}
+	
+	/**
+	 * Return a connection to the pool, its session is reset first. If the session can't be reset, the connection is closed.
+	 * @param connectionHelper the connection helper
+	 */
+	void release(ConnectionHelper connectionHelper) {
+		synchronized (this) {
+			if (this._retired) {
+				discard(connectionHelper);
+				return;
+			}
+		}
+		try {
+			connectionHelper.resetSession();
+		} catch (XTestDatabaseException exc) {
+			logger.warning(String.format("Closing pooled connection for server '%s', since its session can't be reset: %s", this._databaseServerConfig.getName(), exc.getMessage()));
+			discard(connectionHelper);
+			return;
+		}
+		synchronized (this) {
+			this._idleConnections.addFirst(new IdleConnection(connectionHelper));
+			evictIdle();
+			notifyAll();
+		}
+	}
+	
+	private void discard(ConnectionHelper connectionHelper) {
+		connectionHelper.close();
+		synchronized (this) {
+			this._openConnections--;
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Close the connections which are idle for longer than the idle time out, while the pool is larger than its minimum size.
+	 * The least recently returned connections are at the end of the queue.
+	 */
+	private synchronized void evictIdle() {
+		long idleLimit = System.currentTimeMillis() - this._databaseServerConfig.getPoolIdleTimeOut() * 1000L;
+		Iterator<IdleConnection> idleIterator = this._idleConnections.descendingIterator();
+		while (idleIterator.hasNext() && this._openConnections > this._databaseServerConfig.getPoolMinSize()) {
+			IdleConnection idle = idleIterator.next();
+			if (idle._idleSince >= idleLimit) {
+				break;
+			}
+			idleIterator.remove();
+			this._openConnections--;
+			idle._connectionHelper.close();
+		}
+	}
+	
+	/**
+	 * Close the idle connections of all pools, at the end of the run
+	 */
+	private static void closeAll() {
+		for (ConnectionPool pool : _pools.values()) {
+			synchronized (pool) {
+				for (IdleConnection idle : pool._idleConnections) {
+					idle._connectionHelper.close();
+				}
+				pool._openConnections -= pool._idleConnections.size();
+				pool._idleConnections.clear();
+			}
+		}
+	}
+	
+	private static class IdleConnection {
+		private final ConnectionHelper _connectionHelper;
+		private final long _idleSince;
+		
+		private IdleConnection(ConnectionHelper connectionHelper) {
+			this._connectionHelper = connectionHelper;
+			this._idleSince = System.currentTimeMillis();
+		}
+	}
+}
@@ -23,17 +23,13 @@
 package com.xbreeze.xtest.database.helpers;
 
 
-import java.lang.reflect.InvocationTargetException;
 import java.math.BigDecimal;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Struct;
-import java.sql.Time;
-import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -48,8 +44,7 @@ import java.util.stream.Collectors;
 
 import javax.sql.RowSet;
 import javax.sql.rowset.CachedRowSet;
-
-import org.apache.commons.codec.digest.DigestUtils;
+import javax.sql.rowset.RowSetProvider;
 
 import com.xbreeze.xtest.config.CompositeObjectConfig;
 import com.xbreeze.xtest.config.DatabaseConfig;
@@ -59,6 +54,7 @@ import com.xbreeze.xtest.exception.XTestDatabaseException;
 import com.xbreeze.xtest.exception.XTestException;
 import com.xbreeze.xtest.modules.security.CredentialProvider_Helper;
 import com.xbreeze.xtest.result.ResultContext;
+import com.xbreeze.xtest.result.SharedVariableCache;
 
 import io.cucumber.datatable.DataTable;
 
@@ -68,6 +64,7 @@ public class DataHelper {
 	private ResultContext _resultContext;
 	private CredentialProvider_Helper _credentialProviderHelper;
 	private HashMap<String, ConnectionHelper> _connectionHelpers;
+	private TableMetaDataCache _tableMetaDataCache;
 	private XTestConfig _config;
 	
 	public DataHelper(ResultContext resultContext, CredentialProvider_Helper credentialProviderHelper, XTestConfig config) throws XTestException {
@@ -75,6 +72,7 @@ public class DataHelper {
 		this._credentialProviderHelper = credentialProviderHelper;
 		this._config = config.getConfig();
 		_connectionHelpers = new HashMap<>();		
+		_tableMetaDataCache = new TableMetaDataCache();
 	}
 	
 	/**
@@ -117,6 +115,8 @@ public class DataHelper {
 	
 	/**
 	 * Write a data table to the database
+	 * Every row of the data table is converted directly into parameters of an insert statement, which is sent to the database
+	 * in batches of the insert batch size configured on the database (server) config. So no copy of the data is kept in memory.
 	 * @param tableName The table to write the data to
 	 * @param dataTable The data to write to the database
 	 * @param dbConfig Connection to use
@@ -127,64 +127,296 @@ public class DataHelper {
 	public void writeDataTableToDatabase(String tableName, DataTable dataTable, DatabaseConfig dbConfig, Boolean insertDistinct, Boolean limitToDefinedColumns, CompositeObjectConfig coc) throws NumberFormatException, XTestException {
 		List<Map<String, String>> list = dataTable.asMaps(String.class, String.class);
 		if (list.size() > 0) {
+				//Get the target data structure
+				TableMetaData meta = getTableMetaData(tableName, dbConfig);
+				String templatedTableName = dbConfig.getTemplatedTableName(tableName);
+				//Shared variables depending on the table are computed again when they are used
+				SharedVariableCache.invalidateTable(tableName);
+				SharedVariableCache.invalidateTable(templatedTableName);
 				tableName = dbConfig.getQualifiedTableName(tableName);
-				String selectQuery = getSQLQuery(dataTable, tableName, false, dbConfig);				
-				//Create empty rowset
-				logger.info("Retrieving target data structure");
 				Connection connection = getConnection(dbConfig);
-				CachedRowSet rs = DatabaseCommandExecutor.executeCommandWithCachedResult(connection, selectQuery, dbConfig);
-				//Populate so values are converted to proper data types
-				logger.info("Populating cached rowset for inserting");
-				populateRowSet(rs, list, insertDistinct, false, limitToDefinedColumns, dbConfig, coc);
-				
-				try {
-					//Construct a batch for inserting rows because some JDBC drivers, such as SAP, do not support updateable rowset or resultset
-					rs.moveToCurrentRow();
-					rs.beforeFirst();
-					//Create a batch statement
-					ResultSetMetaData meta = rs.getMetaData();
-	
-					List<String> columns = new ArrayList<>();					
-			        for (int i = 1; i <= meta.getColumnCount(); i++) {
-			            columns.add(dbConfig.getFormattedColumnName(meta.getColumnName(i)));
-			        }
-			        logger.info("Prepare inserting of records");
-			        PreparedStatement s2 = getConnection(dbConfig).prepareStatement(
-						                "INSERT INTO " + tableName + " ("
-						              + columns.stream().collect(Collectors.joining(", "))
-						              + ") VALUES ("
-						              + columns.stream().map(c -> "?").collect(Collectors.joining(", "))
-						              + ");"
-						        );
-			        
-		            while (rs.next()) {
-		                for (int i = 1; i <= meta.getColumnCount(); i++) {
-		                	
-		                	meta.getColumnName(i);
-		                    Object cellValue = rs.getObject(i);
-		                    if (cellValue != null)
-		                    	s2.setObject(i, cellValue);
-		                    else
-		                    	s2.setNull(i, meta.getColumnType(i));
-		                }
-		
-		                s2.addBatch();
-		            }
-		
-		            logger.info("Executing insert");
-		            s2.executeBatch();
-		            s2.close();
+				if (limitToDefinedColumns) {
+					validateDataTableColumns(meta, list);
+				}
+				ColumnConversionPlan plan = getConversionPlan(meta, dbConfig);
+		        
+		        int batchSize = dbConfig.getResolvedInsertBatchSize();
+		        Set<String> processedRecords = new HashSet<String>();
+		        //Construct a batch for inserting rows because some JDBC drivers, such as SAP, do not support updateable rowset or resultset
+		        logger.info("Prepare inserting of records");
+				try (PreparedStatement s2 = connection.prepareStatement(getInsertStatement(tableName, meta, dbConfig))) {
+					int rowsInBatch = 0;
+					int rowsInserted = 0;
+					for (Map<String, String> dRecord:list) {
+						TreeMap<String, String> dataRecord = getCaseInsensitiveRecord(dRecord);
+						//Get values from datatable, or from the template if not specified
+						String[] rowValues = plan.getRowValues(dataRecord);
+						String recordKey = getRecordKey(dataRecord, meta, coc);
+						//Only insert rows with a relevant value set and, when inserting distinct, rows that were not inserted previously
+						if (!hasRelevantValueSet(dataRecord, meta) || (insertDistinct && processedRecords.contains(recordKey))) {
+							continue;
+						}
+						for (int i = 1; i <= meta.getColumnCount(); i++) {
+							setParameterValue(s2, plan.getConverter(i), rowValues[i - 1]);
+						}
+						s2.addBatch();
+						if (insertDistinct) {
+							processedRecords.add(recordKey);
+						}
+						rowsInBatch++;
+						//Flush the batch when the batch size is reached, so memory use doesn't depend on the number of rows
+						if (batchSize > 0 && rowsInBatch == batchSize) {
+							logger.info(String.format("Executing insert batch of %d rows", rowsInBatch));
+							s2.executeBatch();
+							rowsInserted += rowsInBatch;
+							rowsInBatch = 0;
+						}
+					}
+					if (rowsInBatch > 0) {
+						logger.info(String.format("Executing insert batch of %d rows", rowsInBatch));
+						s2.executeBatch();
+						rowsInserted += rowsInBatch;
+					}
+					logger.info(String.format("Inserted %d rows into %s", rowsInserted, tableName));
 		        }
-		 
-			catch(SQLException exc) {
-				if(exc.getNextException() != null) {
-					logger.info(String.format("Next exception: %s", exc.getNextException().toString()));
-				}				
-				throw XTestDatabaseException.createXTestDatabaseException("Error inserting data", exc);
+			 
+				catch(SQLException exc) {
+					if(exc.getNextException() != null) {
+						logger.info(String.format("Next exception: %s", exc.getNextException().toString()));
+					}				
+					//The table definition might have changed, so don't use the cached definition anymore
+					_tableMetaDataCache.remove(dbConfig, templatedTableName);
+					throw XTestDatabaseException.createXTestDatabaseException("Error inserting data", exc);
+				}
+		}
+	}
+	
+	/**
+	 * Write all rows of a data table to a table which is not part of the configuration, such as a temporary table.
+	 * No templates are applied and all rows are written, also duplicate and empty rows.
+	 * @param connection the connection to use
+	 * @param tableName the qualified table name
+	 * @param meta the column definitions of the table
+	 * @param dataTable the data to write to the table
+	 * @param dbConfig the database config, used for the batch size and formatting of column names
+	 * @return the number of rows written
+	 * @throws XTestException
+	 */
+	public int writeDataTableToTable(Connection connection, String tableName, TableMetaData meta, DataTable dataTable, DatabaseConfig dbConfig) throws XTestException {
+		List<Map<String, String>> list = dataTable.asMaps(String.class, String.class);
+		validateDataTableColumns(meta, list);
+		ColumnConversionPlan plan = getConversionPlan(meta, null);
+		int batchSize = dbConfig.getResolvedInsertBatchSize();
+		try (PreparedStatement stmt = connection.prepareStatement(getInsertStatement(tableName, meta, dbConfig))) {
+			int rowsInBatch = 0;
+			for (Map<String, String> dRecord:list) {
+				String[] rowValues = plan.getRowValues(getCaseInsensitiveRecord(dRecord));
+				for (int i = 1; i <= meta.getColumnCount(); i++) {
+					setParameterValue(stmt, plan.getConverter(i), rowValues[i - 1]);
+				}
+				stmt.addBatch();
+				rowsInBatch++;
+				if (batchSize > 0 && rowsInBatch == batchSize) {
+					stmt.executeBatch();
+					rowsInBatch = 0;
+				}
 			}
+			if (rowsInBatch > 0) {
+				stmt.executeBatch();
+			}
+			logger.info(String.format("Inserted %d rows into %s", list.size(), tableName));
+			return list.size();
+		}
+		catch(SQLException exc) {
+			throw XTestDatabaseException.createXTestDatabaseException(String.format("Error inserting data into %s", tableName), exc);
 		}
 	}
-			
+	
+	/**
+	 * Get the insert statement for all columns of a table, with a parameter per column
+	 * @param tableName the qualified table name
+	 * @param meta the column definitions of the table
+	 * @param dbConfig the database config, used for formatting the column names
+	 * @return the insert statement
+	 */
+	private String getInsertStatement(String tableName, TableMetaData meta, DatabaseConfig dbConfig) {
+		List<String> columns = new ArrayList<>();					
+		for (int i = 1; i <= meta.getColumnCount(); i++) {
+			columns.add(dbConfig.getFormattedColumnName(meta.getColumnName(i)));
+		}
+		return "INSERT INTO " + tableName + " ("
+				+ columns.stream().collect(Collectors.joining(", "))
+				+ ") VALUES ("
+				+ columns.stream().map(c -> "?").collect(Collectors.joining(", "))
+				+ ");";
+	}
+	
+	/**
+	 * Get the column definitions of a table or view, from the cache if available or by querying the table otherwise
+	 * @param tableName the table name, without template, schema or quotes applied
+	 * @param dbConfig the database config of the table
+	 * @return the column definitions
+	 * @throws XTestDatabaseException
+	 */
+	public TableMetaData getTableMetaData(String tableName, DatabaseConfig dbConfig) throws XTestDatabaseException {
+		String templatedTableName = dbConfig.getTemplatedTableName(tableName);
+		if (_tableMetaDataCache.needsPreload(dbConfig)) {
+			_tableMetaDataCache.preload(getConnection(dbConfig), dbConfig);
+		}
+		TableMetaData meta = _tableMetaDataCache.get(dbConfig, templatedTableName);
+		if (meta == null) {
+			logger.info("Retrieving target data structure");
+			meta = DatabaseCommandExecutor.getTableMetaData(getConnection(dbConfig), String.format("SELECT * FROM %s WHERE 1 = 0;", dbConfig.getQualifiedTableName(tableName)), dbConfig);
+			_tableMetaDataCache.put(dbConfig, templatedTableName, meta);
+		}
+		return meta;
+	}
+	
+	/**
+	 * Get an empty result with the structure of a query, for a result which is read later on. 
+	 * The structure is cached like a table definition, so the 'WHERE 1 = 0' query is only executed when it isn't cached.
+	 * @param selectQuery the query
+	 * @param dbConfig the database config of the query
+	 * @return an empty rowset with the column definitions of the query
+	 * @throws XTestDatabaseException
+	 */
+	public CachedRowSet getStructureResult(String selectQuery, DatabaseConfig dbConfig) throws XTestDatabaseException {
+		TableMetaData meta = _tableMetaDataCache.get(dbConfig, selectQuery);
+		if (meta == null) {
+			meta = DatabaseCommandExecutor.getTableMetaData(getConnection(dbConfig), selectQuery.concat(" WHERE 1 = 0"), dbConfig);
+			_tableMetaDataCache.put(dbConfig, selectQuery, meta);
+		}
+		try {
+			CachedRowSet crs = RowSetProvider.newFactory().createCachedRowSet();
+			crs.setMetaData(meta.toRowSetMetaData());
+			return crs;
+		}
+		catch (SQLException exc) {
+			throw new XTestDatabaseException(String.format("Error creating the structure of query '%s': %s", selectQuery, exc.getMessage()));
+		}
+	}
+	
+	/**
+	 * Remove all cached table definitions of the database server of a database config
+	 * @param dbConfig the database config
+	 */
+	public void invalidateTableMetaData(DatabaseConfig dbConfig) {
+		_tableMetaDataCache.invalidate(dbConfig);
+	}
+	
+	/**
+	 * Remove all cached table definitions of the database server of a database config if a command can change the structure of a table
+	 * @param dbConfig the database config the command is executed on
+	 * @param sqlCommand the command
+	 */
+	public void invalidateTableMetaData(DatabaseConfig dbConfig, String sqlCommand) {
+		if (TableMetaDataCache.isStructureChange(sqlCommand)) {
+			_tableMetaDataCache.invalidate(dbConfig);
+		}
+	}
+	
+	/**
+	 * Check if all columns in the data table exist in the target table or view
+	 * @param meta the column definitions of the target table or view
+	 * @param dataTableList Cucumber datatable in list format
+	 * @throws XTestDatabaseException when a column of the data table is not found
+	 */
+	private void validateDataTableColumns(TableMetaData meta, List<Map<String, String>> dataTableList) throws XTestDatabaseException {
+		if (dataTableList.size() > 0) {
+			Map<String, String> record = dataTableList.get(0);
+			for (String field:record.keySet()) {
+				Boolean found = false;
+				for (int i = 1; i <= meta.getColumnCount(); i++) {	
+					// Compare column names from rowset and datatable, taking empty string or whitespace column names into account
+					if (meta.getColumnName(i) == null || meta.getColumnName(i).trim().length()==0) {
+						// Datatable column name cannot contain only whitespace so trim is not needed on field variable 
+						if (field == null || field.length()==0) {
+							found = true;
+							break;
+						}
+					}
+					else if (meta.getColumnName(i).equalsIgnoreCase(field)) {
+						//If the field was found, break the for loop
+						found = true;
+						break;
+					}						
+				}
+				if (!found) {
+					throw new XTestDatabaseException(String.format("Field %s from scenario data is not found in target table or view", field));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Convert a data table record to a treemap in order for the keys to be case insensitive
+	 * @param dRecord the data table record
+	 * @return the record with case insensitive keys, an unnamed column is stored under an empty string key
+	 */
+	private TreeMap<String, String> getCaseInsensitiveRecord(Map<String, String> dRecord) {
+		TreeMap<String, String> dataRecord = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		//if the datatable contains a unnamed column, it is not possible to create the treemap at once
+		if (dRecord.containsKey(null)) {
+			for (String key: dRecord.keySet()) {
+				if (key==null) {
+					dataRecord.put("", dRecord.get(null));
+				}
+				else {
+					dataRecord.put(key, dRecord.get(key));
+				}
+			}
+		}
+		else {
+			dataRecord.putAll(dRecord);
+		}
+		return dataRecord;
+	}
+	
+	/**
+	 * Check if a relevant value is set at all in a data table record for the columns of the target
+	 * @param dataRecord the data table record
+	 * @param meta the column definitions of the target
+	 * @return true if at least one value for a target column is not empty
+	 */
+	private boolean hasRelevantValueSet(TreeMap<String, String> dataRecord, TableMetaData meta) {
+		for (int i = 1; i <= meta.getColumnCount(); i++) {
+			String cellValue = dataRecord.get(meta.getColumnName(i));
+			// TODO: Disable this behaviour for non composite inserts.
+			if (!(cellValue == null || cellValue.length()==0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Create a record key in case insert needs to be distinct
+	 * If key fields are specified in the composite object config, use them otherwise include all fields
+	 * @param dataRecord the data table record
+	 * @param meta the column definitions of the target
+	 * @param coc the composite object config, if any
+	 * @return the record key
+	 */
+	private String getRecordKey(TreeMap<String, String> dataRecord, TableMetaData meta, CompositeObjectConfig coc) {
+		StringBuffer recordKeyBuff= new StringBuffer();
+		for (int i = 1; i <= meta.getColumnCount(); i++) {
+			String columnName = meta.getColumnName(i);
+			if (dataRecord.containsKey(columnName)) {
+				if (coc == null || coc.getKeyFieldNames().size() == 0 ) {
+					recordKeyBuff.append("|").append(dataRecord.get(columnName));	
+				}
+				else {
+					for (String keyField: coc.getKeyFieldNames()) {
+						if (keyField.equalsIgnoreCase(columnName)) {
+							recordKeyBuff.append("|").append(dataRecord.get(columnName));
+						}
+					}
+				}
+			}
+		}
+		return recordKeyBuff.toString();
+	}
+	
 	/**
 	 * Get a Select statement based on a result table	
 	 * @param dataTable The result table used to determine the columns for the select
@@ -246,125 +478,36 @@ public class DataHelper {
 	public void populateRowSet(RowSet rowSet, List<Map<String, String>> dataTableList, Boolean distinct, Boolean includeEmptyRows, Boolean limitToDefinedColumns, DatabaseConfig dbConfig, CompositeObjectConfig coc) throws NumberFormatException, XTestException {
 		//Populate rowset
 		try {
-			ResultSetMetaData rmd = rowSet.getMetaData();
+			TableMetaData meta = new TableMetaData(rowSet.getMetaData());
+			ColumnConversionPlan plan = getConversionPlan(meta, dbConfig);
 			
 			//Check if there are invalid columns in the dataTable and report error if only existing columns should be processed
-			if (limitToDefinedColumns && dataTableList.size() > 0) {
-				Map<String, String> record = dataTableList.get(0);
-				for (String field:record.keySet()) {
-					Boolean found = false;
-					for (int i = 1; i <= rmd.getColumnCount(); i++) {	
-						// Compare column names from rowset and datatable, taking empty string or whitespace column names into account
-						if (rmd.getColumnName(i) == null || rmd.getColumnName(i).trim().length()==0) {
-							// Datatable column name cannot contain only whitespace so trim is not needed on field variable 
-							if (field == null || field.length()==0) {
-								found = true;
-								break;
-							}
-						}
-						else if (rmd.getColumnName(i).equalsIgnoreCase(field)) {
-							//If the field was found, break the for loop
-							found = true;
-							break;
-						}						
-					}
-					if (!found) {
-						throw new XTestDatabaseException(String.format("Field %s from scenario data is not found in target table or view", field));
-					}
-				}
+			if (limitToDefinedColumns) {
+				validateDataTableColumns(meta, dataTableList);
 			}
 			Set<String> processedRecords = new HashSet<String>();
 			//Add values to rowset
 			for (Map<String, String> dRecord:dataTableList) {
-				//Convert the map to a treemap in order for the keys to be case insensitive
-				TreeMap<String, String> dataRecord = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-				
-				//if the datatable contains a unnamed column, it is not possible to create the treemap at once
-				if (dRecord.containsKey(null)) {
-					for (String key: dRecord.keySet()) {
-						if (key==null) {
-							dataRecord.put("", dRecord.get(null));
-						}
-						else {
-							dataRecord.put(key, dRecord.get(key));
-						}
-					}
-				}
-				else {
-					dataRecord.putAll(dRecord);
-				}
-				StringBuffer recordKeyBuff= new StringBuffer();
+				TreeMap<String, String> dataRecord = getCaseInsensitiveRecord(dRecord);
+				//Get values from datatable, or from the template if not specified
+				String[] rowValues = plan.getRowValues(dataRecord);
 				//Check if a relevant value is set at all, otherwise do not insert row
-				Boolean hasRelevantValueSet = false;
-				rowSet.moveToInsertRow();
-				//Set fields from datatable to specified value				
-				for (int i = 1; i <= rmd.getColumnCount(); i++) {	
-					if (dataRecord.containsKey(rmd.getColumnName(i))) {
-						String cellValue = dataRecord.get(rmd.getColumnName(i));
-						// TODO: Disable this behaviour for non composite inserts.
-						if (!(cellValue == null || cellValue.length()==0)) {
-							hasRelevantValueSet = true;
-						}
-						setFieldValue(rowSet, i, cellValue, rmd.getColumnType(i), dbConfig);
-						// Create a record hash in case insert needs to be distinct
-						// If key fields are specified in the composite object config, use them otherwise include all fields
-						if (coc == null || coc.getKeyFieldNames().size() == 0 ) {
-							recordKeyBuff.append("|").append(cellValue);	
-						}
-						else {
-							for (String keyField: coc.getKeyFieldNames()) {
-								if (keyField.equalsIgnoreCase(rmd.getColumnName(i))) {
-									recordKeyBuff.append("|").append(cellValue);
-								}
-							}
-						}
-						
-					}
-					else {
-						//If field is not specified, check for default value otherwise set to null						
-						if (dbConfig.getTemplate() != null) {
-							if (dbConfig.getTemplate().getDefaultValue(rmd.getColumnName(i)) != null) {						
-								setFieldValue(rowSet, i, dbConfig.getTemplate().getDefaultValue(rmd.getColumnName(i)), rmd.getColumnType(i), dbConfig);						
-							}
-							else if (dbConfig.getTemplate().hasAutoIncrement(rmd.getColumnName(i))) {
-								setFieldValue(rowSet, i, String.valueOf(dbConfig.getTemplate().getNextIncrementValue(rmd.getColumnName(i))), rmd.getColumnType(i), dbConfig);
-							} else {
-								rowSet.updateNull(i);
-							}
-						}
-						else {
-							rowSet.updateNull(i);
-						}
-					}
-						
-				}		
-				
+				Boolean hasRelevantValueSet = hasRelevantValueSet(dataRecord, meta);
+				// Create a record hash in case insert needs to be distinct
+				String recordKey = getRecordKey(dataRecord, meta, coc);
 				//Only add record when either distinct is false or the record is not added previously
-				String recordKey = recordKeyBuff.toString();
 				if ((hasRelevantValueSet || includeEmptyRows) && (distinct == false || !processedRecords.contains(recordKey))) {
-					//Insert the new row
-					logger.info("Inserting row in rowSet");
-					for (int i=1;i <= rowSet.getMetaData().getColumnCount();i++) {
-						if (rowSet.getMetaData().getColumnType(i) != java.sql.Types.STRUCT) {
-							logger.info(String.format("Field value for field %s is %s", rowSet.getMetaData().getColumnName(i), String.valueOf(rowSet.getObject(i))));
-						}
+					rowSet.moveToInsertRow();
+					for (int i = 1; i <= plan.getColumnCount(); i++) {	
+						setFieldValue(rowSet, plan.getConverter(i), rowValues[i - 1]);
 					}
+					//Insert the new row
 					rowSet.insertRow();
 					if (distinct) {
 						processedRecords.add(recordKey);
 					}
 				}
-				else {
-					//cancel row updates if row should not be added
-					for (int i = 1; i <= rmd.getColumnCount(); i++) {
-						rowSet.updateNull(i);
-					}
-					
-				}
-				
 			}	
-			//Move cursor back to current row otherwise navigation will not work later on
-			//rowSet.moveToCurrentRow();
 			
 		} catch (SQLException exc) {	
 			//exc.printStackTrace();
@@ -374,323 +517,324 @@ public class DataHelper {
 	}
 		
 	/**
-	 * Set a field in a rowset using the appropriate setter, based on datatype
-	 * @param crs The rowset where a field needs to be set
-	 * @param fieldname The fieldname to set
-	 * @param fieldPosition The field ordinal position
+	 * Set a field in the insert row of a rowset using the converter of the column
+	 * @param rowSet The rowset where a field needs to be set
+	 * @param converter The converter of the field
 	 * @param fieldValue the value to set
-	 * @param dataType Datatype of the field
 	 * @throws XTestException 
 	 * @throws NumberFormatException 
 	 */
-	private void setFieldValue (RowSet crs, int fieldPosition, String fieldValue, int dataType, DatabaseConfig dbConfig) throws NumberFormatException, XTestException{
+	private void setFieldValue (RowSet rowSet, ColumnConverter converter, String fieldValue) throws NumberFormatException, XTestException{
 		try {
 			//For teradata: access fields on index and not on name
 			//https://teradata-docs.s3.amazonaws.com/doc/connectivity/jdbc/reference/current/jdbcug_chapter_4.html
-			
-			//If field value is an empty string, set value to null
-			String fieldName = crs.getMetaData().getColumnName(fieldPosition);
-			
 			//if fieldValue references a variable, replace it with variable contents first
-			if (fieldValue != null && fieldValue.startsWith(ResultContext.VARIABLE_PREFIX)) {
-				logger.info(String.format("Field %s is set with variable %s", fieldName, fieldValue));
-				try {
-					fieldValue = _resultContext.getVariable(fieldValue);
-				} catch (XTestException exc) {
-					throw new XTestDatabaseException(XTestException.getCompositeErrorMessage(String.format("Error getting variable valie for field %s",  fieldName), exc));
-				}
-				logger.info(String.format("Replace variable with value %s for field %s", fieldValue, fieldName));
-			}
-			
-			logger.info(String.format("Setting value %s for field %s with datatype %d", fieldValue, fieldName, dataType));
-			//empty string is evaluated as null
-			if (fieldValue == null || fieldValue.length()==0) {
-				crs.updateNull(fieldPosition);
-			}
-			
-			else if (
-					(dataType == java.sql.Types.DECIMAL) || 
-					(dataType == java.sql.Types.DOUBLE) ||
-					(dataType == java.sql.Types.REAL) ||
-					(dataType == java.sql.Types.FLOAT) ||
-					(dataType == java.sql.Types.NUMERIC)
-					) {
-				crs.updateBigDecimal(fieldPosition, new BigDecimal(fieldValue));
-			}
-			
-			else if (
-					(dataType == java.sql.Types.VARCHAR) || (dataType == java.sql.Types.CHAR) ||
-					(dataType == java.sql.Types.NVARCHAR) || (dataType == java.sql.Types.NCHAR) ||
-					(dataType == java.sql.Types.LONGNVARCHAR) || (dataType == java.sql.Types.LONGVARCHAR) 
-				) {
-				if (this._config.hasEmptyStringValue() && this._config.getEmptyStringValue().equals(fieldValue)) {
-					crs.updateString(fieldPosition, "");
-				}
-				else {
-					crs.updateString(fieldPosition, fieldValue);
-				}
-			}
-			
-			else if (dataType == java.sql.Types.BIGINT) {
-				crs.updateLong(fieldPosition, java.lang.Long.parseLong(fieldValue));
-			}
-			
-			else if (
-				(dataType == java.sql.Types.INTEGER) ||
-				(dataType == java.sql.Types.SMALLINT) ||
-				(dataType == java.sql.Types.TINYINT) 
-				) {
-				crs.updateInt(fieldPosition, Integer.parseInt(fieldValue));
-			}
-			else if (dataType == java.sql.Types.DATE) {				
-				crs.updateDate(fieldPosition, Date.valueOf(fieldValue));
-			}
-			else if (dataType == java.sql.Types.TIME) {
-				crs.updateTime(fieldPosition, Time.valueOf(fieldValue));
-			}
-			else if ((dataType == java.sql.Types.BOOLEAN) || (dataType == java.sql.Types.BIT)) {
-				crs.updateBoolean(fieldPosition, Boolean.parseBoolean(fieldValue));
-			}
-			else if (dataType == java.sql.Types.TIMESTAMP) {
-				
-			
-				try {
-					// try to parse the field value as a timestamp
-					Timestamp tsVal = Timestamp.valueOf(fieldValue);
-					crs.updateTimestamp(fieldPosition,tsVal);
-				}
-				catch (IllegalArgumentException exc) {
-					//If not parseable as timestamp, process as datetime.
-					Date dateVal = Date.valueOf(fieldValue);
-					SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-					String timeVal =df.format(dateVal);
-					crs.updateTimestamp(fieldPosition,Timestamp.valueOf(timeVal));	
-				}
-				
-			}
-			else if (dataType == java.sql.Types.STRUCT) {
-				//Syntax of value is supposed to be "Class type {<value1>, <value2>,...}
-				//Then class can be extracted from fieldValue and then instantiated with the rest
-				//Struct can be many things but support is implemented for Teradata Period datatypes				
-				if (fieldValue.indexOf("(") == -1 || fieldValue.indexOf(")") == -1) {
-					throw new XTestDatabaseException(String.format("Value specified for field %s with custom datatype should be speficied as \"(<value1>, <value2>,...)\"", fieldName));
-				}
-				//Get custom data type from field value and dynamically instantiate instance of the appropriate class
-				String customDataType = crs.getMetaData().getColumnTypeName(fieldPosition);			
-				Class<?> c = dbConfig.getDatabaseServerConfig().getCustomDataTypeConfig(customDataType).getClassRef();				
-				CustomDataType val;
-				try {
-					val = (CustomDataType)c.getDeclaredConstructor().newInstance();
-				} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
-						| InvocationTargetException | NoSuchMethodException | SecurityException e) {
-					throw new XTestDatabaseException(String.format("Could not create an instance of class %s for the custom data type %s", c.getName(),customDataType));
-				}	
-				
-				String[] arguments = fieldValue.substring(fieldValue.indexOf("(")+1, fieldValue.indexOf(")")).split(",");
-				val.initalize(arguments);
-				crs.updateObject(fieldPosition, val);
-				
-			}
-			else {
-				throw new XTestDatabaseException(String.format("Unsupported datatype %d for field %s", dataType, fieldName));
-			}
-			
+			converter.update(rowSet, resolveVariableValue(converter.getColumnName(), fieldValue));
 		} catch (SQLException exc) {
-			//TODO handle exception
-			//exc.printStackTrace();
 			throw new XTestDatabaseException(exc.getMessage());
 		}
 	}
 	
 	/**
-	 * Get a field value from a rowset in the appropriate datatype and then convert in to string
-	 * @param crs
-	 * @param fieldPosition
-	 * @return the field value converted to string
-	 * @throws XTestDatabaseException 
+	 * Set a parameter of an insert statement using the converter of the column
+	 * @param stmt The statement where a parameter needs to be set
+	 * @param converter The converter of the field, the parameter position is the same as the field position
+	 * @param fieldValue the value to set
+	 * @throws XTestException 
+	 * @throws NumberFormatException 
 	 */
-	private String getFieldValue(RowSet crs, int fieldPosition) throws XTestDatabaseException {
+	private void setParameterValue (PreparedStatement stmt, ColumnConverter converter, String fieldValue) throws NumberFormatException, XTestException{
 		try {
-			String fieldName = crs.getMetaData().getColumnName(fieldPosition);
-			int dataType = crs.getMetaData().getColumnType(fieldPosition);
-			logger.info(String.format("Getting value for field %s with datatype %d", fieldName, dataType));
-			//Read value as string to determine if the field is null
-			String strVal = crs.getString(fieldPosition);
-			if (crs.wasNull()) {
-				logger.info("Column read was null");				
-					return "";				
-			}
-			
-			else if (
-					(dataType == java.sql.Types.DECIMAL) || 
-					(dataType == java.sql.Types.DOUBLE) || 
-					(dataType == java.sql.Types.REAL) ||
-					(dataType == java.sql.Types.FLOAT) ||
-					(dataType == java.sql.Types.NUMERIC)
-					) {
-				BigDecimal longVal = crs.getBigDecimal(fieldPosition);
-				//return String.valueOf(longVal);
-				//Use string.format to remove trailing zeroes
-				return String.valueOf(longVal.stripTrailingZeros());
-			}
-			
-			else if (
-					(dataType == java.sql.Types.VARCHAR) || 
-					(dataType == java.sql.Types.NVARCHAR) ||
-					(dataType == java.sql.Types.LONGNVARCHAR) || 
-					(dataType == java.sql.Types.LONGVARCHAR) 
-				) {
-				//If the config defines an empty string constant, return it if the value is an empty string
-				if (this._config.hasEmptyStringValue() && strVal.length()==0) {
-					return this._config.getEmptyStringValue();
-				}
-				else {
-					return strVal;
-				}
-			}
-			//In case of char datatype, trim result obtained from database
-			else if (
-					(dataType == java.sql.Types.CHAR) ||
-					(dataType == java.sql.Types.NCHAR)  
-				) {
-				return strVal.trim();
-			}
-			
-			else if (dataType == java.sql.Types.BIGINT) {
-				Long bigIntVal = crs.getLong(fieldPosition);
-				return String.valueOf(bigIntVal);
-			}
-			
-			else if (
-				(dataType == java.sql.Types.INTEGER) ||
-				(dataType == java.sql.Types.SMALLINT) ||
-				(dataType == java.sql.Types.TINYINT) 				
-				) {
-				Integer intVal = crs.getInt(fieldPosition);
-				return String.valueOf(intVal);
-			}
-			else if ((dataType == java.sql.Types.BOOLEAN) || (dataType == java.sql.Types.BIT)) {
-				boolean boolVal = crs.getBoolean(fieldPosition);
-				return String.valueOf(boolVal);
-			}			
-			else if (dataType == java.sql.Types.DATE) {				
-				Date dateVal = crs.getDate(fieldPosition);
-				SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-				return df.format(dateVal);
-			}
-			else if (dataType == java.sql.Types.TIME) {
-				Time timeVal = crs.getTime(fieldPosition);
-				return String.valueOf(timeVal);
-			}
-			else if (dataType == java.sql.Types.TIMESTAMP) {
-				
-				SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-				try {
-					// try to parse the field value as a timestamp
-					Timestamp tsVal = crs.getTimestamp(fieldPosition);
-					return df.format(tsVal);
-				}
-				catch (IllegalArgumentException exc) {
-					//If not parseable as timestamp, process as date.
-					logger.info(String.format("Got illegal argument exception obtaining %s as timestamp, trying to read in as date", fieldName));
-					Date dateVal = crs.getDate(fieldPosition);					
-					return df.format(dateVal);
-					
-				}
-				
-			}
-			else if (dataType == java.sql.Types.STRUCT) {
-				//Struct can be many things but support is implemented for Teradata Period datatypes
-				Struct val = (Struct) crs.getObject(fieldPosition);
-				return val.toString();
-			}
-			
-			else {
-				throw new XTestDatabaseException(String.format("Unsupported datatype %d for field %s", dataType, fieldName));
+			//if fieldValue references a variable, replace it with variable contents first
+			converter.bind(stmt, resolveVariableValue(converter.getColumnName(), fieldValue));
+		} catch (SQLException exc) {
+			throw XTestDatabaseException.createXTestDatabaseException(String.format("Error setting value for field %s", converter.getColumnName()), exc);
+		}
+	}
+	
+	/**
+	 * If a field value references a variable, get the variable contents
+	 * @param fieldName the field the value is set for
+	 * @param fieldValue the value from the data table
+	 * @return the variable contents or the field value if it doesn't reference a variable
+	 * @throws XTestDatabaseException when the variable is not found
+	 */
+	private String resolveVariableValue(String fieldName, String fieldValue) throws XTestDatabaseException {
+		if (fieldValue != null && fieldValue.startsWith(ResultContext.VARIABLE_PREFIX)) {
+			logger.info(String.format("Field %s is set with variable %s", fieldName, fieldValue));
+			try {
+				fieldValue = _resultContext.getVariable(fieldValue);
+			} catch (XTestException exc) {
+				throw new XTestDatabaseException(XTestException.getCompositeErrorMessage(String.format("Error getting variable valie for field %s",  fieldName), exc));
 			}
-		
-	} catch (SQLException exc) {
-		//TODO handle exception
-		//exc.printStackTrace();
-		throw  XTestDatabaseException.createXTestDatabaseException("Exception while setting field", exc);
+			logger.info(String.format("Replace variable with value %s for field %s", fieldValue, fieldName));
+		}
+		return fieldValue;
 	}
+	
+	/**
+	 * Create the conversion plan for the columns of a rowset or resultset
+	 * @param metaData the column definitions
+	 * @param dbConfig the database config, can be null if the plan is only used for reading values
+	 * @return the conversion plan
+	 */
+	public ColumnConversionPlan getConversionPlan(TableMetaData metaData, DatabaseConfig dbConfig) {
+		return new ColumnConversionPlan(metaData, this._config, dbConfig);
 	}
 	
 	/**
-	 * Returns a hashmap containing all hashes with pointer to row number in the rowset
+	 * Returns an index containing all row hashes with the row numbers in the rowset
 	 * @param crs The rowset for which hashes need to be calculated
 	 * @param fieldNames The field names that need to be included in the hash
-	 * @return the hashmap with hashes
+	 * @return the index with row hashes
 	 * @throws XTestException
 	 */
-	public HashMap<String, RecordInformation> getHashSet(RowSet crs, LinkedList<String> fieldNames) throws XTestException {
-		HashMap<String, RecordInformation> hashMap = new HashMap<>();
+	public RowHashIndex getRowHashIndex(RowSet crs, LinkedList<String> fieldNames) throws XTestException {
 		try {
+			RowHashIndex hashIndex = new RowHashIndex((crs instanceof CachedRowSet) ? ((CachedRowSet) crs).size() : 16);
+			ColumnConverter[] converters = getHashConverters(crs, fieldNames);
 			crs.beforeFirst();			
 			int rowCounter = 0;
+			RowHasher hasher = new RowHasher();
 			while (crs.next()) {
-				StringBuilder hashInput = new StringBuilder();
 				rowCounter++;
-				for (int i = 1; i <= crs.getMetaData().getColumnCount(); i++) {
-					String val = getFieldValue(crs, i);
-					// If the value is an empty string, set it to a value so adjecant empty fields will not lead to identical hashvalues
-					if (val.length()==0) {
-						val = "~XT-EMPTYSTRING";
-					}
-					String fieldName = crs.getMetaData().getColumnName(i).toLowerCase();
-					if (fieldNames.contains(fieldName)) {
-						hashInput.append(val);
-					}
-				}
-				String hashValue = DigestUtils.md5Hex(hashInput.toString());
-				if (hashMap.containsKey(hashValue)) {
-					hashMap.get(hashValue).addRecordNumber(rowCounter);
-					logger.info(String.format("Found duplicate record for hash value %s at row %d", hashValue, rowCounter));
+				hashRecord(hasher, converters, crs);
+				if (hashIndex.add(hasher.getHashHigh(), hasher.getHashLow(), rowCounter) > 1) {
+					logger.info(String.format("Found duplicate record for hash value %016x%016x at row %d", hasher.getHashHigh(), hasher.getHashLow(), rowCounter));
 					//throw new XTestException("Duplicate records is not supported in actual or expected result");
 				}
-				else {
-					hashMap.put(hashValue, new RecordInformation(hashValue, rowCounter));
-				}
 			}
-			return hashMap;
+			return hashIndex;
 		} catch (SQLException exc) {
 			throw new XTestDatabaseException(exc.getMessage());
 		}
 	}
 	
-	public LinkedList<String> rowSetRecordToList(RowSet crs) throws XTestException {
-		LinkedList<String> record = new LinkedList<>();
+	/**
+	 * Get the hash index of an expected result
+	 * @param expectedResult The expected result
+	 * @param fieldNames The field names that need to be included in the hash
+	 * @return the hash index, with the expected record numbers
+	 */
+	public RowHashIndex getRowHashIndex(ExpectedResult expectedResult, LinkedList<String> fieldNames) {
+		RowHashIndex hashIndex = new RowHashIndex(expectedResult.getRecordCount());
+		int[] columnPositions = expectedResult.getColumnPositions(fieldNames);
+		RowHasher hasher = new RowHasher();
+		for (int recordNumber = 1; recordNumber <= expectedResult.getRecordCount(); recordNumber++) {
+			expectedResult.hashRecord(hasher, columnPositions, recordNumber);
+			if (hashIndex.add(hasher.getHashHigh(), hasher.getHashLow(), recordNumber) > 1) {
+				logger.info(String.format("Found duplicate record for hash value %016x%016x at row %d", hasher.getHashHigh(), hasher.getHashLow(), recordNumber));
+			}
+		}
+		return hashIndex;
+	}
+	
+	/**
+	 * Convert a data table with an expected result to normalized values, using the converters of the actual result columns.
+	 * The values are the same as when the data table is stored in a rowset with the structure of the actual result and read back.
+	 * @param meta the column definitions of the actual result
+	 * @param dataTable the data table with the expected result
+	 * @param dbConfig the database config, used for the object template and custom datatypes
+	 * @return the expected result
+	 * @throws XTestException
+	 */
+	public ExpectedResult getExpectedResult(TableMetaData meta, DataTable dataTable, DatabaseConfig dbConfig) throws XTestException {
+		List<Map<String, String>> list = dataTable.asMaps(String.class, String.class);
+		validateDataTableColumns(meta, list);
+		ColumnConversionPlan plan = getConversionPlan(meta, dbConfig);
+		String[] header = new String[plan.getColumnCount()];
+		for (int i = 1; i <= plan.getColumnCount(); i++) {
+			header[i - 1] = plan.getConverter(i).getColumnName();
+		}
+		ExpectedResult expectedResult = new ExpectedResult(header);
+		for (Map<String, String> dRecord:list) {
+			//Get values from datatable, or from the template if not specified
+			String[] rowValues = plan.getRowValues(getCaseInsensitiveRecord(dRecord));
+			String[] record = new String[rowValues.length];
+			for (int i = 1; i <= plan.getColumnCount(); i++) {
+				ColumnConverter converter = plan.getConverter(i);
+				//if fieldValue references a variable, replace it with variable contents first
+				record[i - 1] = converter.normalize(resolveVariableValue(converter.getColumnName(), rowValues[i - 1]));
+			}
+			expectedResult.addRecord(record);
+		}
+		return expectedResult;
+	}
+	
+	/**
+	 * Determine the converters of the fields to include in a row hash, so it is done once per result
+	 * @param rs The result for which hashes need to be calculated
+	 * @param fieldNames The field names that need to be included in the hash
+	 * @return the converters of the fields
+	 * @throws SQLException
+	 */
+	public ColumnConverter[] getHashConverters(ResultSet rs, LinkedList<String> fieldNames) throws SQLException {
+		ColumnConversionPlan plan = getConversionPlan(new TableMetaData(rs.getMetaData()), null);
+		List<ColumnConverter> hashConverters = new ArrayList<>();
+		for (int i = 1; i <= plan.getColumnCount(); i++) {
+			if (fieldNames.contains(plan.getConverter(i).getColumnName().toLowerCase())) {
+				hashConverters.add(plan.getConverter(i));
+			}
+		}
+		return hashConverters.toArray(new ColumnConverter[hashConverters.size()]);
+	}
+	
+	/**
+	 * Calculate the hash of the current record of a result, the hash is available through the hasher
+	 * @param hasher The hasher
+	 * @param converters The converters of the fields to include in the hash
+	 * @param rs The result
+	 * @throws SQLException
+	 * @throws XTestException
+	 */
+	public void hashRecord(RowHasher hasher, ColumnConverter[] converters, ResultSet rs) throws SQLException, XTestException {
+		hasher.reset();
+		// The hasher prefixes every field with its length, so adjecant empty fields will not lead to identical hashvalues
+		for (ColumnConverter converter:converters) {
+			hasher.putField(converter.getValue(rs));
+		}
+		hasher.finish();
+	}
+	
+	/**
+	 * Calculate the hash of the current record of a result and keep the values read, so a streamed value doesn't need to be read again
+	 * @param hasher The hasher
+	 * @param converters The converters of the fields to include in the hash
+	 * @param rs The result
+	 * @param values The values read per converter, see rowSetRecordToArray
+	 * @throws SQLException
+	 * @throws XTestException
+	 */
+	public void hashRecord(RowHasher hasher, ColumnConverter[] converters, ResultSet rs, Object[] values) throws SQLException, XTestException {
+		hasher.reset();
+		for (int i = 0; i < converters.length; i++) {
+			values[i] = converters[i].readValue(rs);
+			hasher.putField(converters[i].formatValue(values[i]));
+		}
+		hasher.finish();
+	}
+	
+	public String[] rowSetRecordToArray(ResultSet crs) throws XTestException {
 		try {
-			for (int i = 1; i <= crs.getMetaData().getColumnCount(); i++) {
-				String val = crs.getString(i);
-				if (crs.wasNull()) {
-					record.addLast("");
+			return rowSetRecordToArray(crs, getColumnTypes(crs.getMetaData()), null, null);
+		}
+		catch (SQLException exc) {
+			throw new XTestDatabaseException(String.format("Error getting rowset record: %s", exc.getMessage()));	
+		}
+	}
+	
+	/**
+	 * Get the values of the current record of a result as strings, for reporting it
+	 * @param crs the result
+	 * @param columnTypes the datatypes of the columns of the result, see getColumnTypes
+	 * @param readConverters the converters of the values which are already read from the current record, or null
+	 * @param readValues the values already read per converter, used for large objects which can't be read twice from a streamed result
+	 * @return the values of the record
+	 * @throws XTestException
+	 */
+	public String[] rowSetRecordToArray(ResultSet crs, int[] columnTypes, ColumnConverter[] readConverters, Object[] readValues) throws XTestException {
+		try {
+			String[] record = new String[columnTypes.length];
+			for (int i = 1; i <= record.length; i++) {
+				//The content of large objects is read as stream, so it isn't loaded in memory
+				if (LobValue.isLobType(columnTypes[i - 1])) {
+					record[i - 1] = getReadValue(i, readConverters, readValues);
 				}
-				else if (crs.getMetaData().getColumnType(i)==java.sql.Types.STRUCT){
-					record.addLast(((Struct)crs.getObject(i)).toString());
-				} 
-				else {
-					record.addLast(val.trim());
+				if (record[i - 1] == null) {
+					record[i - 1] = readRecordValue(crs, i, columnTypes[i - 1]);
 				}
 			}
+			return record;
 		}
 		catch (SQLException exc) {
 			throw new XTestDatabaseException(String.format("Error getting rowset record: %s", exc.getMessage()));	
 		}
-		return record;
 	}
 	
-	public LinkedList<String> rowSetHeader(RowSet crs) throws XTestException {
-		LinkedList<String> header = new LinkedList<>();
+	/**
+	 * Get a value of the current record of a result as string, for reporting it
+	 * @param crs the result
+	 * @param position the position of the column
+	 * @param columnType the datatype of the column
+	 * @return the value, an empty string for null
+	 * @throws SQLException
+	 * @throws XTestException
+	 */
+	public static String readRecordValue(ResultSet crs, int position, int columnType) throws SQLException, XTestException {
+		if (LobValue.isLobType(columnType)) {
+			String lobVal = LobValue.read(crs, position, columnType);
+			return (lobVal == null) ? "" : lobVal;
+		}
+		String val = crs.getString(position);
+		if (crs.wasNull()) {
+			return "";
+		}
+		else if (columnType == java.sql.Types.STRUCT) {
+			return ((Struct)crs.getObject(position)).toString();
+		}
+		return val.trim();
+	}
+	
+	/**
+	 * Format a value read by a converter for reporting it, like readRecordValue does for the value in the result
+	 * @param converter the converter which read the value
+	 * @param value the value read by the converter
+	 * @param columnType the datatype of the column
+	 * @return the value, an empty string for null
+	 */
+	public static String formatRecordValue(ColumnConverter converter, Object value, int columnType) {
+		if (LobValue.isLobType(columnType)) {
+			return converter.formatValue(value);
+		}
+		if (value == null) {
+			return "";
+		}
+		if (value instanceof BigDecimal) {
+			return ((BigDecimal)value).toPlainString();
+		}
+		return value.toString().trim();
+	}
+	
+	private static String getReadValue(int position, ColumnConverter[] readConverters, Object[] readValues) {
+		if (readConverters != null) {
+			for (int i = 0; i < readConverters.length; i++) {
+				if (readConverters[i].getPosition() == position) {
+					return readConverters[i].formatValue(readValues[i]);
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the datatypes of the columns of a result once, so they don't need to be looked up for every record
+	 * @param meta the column definitions of the result
+	 * @return the datatypes of the columns
+	 * @throws SQLException
+	 */
+	public static int[] getColumnTypes(ResultSetMetaData meta) throws SQLException {
+		int[] columnTypes = new int[meta.getColumnCount()];
+		for (int i = 1; i <= columnTypes.length; i++) {
+			columnTypes[i - 1] = meta.getColumnType(i);
+		}
+		return columnTypes;
+	}
+	
+	public String[] rowSetHeader(ResultSet crs) throws XTestException {
 		try {
-			for (int i = 1; i <= crs.getMetaData().getColumnCount(); i++) {
-				header.addLast(crs.getMetaData().getColumnName(i));
+			String[] header = new String[crs.getMetaData().getColumnCount()];
+			for (int i = 1; i <= header.length; i++) {
+				header[i - 1] = crs.getMetaData().getColumnName(i);
 			}			
+			return header;
 		}
 		catch (SQLException exc) {
 			throw new XTestDatabaseException(String.format("Error getting rowset header: %s", exc.getMessage()));
 		}
-		return header;
+	}
+	
+	public XTestConfig getConfig() {
+		return this._config;
 	}
 
 	/**
@@ -705,8 +849,14 @@ public class DataHelper {
 		String serverConnName = databaseServerConfig.getName();
 		// If the connection doesn't exist yet, create it.
 		if (!_connectionHelpers.containsKey(serverConnName)) {
-			logger.info(String.format("Creating new connection for server '%s'.", serverConnName));
-			_connectionHelpers.put(serverConnName, ConnectionHelper.fromDatabaseServerConfig(databaseServerConfig, this._credentialProviderHelper));
+			if (databaseServerConfig.isPooled()) {
+				logger.info(String.format("Borrowing pooled connection for server '%s'.", serverConnName));
+				_connectionHelpers.put(serverConnName, ConnectionPool.forServer(databaseServerConfig, this._credentialProviderHelper).borrow(this._credentialProviderHelper));
+			}
+			else {
+				logger.info(String.format("Creating new connection for server '%s'.", serverConnName));
+				_connectionHelpers.put(serverConnName, ConnectionHelper.fromDatabaseServerConfig(databaseServerConfig, this._credentialProviderHelper));
+			}
 		}
 		// Retrieve the connection.
 		ConnectionHelper serverConn = _connectionHelpers.get(serverConnName);
@@ -722,14 +872,38 @@ public class DataHelper {
 		return serverConn.getConnection();
 	}
 	
+	/**
+	 * Get a prepared statement on the connection of a database config, it is prepared once per connection and reused for the same text.
+	 * @param dbConfig The Database Configuration.
+	 * @param sqlCommand the statement text, with a ? for every parameter
+	 * @return the prepared statement, which shouldn't be closed
+	 * @throws XTestDatabaseException
+	 */
+	public PreparedStatement getPreparedStatement(DatabaseConfig dbConfig, String sqlCommand) throws XTestDatabaseException {
+		// Get the connection first, so it is configured for the database config
+		getConnection(dbConfig);
+		return _connectionHelpers.get(dbConfig.getDatabaseServerConfig().getName()).getPreparedStatement(sqlCommand);
+	}
+	
+	/**
+	 * Register a temporary table which is kept for the session of the connection to the server of the database config
+	 * @param dbConfig the database config
+	 * @param temporaryTableName the name of the temporary table
+	 * @throws XTestDatabaseException
+	 */
+	public void registerTemporaryTable(DatabaseConfig dbConfig, String temporaryTableName) throws XTestDatabaseException {
+		getConnection(dbConfig);
+		_connectionHelpers.get(dbConfig.getDatabaseServerConfig().getName()).registerTemporaryTable(temporaryTableName);
+	}
+	
 	/***
-	 * Close all connections, if running in a transaction, rollback on all open database connections
+	 * Close all connections, if running in a transaction, rollback on all open database connections.
+	 * Pooled connections are returned to their pool instead.
 	 */
 	public void closeConnections() {
 		for(Entry<String, ConnectionHelper> connectionEntry : _connectionHelpers.entrySet()) {
 			Connection con = connectionEntry.getValue().getConnection();
 			String conName = connectionEntry.getKey();
-			logger.info(String.format("Closing connection %s", conName));
 			try {
 				if (_resultContext.isInTransaction() && (con.isClosed() == false)) {
 					logger.info(String.format("Rollback on %s", conName));
@@ -739,12 +913,9 @@ public class DataHelper {
 			catch(SQLException exc) {
 				logger.severe(String.format("Error during rollback on %s: %s", conName, exc.getMessage()));
 			}
-			try {
-				con.close();
-			} catch (SQLException exc) {
-				logger.severe(String.format("Error during close of connection to %s: %s", conName, exc.getMessage()));
-			}
+			connectionEntry.getValue().release();
 		}
+		_connectionHelpers.clear();
 		this._resultContext.stopTransaction();
 	}
 }
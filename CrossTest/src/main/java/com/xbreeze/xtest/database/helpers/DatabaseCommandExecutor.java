@@ -23,8 +23,11 @@
 package com.xbreeze.xtest.database.helpers;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 import javax.sql.rowset.CachedRowSet;
 import javax.sql.rowset.RowSetFactory;
@@ -33,6 +36,8 @@ import java.util.logging.Logger;
 
 import com.xbreeze.xtest.config.DatabaseConfig;
 import com.xbreeze.xtest.exception.XTestDatabaseException;
+import com.xbreeze.xtest.exception.XTestException;
+import com.xbreeze.xtest.result.SharedVariableCache;
 
 public class DatabaseCommandExecutor {
 	
@@ -70,11 +75,27 @@ public class DatabaseCommandExecutor {
 	 */
 	
 	public static CachedRowSet executeCommandWithCachedResult(Connection connection, String sqlCommand, DatabaseConfig dbConfig) throws XTestDatabaseException {
+		return executeCommandWithCachedResult(connection, sqlCommand, dbConfig, 0);
+	}
+	
+	/**
+	 * Execute a query to populate a cached rowset with at most a number of rows
+	 * @param connection the database conection to use
+	 * @param sqlCommand the query to execute
+	 * @param dbConfig the database config
+	 * @param maxRows the maximum number of rows read, 0 means all rows are read
+	 * @return a cached rowset with the query result
+	 * @throws XTestDatabaseException
+	 */
+	public static CachedRowSet executeCommandWithCachedResult(Connection connection, String sqlCommand, DatabaseConfig dbConfig, int maxRows) throws XTestDatabaseException {
 		try {
 			logger.info(String.format("executeCommandWithCachedResult: '%s'", sqlCommand));
 			RowSetFactory factory = RowSetProvider.newFactory();
 			CachedRowSet crs = factory.createCachedRowSet();			
 			crs.setCommand(sqlCommand);
+			if (maxRows > 0) {
+				crs.setMaxRows(maxRows);
+			}
 			
 			if (dbConfig.getCommandTimeOut() > 0) {
 				crs.setQueryTimeout(dbConfig.getCommandTimeOut());
@@ -94,6 +115,158 @@ public class DatabaseCommandExecutor {
 		}
 	}
 	
+	/**
+	 * Execute a query with bind parameters to populate a cached rowset
+	 * @param connection the database conection to use
+	 * @param sqlCommand the query to execute, with a ? for every parameter
+	 * @param dbConfig the database config
+	 * @param parameters the values of the parameters, in order
+	 * @return a cached rowset with the query result
+	 * @throws XTestDatabaseException
+	 */
+	public static CachedRowSet executeCommandWithCachedResult(Connection connection, String sqlCommand, DatabaseConfig dbConfig, List<Object> parameters) throws XTestDatabaseException {
+		try {
+			logger.info(String.format("executeCommandWithCachedResult: '%s' with %d parameters", sqlCommand, parameters.size()));
+			RowSetFactory factory = RowSetProvider.newFactory();
+			CachedRowSet crs = factory.createCachedRowSet();
+			crs.setCommand(sqlCommand);
+			for (int i = 0; i < parameters.size(); i++) {
+				crs.setObject(i + 1, parameters.get(i));
+			}
+			
+			if (dbConfig.getCommandTimeOut() > 0) {
+				crs.setQueryTimeout(dbConfig.getCommandTimeOut());
+			}
+			crs.setTypeMap(connection.getTypeMap());
+			// Execute the cashed rowset using an uncommitable connection (see executeCommandWithCachedResult)
+			crs.execute(ImmutableConnection.fromConnection(connection));
+			return crs;
+		}
+		catch(SQLException exc) {
+			throw new XTestDatabaseException(exc.getMessage());
+		}
+	}
+	
+	/**
+	 * Execute a prepared statement with bind parameters, the statement is kept open so it can be executed again
+	 * @param stmt the prepared statement to execute
+	 * @param parameters the values of the parameters, in order
+	 * @param dbConfig the database config
+	 * @throws XTestDatabaseException
+	 */
+	public static void executePreparedCommandWithoutResult(PreparedStatement stmt, List<Object> parameters, DatabaseConfig dbConfig) throws XTestDatabaseException {
+		try {
+			logger.info(String.format("executePreparedCommandWithoutResult with %d parameters", parameters.size()));
+			bindParameters(stmt, parameters, dbConfig);
+			stmt.execute();
+		} catch (SQLException e) {
+			throw new XTestDatabaseException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Execute a prepared query with bind parameters to populate a cached rowset, the statement is kept open so it can be executed again
+	 * @param stmt the prepared query to execute
+	 * @param parameters the values of the parameters, in order
+	 * @param dbConfig the database config
+	 * @return a cached rowset with the query result, or null if the statement has no result
+	 * @throws XTestDatabaseException
+	 */
+	public static CachedRowSet executePreparedCommandWithCachedResult(PreparedStatement stmt, List<Object> parameters, DatabaseConfig dbConfig) throws XTestDatabaseException {
+		try {
+			logger.info(String.format("executePreparedCommandWithCachedResult with %d parameters", parameters.size()));
+			bindParameters(stmt, parameters, dbConfig);
+			if (!stmt.execute()) {
+				return null;
+			}
+			// Populating the rowset from the result doesn't commit, unlike executing it (see executeCommandWithCachedResult)
+			try (ResultSet rs = stmt.getResultSet()) {
+				CachedRowSet crs = RowSetProvider.newFactory().createCachedRowSet();
+				crs.setTypeMap(stmt.getConnection().getTypeMap());
+				crs.populate(rs);
+				return crs;
+			}
+		}
+		catch(SQLException exc) {
+			throw new XTestDatabaseException(exc.getMessage());
+		}
+	}
+	
+	private static void bindParameters(PreparedStatement stmt, List<Object> parameters, DatabaseConfig dbConfig) throws SQLException {
+		stmt.clearParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+			stmt.setObject(i + 1, parameters.get(i));
+		}
+		if (dbConfig.getCommandTimeOut() > 0) {
+			stmt.setQueryTimeout(dbConfig.getCommandTimeOut());
+		}
+	}
+	
+	/**
+	 * Execute a query and stream its result to a handler, the rows are read forward only and not kept in memory
+	 * @param connection the database connection to use
+	 * @param sqlCommand the query to execute
+	 * @param dbConfig the database config, used for the command time out and fetch size
+	 * @param handler the handler reading the rows of the result
+	 * @throws XTestException
+	 */
+	public static void executeCommandWithStreamedResult(Connection connection, String sqlCommand, DatabaseConfig dbConfig, ResultSetHandler handler) throws XTestException {
+		logger.info(String.format("executeCommandWithStreamedResult: '%s'", sqlCommand));
+		// Use an uncommitable connection, so transactions are not committed (see executeCommandWithCachedResult)
+		try (Statement stmt = ImmutableConnection.fromConnection(connection).createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			if (dbConfig.getCommandTimeOut() > 0) {
+				stmt.setQueryTimeout(dbConfig.getCommandTimeOut());
+			}
+			if (dbConfig.getResolvedFetchSize() > 0) {
+				stmt.setFetchSize(dbConfig.getResolvedFetchSize());
+			}
+			try (ResultSet rs = stmt.executeQuery(sqlCommand)) {
+				handler.handle(rs);
+			}
+		}
+		catch(SQLException exc) {
+			throw new XTestDatabaseException(exc.getMessage());
+		}
+	}
+	
+	/**
+	 * Cancel the query of a streamed result which is not read to the end, so the rows which aren't read are not transferred when it is closed.
+	 * Not all drivers support cancelling a query, in that case the remaining rows are read when the result is closed.
+	 * @param resultSet the result of the query
+	 */
+	public static void cancelStatement(ResultSet resultSet) {
+		try {
+			logger.info("Cancelling the query of a streamed result");
+			resultSet.getStatement().cancel();
+		}
+		catch(SQLException exc) {
+			logger.warning(String.format("Could not cancel the query: %s", exc.getMessage()));
+		}
+	}
+	
+	/**
+	 * Execute a query only to obtain the column definitions of its result, no rows are fetched into memory
+	 * @param connection the database connection to use
+	 * @param sqlCommand the query to execute, typically a 'WHERE 1 = 0' query
+	 * @param dbConfig the database config
+	 * @return the column definitions of the query result
+	 * @throws XTestDatabaseException
+	 */
+	public static TableMetaData getTableMetaData(Connection connection, String sqlCommand, DatabaseConfig dbConfig) throws XTestDatabaseException {
+		logger.info(String.format("getTableMetaData: '%s'", sqlCommand));
+		try (Statement stmt = connection.createStatement()) {
+			if (dbConfig.getCommandTimeOut() > 0) {
+				stmt.setQueryTimeout(dbConfig.getCommandTimeOut());
+			}
+			try (ResultSet rs = stmt.executeQuery(sqlCommand)) {
+				return new TableMetaData(rs.getMetaData());
+			}
+		}
+		catch(SQLException exc) {
+			throw new XTestDatabaseException(exc.getMessage());
+		}
+	}
+
 	/**
 	 * Procedure to empty a database object.
 	 * We use DELETE i.s.o. TRUNCATE, because:
@@ -106,5 +279,6 @@ public class DatabaseCommandExecutor {
 	public static void emptyDatabaseObject(Connection connection, String fqObjectNameToEmpty, DatabaseConfig dbConfig) throws XTestDatabaseException {
 		logger.info(String.format("Executing DELETE FROM %s;",fqObjectNameToEmpty));
 		executeCommandWithoutResult(connection, String.format("DELETE FROM %s;", fqObjectNameToEmpty), dbConfig);
+		SharedVariableCache.invalidateTable(fqObjectNameToEmpty);
 	}
 }
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The records of an expected result, with every value normalized to the string the converter of its column returns for the 
+ * actual value. The expected values can be compared with values from the database without storing them in a rowset first.
+ * Record numbers are 1-based, like the row numbers in a rowset.
+ * @author Willem
+ *
+ */
+public class ExpectedResult {
+	
+	private final String[] _header;
+	private final List<String[]> _records;
+	
+	/**
+	 * Constructor
+	 * @param header the column names, in the order of the actual result
+	 */
+	public ExpectedResult(String[] header) {
+		this._header = header;
+		this._records = new ArrayList<>();
+	}
+	
+	void addRecord(String[] record) {
+		this._records.add(record);
+	}
+	
+	public String[] getHeader() {
+		return this._header;
+	}
+	
+	public int getRecordCount() {
+		return this._records.size();
+	}
+	
+	/**
+	 * @param recordNumber the 1-based record number
+	 * @return the normalized values of the record
+	 */
+	public String[] getRecord(int recordNumber) {
+		return this._records.get(recordNumber - 1);
+	}
+	
+	/**
+	 * Get the 0-based positions of the columns to compare, in the order of the columns
+	 * @param fieldNames the lower case names of the fields to compare
+	 * @return the positions of the columns
+	 */
+	public int[] getColumnPositions(LinkedList<String> fieldNames) {
+		List<Integer> positions = new ArrayList<>();
+		for (int i = 0; i < this._header.length; i++) {
+			if (this._header[i] != null && fieldNames.contains(this._header[i].toLowerCase())) {
+				positions.add(i);
+			}
+		}
+		return positions.stream().mapToInt(Integer::intValue).toArray();
+	}
+	
+	/**
+	 * Calculate the hash of a record, the hash is available through the hasher
+	 * @param hasher the hasher
+	 * @param columnPositions the 0-based positions of the columns to include in the hash
+	 * @param recordNumber the 1-based record number
+	 */
+	public void hashRecord(RowHasher hasher, int[] columnPositions, int recordNumber) {
+		String[] record = getRecord(recordNumber);
+		hasher.reset();
+		for (int columnPosition : columnPositions) {
+			hasher.putField(record[columnPosition]);
+		}
+		hasher.finish();
+	}
+}
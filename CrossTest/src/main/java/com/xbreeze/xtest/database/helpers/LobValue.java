@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+
+/**
+ * Converts the content of large object columns (CLOB, BLOB and binary columns) to the string used to compare them.
+ * The content is read as a stream and hashed in parts, so a large value is never held in memory as a whole.
+ * A value up to 256 characters (or 128 bytes, as hexadecimal string) is compared as is, a longer value is compared
+ * on its length and hash, f.e. "CLOB(1048576 characters, hash 5c1e...)".
+ * In a data table the content can also be read from a file with "@file:&lt;path&gt;", a character file is read as UTF-8.
+ * @author Willem
+ *
+ */
+public final class LobValue {
+	
+	public static final String FILE_REFERENCE_PREFIX = "@file:";
+	
+	private static final int INLINE_CHARACTERS = 256;
+	private static final int INLINE_BYTES = 128;
+	private static final int BUFFER_SIZE = 8192;
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	
+	private LobValue() {
+	}
+	
+	/**
+	 * @param dataType the JDBC datatype of a column
+	 * @return whether the column is compared as a large object
+	 */
+	public static boolean isLobType(int dataType) {
+		return dataType == Types.CLOB || dataType == Types.NCLOB || isBinaryType(dataType);
+	}
+	
+	/**
+	 * @param dataType the JDBC datatype of a column
+	 * @return whether the column contains bytes instead of characters
+	 */
+	public static boolean isBinaryType(int dataType) {
+		return dataType == Types.BLOB || dataType == Types.BINARY || dataType == Types.VARBINARY || dataType == Types.LONGVARBINARY;
+	}
+	
+	/**
+	 * Read the content of a large object column of the current row of a result as comparison string.
+	 * CLOB and BLOB columns are read through their large object, because a cached result only returns streams for character and binary columns.
+	 * @param rs the result
+	 * @param position the column position
+	 * @param dataType the JDBC datatype of the column
+	 * @return the comparison string, or null if the value is null
+	 * @throws SQLException
+	 * @throws XTestDatabaseException
+	 */
+	public static String read(ResultSet rs, int position, int dataType) throws SQLException, XTestDatabaseException {
+		try {
+			if (dataType == Types.BLOB) {
+				Blob blob = rs.getBlob(position);
+				if (blob == null) {
+					return null;
+				}
+				try (InputStream in = blob.getBinaryStream()) {
+					return fromBytes(in);
+				}
+			}
+			else if (dataType == Types.CLOB || dataType == Types.NCLOB) {
+				// A cached result doesn't support getNClob, it keeps a NCLOB value as Clob
+				Clob clob = (dataType == Types.CLOB) ? rs.getClob(position) : (Clob)rs.getObject(position);
+				if (clob == null) {
+					return null;
+				}
+				try (Reader reader = clob.getCharacterStream()) {
+					return fromCharacters(reader);
+				}
+			}
+			else if (isBinaryType(dataType)) {
+				try (InputStream in = rs.getBinaryStream(position)) {
+					return (in == null) ? null : fromBytes(in);
+				}
+			}
+			else {
+				try (Reader reader = rs.getCharacterStream(position)) {
+					return (reader == null) ? null : fromCharacters(reader);
+				}
+			}
+		}
+		catch (IOException exc) {
+			throw new XTestDatabaseException(String.format("Error reading the content of column %d: %s", position, exc.getMessage()));
+		}
+	}
+	
+	/**
+	 * Get the comparison string of a value from a data table
+	 * @param fieldValue the value, a hexadecimal string for binary columns or a file reference
+	 * @param binary whether the column contains bytes
+	 * @return the comparison string
+	 * @throws XTestDatabaseException
+	 */
+	public static String normalize(String fieldValue, boolean binary) throws XTestDatabaseException {
+		try {
+			if (isFileReference(fieldValue)) {
+				File file = getReferencedFile(fieldValue);
+				if (binary) {
+					try (InputStream in = new FileInputStream(file)) {
+						return fromBytes(in);
+					}
+				}
+				else {
+					try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+						return fromCharacters(reader);
+					}
+				}
+			}
+			return binary ? fromBytes(new ByteArrayInputStream(parseHex(fieldValue))) : fromCharacters(new StringReader(fieldValue));
+		}
+		catch (IOException exc) {
+			throw new XTestDatabaseException(String.format("Error reading %s: %s", fieldValue, exc.getMessage()));
+		}
+	}
+	
+	private static String fromCharacters(Reader reader) throws IOException {
+		RowHasher hasher = new RowHasher();
+		StringBuilder inlineValue = new StringBuilder();
+		char[] buffer = new char[BUFFER_SIZE];
+		long length = 0;
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			hasher.putChars(buffer, 0, read);
+			if (length <= INLINE_CHARACTERS) {
+				inlineValue.append(buffer, 0, (int)Math.min(read, INLINE_CHARACTERS + 1 - length));
+			}
+			length += read;
+		}
+		if (length <= INLINE_CHARACTERS) {
+			return inlineValue.toString();
+		}
+		hasher.finish();
+		return String.format("CLOB(%d characters, hash %016x%016x)", length, hasher.getHashHigh(), hasher.getHashLow());
+	}
+	
+	private static String fromBytes(InputStream in) throws IOException {
+		RowHasher hasher = new RowHasher();
+		byte[] inlineValue = new byte[INLINE_BYTES];
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long length = 0;
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			hasher.putBytes(buffer, 0, read);
+			if (length < INLINE_BYTES) {
+				System.arraycopy(buffer, 0, inlineValue, (int)length, (int)Math.min(read, INLINE_BYTES - length));
+			}
+			length += read;
+		}
+		if (length <= INLINE_BYTES) {
+			return toHex(inlineValue, (int)length);
+		}
+		hasher.finish();
+		return String.format("BLOB(%d bytes, hash %016x%016x)", length, hasher.getHashHigh(), hasher.getHashLow());
+	}
+	
+	private static String toHex(byte[] bytes, int length) {
+		char[] hex = new char[length * 2];
+		for (int i = 0; i < length; i++) {
+			hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String(hex);
+	}
+	
+	/**
+	 * Parse a hexadecimal string, optionally starting with 0x
+	 * @param fieldValue the hexadecimal string
+	 * @return the bytes
+	 * @throws XTestDatabaseException
+	 */
+	public static byte[] parseHex(String fieldValue) throws XTestDatabaseException {
+		String hex = (fieldValue.startsWith("0x") || fieldValue.startsWith("0X")) ? fieldValue.substring(2) : fieldValue;
+		if (hex.length() % 2 != 0) {
+			throw new XTestDatabaseException(String.format("Binary value %s should be specified as a hexadecimal string with an even number of digits", fieldValue));
+		}
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			int high = Character.digit(hex.charAt(i * 2), 16);
+			int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+			if (high == -1 || low == -1) {
+				throw new XTestDatabaseException(String.format("Binary value %s should be specified as a hexadecimal string", fieldValue));
+			}
+			bytes[i] = (byte)((high << 4) | low);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * @param fieldValue the value from a data table
+	 * @return whether the value references a file with the content
+	 */
+	public static boolean isFileReference(String fieldValue) {
+		return fieldValue != null && fieldValue.startsWith(FILE_REFERENCE_PREFIX);
+	}
+	
+	/**
+	 * @param fieldValue the file reference
+	 * @return the referenced file
+	 * @throws XTestDatabaseException if the file doesn't exist
+	 */
+	public static File getReferencedFile(String fieldValue) throws XTestDatabaseException {
+		File file = new File(fieldValue.substring(FILE_REFERENCE_PREFIX.length()));
+		if (!file.isFile()) {
+			throw new XTestDatabaseException(String.format("File %s referenced in data table doesn't exist", file.getPath()));
+		}
+		return file;
+	}
+	
+	/**
+	 * Open a referenced file as stream to bind as statement parameter. The file is opened when the driver starts reading it
+	 * and closed when it is read completely, so a batch of statements doesn't keep all of its files open.
+	 * @param file the file
+	 * @return the stream of the file content
+	 */
+	public static InputStream openBinaryStream(File file) {
+		return new LazyFileInputStream(file);
+	}
+	
+	/**
+	 * Open a referenced file as UTF-8 character stream to bind as statement parameter, see openBinaryStream
+	 * @param file the file
+	 * @return the stream of the file content
+	 */
+	public static Reader openCharacterStream(File file) {
+		return new InputStreamReader(openBinaryStream(file), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Stream of a file which is opened on the first read and closed at the end of the file
+	 */
+	private static final class LazyFileInputStream extends InputStream {
+		private final File _file;
+		private InputStream _in;
+		private boolean _finished = false;
+		
+		private LazyFileInputStream(File file) {
+			this._file = file;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			if (this._finished) {
+				return -1;
+			}
+			if (this._in == null) {
+				this._in = new FileInputStream(this._file);
+			}
+			int b = this._in.read();
+			if (b == -1) {
+				close();
+			}
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (this._finished) {
+				return -1;
+			}
+			if (this._in == null) {
+				this._in = new FileInputStream(this._file);
+			}
+			int read = this._in.read(bytes, offset, length);
+			if (read == -1) {
+				close();
+			}
+			return read;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			this._finished = true;
+			if (this._in != null) {
+				this._in.close();
+				this._in = null;
+			}
+		}
+	}
+}
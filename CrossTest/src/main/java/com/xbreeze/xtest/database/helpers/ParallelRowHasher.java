@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Logger;
+
+import com.xbreeze.xtest.exception.XTestException;
+
+/**
+ * Hashes the rows of a streamed result using multiple threads and looks them up in the hashes of the expected result.
+ * The rows are read into chunks by the thread reading the result, the values of a chunk are converted and hashed by a fork-join pool.
+ * The hashed rows are handed to the handler in the order of the result by the reading thread, so the outcome is the same as when
+ * the rows are hashed one by one.
+ * @author Willem
+ *
+ */
+public class ParallelRowHasher {
+	
+	static final Logger logger = Logger.getLogger(ParallelRowHasher.class.getName());
+	
+	//The number of rows read into a chunk before it is hashed
+	private static final int CHUNK_SIZE = 4096;
+	
+	private final DataHelper _dataHelper;
+	private final ColumnConverter[] _converters;
+	private final RowHashLookup _expectedHashes;
+	private final int _parallelism;
+	private int _handledRows;
+	//The datatypes of the columns of the result and the index of the converter per column, -1 if the column isn't hashed
+	private int[] _columnTypes;
+	private int[] _columnConverters;
+	private boolean _hasUnhashedColumns;
+	
+	/**
+	 * Handles a hashed row of the result, rows are handled one at a time in the order of the result
+	 */
+	@FunctionalInterface
+	public interface HashedRowHandler {
+		/**
+		 * @param rowNumber the 1-based row number
+		 * @param expectedSlot the slot of the row hash in the expected hashes, -1 if the row is not expected
+		 * @param hashHigh the high 64 bits of the row hash
+		 * @param hashLow the low 64 bits of the row hash
+		 * @param record the values of the row, used for reporting it, null if the row is expected
+		 * @return true to continue with the next row, false to stop reading the result
+		 * @throws XTestException
+		 */
+		boolean handle(int rowNumber, int expectedSlot, long hashHigh, long hashLow, String[] record) throws XTestException;
+	}
+	
+	/**
+	 * @param dataHelper the data helper
+	 * @param converters the converters of the fields to include in the hash
+	 * @param expectedHashes the lookup of the hashes of the expected result, only read while hashing
+	 * @param parallelism the number of threads hashing the rows
+	 */
+	public ParallelRowHasher(DataHelper dataHelper, ColumnConverter[] converters, RowHashLookup expectedHashes, int parallelism) {
+		this._dataHelper = dataHelper;
+		this._converters = converters;
+		this._expectedHashes = expectedHashes;
+		this._parallelism = parallelism;
+	}
+	
+	/**
+	 * Read, hash and handle all rows of a result, until the handler stops it
+	 * @param rs the result, positioned before the first row
+	 * @param handler the handler of the hashed rows
+	 * @return the number of rows handled
+	 * @throws SQLException
+	 * @throws XTestException
+	 */
+	public int hash(ResultSet rs, HashedRowHandler handler) throws SQLException, XTestException {
+		this._columnTypes = DataHelper.getColumnTypes(rs.getMetaData());
+		this._columnConverters = new int[this._columnTypes.length];
+		Arrays.fill(this._columnConverters, -1);
+		for (int i = 0; i < this._converters.length; i++) {
+			this._columnConverters[this._converters[i].getPosition() - 1] = i;
+		}
+		this._hasUnhashedColumns = Arrays.stream(this._columnConverters).anyMatch(converter -> converter == -1);
+		ForkJoinPool pool = new ForkJoinPool(this._parallelism);
+		// The chunks being hashed, in the order of the result
+		ArrayDeque<ForkJoinTask<Chunk>> chunksInProgress = new ArrayDeque<>();
+		try {
+			int rowCounter = 0;
+			this._handledRows = 0;
+			boolean stopped = false;
+			Chunk chunk = new Chunk(1);
+			while (!stopped && rs.next()) {
+				rowCounter++;
+				chunk.read(rs);
+				if (chunk._size == CHUNK_SIZE) {
+					chunksInProgress.add(pool.submit(chunk::hash));
+					// Handle the oldest chunk when enough chunks are in progress, so only a limited number of rows is kept in memory
+					if (chunksInProgress.size() > 2 * this._parallelism) {
+						stopped = !handleChunk(chunksInProgress.poll().join(), handler);
+					}
+					chunk = new Chunk(rowCounter + 1);
+				}
+			}
+			if (!stopped && chunk._size > 0) {
+				chunksInProgress.add(pool.submit(chunk::hash));
+			}
+			while (!stopped && !chunksInProgress.isEmpty()) {
+				stopped = !handleChunk(chunksInProgress.poll().join(), handler);
+			}
+			logger.info(String.format("Hashed %d rows using %d threads", this._handledRows, this._parallelism));
+			return this._handledRows;
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Handle the rows of a hashed chunk
+	 * @return false if the handler stopped
+	 */
+	private boolean handleChunk(Chunk chunk, HashedRowHandler handler) throws XTestException {
+		for (int i = 0; i < chunk._size; i++) {
+			this._handledRows++;
+			if (!handler.handle(chunk._firstRowNumber + i, chunk._expectedSlots[i], chunk._hashHighs[i], chunk._hashLows[i], chunk._records[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * The values of a number of consecutive rows, with their hashes once the chunk is hashed
+	 */
+	private final class Chunk {
+		private final int _firstRowNumber;
+		private final Object[][] _values = new Object[CHUNK_SIZE][];
+		private final String[][] _records = new String[CHUNK_SIZE][];
+		private final int[] _expectedSlots = new int[CHUNK_SIZE];
+		private final long[] _hashHighs = new long[CHUNK_SIZE];
+		private final long[] _hashLows = new long[CHUNK_SIZE];
+		private int _size = 0;
+		
+		private Chunk(int firstRowNumber) {
+			this._firstRowNumber = firstRowNumber;
+		}
+		
+		/**
+		 * Read the current row of the result, only the values are read so the conversion is done while hashing.
+		 * The columns which aren't hashed are read for reporting the row, since they can't be read after the result moved on.
+		 */
+		private void read(ResultSet rs) throws SQLException, XTestException {
+			Object[] values = new Object[_converters.length];
+			for (int i = 0; i < _converters.length; i++) {
+				values[i] = _converters[i].readValue(rs);
+			}
+			this._values[this._size] = values;
+			if (_hasUnhashedColumns) {
+				String[] record = new String[_columnTypes.length];
+				for (int column = 0; column < record.length; column++) {
+					if (_columnConverters[column] == -1) {
+						record[column] = DataHelper.readRecordValue(rs, column + 1, _columnTypes[column]);
+					}
+				}
+				this._records[this._size] = record;
+			}
+			this._size++;
+		}
+		
+		/**
+		 * Convert and hash the values of the rows, and find the hashes in the expected hashes
+		 */
+		private Chunk hash() {
+			RowHasher hasher = new RowHasher();
+			for (int row = 0; row < this._size; row++) {
+				hasher.reset();
+				// The hasher prefixes every field with its length, so adjecant empty fields will not lead to identical hashvalues
+				for (int i = 0; i < _converters.length; i++) {
+					hasher.putField(_converters[i].formatValue(this._values[row][i]));
+				}
+				hasher.finish();
+				this._hashHighs[row] = hasher.getHashHigh();
+				this._hashLows[row] = hasher.getHashLow();
+				this._expectedSlots[row] = _expectedHashes.find(hasher.getHashHigh(), hasher.getHashLow());
+				// The record is only needed to report a row which is not expected, the values are no longer needed once it is built
+				if (this._expectedSlots[row] == -1) {
+					this._records[row] = toRecord(this._values[row], this._records[row]);
+				}
+				else {
+					this._records[row] = null;
+				}
+				this._values[row] = null;
+			}
+			return this;
+		}
+		
+		/**
+		 * Build the record for reporting a row, from the hashed values and the values of the other columns
+		 */
+		private String[] toRecord(Object[] values, String[] unhashedRecord) {
+			String[] record = (unhashedRecord != null) ? unhashedRecord : new String[_columnTypes.length];
+			for (int column = 0; column < record.length; column++) {
+				int converter = _columnConverters[column];
+				if (converter != -1) {
+					record[column] = DataHelper.formatRecordValue(_converters[converter], values[converter], _columnTypes[column]);
+				}
+			}
+			return record;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+/**
+ * Sorts records using a limited number of records in memory. When the buffer is full, the buffered records are sorted and 
+ * written to a temporary file (a run). The sorted records are read by merging the runs.
+ * @author Willem
+ *
+ */
+public class RecordSorter implements Closeable {
+	static final Logger logger = Logger.getLogger(RecordSorter.class.getName());
+	
+	private Comparator<SortRecord> _comparator;
+	private int _bufferSize;
+	private List<SortRecord> _buffer;
+	private List<File> _runFiles;
+	private List<DataInputStream> _runReaders;
+	// The current record of every run when reading, ordered on the comparator
+	private PriorityQueue<RunRecord> _runHeads;
+	private int _bufferPosition;
+	private boolean _sorted;
+	
+	/**
+	 * Constructor
+	 * @param comparator The comparator defining the sort order.
+	 * @param bufferSize The maximum number of records in memory, 0 or less means all records are sorted in memory.
+	 */
+	public RecordSorter(Comparator<SortRecord> comparator, int bufferSize) {
+		this._comparator = comparator;
+		this._bufferSize = bufferSize;
+		this._buffer = new ArrayList<>();
+		this._runFiles = new ArrayList<>();
+		this._runReaders = new ArrayList<>();
+	}
+	
+	/**
+	 * Add a record to sort
+	 * @param record The record.
+	 * @throws IOException
+	 */
+	public void add(SortRecord record) throws IOException {
+		if (this._sorted) {
+			throw new IllegalStateException("Records can't be added after sorting");
+		}
+		this._buffer.add(record);
+		if (this._bufferSize > 0 && this._buffer.size() >= this._bufferSize) {
+			this.writeRun();
+		}
+	}
+	
+	/**
+	 * Sort the records added, after which they can be read using next
+	 * @throws IOException
+	 */
+	public void sort() throws IOException {
+		this._sorted = true;
+		if (this._runFiles.isEmpty()) {
+			this._buffer.sort(this._comparator);
+			this._bufferPosition = 0;
+			return;
+		}
+		if (!this._buffer.isEmpty()) {
+			this.writeRun();
+		}
+		logger.info(String.format("Merging %d sorted runs", this._runFiles.size()));
+		this._runHeads = new PriorityQueue<>(this._runFiles.size(), (a, b) -> this._comparator.compare(a._record, b._record));
+		for (File runFile : this._runFiles) {
+			DataInputStream reader = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+			this._runReaders.add(reader);
+			this.readNext(reader);
+		}
+	}
+	
+	/**
+	 * Get the next record in sort order
+	 * @return The record, or null if all records are read.
+	 * @throws IOException
+	 */
+	public SortRecord next() throws IOException {
+		if (this._runHeads == null) {
+			return (this._bufferPosition < this._buffer.size()) ? this._buffer.get(this._bufferPosition++) : null;
+		}
+		RunRecord head = this._runHeads.poll();
+		if (head == null) {
+			return null;
+		}
+		this.readNext(head._reader);
+		return head._record;
+	}
+	
+	/**
+	 * Close and remove the temporary files
+	 */
+	@Override
+	public void close() throws IOException {
+		for (DataInputStream reader : this._runReaders) {
+			reader.close();
+		}
+		this._runReaders.clear();
+		for (File runFile : this._runFiles) {
+			if (!runFile.delete()) {
+				runFile.deleteOnExit();
+			}
+		}
+		this._runFiles.clear();
+		this._buffer.clear();
+	}
+	
+	private void writeRun() throws IOException {
+		this._buffer.sort(this._comparator);
+		File runFile = File.createTempFile("xtest_sort_", ".run");
+		this._runFiles.add(runFile);
+		logger.info(String.format("Writing %d sorted records to %s", this._buffer.size(), runFile.getAbsolutePath()));
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile)))) {
+			for (SortRecord record : this._buffer) {
+				record.writeTo(out);
+			}
+		}
+		this._buffer.clear();
+	}
+	
+	private void readNext(DataInputStream reader) throws IOException {
+		try {
+			this._runHeads.add(new RunRecord(SortRecord.readFrom(reader), reader));
+		}
+		catch (EOFException exc) {
+			// The run is completely read
+		}
+	}
+	
+	private static final class RunRecord {
+		private final SortRecord _record;
+		private final DataInputStream _reader;
+		
+		private RunRecord(SortRecord record, DataInputStream reader) {
+			this._record = record;
+			this._reader = reader;
+		}
+	}
+}
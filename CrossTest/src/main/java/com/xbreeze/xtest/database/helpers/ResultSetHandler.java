@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.xbreeze.xtest.exception.XTestException;
+
+/**
+ * Handles the rows of a streamed query result, see DatabaseCommandExecutor.executeCommandWithStreamedResult
+ * @author Willem
+ *
+ */
+@FunctionalInterface
+public interface ResultSetHandler {
+	
+	/**
+	 * Handle the rows of a result, which can only be read forward
+	 * @param resultSet the result, positioned before the first row
+	 * @throws SQLException
+	 * @throws XTestException
+	 */
+	void handle(ResultSet resultSet) throws SQLException, XTestException;
+}
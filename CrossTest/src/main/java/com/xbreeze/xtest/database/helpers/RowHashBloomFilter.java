@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+/**
+ * Bloom filter over the hashes of a row hash index, used when a large result is compared with a small one.
+ * The filter fits in the processor cache, so most rows which aren't in the index are rejected without probing the index itself.
+ * The bit positions are derived from the two halves of the 128-bit row hash, which are already well mixed.
+ * The filter is only read after it is built, so it can be used by multiple threads.
+ * @author Willem
+ *
+ */
+public class RowHashBloomFilter implements RowHashLookup {
+	
+	//The number of bits per hash and the number of bits set per hash, giving about 1% false positives
+	private static final int BITS_PER_HASH = 10;
+	private static final int HASH_FUNCTIONS = 7;
+	
+	private final RowHashIndex _index;
+	private final long[] _bits;
+	private final int _bitMask;
+	
+	/**
+	 * Build the filter over all hashes in an index.
+	 * @param index The index, which is probed for the hashes that pass the filter.
+	 */
+	public RowHashBloomFilter(RowHashIndex index) {
+		this._index = index;
+		int bitCount = 64;
+		while (bitCount < index.size() * BITS_PER_HASH && bitCount < (1 << 30)) {
+			bitCount <<= 1;
+		}
+		this._bits = new long[bitCount >>> 6];
+		this._bitMask = bitCount - 1;
+		for (int slot = 0; slot < index.getCapacity(); slot++) {
+			if (index.isUsed(slot)) {
+				this.put(index.getHashHigh(slot), index.getHashLow(slot));
+			}
+		}
+	}
+	
+	private void put(long hashHigh, long hashLow) {
+		for (int i = 0; i < HASH_FUNCTIONS; i++) {
+			int bit = (int)(hashLow + i * hashHigh) & this._bitMask;
+			this._bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+	
+	/**
+	 * @param hashHigh The high 64 bits of the row hash.
+	 * @param hashLow The low 64 bits of the row hash.
+	 * @return false if the hash is certainly not in the index, true if it might be.
+	 */
+	public boolean mightContain(long hashHigh, long hashLow) {
+		for (int i = 0; i < HASH_FUNCTIONS; i++) {
+			int bit = (int)(hashLow + i * hashHigh) & this._bitMask;
+			if ((this._bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Find the slot of a row hash in the index, only probing the index if the hash passes the filter.
+	 */
+	@Override
+	public int find(long hashHigh, long hashLow) {
+		return this.mightContain(hashHigh, hashLow) ? this._index.find(hashHigh, hashLow) : -1;
+	}
+}
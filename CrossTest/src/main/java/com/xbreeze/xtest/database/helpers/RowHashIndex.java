@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing index of 128-bit row hashes, used to compare records of the actual and expected result.
+ * Per unique hash the number of occurrences and the row numbers (1-based, in order of adding) are stored in primitive arrays.
+ * @author Willem
+ *
+ */
+public class RowHashIndex implements RowHashLookup {
+	private static final int EMPTY = 0;
+	
+	private long[] _hashHigh;
+	private long[] _hashLow;
+	/**
+	 * The number of occurrences per slot, 0 means the slot is empty.
+	 */
+	private int[] _counts;
+	private int[] _firstRow;
+	private int[] _lastRow;
+	/**
+	 * The next row number with the same hash per row number, 0 means there is no next row.
+	 */
+	private int[] _nextRow;
+	private int _size;
+	private int _rowCount;
+	
+	public RowHashIndex() {
+		this(16);
+	}
+	
+	/**
+	 * @param expectedRows The expected number of rows, used to size the index.
+	 */
+	public RowHashIndex(int expectedRows) {
+		int capacity = 16;
+		while (capacity < expectedRows * 2 && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		this.allocate(capacity);
+		this._nextRow = new int[Math.max(expectedRows, 16) + 1];
+	}
+	
+	/**
+	 * Add a row hash to the index.
+	 * @param hashHigh The high 64 bits of the row hash.
+	 * @param hashLow The low 64 bits of the row hash.
+	 * @param rowNumber The row number (1-based).
+	 * @return The number of occurrences of the hash including this row.
+	 */
+	public int add(long hashHigh, long hashLow, int rowNumber) {
+		if ((this._size + 1) * 2 > this._counts.length) {
+			this.resize(this._counts.length << 1);
+		}
+		if (rowNumber >= this._nextRow.length) {
+			this._nextRow = Arrays.copyOf(this._nextRow, Math.max(rowNumber + 1, this._nextRow.length << 1));
+		}
+		this._rowCount++;
+		int slot = this.findSlot(hashHigh, hashLow);
+		if (this._counts[slot] == EMPTY) {
+			this._hashHigh[slot] = hashHigh;
+			this._hashLow[slot] = hashLow;
+			this._firstRow[slot] = rowNumber;
+			this._lastRow[slot] = rowNumber;
+			this._counts[slot] = 1;
+			this._size++;
+		}
+		else {
+			this._nextRow[this._lastRow[slot]] = rowNumber;
+			this._lastRow[slot] = rowNumber;
+			this._counts[slot]++;
+		}
+		return this._counts[slot];
+	}
+	
+	/**
+	 * Find the slot of a row hash.
+	 * @param hashHigh The high 64 bits of the row hash.
+	 * @param hashLow The low 64 bits of the row hash.
+	 * @return The slot of the hash, or -1 if the hash is not in the index.
+	 */
+	@Override
+	public int find(long hashHigh, long hashLow) {
+		int slot = this.findSlot(hashHigh, hashLow);
+		return this._counts[slot] == EMPTY ? -1 : slot;
+	}
+	
+	/**
+	 * Returns the number of occurrences of a row hash
+	 * @param hashHigh The high 64 bits of the row hash.
+	 * @param hashLow The low 64 bits of the row hash.
+	 * @return The number of occurrences, 0 if the hash is not in the index.
+	 */
+	public int getOccurences(long hashHigh, long hashLow) {
+		return this._counts[this.findSlot(hashHigh, hashLow)];
+	}
+	
+	/**
+	 * @return The number of unique row hashes.
+	 */
+	public int size() {
+		return this._size;
+	}
+	
+	/**
+	 * @return The total number of rows added.
+	 */
+	public int getRowCount() {
+		return this._rowCount;
+	}
+	
+	/**
+	 * @return The number of slots, slots can be iterated from 0 to the capacity (exclusive).
+	 */
+	public int getCapacity() {
+		return this._counts.length;
+	}
+	
+	public boolean isUsed(int slot) {
+		return this._counts[slot] != EMPTY;
+	}
+	
+	public long getHashHigh(int slot) {
+		return this._hashHigh[slot];
+	}
+	
+	public long getHashLow(int slot) {
+		return this._hashLow[slot];
+	}
+	
+	public int getOccurences(int slot) {
+		return this._counts[slot];
+	}
+	
+	/**
+	 * @param slot The slot.
+	 * @return The first row number having the hash of the slot.
+	 */
+	public int getFirstRow(int slot) {
+		return this._firstRow[slot];
+	}
+	
+	/**
+	 * @param rowNumber A row number.
+	 * @return The next row number having the same hash, or 0 if there is none.
+	 */
+	public int getNextRow(int rowNumber) {
+		return this._nextRow[rowNumber];
+	}
+	
+	/**
+	 * Returns the row numbers having the hash of the slot, in ascending order.
+	 * @param slot The slot.
+	 * @return The row numbers.
+	 */
+	public int[] getRows(int slot) {
+		int[] rows = new int[this._counts[slot]];
+		int row = this._firstRow[slot];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = row;
+			row = this._nextRow[row];
+		}
+		return rows;
+	}
+	
+	private int findSlot(long hashHigh, long hashLow) {
+		int mask = this._counts.length - 1;
+		int slot = (int) (hashLow ^ (hashLow >>> 32)) & mask;
+		while (this._counts[slot] != EMPTY && (this._hashHigh[slot] != hashHigh || this._hashLow[slot] != hashLow)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	private void allocate(int capacity) {
+		this._hashHigh = new long[capacity];
+		this._hashLow = new long[capacity];
+		this._counts = new int[capacity];
+		this._firstRow = new int[capacity];
+		this._lastRow = new int[capacity];
+	}
+	
+	private void resize(int capacity) {
+		long[] oldHashHigh = this._hashHigh;
+		long[] oldHashLow = this._hashLow;
+		int[] oldCounts = this._counts;
+		int[] oldFirstRow = this._firstRow;
+		int[] oldLastRow = this._lastRow;
+		this.allocate(capacity);
+		for (int i = 0; i < oldCounts.length; i++) {
+			if (oldCounts[i] != EMPTY) {
+				int slot = this.findSlot(oldHashHigh[i], oldHashLow[i]);
+				this._hashHigh[slot] = oldHashHigh[i];
+				this._hashLow[slot] = oldHashLow[i];
+				this._counts[slot] = oldCounts[i];
+				this._firstRow[slot] = oldFirstRow[i];
+				this._lastRow[slot] = oldLastRow[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+/**
+ * Looks up a 128-bit row hash in the hashes of a result.
+ * @author Willem
+ *
+ */
+@FunctionalInterface
+public interface RowHashLookup {
+	
+	/**
+	 * Find the slot of a row hash.
+	 * @param hashHigh The high 64 bits of the row hash.
+	 * @param hashLow The low 64 bits of the row hash.
+	 * @return The slot of the hash, or -1 if the hash is not found.
+	 */
+	int find(long hashHigh, long hashLow);
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+/**
+ * Streaming 128-bit row hasher (MurmurHash3 x64 128) used to compare records of the actual and expected result.
+ * Every field is fed with its length as prefix, so adjacent fields can't shift into each other (f.e. 'ab','c' vs. 'a','bc').
+ * The characters are fed as UTF-16 code units, so no string encoding or intermediate concatenation is needed.
+ * @author Willem
+ *
+ */
+public class RowHasher {
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private long _h1;
+	private long _h2;
+	private long _k1;
+	private long _k2;
+	/**
+	 * The number of bytes in the current (not yet processed) 16 byte block.
+	 */
+	private int _blockBytes;
+	/**
+	 * The total number of bytes fed since the last reset.
+	 */
+	private long _length;
+	
+	private long _hashHigh;
+	private long _hashLow;
+	
+	public RowHasher() {
+		this.reset();
+	}
+	
+	/**
+	 * Start hashing a new row.
+	 */
+	public void reset() {
+		this._h1 = 0;
+		this._h2 = 0;
+		this._k1 = 0;
+		this._k2 = 0;
+		this._blockBytes = 0;
+		this._length = 0;
+	}
+	
+	/**
+	 * Add a field value to the current row hash. A null value is treated as an empty string.
+	 * @param value The field value.
+	 */
+	public void putField(String value) {
+		int length = (value == null) ? 0 : value.length();
+		this.putUnit(length >>> 16);
+		this.putUnit(length);
+		for (int i = 0; i < length; i++) {
+			this.putUnit(value.charAt(i));
+		}
+	}
+	
+	/**
+	 * Add characters to the current row hash without a length prefix, so a value can be hashed in parts while it is read.
+	 * @param chars The buffer with the characters.
+	 * @param offset The position of the first character in the buffer.
+	 * @param count The number of characters.
+	 */
+	public void putChars(char[] chars, int offset, int count) {
+		for (int i = offset; i < offset + count; i++) {
+			this.putUnit(chars[i]);
+		}
+	}
+	
+	/**
+	 * Add bytes to the current row hash without a length prefix, so a value can be hashed in parts while it is read.
+	 * Every byte is fed as a unit.
+	 * @param bytes The buffer with the bytes.
+	 * @param offset The position of the first byte in the buffer.
+	 * @param count The number of bytes.
+	 */
+	public void putBytes(byte[] bytes, int offset, int count) {
+		for (int i = offset; i < offset + count; i++) {
+			this.putUnit(bytes[i] & 0xff);
+		}
+	}
+	
+	/**
+	 * Finish the hash of the current row, the result is available through getHashHigh and getHashLow.
+	 */
+	public void finish() {
+		long h1 = this._h1;
+		long h2 = this._h2;
+		// Process the remaining bytes of the last block.
+		if (this._blockBytes > 8) {
+			long k2 = this._k2 * C2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= C1;
+			h2 ^= k2;
+		}
+		if (this._blockBytes > 0) {
+			long k1 = this._k1 * C1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= C2;
+			h1 ^= k1;
+		}
+		h1 ^= this._length;
+		h2 ^= this._length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		h2 += h1;
+		this._hashHigh = h1;
+		this._hashLow = h2;
+	}
+	
+	/**
+	 * @return The high 64 bits of the last finished row hash.
+	 */
+	public long getHashHigh() {
+		return this._hashHigh;
+	}
+	
+	/**
+	 * @return The low 64 bits of the last finished row hash.
+	 */
+	public long getHashLow() {
+		return this._hashLow;
+	}
+	
+	/**
+	 * Add a 16 bit unit to the current block (little endian). Since all input is fed in 16 bit units, a unit never spans two longs of the block.
+	 * @param unit The unit to add, only the lower 16 bits are used.
+	 */
+	private void putUnit(int unit) {
+		long bits = ((long) (unit & 0xffff)) << ((this._blockBytes & 7) << 3);
+		if (this._blockBytes < 8) {
+			this._k1 |= bits;
+		}
+		else {
+			this._k2 |= bits;
+		}
+		this._blockBytes += 2;
+		this._length += 2;
+		if (this._blockBytes == 16) {
+			this.processBlock();
+		}
+	}
+	
+	private void processBlock() {
+		long k1 = this._k1 * C1;
+		k1 = Long.rotateLeft(k1, 31);
+		k1 *= C2;
+		this._h1 ^= k1;
+		this._h1 = Long.rotateLeft(this._h1, 27);
+		this._h1 += this._h2;
+		this._h1 = this._h1 * 5 + 0x52dce729;
+
+		long k2 = this._k2 * C2;
+		k2 = Long.rotateLeft(k2, 33);
+		k2 *= C1;
+		this._h2 ^= k2;
+		this._h2 = Long.rotateLeft(this._h2, 31);
+		this._h2 += this._h1;
+		this._h2 = this._h2 * 5 + 0x38495ab5;
+
+		this._k1 = 0;
+		this._k2 = 0;
+		this._blockBytes = 0;
+	}
+	
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A record of a result with its sort key and row hash, used when comparing results in sort order.
+ * @author Willem
+ *
+ */
+public class SortRecord {
+	private String[] _key;
+	private long _hashHigh;
+	private long _hashLow;
+	private int _rowNumber;
+	private String[] _record;
+	
+	/**
+	 * Constructor
+	 * @param key The values of the sort key columns.
+	 * @param hashHigh The high 64 bits of the row hash.
+	 * @param hashLow The low 64 bits of the row hash.
+	 * @param rowNumber The row number in the result (1-based).
+	 * @param record The values of all columns, used for reporting.
+	 */
+	public SortRecord(String[] key, long hashHigh, long hashLow, int rowNumber, String[] record) {
+		this._key = key;
+		this._hashHigh = hashHigh;
+		this._hashLow = hashLow;
+		this._rowNumber = rowNumber;
+		this._record = record;
+	}
+	
+	public String[] getKey() {
+		return this._key;
+	}
+	
+	public long getHashHigh() {
+		return this._hashHigh;
+	}
+	
+	public long getHashLow() {
+		return this._hashLow;
+	}
+	
+	public int getRowNumber() {
+		return this._rowNumber;
+	}
+	
+	public String[] getRecord() {
+		return this._record;
+	}
+	
+	/**
+	 * Write the record to a stream
+	 * @param out The stream.
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		writeValues(out, this._key);
+		out.writeLong(this._hashHigh);
+		out.writeLong(this._hashLow);
+		out.writeInt(this._rowNumber);
+		writeValues(out, this._record);
+	}
+	
+	/**
+	 * Read a record written with writeTo from a stream
+	 * @param in The stream.
+	 * @return The record.
+	 * @throws IOException
+	 */
+	public static SortRecord readFrom(DataInputStream in) throws IOException {
+		String[] key = readValues(in);
+		long hashHigh = in.readLong();
+		long hashLow = in.readLong();
+		int rowNumber = in.readInt();
+		String[] record = readValues(in);
+		return new SortRecord(key, hashHigh, hashLow, rowNumber, record);
+	}
+	
+	private static void writeValues(DataOutputStream out, String[] values) throws IOException {
+		out.writeInt(values.length);
+		for (String value : values) {
+			// A length of -1 marks a null value
+			if (value == null) {
+				out.writeInt(-1);
+			}
+			else {
+				out.writeInt(value.length());
+				out.writeChars(value);
+			}
+		}
+	}
+	
+	private static String[] readValues(DataInputStream in) throws IOException {
+		String[] values = new String[in.readInt()];
+		for (int i = 0; i < values.length; i++) {
+			int length = in.readInt();
+			if (length >= 0) {
+				char[] chars = new char[length];
+				for (int c = 0; c < length; c++) {
+					chars[c] = in.readChar();
+				}
+				values[i] = new String(chars);
+			}
+		}
+		return values;
+	}
+}
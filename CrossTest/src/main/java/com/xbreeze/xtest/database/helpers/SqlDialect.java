@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+
+/**
+ * The SQL syntax which differs per database product and is needed to compare results on the database server.
+ * @author Willem
+ *
+ */
+public enum SqlDialect {
+	SQLSERVER,
+	ORACLE,
+	TERADATA,
+	/**
+	 * ANSI SQL, as supported by f.e. PostgreSQL, DB2 and Snowflake
+	 */
+	ANSI;
+	
+	private static final AtomicInteger _temporaryTableCounter = new AtomicInteger();
+	
+	/**
+	 * Determine the dialect of the database a connection is connected to
+	 * @param connection the connection
+	 * @return the dialect, ANSI if the database product is not recognized
+	 * @throws XTestDatabaseException
+	 */
+	public static SqlDialect forConnection(Connection connection) throws XTestDatabaseException {
+		try {
+			String productName = connection.getMetaData().getDatabaseProductName().toLowerCase();
+			if (productName.contains("microsoft sql server")) {
+				return SQLSERVER;
+			}
+			else if (productName.contains("oracle")) {
+				return ORACLE;
+			}
+			else if (productName.contains("teradata")) {
+				return TERADATA;
+			}
+			return ANSI;
+		}
+		catch (SQLException exc) {
+			throw XTestDatabaseException.createXTestDatabaseException("Error getting the database product name", exc);
+		}
+	}
+	
+	/**
+	 * Get a name for a new temporary table, unique within the run
+	 * @param baseName the base name of the table
+	 * @return the temporary table name
+	 */
+	public String getTemporaryTableName(String baseName) {
+		String tableName = String.format("%s_%d", baseName, _temporaryTableCounter.incrementAndGet());
+		switch (this) {
+		case SQLSERVER:
+			return "#".concat(tableName);
+		case ORACLE:
+			// Private temporary tables need the configured prefix, which is ORA$PTT_ by default
+			return "ORA$PTT_".concat(tableName);
+		default:
+			return tableName;
+		}
+	}
+	
+	/**
+	 * Get the statement to create a temporary table, only visible to the session, with the structure of the result of a query
+	 * @param temporaryTableName the temporary table name
+	 * @param query the query, which should not return rows
+	 * @return the create statement
+	 */
+	public String getCreateTemporaryTableStatement(String temporaryTableName, String query) {
+		switch (this) {
+		case SQLSERVER:
+			// The union prevents the identity property of a column to be copied to the temporary table
+			return String.format("SELECT * INTO %s FROM (%s UNION ALL %s) t", temporaryTableName, query, query);
+		case ORACLE:
+			return String.format("CREATE PRIVATE TEMPORARY TABLE %s ON COMMIT PRESERVE DEFINITION AS %s", temporaryTableName, query);
+		case TERADATA:
+			return String.format("CREATE VOLATILE TABLE %s AS (%s) WITH NO DATA ON COMMIT PRESERVE ROWS", temporaryTableName, query);
+		default:
+			return String.format("CREATE TEMPORARY TABLE %s AS %s", temporaryTableName, query);
+		}
+	}
+	
+	/**
+	 * Get the statement to create a temporary table, only visible to the session, with a single column of a JDBC type
+	 * @param temporaryTableName the temporary table name
+	 * @param columnName the name of the column
+	 * @param sqlType the JDBC type of the column, types without a matching column type are stored as text
+	 * @param precision the precision of a decimal column
+	 * @param scale the scale of a decimal column
+	 * @return the create statement
+	 */
+	public String getCreateTemporaryTableStatement(String temporaryTableName, String columnName, int sqlType, int precision, int scale) {
+		String columnType = getColumnType(sqlType, precision, scale);
+		switch (this) {
+		case SQLSERVER:
+			return String.format("CREATE TABLE %s (%s %s)", temporaryTableName, columnName, columnType);
+		case ORACLE:
+			return String.format("CREATE PRIVATE TEMPORARY TABLE %s (%s %s) ON COMMIT PRESERVE DEFINITION", temporaryTableName, columnName, columnType);
+		case TERADATA:
+			return String.format("CREATE VOLATILE TABLE %s (%s %s) ON COMMIT PRESERVE ROWS", temporaryTableName, columnName, columnType);
+		default:
+			return String.format("CREATE TEMPORARY TABLE %s (%s %s)", temporaryTableName, columnName, columnType);
+		}
+	}
+	
+	/**
+	 * Get the column type of the dialect for a JDBC type, so the values of a temporary table compare with a column of that type without a conversion
+	 */
+	private String getColumnType(int sqlType, int precision, int scale) {
+		switch (sqlType) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+			return (this == ORACLE) ? "NUMBER(19)" : "BIGINT";
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			// The precision of a calculated column isn't always known, use the maximum precision supported by all dialects then
+			int decimalPrecision = (precision > 0 && precision <= 38) ? precision : 38;
+			int decimalScale = Math.max(0, Math.min(scale, decimalPrecision));
+			return String.format((this == ORACLE) ? "NUMBER(%d, %d)" : "DECIMAL(%d, %d)", decimalPrecision, decimalScale);
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return (this == ANSI) ? "DOUBLE PRECISION" : "FLOAT";
+		case Types.DATE:
+			return "DATE";
+		case Types.TIME:
+			// Oracle has no time type
+			return (this == ORACLE) ? "VARCHAR2(4000)" : "TIME";
+		case Types.TIMESTAMP:
+			return (this == SQLSERVER) ? "DATETIME2" : "TIMESTAMP";
+		default:
+			switch (this) {
+			case SQLSERVER:
+				return "NVARCHAR(4000)";
+			case ORACLE:
+				return "VARCHAR2(4000)";
+			default:
+				return "VARCHAR(4000)";
+			}
+		}
+	}
+	
+	/**
+	 * @param temporaryTableName the temporary table name
+	 * @return the statement to drop a temporary table
+	 */
+	public String getDropTemporaryTableStatement(String temporaryTableName) {
+		return String.format("DROP TABLE %s", temporaryTableName);
+	}
+	
+	/**
+	 * Get the expression to group and compare a character column on case sensitively, like values are compared in memory
+	 * @param columnName the formatted column name
+	 * @return the expression
+	 */
+	public String getCaseSensitiveExpression(String columnName) {
+		switch (this) {
+		case SQLSERVER:
+			return String.format("%s COLLATE Latin1_General_BIN2", columnName);
+		case TERADATA:
+			return String.format("%s (CASESPECIFIC)", columnName);
+		default:
+			return columnName;
+		}
+	}
+	
+	/**
+	 * Get the expression returning the length of the value of a character column including trailing spaces, for dialects which
+	 * ignore trailing spaces when comparing character values. Values which only differ in trailing spaces are different in memory.
+	 * @param columnName the formatted column name
+	 * @return the expression, or null if trailing spaces are compared
+	 */
+	public String getLengthExpression(String columnName) {
+		switch (this) {
+		case SQLSERVER:
+			return String.format("DATALENGTH(%s)", columnName);
+		case TERADATA:
+			return String.format("CHARACTER_LENGTH(%s)", columnName);
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the set operator returning the rows of the first query which are not in the second query
+	 */
+	public String getExceptOperator() {
+		return this == ORACLE ? "MINUS" : "EXCEPT";
+	}
+}
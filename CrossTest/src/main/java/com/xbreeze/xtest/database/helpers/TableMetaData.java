@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import javax.sql.RowSetMetaData;
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+/**
+ * Snapshot of the column definitions of a query result or table.
+ * The column information is copied from the ResultSetMetaData, so it can be used after the statement it was read from is closed.
+ * Column positions are 1-based, like in JDBC.
+ * @author Willem
+ *
+ */
+public class TableMetaData {
+	
+	private String[] _columnNames;
+	private int[] _columnTypes;
+	private String[] _columnTypeNames;
+	
+	public TableMetaData(ResultSetMetaData metaData) throws SQLException {
+		int columnCount = metaData.getColumnCount();
+		this._columnNames = new String[columnCount];
+		this._columnTypes = new int[columnCount];
+		this._columnTypeNames = new String[columnCount];
+		for (int i = 1; i <= columnCount; i++) {
+			this._columnNames[i - 1] = metaData.getColumnName(i);
+			this._columnTypes[i - 1] = metaData.getColumnType(i);
+			this._columnTypeNames[i - 1] = metaData.getColumnTypeName(i);
+		}
+	}
+	
+	/**
+	 * Create the column definitions from separate column properties, all arrays should have the same length
+	 * @param columnNames the column names in ordinal order
+	 * @param columnTypes the JDBC types of the columns
+	 * @param columnTypeNames the database specific type names of the columns
+	 */
+	public TableMetaData(String[] columnNames, int[] columnTypes, String[] columnTypeNames) {
+		this._columnNames = columnNames;
+		this._columnTypes = columnTypes;
+		this._columnTypeNames = columnTypeNames;
+	}
+	
+	public int getColumnCount() {
+		return this._columnNames.length;
+	}
+	
+	public String getColumnName(int columnPosition) {
+		return this._columnNames[columnPosition - 1];
+	}
+	
+	public int getColumnType(int columnPosition) {
+		return this._columnTypes[columnPosition - 1];
+	}
+	
+	public String getColumnTypeName(int columnPosition) {
+		return this._columnTypeNames[columnPosition - 1];
+	}
+	
+	/**
+	 * Create rowset metadata with the column definitions, for a rowset which only has the structure of a result
+	 * @return the rowset metadata
+	 * @throws SQLException
+	 */
+	public RowSetMetaData toRowSetMetaData() throws SQLException {
+		RowSetMetaDataImpl rowSetMetaData = new RowSetMetaDataImpl();
+		rowSetMetaData.setColumnCount(getColumnCount());
+		for (int i = 1; i <= getColumnCount(); i++) {
+			rowSetMetaData.setColumnName(i, getColumnName(i));
+			rowSetMetaData.setColumnLabel(i, getColumnName(i));
+			rowSetMetaData.setColumnType(i, getColumnType(i));
+			rowSetMetaData.setColumnTypeName(i, getColumnTypeName(i));
+			// The nullability isn't cached, so don't require a value when a record is inserted in the rowset
+			rowSetMetaData.setNullable(i, ResultSetMetaData.columnNullableUnknown);
+		}
+		return rowSetMetaData;
+	}
+}
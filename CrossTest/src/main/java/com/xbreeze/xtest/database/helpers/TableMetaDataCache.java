@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.database.helpers;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.config.DatabaseServerConfig;
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+
+/**
+ * Cache of table definitions, so the definition of a table doesn't need to be queried for every insert.
+ * The definitions are cached on database server, catalog, schema and table name (with the template applied).
+ * Depending on the metaDataCache setting of the database server config, definitions are kept for the scenario (in this instance) 
+ * or for the complete run (shared by all instances). The definitions cached for the run are removed when the config of the server is read again.
+ * @author Willem
+ *
+ */
+public class TableMetaDataCache {
+	
+	static final Logger logger = Logger.getLogger(TableMetaDataCache.class.getName());
+	// Statements which can change the structure of a table
+	private static final Pattern DDL_STATEMENT_PATTERN = Pattern.compile("\\b(CREATE|ALTER|DROP|RENAME|SP_RENAME)\\b", Pattern.CASE_INSENSITIVE);
+	
+	private static final Map<String, TableMetaData> _runMetaData = new ConcurrentHashMap<>();
+	private static final Set<String> _runLoadedSchemas = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	// The server configs the definitions for the run are cached for by server name, a config file which is read again gives new server configs
+	private static final Map<String, DatabaseServerConfig> _runServerConfigs = new ConcurrentHashMap<>();
+	private final Map<String, TableMetaData> _scenarioMetaData = new HashMap<>();
+	private final Set<String> _scenarioLoadedSchemas = new HashSet<>();
+	
+	/**
+	 * Get the cached definition of a table
+	 * @param dbConfig the database config of the table
+	 * @param tableName the table name, with the template applied
+	 * @return the definition or null if it is not cached or caching is disabled
+	 */
+	public TableMetaData get(DatabaseConfig dbConfig, String tableName) {
+		if (!dbConfig.getDatabaseServerConfig().isMetaDataCacheEnabled()) {
+			return null;
+		}
+		return getMetaData(dbConfig).get(getTableKey(dbConfig, tableName));
+	}
+	
+	/**
+	 * Add the definition of a table to the cache, if caching is enabled
+	 * @param dbConfig the database config of the table
+	 * @param tableName the table name, with the template applied
+	 * @param metaData the definition of the table
+	 */
+	public void put(DatabaseConfig dbConfig, String tableName, TableMetaData metaData) {
+		if (dbConfig.getDatabaseServerConfig().isMetaDataCacheEnabled()) {
+			getMetaData(dbConfig).put(getTableKey(dbConfig, tableName), metaData);
+		}
+	}
+	
+	/**
+	 * Remove the definition of a table from the cache
+	 * @param dbConfig the database config of the table
+	 * @param tableName the table name, with the template applied
+	 */
+	public void remove(DatabaseConfig dbConfig, String tableName) {
+		String tableKey = getTableKey(dbConfig, tableName);
+		_runMetaData.remove(tableKey);
+		_scenarioMetaData.remove(tableKey);
+	}
+	
+	/**
+	 * Remove all cached definitions of the database server of a database config, for example because the structure of a table is changed
+	 * @param dbConfig the database config
+	 */
+	public void invalidate(DatabaseConfig dbConfig) {
+		String serverKey = getServerKey(dbConfig.getDatabaseServerConfig());
+		logger.info(String.format("Clearing cached table definitions of database server %s", dbConfig.getDatabaseServerConfig().getName()));
+		_runMetaData.keySet().removeIf(key -> key.startsWith(serverKey));
+		_runLoadedSchemas.removeIf(key -> key.startsWith(serverKey));
+		_scenarioMetaData.keySet().removeIf(key -> key.startsWith(serverKey));
+		_scenarioLoadedSchemas.removeIf(key -> key.startsWith(serverKey));
+	}
+	
+	/**
+	 * Check whether a command can change the structure of a table, so the cached definitions should be removed
+	 * @param sqlCommand the command
+	 * @return true if the command contains a DDL keyword
+	 */
+	public static boolean isStructureChange(String sqlCommand) {
+		return sqlCommand != null && DDL_STATEMENT_PATTERN.matcher(sqlCommand).find();
+	}
+	
+	/**
+	 * Check whether the definitions of all tables in the schema of a database config should be loaded
+	 * @param dbConfig the database config
+	 * @return true if preloading is enabled, the database config has a schema and the schema is not loaded yet
+	 */
+	public boolean needsPreload(DatabaseConfig dbConfig) {
+		DatabaseServerConfig serverConfig = dbConfig.getDatabaseServerConfig();
+		return serverConfig.isMetaDataCacheEnabled() && serverConfig.isPreloadMetaData() && emptyToNull(dbConfig.getSchema()) != null 
+				&& !getLoadedSchemas(dbConfig).contains(getSchemaKey(dbConfig));
+	}
+	
+	/**
+	 * Load the definitions of all tables in the catalog and schema of a database config at once
+	 * @param connection the connection to use
+	 * @param dbConfig the database config
+	 * @throws XTestDatabaseException
+	 */
+	public void preload(Connection connection, DatabaseConfig dbConfig) throws XTestDatabaseException {
+		logger.info(String.format("Loading table definitions for catalog '%s' and schema '%s' of database config %s", dbConfig.getCatalog(), dbConfig.getSchema(), dbConfig.getName()));
+		Map<String, TableMetaData> metaData = getMetaData(dbConfig);
+		String tableName = null;
+		List<String> columnNames = new ArrayList<>();
+		List<Integer> columnTypes = new ArrayList<>();
+		List<String> columnTypeNames = new ArrayList<>();
+		try {
+			DatabaseMetaData databaseMetaData = connection.getMetaData();
+			// The columns are returned ordered on schema, table and ordinal position
+			try (ResultSet rs = databaseMetaData.getColumns(emptyToNull(dbConfig.getCatalog()), dbConfig.getSchema(), null, null)) {
+				while (rs.next()) {
+					// The schema is a search pattern, so skip the columns of other schemas matching it
+					if (!dbConfig.getSchema().equalsIgnoreCase(rs.getString("TABLE_SCHEM"))) {
+						continue;
+					}
+					String columnTableName = rs.getString("TABLE_NAME");
+					if (tableName != null && !tableName.equals(columnTableName)) {
+						metaData.put(getTableKey(dbConfig, tableName), toTableMetaData(columnNames, columnTypes, columnTypeNames));
+						columnNames.clear();
+						columnTypes.clear();
+						columnTypeNames.clear();
+					}
+					tableName = columnTableName;
+					columnNames.add(rs.getString("COLUMN_NAME"));
+					columnTypes.add(rs.getInt("DATA_TYPE"));
+					columnTypeNames.add(rs.getString("TYPE_NAME"));
+				}
+				if (tableName != null) {
+					metaData.put(getTableKey(dbConfig, tableName), toTableMetaData(columnNames, columnTypes, columnTypeNames));
+				}
+			}
+		} catch (SQLException exc) {
+			throw XTestDatabaseException.createXTestDatabaseException(String.format("Error loading table definitions for database config %s", dbConfig.getName()), exc);
+		}
+		getLoadedSchemas(dbConfig).add(getSchemaKey(dbConfig));
+	}
+	
+	private static TableMetaData toTableMetaData(List<String> columnNames, List<Integer> columnTypes, List<String> columnTypeNames) {
+		int[] types = new int[columnTypes.size()];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = columnTypes.get(i);
+		}
+		return new TableMetaData(columnNames.toArray(new String[columnNames.size()]), types, columnTypeNames.toArray(new String[columnTypeNames.size()]));
+	}
+	
+	private static String emptyToNull(String value) {
+		return (value == null || value.isEmpty()) ? null : value;
+	}
+	
+	private Map<String, TableMetaData> getMetaData(DatabaseConfig dbConfig) {
+		if (dbConfig.getDatabaseServerConfig().isMetaDataCachedForRun()) {
+			checkRunServerConfig(dbConfig.getDatabaseServerConfig());
+			return _runMetaData;
+		}
+		return _scenarioMetaData;
+	}
+	
+	private Set<String> getLoadedSchemas(DatabaseConfig dbConfig) {
+		if (dbConfig.getDatabaseServerConfig().isMetaDataCachedForRun()) {
+			checkRunServerConfig(dbConfig.getDatabaseServerConfig());
+			return _runLoadedSchemas;
+		}
+		return _scenarioLoadedSchemas;
+	}
+	
+	/**
+	 * Remove the definitions cached for the run of a server when its config is read again, since it may connect to another database
+	 */
+	private static void checkRunServerConfig(DatabaseServerConfig serverConfig) {
+		DatabaseServerConfig previousServerConfig = _runServerConfigs.put(serverConfig.getName().toLowerCase(), serverConfig);
+		if (previousServerConfig != null && previousServerConfig != serverConfig) {
+			String serverKey = getServerKey(serverConfig);
+			logger.info(String.format("Clearing cached table definitions of database server %s, since its config is read again", serverConfig.getName()));
+			_runMetaData.keySet().removeIf(key -> key.startsWith(serverKey));
+			_runLoadedSchemas.removeIf(key -> key.startsWith(serverKey));
+		}
+	}
+	
+	private static String getServerKey(DatabaseServerConfig serverConfig) {
+		return serverConfig.getName().toLowerCase().concat("|");
+	}
+	
+	private static String getSchemaKey(DatabaseConfig dbConfig) {
+		return getServerKey(dbConfig.getDatabaseServerConfig())
+				.concat(dbConfig.getCatalog() == null ? "" : dbConfig.getCatalog().toLowerCase()).concat("|")
+				.concat(dbConfig.getSchema() == null ? "" : dbConfig.getSchema().toLowerCase()).concat("|");
+	}
+	
+	private static String getTableKey(DatabaseConfig dbConfig, String tableName) {
+		return getSchemaKey(dbConfig).concat(tableName.toLowerCase());
+	}
+}
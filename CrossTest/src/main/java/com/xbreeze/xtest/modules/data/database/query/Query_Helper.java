@@ -1,25 +1,44 @@
 package com.xbreeze.xtest.modules.data.database.query;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.xbreeze.xtest.database.helpers.DatabaseCommandExecutor;
+import com.xbreeze.xtest.config.DatabaseConfig;
 import com.xbreeze.xtest.config.XTestConfig;
 import com.xbreeze.xtest.database.helpers.DataHelper;
 import com.xbreeze.xtest.exception.XTestException;
 import com.xbreeze.xtest.modules.data.database.Database_Helper;
 import com.xbreeze.xtest.result.ResultContext;
+import com.xbreeze.xtest.result.SharedVariableCache;
 
 import com.xbreeze.xtest.exception.XTestDatabaseException;
 
 import javax.sql.rowset.CachedRowSet;
 
 public class Query_Helper extends Database_Helper {
-
+	
 	public Query_Helper(ResultContext resultContext, DataHelper dataHelper, XTestConfig config) throws XTestException {
 		super(resultContext, dataHelper, config);
 	}
 	
 	public void ExecuteTheFollowingQueryOnConnection(String dbConfig,String query) throws XTestDatabaseException {
-		query = _resultContext.substituteVariables(query);
-		CachedRowSet crs = DatabaseCommandExecutor.executeCommandWithCachedResult(getConnection(dbConfig), query, _config.getDatabaseConfig(dbConfig));
+		DatabaseConfig databaseConfig = _config.getDatabaseConfig(dbConfig);
+		List<Object> parameters = new ArrayList<>();
+		query = substituteVariables(databaseConfig, query, parameters);
+		CachedRowSet crs;
+		try {
+			if (!parameters.isEmpty()) {
+				crs = DatabaseCommandExecutor.executePreparedCommandWithCachedResult(_dataHelper.getPreparedStatement(databaseConfig, query), parameters, databaseConfig);
+			}
+			else {
+				crs = DatabaseCommandExecutor.executeCommandWithCachedResult(getConnection(dbConfig), query, databaseConfig);
+			}
+		}
+		finally {
+			//A query can change the structure of a table before it returns a result, also when a later part fails
+			_dataHelper.invalidateTableMetaData(databaseConfig, query);
+		}
 		//Set result context if the query resulted in a result set.
 		if (crs != null) {
 			_resultContext.setResult(crs);
@@ -28,8 +47,37 @@ public class Query_Helper extends Database_Helper {
 	}
 
 	public void ExecuteTheFollowingStatementOnConnection(String dbConfig, String statement) throws XTestDatabaseException {
-		statement = _resultContext.substituteVariables(statement);
-		DatabaseCommandExecutor.executeCommandWithoutResult(getConnection(dbConfig), statement, _config.getDatabaseConfig(dbConfig));		
+		DatabaseConfig databaseConfig = _config.getDatabaseConfig(dbConfig);
+		List<Object> parameters = new ArrayList<>();
+		statement = substituteVariables(databaseConfig, statement, parameters);
+		try {
+			if (!parameters.isEmpty()) {
+				DatabaseCommandExecutor.executePreparedCommandWithoutResult(_dataHelper.getPreparedStatement(databaseConfig, statement), parameters, databaseConfig);
+			}
+			else {
+				DatabaseCommandExecutor.executeCommandWithoutResult(getConnection(dbConfig), statement, databaseConfig);
+			}
+		}
+		finally {
+			//The structure of a table can be changed by the part of the statement executed before a failure
+			_dataHelper.invalidateTableMetaData(databaseConfig, statement);
+		}
+		SharedVariableCache.invalidateStatement(statement);
+	}
+	
+	/**
+	 * Substitute the variables in a statement, when variables are bound on the database config the variables with a literal value are 
+	 * replaced by a parameter instead, so the statement can be prepared once and reused
+	 * @param databaseConfig the database config the statement is executed on
+	 * @param text the statement
+	 * @param parameters the list to which the values of the bound variables are added
+	 * @return the statement text
+	 */
+	private String substituteVariables(DatabaseConfig databaseConfig, String text, List<Object> parameters) throws XTestDatabaseException {
+		if (databaseConfig.getResolvedBindVariables()) {
+			return _resultContext.parameterizeVariables(text, parameters, databaseConfig);
+		}
+		return _resultContext.substituteVariables(text);
 	}
 
 	
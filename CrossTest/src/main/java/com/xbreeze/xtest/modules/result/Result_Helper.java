@@ -1,5 +1,6 @@
 package com.xbreeze.xtest.modules.result;
 
+import com.xbreeze.xtest.config.CompositeObjectConfig;
 import com.xbreeze.xtest.config.XTestConfig;
 import com.xbreeze.xtest.database.helpers.DataHelper;
 import com.xbreeze.xtest.exception.XTestException;
@@ -19,8 +20,51 @@ public class Result_Helper extends Database_Helper{
 		_resultContext.compareResult(results);
 	}
 	
+	public void CompareExpectedAndActualResultWithMaxDifferences(int maxDifferences, DataTable results) throws Throwable{
+		//Compare the expected results with the actual results, stopping after the maximum number of differences
+		_resultContext.compareResult(results, maxDifferences);
+	}
+	
+	public void CompareExpectedAndActualOrderedResult(DataTable results) throws Throwable{
+		//Compare the expected results with the actual results in order, record by record
+		_resultContext.compareOrderedResult(results);
+	}
+	
+	public void CompareExpectedAndActualOrderedResultOnFields(String orderFields, DataTable results) throws Throwable{
+		//Compare the expected results with the actual results in order, reading the records of a table ordered by the fields
+		_resultContext.compareOrderedResult(results, CompositeObjectConfig.parseKeyFieldNames(orderFields));
+	}
+	
+	public void CompareExpectedAndActualResultOnKey(String keyFields, DataTable results) throws Throwable{
+		//Compare the expected results with the actual results, matching the records on the key fields
+		_resultContext.compareKeyedResult(results, CompositeObjectConfig.parseKeyFieldNames(keyFields));
+	}
+	
+	public void CompareExpectedAndActualResultOnKeyOfObject(String compositeObject, DataTable results) throws Throwable{
+		//Compare the expected results with the actual results, matching the records on the key fields of the composite object
+		_resultContext.compareKeyedResult(results, _config.getCompositeObjectConfig(compositeObject).getKeyFieldNames());
+	}
+	
+	public void CompareExpectedContainedInActualResultOnKey(String keyFields, DataTable results) throws Throwable{
+		//Check the actual results contain the expected results, only reading the records with an expected key
+		_resultContext.compareContainedResult(results, CompositeObjectConfig.parseKeyFieldNames(keyFields));
+	}
+	
 	public void StoreContentsOfFieldInVariable(String fieldName, String variableName) throws Throwable{
 		_resultContext.setVariable(fieldName, variableName);
 	}
+	
+	public void DefineSharedVariable(String scope, String variableName, String fieldName, String dbConfig, String tableNames, String query) throws Throwable{
+		//Define a variable shared by the scenarios of the feature or run, the query is executed when the variable is first used
+		_resultContext.defineSharedVariable(scope, variableName, fieldName, query, _config.getDatabaseConfig(dbConfig), CompositeObjectConfig.parseKeyFieldNames(tableNames));
+	}
+	
+	public void InvalidateSharedVariable(String scope, String variableName) throws Throwable{
+		_resultContext.invalidateSharedVariable(scope, variableName);
+	}
+	
+	public void SetFeature(String feature) {
+		_resultContext.setFeature(feature);
+	}
 
 }
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.database.helpers.DataHelper;
+import com.xbreeze.xtest.database.helpers.DatabaseCommandExecutor;
+import com.xbreeze.xtest.database.helpers.SqlDialect;
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+import com.xbreeze.xtest.result.VariableTemplate.ColumnTableProvider;
+
+/**
+ * Loads the values of a column variable in a temporary table, so a column with more values than can be bound as parameters can be used
+ * in a query as a subquery. The table is loaded once per connection and kept for the scenario.
+ * @author Willem
+ *
+ */
+public class ColumnVariableTable implements ColumnTableProvider {
+	static final Logger logger = Logger.getLogger(ColumnVariableTable.class.getName());
+	
+	private static final String VALUE_COLUMN = "XTEST_VALUE";
+	
+	private DataHelper _dataHelper;
+	private DatabaseConfig _dbConfig;
+	
+	/**
+	 * Constructor
+	 * @param dataHelper the data helper
+	 * @param dbConfig the database config the statement using the variable is executed on
+	 */
+	public ColumnVariableTable(DataHelper dataHelper, DatabaseConfig dbConfig) {
+		this._dataHelper = dataHelper;
+		this._dbConfig = dbConfig;
+	}
+	
+	@Override
+	public String getColumnQuery(ResultVariable column) throws XTestDatabaseException {
+		String serverName = this._dbConfig.getDatabaseServerConfig().getName();
+		String temporaryTableName = column.getTemporaryTable(serverName);
+		if (temporaryTableName == null) {
+			temporaryTableName = load(column);
+			column.setTemporaryTable(serverName, temporaryTableName);
+		}
+		return String.format("SELECT %s FROM %s", VALUE_COLUMN, temporaryTableName);
+	}
+	
+	/**
+	 * Create a temporary table and insert the values of the column in batches
+	 * @return the name of the temporary table
+	 */
+	private String load(ResultVariable column) throws XTestDatabaseException {
+		Connection connection = this._dataHelper.getConnection(this._dbConfig);
+		SqlDialect dialect = SqlDialect.forConnection(connection);
+		String temporaryTableName = dialect.getTemporaryTableName("xtest_variable");
+		logger.info(String.format("Loading %d values of a variable in %s", column.size(), temporaryTableName));
+		DatabaseCommandExecutor.executeCommandWithoutResult(connection, dialect.getCreateTemporaryTableStatement(temporaryTableName, VALUE_COLUMN, column.getSqlType(), column.getPrecision(), column.getScale()), this._dbConfig);
+		// Drop the table when the connection is returned to a pool, since the session outlives the scenario then
+		this._dataHelper.registerTemporaryTable(this._dbConfig, temporaryTableName);
+		int batchSize = this._dbConfig.getResolvedInsertBatchSize();
+		try (PreparedStatement stmt = connection.prepareStatement(String.format("INSERT INTO %s (%s) VALUES (?)", temporaryTableName, VALUE_COLUMN))) {
+			int rowsInBatch = 0;
+			for (int row = 0; row < column.size(); row++) {
+				stmt.setObject(1, column.getValue(row));
+				stmt.addBatch();
+				if (batchSize > 0 && ++rowsInBatch >= batchSize) {
+					stmt.executeBatch();
+					rowsInBatch = 0;
+				}
+			}
+			stmt.executeBatch();
+		}
+		catch (SQLException exc) {
+			throw XTestDatabaseException.createXTestDatabaseException(String.format("Error loading the values of a variable in %s", temporaryTableName), exc);
+		}
+		return temporaryTableName;
+	}
+}
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.sql.rowset.CachedRowSet;
+
+import com.xbreeze.xtest.CucumberDataComparison.DifferenceReport;
+import com.xbreeze.xtest.CucumberDataComparison.Exceptions.CucumberDataComparisonException;
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.database.helpers.DataHelper;
+import com.xbreeze.xtest.database.helpers.DatabaseCommandExecutor;
+import com.xbreeze.xtest.database.helpers.LobValue;
+import com.xbreeze.xtest.database.helpers.RowHashIndex;
+import com.xbreeze.xtest.database.helpers.SqlDialect;
+import com.xbreeze.xtest.database.helpers.TableMetaData;
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+import com.xbreeze.xtest.exception.XTestException;
+
+import io.cucumber.datatable.DataTable;
+
+/**
+ * Compares the data of a table with the expected result on the database server.
+ * The expected result is written to a temporary table with the structure of the compared columns. The rows of both are grouped with
+ * their number of occurrences and the differences are determined using EXCEPT (or MINUS) in both directions, so only the differences are read.
+ * Character columns are compared case sensitively and including trailing spaces, like values are compared in memory.
+ * @author Willem
+ *
+ */
+public class DatabaseResultComparison {
+	static final Logger logger = Logger.getLogger(DatabaseResultComparison.class.getName());
+	private static final String OCCURRENCES_COLUMN_NAME = "XTEST_OCCURRENCES";
+	private static final String LENGTH_COLUMN_PREFIX = "XTEST_LENGTH_";
+	
+	private ResultContext _resultContext;
+	private DataHelper _dataHelper;
+	private DatabaseConfig _dbConfig;
+	private String _tableName;
+	// The JDBC types of the compared columns
+	private int[] _columnTypes;
+	
+	/**
+	 * Constructor
+	 * @param resultContext the result context, used to create the difference reports
+	 * @param dataHelper the data helper
+	 * @param dbConfig the database config of the table
+	 * @param tableName the qualified table name
+	 */
+	public DatabaseResultComparison(ResultContext resultContext, DataHelper dataHelper, DatabaseConfig dbConfig, String tableName) {
+		this._resultContext = resultContext;
+		this._dataHelper = dataHelper;
+		this._dbConfig = dbConfig;
+		this._tableName = tableName;
+	}
+	
+	/**
+	 * Check if an expected result can be compared on the database server, which requires all columns to have a name.
+	 * Large object columns can't be grouped or used in EXCEPT or MINUS on most databases, so a result with these columns is compared in memory.
+	 * @param expectedResults the expected result
+	 * @return true if the expected result can be compared on the database server
+	 * @throws XTestException
+	 */
+	public boolean isSupported(DataTable expectedResults) throws XTestException {
+		List<List<String>> list = expectedResults.asLists();
+		if (list.size() == 0) {
+			return false;
+		}
+		for (String colName : list.get(0)) {
+			if (colName == null || colName.trim().length() == 0) {
+				return false;
+			}
+		}
+		try {
+			ResultSetMetaData meta = this._dataHelper.getStructureResult(this._dataHelper.getSQLSelectFrom(expectedResults, this._tableName, this._dbConfig), this._dbConfig).getMetaData();
+			this._columnTypes = new int[meta.getColumnCount()];
+			for (int i = 1; i <= meta.getColumnCount(); i++) {
+				int columnType = meta.getColumnType(i);
+				if (LobValue.isLobType(columnType) || columnType == Types.LONGVARCHAR || columnType == Types.LONGNVARCHAR) {
+					logger.info(String.format("Column %s is a large object, comparing %s in memory instead of on the database server", meta.getColumnName(i), this._tableName));
+					return false;
+				}
+				this._columnTypes[i - 1] = columnType;
+			}
+		}
+		catch (SQLException exc) {
+			throw new XTestDatabaseException(String.format("Error reading the structure of %s: %s", this._tableName, exc.getMessage()));
+		}
+		return true;
+	}
+	
+	/**
+	 * Compare the table with the expected result, isSupported should be checked first
+	 * @param expectedResults the expected result
+	 * @param maxDifferences the number of differing grouped rows read from each difference query, 0 means all differences are read
+	 * @throws XTestException
+	 */
+	public void compare(DataTable expectedResults, int maxDifferences) throws XTestException {
+		if (this._columnTypes == null && !isSupported(expectedResults)) {
+			throw new XTestException(String.format("The expected result of %s can't be compared on the database server", this._tableName));
+		}
+		Connection connection = this._dataHelper.getConnection(this._dbConfig);
+		SqlDialect dialect = SqlDialect.forConnection(connection);
+		List<String> columnNames = expectedResults.asLists().get(0);
+		String columnList = getColumnList(columnNames);
+		String temporaryTableName = dialect.getTemporaryTableName("xtest_expected");
+		
+		logger.info(String.format("Comparing %s on the database server using %s", this._tableName, temporaryTableName));
+		DatabaseCommandExecutor.executeCommandWithoutResult(connection, dialect.getCreateTemporaryTableStatement(temporaryTableName, String.format("SELECT %s FROM %s WHERE 1 = 0", columnList, this._tableName)), this._dbConfig);
+		try {
+			TableMetaData meta = DatabaseCommandExecutor.getTableMetaData(connection, String.format("SELECT * FROM %s WHERE 1 = 0", temporaryTableName), this._dbConfig);
+			this._dataHelper.writeDataTableToTable(connection, temporaryTableName, meta, expectedResults, this._dbConfig);
+			
+			logger.info("Comparing expected against actual");
+			CachedRowSet expectedDifferences = DatabaseCommandExecutor.executeCommandWithCachedResult(connection, getDifferenceQuery(dialect, columnNames, temporaryTableName, this._tableName), this._dbConfig, maxDifferences);
+			logger.info("Comparing actual against expected");
+			CachedRowSet actualDifferences = DatabaseCommandExecutor.executeCommandWithCachedResult(connection, getDifferenceQuery(dialect, columnNames, this._tableName, temporaryTableName), this._dbConfig, maxDifferences);
+			reportDifferences(expectedDifferences, actualDifferences, maxDifferences);
+		}
+		finally {
+			try {
+				DatabaseCommandExecutor.executeCommandWithoutResult(connection, dialect.getDropTemporaryTableStatement(temporaryTableName), this._dbConfig);
+			}
+			catch (XTestDatabaseException exc) {
+				logger.warning(String.format("Error dropping temporary table %s: %s", temporaryTableName, exc.getMessage()));
+			}
+		}
+	}
+	
+	/**
+	 * Get the query returning the grouped rows of the base table which are not in the compare-with table with the same number of occurrences
+	 * @param dialect the SQL dialect
+	 * @param columnNames the columns to compare
+	 * @param baseTableName the base table
+	 * @param compareWithTableName the table to compare with
+	 * @return the query
+	 */
+	private String getDifferenceQuery(SqlDialect dialect, List<String> columnNames, String baseTableName, String compareWithTableName) {
+		return getGroupedQuery(dialect, columnNames, baseTableName)
+				.concat(" ").concat(dialect.getExceptOperator()).concat(" ")
+				.concat(getGroupedQuery(dialect, columnNames, compareWithTableName));
+	}
+	
+	/**
+	 * Get the query grouping the rows of a table on the compared columns, with the number of occurrences after the compared columns.
+	 * Character columns are grouped case sensitively and, if the dialect ignores trailing spaces, on their length as well. The lengths are
+	 * returned after the number of occurrences.
+	 */
+	private String getGroupedQuery(SqlDialect dialect, List<String> columnNames, String tableName) {
+		StringBuilder selectList = new StringBuilder();
+		StringBuilder groupByList = new StringBuilder();
+		StringBuilder lengthSelectList = new StringBuilder();
+		StringBuilder lengthGroupByList = new StringBuilder();
+		for (int i = 0; i < columnNames.size(); i++) {
+			String columnName = this._dbConfig.getFormattedColumnName(columnNames.get(i));
+			String expression = columnName;
+			if (isCharacterType(this._columnTypes[i])) {
+				expression = dialect.getCaseSensitiveExpression(columnName);
+				String lengthExpression = dialect.getLengthExpression(columnName);
+				if (lengthExpression != null) {
+					lengthSelectList.append(", ").append(lengthExpression).append(" AS ").append(LENGTH_COLUMN_PREFIX).append(i + 1);
+					lengthGroupByList.append(", ").append(lengthExpression);
+				}
+			}
+			if (i > 0) {
+				selectList.append(", ");
+				groupByList.append(", ");
+			}
+			selectList.append(expression.equals(columnName) ? columnName : String.format("%s AS %s", expression, columnName));
+			groupByList.append(expression);
+		}
+		return String.format("SELECT %s, COUNT(*) AS %s%s FROM %s GROUP BY %s%s", selectList, OCCURRENCES_COLUMN_NAME, lengthSelectList, tableName, groupByList, lengthGroupByList);
+	}
+	
+	private static boolean isCharacterType(int columnType) {
+		return columnType == Types.CHAR || columnType == Types.VARCHAR || columnType == Types.NCHAR || columnType == Types.NVARCHAR;
+	}
+	
+	private String getColumnList(List<String> columnNames) {
+		StringBuilder columnList = new StringBuilder();
+		for (String columnName : columnNames) {
+			if (columnList.length() > 0) {
+				columnList.append(", ");
+			}
+			columnList.append(this._dbConfig.getFormattedColumnName(columnName));
+		}
+		return columnList.toString();
+	}
+	
+	/**
+	 * Report the differences. A row in both differences has a different number of occurrences, the other rows are not found.
+	 * @param expectedDifferences the grouped expected rows which are not in the actual result with the same number of occurrences
+	 * @param actualDifferences the grouped actual rows which are not in the expected result with the same number of occurrences
+	 * @param maxDifferences the maximum number of grouped rows read from each difference query, 0 means all rows are read
+	 * @throws XTestException
+	 */
+	private void reportDifferences(CachedRowSet expectedDifferences, CachedRowSet actualDifferences, int maxDifferences) throws XTestException {
+		try {
+			int occurrencesColumn = this._columnTypes.length + 1;
+			LinkedList<String> fieldNames = new LinkedList<>();
+			for (int i = 1; i < occurrencesColumn; i++) {
+				fieldNames.add(expectedDifferences.getMetaData().getColumnName(i).toLowerCase());
+			}
+			// Match the differences in memory, using the same value conversion as the comparison in memory
+			RowHashIndex expectedHashes = this._dataHelper.getRowHashIndex(expectedDifferences, fieldNames);
+			RowHashIndex actualHashes = this._dataHelper.getRowHashIndex(actualDifferences, fieldNames);
+			BitSet expectedRowsToReport = new BitSet();
+			BitSet actualRowsToReport = new BitSet();
+			StringBuilder findingsSB = new StringBuilder();
+			for (int expectedSlot = 0; expectedSlot < expectedHashes.getCapacity(); expectedSlot++) {
+				if (!expectedHashes.isUsed(expectedSlot)) {
+					continue;
+				}
+				int actualSlot = actualHashes.find(expectedHashes.getHashHigh(expectedSlot), expectedHashes.getHashLow(expectedSlot));
+				if (actualSlot == -1) {
+					for (int row = expectedHashes.getFirstRow(expectedSlot); row != 0; row = expectedHashes.getNextRow(row)) {
+						expectedRowsToReport.set(row);
+					}
+				}
+				else {
+					int expectedOccurrences = getOccurrences(expectedDifferences, expectedHashes, expectedSlot, occurrencesColumn);
+					int actualOccurrences = getOccurrences(actualDifferences, actualHashes, actualSlot, occurrencesColumn);
+					if (expectedOccurrences != actualOccurrences) {
+						expectedDifferences.absolute(expectedHashes.getFirstRow(expectedSlot));
+						String record = String.join(", ", Arrays.copyOf(this._dataHelper.rowSetRecordToArray(expectedDifferences), occurrencesColumn - 1));
+						findingsSB.append(String.format("expected record (%s) has a different number of duplicate rows in the expected and actual result (%d rows vs %d rows).", record, expectedOccurrences, actualOccurrences)).append("\n");
+						logger.info(String.format("expected record (%s) has a different number of duplicate rows in the expected and actual result (%d rows vs %d rows).", record, expectedOccurrences, actualOccurrences));
+					}
+					// Mark the actual rows as matched, so they aren't reported as not expected
+					for (int row = actualHashes.getFirstRow(actualSlot); row != 0; row = actualHashes.getNextRow(row)) {
+						actualRowsToReport.set(row);
+					}
+				}
+			}
+			actualRowsToReport.flip(1, actualHashes.getRowCount() + 1);
+			
+			DifferenceReport expectedNotFound = getRecordsToReport("expected", expectedDifferences, expectedRowsToReport, "actual", occurrencesColumn, "expected_not_found_", findingsSB);
+			DifferenceReport foundNotExpected = getRecordsToReport("actual", actualDifferences, actualRowsToReport, "expected", occurrencesColumn, "found_not_expected_", findingsSB);
+			// The differences after the maximum number aren't read, so rows with a different number of occurrences may be reported as not found
+			if (maxDifferences > 0 && (expectedDifferences.size() >= maxDifferences || actualDifferences.size() >= maxDifferences)) {
+				ResultContext.addMaxDifferencesFinding(maxDifferences, findingsSB);
+			}
+			
+			String findings = findingsSB.toString();
+			if (findings.length() > 0) {
+				throw new CucumberDataComparisonException(findings, expectedNotFound, foundNotExpected);
+			}
+		}
+		catch (SQLException exc) {
+			throw new XTestDatabaseException(exc.getMessage());
+		}
+	}
+	
+	/**
+	 * Get the total number of occurrences of the grouped rows having the hash of a slot
+	 */
+	private int getOccurrences(CachedRowSet differences, RowHashIndex hashes, int slot, int occurrencesColumn) throws SQLException {
+		int occurrences = 0;
+		for (int row = hashes.getFirstRow(slot); row != 0; row = hashes.getNextRow(row)) {
+			differences.absolute(row);
+			occurrences += differences.getInt(occurrencesColumn);
+		}
+		return occurrences;
+	}
+	
+	/**
+	 * Add the rows to report to a difference report, every row is added as many times as it occurs
+	 */
+	private DifferenceReport getRecordsToReport(String baseSetName, CachedRowSet differences, BitSet rowsToReport, String compareWithSetName, int occurrencesColumn, String reportFilePrefix, StringBuilder findingsSB) throws XTestException, SQLException {
+		if (rowsToReport.isEmpty()) {
+			return null;
+		}
+		String[] header = this._dataHelper.rowSetHeader(differences);
+		DifferenceReport recordsToReport = this._resultContext.createDifferenceReport(Arrays.copyOf(header, occurrencesColumn - 1), reportFilePrefix);
+		try {
+			try {
+				for (int row = rowsToReport.nextSetBit(0); row != -1; row = rowsToReport.nextSetBit(row + 1)) {
+					differences.absolute(row);
+					String[] record = Arrays.copyOf(this._dataHelper.rowSetRecordToArray(differences), occurrencesColumn - 1);
+					int occurrences = differences.getInt(occurrencesColumn);
+					for (int i = 0; i < occurrences; i++) {
+						recordsToReport.addRecord(record);
+						if (!recordsToReport.isTruncated()) {
+							findingsSB.append(String.format("%s record not found in %s result ", baseSetName, compareWithSetName)).append("\n");
+							logger.info(String.format("%s record not found in %s result ", baseSetName, compareWithSetName));
+						}
+					}
+				}
+				if (recordsToReport.isTruncated()) {
+					int recordsNotShown = recordsToReport.getRecordCount() - recordsToReport.getInlineRecords().size();
+					findingsSB.append(String.format("%d more %s records not found in %s result ", recordsNotShown, baseSetName, compareWithSetName)).append("\n");
+					logger.info(String.format("%d more %s records not found in %s result ", recordsNotShown, baseSetName, compareWithSetName));
+				}
+			}
+			finally {
+				recordsToReport.close();
+			}
+		}
+		catch (IOException exc) {
+			throw new XTestException(String.format("Error writing records of %s results: %s", baseSetName, exc.getMessage()));
+		}
+		return recordsToReport;
+	}
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.sql.RowSet;
+import javax.sql.rowset.CachedRowSet;
+
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.database.helpers.DataHelper;
+import com.xbreeze.xtest.database.helpers.DatabaseCommandExecutor;
+import com.xbreeze.xtest.database.helpers.RowHashIndex;
+import com.xbreeze.xtest.database.helpers.SqlDialect;
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+import com.xbreeze.xtest.exception.XTestException;
+
+/**
+ * Retrieves only the records of a table with a key that is in the expected result, so the number of records read depends on the size of 
+ * the expected result instead of the size of the table. When the keys fit in the maximum number of parameters they are bound in the
+ * where clause of the query, otherwise they are written to a temporary table which is used to filter the records.
+ * @author Willem
+ *
+ */
+public class ExpectedKeyFilter {
+	static final Logger logger = Logger.getLogger(ExpectedKeyFilter.class.getName());
+	
+	private static final String ACTUAL_ALIAS = "XTEST_ACTUAL";
+	private static final String KEYS_ALIAS = "XTEST_KEYS";
+	
+	private DataHelper _dataHelper;
+	private DatabaseConfig _dbConfig;
+	private String _tableName;
+	
+	/**
+	 * Constructor
+	 * @param dataHelper the data helper
+	 * @param dbConfig the database config of the table
+	 * @param tableName the qualified table name
+	 */
+	public ExpectedKeyFilter(DataHelper dataHelper, DatabaseConfig dbConfig, String tableName) {
+		this._dataHelper = dataHelper;
+		this._dbConfig = dbConfig;
+		this._tableName = tableName;
+	}
+	
+	/**
+	 * Retrieve the records of the table with a key in the expected result
+	 * @param selectQuery the query selecting the compared columns from the table, without where clause
+	 * @param expectedResult the expected result, with the same structure as the query result
+	 * @param keyFields the lower case names of the key fields
+	 * @return the records with a key in the expected result
+	 * @throws XTestException
+	 */
+	public CachedRowSet retrieve(String selectQuery, RowSet expectedResult, LinkedList<String> keyFields) throws XTestException {
+		Connection connection = this._dataHelper.getConnection(this._dbConfig);
+		try {
+			// Determine the positions and names of the key columns
+			ResultSetMetaData meta = expectedResult.getMetaData();
+			List<Integer> keyColumns = new ArrayList<>();
+			List<String> keyColumnNames = new ArrayList<>();
+			for (int i = 1; i <= meta.getColumnCount(); i++) {
+				if (keyFields.contains(meta.getColumnName(i).toLowerCase())) {
+					keyColumns.add(i);
+					keyColumnNames.add(this._dbConfig.getFormattedColumnName(meta.getColumnName(i)));
+				}
+			}
+			
+			// Collect the distinct keys of the expected result
+			RowHashIndex expectedKeys = this._dataHelper.getRowHashIndex(expectedResult, keyFields);
+			List<Object[]> keys = new ArrayList<>(expectedKeys.size());
+			for (int slot = 0; slot < expectedKeys.getCapacity(); slot++) {
+				if (expectedKeys.isUsed(slot)) {
+					expectedResult.absolute(expectedKeys.getFirstRow(slot));
+					Object[] key = new Object[keyColumns.size()];
+					for (int i = 0; i < key.length; i++) {
+						key[i] = expectedResult.getObject(keyColumns.get(i));
+					}
+					keys.add(key);
+				}
+			}
+			
+			int maxParameters = this._dbConfig.getResolvedMaxKeyFilterParameters();
+			if (keys.size() * keyColumns.size() <= maxParameters) {
+				return retrieveWithParameters(connection, selectQuery, keyColumnNames, keys);
+			}
+			return retrieveWithTemporaryTable(connection, selectQuery, keyColumnNames, keys);
+		}
+		catch (SQLException exc) {
+			throw XTestDatabaseException.createXTestDatabaseException("Error filtering the records on the keys of the expected result", exc);
+		}
+	}
+	
+	/**
+	 * Retrieve the records with the keys bound as parameters: an IN list for a single key column, otherwise a condition per key
+	 */
+	private CachedRowSet retrieveWithParameters(Connection connection, String selectQuery, List<String> keyColumnNames, List<Object[]> keys) throws XTestException {
+		logger.info(String.format("Filtering the records on %d keys using parameters", keys.size()));
+		List<Object> parameters = new ArrayList<>();
+		StringBuilder whereClause = new StringBuilder();
+		if (keyColumnNames.size() == 1) {
+			boolean hasNullKey = false;
+			for (Object[] key : keys) {
+				if (key[0] == null) {
+					hasNullKey = true;
+				}
+				else {
+					whereClause.append((parameters.size() > 0) ? ", " : "").append("?");
+					parameters.add(key[0]);
+				}
+			}
+			String inList = (parameters.size() > 0) ? String.format("%s IN (%s)", keyColumnNames.get(0), whereClause) : "1 = 0";
+			whereClause = new StringBuilder(hasNullKey ? String.format("%s OR %s IS NULL", inList, keyColumnNames.get(0)) : inList);
+		}
+		else {
+			for (Object[] key : keys) {
+				whereClause.append((whereClause.length() > 0) ? " OR (" : "(");
+				for (int i = 0; i < key.length; i++) {
+					whereClause.append((i > 0) ? " AND " : "");
+					if (key[i] == null) {
+						whereClause.append(String.format("%s IS NULL", keyColumnNames.get(i)));
+					}
+					else {
+						whereClause.append(String.format("%s = ?", keyColumnNames.get(i)));
+						parameters.add(key[i]);
+					}
+				}
+				whereClause.append(")");
+			}
+		}
+		return DatabaseCommandExecutor.executeCommandWithCachedResult(connection, String.format("%s WHERE %s", selectQuery, whereClause), this._dbConfig, parameters);
+	}
+	
+	/**
+	 * Retrieve the records with a key in a temporary table, which is loaded with the keys of the expected result
+	 */
+	private CachedRowSet retrieveWithTemporaryTable(Connection connection, String selectQuery, List<String> keyColumnNames, List<Object[]> keys) throws XTestException, SQLException {
+		SqlDialect dialect = SqlDialect.forConnection(connection);
+		String temporaryTableName = dialect.getTemporaryTableName("xtest_keys");
+		String keyColumnList = String.join(", ", keyColumnNames);
+		// The select query ends with the table name, so the alias can be added to it
+		String tableQuery = selectQuery.concat(" ").concat(ACTUAL_ALIAS);
+		
+		logger.info(String.format("Filtering the records on %d keys using %s", keys.size(), temporaryTableName));
+		DatabaseCommandExecutor.executeCommandWithoutResult(connection, dialect.getCreateTemporaryTableStatement(temporaryTableName, String.format("SELECT %s FROM %s WHERE 1 = 0", keyColumnList, this._tableName)), this._dbConfig);
+		try {
+			// Load the keys in batches
+			int batchSize = this._dbConfig.getResolvedInsertBatchSize();
+			String parameterList = String.join(", ", Collections.nCopies(keyColumnNames.size(), "?"));
+			try (PreparedStatement stmt = connection.prepareStatement(String.format("INSERT INTO %s (%s) VALUES (%s)", temporaryTableName, keyColumnList, parameterList))) {
+				int rowsInBatch = 0;
+				for (Object[] key : keys) {
+					for (int i = 0; i < key.length; i++) {
+						stmt.setObject(i + 1, key[i]);
+					}
+					stmt.addBatch();
+					if (batchSize > 0 && ++rowsInBatch >= batchSize) {
+						stmt.executeBatch();
+						rowsInBatch = 0;
+					}
+				}
+				stmt.executeBatch();
+			}
+			
+			// The keys are matched on plain equality, so the database can use a hash or merge join.
+			// Null keys are matched too, like in the where clause with parameters, using a separate condition for each combination of null key columns in the expected keys
+			Set<BitSet> nullKeyColumnSets = new LinkedHashSet<>();
+			for (Object[] key : keys) {
+				BitSet nullKeyColumns = new BitSet(key.length);
+				for (int i = 0; i < key.length; i++) {
+					if (key[i] == null) {
+						nullKeyColumns.set(i);
+					}
+				}
+				nullKeyColumnSets.add(nullKeyColumns);
+			}
+			StringBuilder whereClause = new StringBuilder();
+			for (BitSet nullKeyColumns : nullKeyColumnSets) {
+				StringBuilder joinCondition = new StringBuilder();
+				for (int i = 0; i < keyColumnNames.size(); i++) {
+					joinCondition.append((i > 0) ? " AND " : "")
+						.append(String.format(nullKeyColumns.get(i) ? "%2$s.%1$s IS NULL AND %3$s.%1$s IS NULL" : "%2$s.%1$s = %3$s.%1$s", keyColumnNames.get(i), KEYS_ALIAS, ACTUAL_ALIAS));
+				}
+				whereClause.append((whereClause.length() > 0) ? " OR " : "")
+					.append(String.format("EXISTS (SELECT 1 FROM %s %s WHERE %s)", temporaryTableName, KEYS_ALIAS, joinCondition));
+			}
+			return DatabaseCommandExecutor.executeCommandWithCachedResult(connection, String.format("%s WHERE %s", tableQuery, whereClause), this._dbConfig);
+		}
+		finally {
+			try {
+				DatabaseCommandExecutor.executeCommandWithoutResult(connection, dialect.getDropTemporaryTableStatement(temporaryTableName), this._dbConfig);
+			}
+			catch (XTestDatabaseException exc) {
+				logger.warning(String.format("Error dropping temporary table %s: %s", temporaryTableName, exc.getMessage()));
+			}
+		}
+	}
+}
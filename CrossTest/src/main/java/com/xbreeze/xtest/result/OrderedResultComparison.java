@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import javax.sql.RowSet;
+
+import com.xbreeze.xtest.CucumberDataComparison.DifferenceReport;
+import com.xbreeze.xtest.CucumberDataComparison.Exceptions.CucumberDataComparisonException;
+import com.xbreeze.xtest.database.helpers.ColumnConverter;
+import com.xbreeze.xtest.database.helpers.DataHelper;
+import com.xbreeze.xtest.exception.XTestException;
+
+/**
+ * Compares the expected result with an actual result record by record, in the order of both results.
+ * Only the current record of each result is compared, so the actual result can be streamed. The comparison stops
+ * after the maximum number of differences of the database config.
+ * @author Willem
+ *
+ */
+public class OrderedResultComparison {
+	static final Logger logger = Logger.getLogger(OrderedResultComparison.class.getName());
+	
+	private ResultContext _resultContext;
+	private DataHelper _dataHelper;
+	private int _maxDifferences;
+	
+	/**
+	 * Constructor
+	 * @param resultContext the result context, used to create the difference reports
+	 * @param dataHelper the data helper
+	 * @param maxDifferences the number of differences after which the comparison stops, 0 means no limit
+	 */
+	public OrderedResultComparison(ResultContext resultContext, DataHelper dataHelper, int maxDifferences) {
+		this._resultContext = resultContext;
+		this._dataHelper = dataHelper;
+		this._maxDifferences = maxDifferences;
+	}
+	
+	/**
+	 * Compare the expected and actual result in lockstep
+	 * @param actualResult the actual result, positioned before the first record
+	 * @param expectedResult the expected result
+	 * @param fieldsToCheck the fields to compare
+	 * @throws XTestException
+	 * @throws CucumberDataComparisonException
+	 */
+	public void compare(ResultSet actualResult, RowSet expectedResult, LinkedList<String> fieldsToCheck) throws XTestException, CucumberDataComparisonException {
+		StringBuilder findingsSB = new StringBuilder();
+		DifferenceReport expectedNotFound = this._resultContext.createDifferenceReport(this._dataHelper.rowSetHeader(expectedResult), "expected_not_found_");
+		DifferenceReport foundNotExpected = this._resultContext.createDifferenceReport(this._dataHelper.rowSetHeader(actualResult), "found_not_expected_");
+		int differences = 0;
+		int recordNumber = 0;
+		try {
+			try {
+				ColumnConverter[] expectedConverters = this._dataHelper.getHashConverters(expectedResult, fieldsToCheck);
+				ColumnConverter[] actualConverters = this._dataHelper.getHashConverters(actualResult, fieldsToCheck);
+				expectedResult.beforeFirst();
+				boolean hasExpected = expectedResult.next();
+				boolean hasActual = actualResult.next();
+				while ((hasExpected || hasActual) && (this._maxDifferences == 0 || differences < this._maxDifferences)) {
+					recordNumber++;
+					String finding = null;
+					if (!hasActual) {
+						finding = String.format("expected record %d not found in actual result ", recordNumber);
+						expectedNotFound.addRecord(this._dataHelper.rowSetRecordToArray(expectedResult));
+					}
+					else if (!hasExpected) {
+						finding = String.format("actual record %d not found in expected result ", recordNumber);
+						foundNotExpected.addRecord(this._dataHelper.rowSetRecordToArray(actualResult));
+					}
+					else {
+						String columnDifferences = getColumnDifferences(expectedConverters, expectedResult, actualConverters, actualResult);
+						if (columnDifferences.length() > 0) {
+							finding = String.format("record %d is different from the expected record: %s", recordNumber, columnDifferences);
+							expectedNotFound.addRecord(this._dataHelper.rowSetRecordToArray(expectedResult));
+							foundNotExpected.addRecord(this._dataHelper.rowSetRecordToArray(actualResult));
+						}
+					}
+					if (finding != null) {
+						differences++;
+						findingsSB.append(finding).append("\n");
+						logger.info(finding);
+					}
+					if (hasExpected) {
+						hasExpected = expectedResult.next();
+					}
+					if (hasActual) {
+						hasActual = actualResult.next();
+					}
+				}
+				// The remaining records are not read, so it is unknown whether they are different
+				if (hasExpected || hasActual) {
+					findingsSB.append(String.format("Comparison stopped at record %d after %d differences ", recordNumber, differences)).append("\n");
+					logger.info(String.format("Comparison stopped at record %d after %d differences ", recordNumber, differences));
+				}
+				else {
+					logger.info(String.format("Compared %d records in order", recordNumber));
+				}
+			}
+			finally {
+				expectedNotFound.close();
+				foundNotExpected.close();
+			}
+		}
+		catch (IOException exc) {
+			throw new XTestException(String.format("Error writing records of results: %s", exc.getMessage()));
+		}
+		catch (SQLException exc) {
+			throw new XTestException(String.format("Error comparing results in order: %s", exc.getMessage()));
+		}
+		
+		//Findings should be an empty string
+		String findings = findingsSB.toString();
+		if (findings.length() > 0) {
+			throw new CucumberDataComparisonException(findings, 
+					(expectedNotFound.getRecordCount() > 0) ? expectedNotFound : null, 
+					(foundNotExpected.getRecordCount() > 0) ? foundNotExpected : null);
+		}
+	}
+	
+	/**
+	 * Get the compared columns of which the value of the current records is different
+	 * @return the differences as column (expected value vs actual value), or an empty string if the records are equal
+	 */
+	private static String getColumnDifferences(ColumnConverter[] expectedConverters, ResultSet expectedResult, ColumnConverter[] actualConverters, ResultSet actualResult) throws SQLException, XTestException {
+		StringBuilder differencesSB = new StringBuilder();
+		for (int i = 0; i < expectedConverters.length; i++) {
+			String expectedValue = expectedConverters[i].getValue(expectedResult);
+			String actualValue = actualConverters[i].getValue(actualResult);
+			if (!Objects.equals(expectedValue, actualValue)) {
+				if (differencesSB.length() > 0) {
+					differencesSB.append(", ");
+				}
+				differencesSB.append(String.format("%s ('%s' vs '%s')", expectedConverters[i].getColumnName(), expectedValue, actualValue));
+			}
+		}
+		return differencesSB.toString();
+	}
+}
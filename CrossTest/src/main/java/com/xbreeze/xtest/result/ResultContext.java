@@ -22,11 +22,17 @@
  *******************************************************************************/
 package com.xbreeze.xtest.result;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.IntUnaryOperator;
 import java.util.logging.Logger;
 
 import javax.sql.RowSet;
@@ -35,11 +41,22 @@ import javax.sql.rowset.CachedRowSet;
 import javax.sql.rowset.RowSetFactory;
 import javax.sql.rowset.RowSetProvider;
 
+import com.xbreeze.xtest.CucumberDataComparison.DifferenceReport;
 import com.xbreeze.xtest.CucumberDataComparison.Exceptions.CucumberDataComparisonException;
 import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.config.DatabaseServerConfig;
+import com.xbreeze.xtest.config.XTestConfig;
+import com.xbreeze.xtest.database.helpers.ColumnConverter;
 import com.xbreeze.xtest.database.helpers.DataHelper;
 import com.xbreeze.xtest.database.helpers.DatabaseCommandExecutor;
-import com.xbreeze.xtest.database.helpers.RecordInformation;
+import com.xbreeze.xtest.database.helpers.ExpectedResult;
+import com.xbreeze.xtest.database.helpers.ParallelRowHasher;
+import com.xbreeze.xtest.database.helpers.ParallelRowHasher.HashedRowHandler;
+import com.xbreeze.xtest.database.helpers.RowHashBloomFilter;
+import com.xbreeze.xtest.database.helpers.RowHashIndex;
+import com.xbreeze.xtest.database.helpers.RowHashLookup;
+import com.xbreeze.xtest.database.helpers.RowHasher;
+import com.xbreeze.xtest.database.helpers.TableMetaData;
 import com.xbreeze.xtest.exception.XTestDatabaseException;
 import com.xbreeze.xtest.exception.XTestException;
 import com.xbreeze.xtest.exception.XTestResultComparisonException;
@@ -56,14 +73,19 @@ public class ResultContext {
 	private RowSet _result;
 	private String _tableName;
 	private DatabaseConfig _dbconfig;
-	private HashMap<String,String> _variables;
+	private VariableStore _variables;
+	// The values of the shared variables loaded in the variables of the scenario, on their name
+	private HashMap<String, Object> _sharedValues = new HashMap<>();
+	// The values of shared variables computed in the transaction of the scenario, which aren't shared since the transaction is rolled back
+	private HashMap<SharedVariable, TransactionValue> _transactionValues = new HashMap<>();
+	private String _feature;
 	static final Logger logger = Logger.getLogger(ResultContext.class.getName());
 	public static final String VARIABLE_PREFIX = "XTestVariables."; 
 	private DataHelper _dataHelper;
 	private Boolean _inTransaction = false;
 	
 	public ResultContext() {
-		this._variables = new HashMap<>();		
+		this._variables = new VariableStore();		
 	}
 	
 	public void startTransaction() {
@@ -72,6 +94,7 @@ public class ResultContext {
 	
 	public void stopTransaction() {
 		this._inTransaction = false;
+		this._transactionValues.clear();
 	}
 	
 	public Boolean isInTransaction() {
@@ -111,27 +134,48 @@ public class ResultContext {
 	 * @throws XTestException exception is thrown when there is no resultset, the nr of rows in the resultset is not equal to one, the field name is not found in the resultset or the value for the field is null.
 	 */
 	public void setVariable(String fieldName, String variableName) throws XTestException {
+		if (this._result == null) {
+			throw new XTestException("No result is stored to read variable from");
+		}
+		storeVariable(variableName, readVariable(this._result, fieldName, variableName));
+		// A variable of the scenario hides a shared variable with the same name
+		this._sharedValues.remove(variableName);
+	}
+	
+	/**
+	 * Stores a value read by {@link #readVariable(RowSet, String, String)}
+	 */
+	private void storeVariable(String variableName, Object value) {
+		if (value instanceof ResultVariable) {
+			this._variables.putColumn(ResultContext.VARIABLE_PREFIX.concat(variableName), (ResultVariable)value);
+		}
+		else {
+			this._variables.put(ResultContext.VARIABLE_PREFIX.concat(variableName), (String)value);
+		}
+	}
+	
+	/**
+	 * Reads the value of a field from a result, a single value if the result has one record or the column of all records otherwise
+	 * @param result the result
+	 * @param fieldName the field to lookup in result set
+	 * @param variableName the variable name, used in messages
+	 * @return the text of the value, or a ResultVariable with the column
+	 * @throws XTestException exception is thrown when the result contains no records, the field name is not found in the result or a value for the field is null.
+	 */
+	private Object readVariable(RowSet result, String fieldName, String variableName) throws XTestException {
 		int columnToRead = -1;	
 		boolean isArray = false;
-		if (this._result == null) {
-				throw new XTestException("No result is stored to read variable from");
-			}
 			
 			try {
 				//move cursor to last row, if false no row was found
-				if (this._result.last()==false) {
+				if (result.last()==false) {
 					throw new XTestException(String.format("The result contains no rows to read variable %s from", variableName));
 				}		
 				
 				//Get row number of last row, if not one, isArray is true
-				if (this._result.getRow() != 1) {
+				if (result.getRow() != 1) {
 					isArray = true;
-					logger.info(String.format("Reading %d rows into variable %s", this._result.getRow(), variableName));
-				}
-				
-				//Limit records to read to 500
-				if (this._result.getRow() > 500) {
-					throw new XTestException(String.format("Trying to read %d records into variable %s from %s. the max no of records supported is 500", this._result.getRow(), variableName, fieldName));
+					logger.info(String.format("Reading %d rows into variable %s", result.getRow(), variableName));
 				}
 			} catch (SQLException e) {
 				throw new XTestException(XTestException.getCompositeErrorMessage("Error getting last record in result set for setting variable", e));
@@ -140,8 +184,8 @@ public class ResultContext {
 			
 			try {
 				//Lookup field name, if not found, throw error
-				for (int i = 1; i <= this._result.getMetaData().getColumnCount();i++) {
-					if (this._result.getMetaData().getColumnName(i).equalsIgnoreCase(fieldName)) {
+				for (int i = 1; i <= result.getMetaData().getColumnCount();i++) {
+					if (result.getMetaData().getColumnName(i).equalsIgnoreCase(fieldName)) {
 						columnToRead = i;					
 					}
 				}
@@ -149,17 +193,12 @@ public class ResultContext {
 					throw new XTestException(String.format("Field %s not found in resultset for setting variable", fieldName));
 				}
 				if (isArray == false) {
-					//Get result and store in variables hashmap
-					readVariableFromResult(fieldName, columnToRead, variableName);
+					//Get the single value
+					return readVariableFromResult(result, fieldName, columnToRead, variableName);
 				}
 				else {
-					this._result.beforeFirst();
-					int rowCount = 0;
-					while (this._result.next()) {
-						String arrVariableName = String.format("%s[%d]", variableName, rowCount);
-						readVariableFromResult(fieldName, columnToRead, arrVariableName);						
-						rowCount++;
-					}
+					//Read the column with its type, its values are referenced as variableName[index]
+					return ResultVariable.fromResult(result, fieldName, columnToRead);
 				}
 					
 			} catch (SQLException e) {
@@ -168,26 +207,145 @@ public class ResultContext {
 	}
 	
 	/**
-	 * Reads a value from the result set's current record and stores it under the given variable name
+	 * Reads a value from the result set's current record
+	 * @param result the result
 	 * @param fieldName the column name to read
 	 * @param columnToRead the column position to read
 	 * @param variableName the variable name to use
+	 * @return the value
 	 */
-	private void readVariableFromResult(String fieldName, int columnToRead, String variableName) throws XTestException {
+	private String readVariableFromResult(RowSet result, String fieldName, int columnToRead, String variableName) throws XTestException {
 		try {
-			String variableValue = this._result.getString(columnToRead);
+			//Read as the values of a column variable, so a value has the same text however it is captured
+			String variableValue = ResultVariable.readText(result, columnToRead);
 			logger.info(String.format("Storing value %s from field %s under variable name %s", variableValue, fieldName, variableName));
-			this._variables.put(ResultContext.VARIABLE_PREFIX.concat(variableName), variableValue);
-			if (this._result.wasNull()) {
+			if (result.wasNull()) {
 				logger.info(String.format("Read NULL for %s into %s", fieldName, variableName));
 				throw new XTestException(String.format("Result read for %s was null", fieldName));
 			}
+			return variableValue;
 		}
 		catch (SQLException e) {
 			throw new XTestException(XTestException.getCompositeErrorMessage(String.format("Error reading %s from position %d into variable %s", fieldName, columnToRead, variableName), e));
 		}
 	}
 	
+	/**
+	 * Define a variable which is shared by the scenarios of the feature or of the run. It is computed by a query when it is first used.
+	 * @param scope the scope, run or feature
+	 * @param variableName the variable name
+	 * @param fieldName the field of the query result to store
+	 * @param query the query computing the value
+	 * @param dbConfig the database config to execute the query on
+	 * @param tableNames the names of the tables which invalidate the value when they are written
+	 */
+	public void defineSharedVariable(String scope, String variableName, String fieldName, String query, DatabaseConfig dbConfig, List<String> tableNames) {
+		logger.info(String.format("Defining %s variable %s", scope, variableName));
+		SharedVariableCache.define(scope, this._feature, new SharedVariable(variableName, dbConfig, fieldName, query, tableNames));
+		// The definition hides a variable of the scenario with the same name
+		this._sharedValues.put(variableName, null);
+	}
+	
+	/**
+	 * Invalidate a shared variable, so it is computed again when it is used
+	 * @param scope the scope, run or feature
+	 * @param variableName the variable name
+	 * @throws XTestException exception when the variable is not defined
+	 */
+	public void invalidateSharedVariable(String scope, String variableName) throws XTestException {
+		if (!SharedVariableCache.invalidate(scope, this._feature, variableName)) {
+			throw new XTestException(String.format("The %s variable %s is not defined", scope, variableName));
+		}
+	}
+	
+	/**
+	 * Set the feature of the scenario, which determines the feature variables that are visible
+	 * @param feature the uri of the feature
+	 */
+	public void setFeature(String feature) {
+		this._feature = feature;
+	}
+	
+	/**
+	 * Load the values of the shared variables referenced in a template into the variables of the scenario
+	 */
+	private void loadSharedVariables(VariableTemplate template) throws XTestDatabaseException {
+		for (String reference : template.getReferences()) {
+			loadSharedVariable(reference);
+		}
+	}
+	
+	/**
+	 * Load the value of a shared variable into the variables of the scenario, if it is computed or invalidated since it was last loaded. 
+	 * Variables of the scenario with the same name, stored after the shared variable was defined, are kept.
+	 * @param reference the variable reference, including the prefix and an optional index
+	 */
+	private void loadSharedVariable(String reference) throws XTestDatabaseException {
+		if (!reference.startsWith(ResultContext.VARIABLE_PREFIX)) {
+			return;
+		}
+		String variableName = reference.substring(ResultContext.VARIABLE_PREFIX.length());
+		if (variableName.indexOf('[') != -1) {
+			variableName = variableName.substring(0, variableName.indexOf('['));
+		}
+		if (!this._sharedValues.containsKey(variableName) && this._variables.getText(ResultContext.VARIABLE_PREFIX.concat(variableName)) != null) {
+			return;
+		}
+		SharedVariable sharedVariable = SharedVariableCache.get(this._feature, variableName);
+		if (sharedVariable == null) {
+			return;
+		}
+		try {
+			Object value = this.isInTransaction() ? getTransactionValue(sharedVariable) : sharedVariable.getValue(this::readSharedVariable);
+			if (this._sharedValues.get(variableName) != value) {
+				// Copy a column, since the temporary tables it is loaded in belong to the connections of this scenario
+				storeVariable(variableName, (value instanceof ResultVariable) ? ((ResultVariable)value).copy() : value);
+				this._sharedValues.put(variableName, value);
+			}
+		}
+		catch (XTestDatabaseException exc) {
+			throw exc;
+		}
+		catch (XTestException exc) {
+			throw new XTestDatabaseException(String.format("Error computing shared variable %s: %s", variableName, exc.getMessage()));
+		}
+	}
+	
+	/**
+	 * Get the value of a shared variable in a scenario running in a transaction. The transaction is rolled back when the scenario ends, 
+	 * so a value computed in it may depend on data other scenarios never see and is only kept for this scenario, until the variable is invalidated. 
+	 * A value computed outside a transaction is used if there is one.
+	 */
+	private Object getTransactionValue(SharedVariable sharedVariable) throws XTestException {
+		Object value = sharedVariable.getComputedValue();
+		if (value != null) {
+			return value;
+		}
+		TransactionValue transactionValue = this._transactionValues.get(sharedVariable);
+		long version = sharedVariable.getVersion();
+		if (transactionValue == null || transactionValue._version != version) {
+			logger.info(String.format("Computing shared variable %s for the scenario, since it runs in a transaction", sharedVariable.getName()));
+			transactionValue = new TransactionValue(readSharedVariable(sharedVariable), version);
+			this._transactionValues.put(sharedVariable, transactionValue);
+		}
+		return transactionValue._value;
+	}
+	
+	/**
+	 * Compute the value of a shared variable by executing its query
+	 */
+	private Object readSharedVariable(SharedVariable sharedVariable) throws XTestException {
+		DatabaseConfig dbConfig = sharedVariable.getDatabaseConfig();
+		CachedRowSet crs;
+		try {
+			crs = DatabaseCommandExecutor.executeCommandWithCachedResult(this._dataHelper.getConnection(dbConfig), sharedVariable.getQuery(), dbConfig);
+		}
+		finally {
+			this._dataHelper.invalidateTableMetaData(dbConfig, sharedVariable.getQuery());
+		}
+		return readVariable(crs, sharedVariable.getFieldName(), sharedVariable.getName());
+	}
+	
 	/**
 	 * 
 	 * Retrieves the value of a variable
@@ -196,8 +354,10 @@ public class ResultContext {
 	 * @throws XTestException exception when the variable is not found
 	 */
 	public String getVariable(String variableName) throws XTestException{
-		if (this._variables.containsKey(variableName)) {
-			return this._variables.get(variableName);
+		loadSharedVariable(variableName);
+		String variableValue = this._variables.getText(variableName);
+		if (variableValue != null) {
+			return variableValue;
 		}
 		else throw new XTestException(String.format("Variable %s not found", variableName));
 	}
@@ -206,50 +366,128 @@ public class ResultContext {
 	 * Replace all variables that are used in the text with their proper values
 	 * @param text the text that contains variables to substitute
 	 * @return the text with substituted variables
- 
+	 * @throws XTestDatabaseException exception when a shared variable can't be computed
 	 */
-	public String substituteVariables(String text){
-		//Loop through all defined variables
-		//First sort the variables based on length so there is no replacement of partial variable names if a longer one also exist
+	public String substituteVariables(String text) throws XTestDatabaseException {
+		//The references are located in one pass, using the longest variable name a reference starts with
 		logger.info(String.format("Start replacing variables in text %s", text));
-		LinkedList<String> sortedKeys =new LinkedList<>();
-		//Get value and substitute in text
-		for(String varKey:this._variables.keySet()) {			
-			Boolean addedKey = false;
-			for (int i = 0; i < sortedKeys.size();i++) {
-				//If current key is smaller then sorted key add it at the current position so larger keys are shifted right
-				if (varKey.length() < sortedKeys.get(i).length()) {
-					sortedKeys.add(i, varKey);
-					addedKey = true;
-					break;
-				}
-			}
-			//If key is not added at this point, add it to end of the list.
-			if (!addedKey) {
-				sortedKeys.addLast(varKey);
-			}
-		}
-		//Now process sorted key list backwards
-		for (int i = sortedKeys.size() -1; i >=0;i--) {
-			String sortedKey = sortedKeys.get(i);
-			logger.info(String.format("Replacing variable %s", sortedKey));
-			String varValue = this._variables.get(sortedKey);
-			text = text.replaceAll(sortedKey.replace("[",  "\\[").replace("]", "\\]"), varValue);
-		}
+		VariableTemplate template = VariableTemplate.compile(text);
+		loadSharedVariables(template);
+		text = template.render(this._variables);
 		logger.info(String.format("Text with substituted variables: %s", text));
 		return text;
 	}
 	
+	/**
+	 * Replace the variables that are used in the text with a parameter, if their value is a number or a quoted text, or with their value otherwise.
+	 * A column variable is replaced by a parameter for each value, or by a query of a temporary table if it has more values than maxKeyFilterParameters.
+	 * @param text the text that contains variables to substitute
+	 * @param parameters the list to which the values of the parameters are added, in order
+	 * @param dbConfig the database config the text is executed on
+	 * @return the text with a ? for every parameter
+	 * @throws XTestDatabaseException
+	 */
+	public String parameterizeVariables(String text, List<Object> parameters, DatabaseConfig dbConfig) throws XTestDatabaseException {
+		logger.info(String.format("Start binding variables in text %s", text));
+		VariableTemplate template = VariableTemplate.compile(text);
+		loadSharedVariables(template);
+		text = template.renderParameterized(this._variables, parameters, dbConfig.getResolvedMaxKeyFilterParameters(), new ColumnVariableTable(this._dataHelper, dbConfig));
+		logger.info(String.format("Text with %d bound variables: %s", parameters.size(), text));
+		return text;
+	}
+	
 	public void compareResult(DataTable expectedResults) throws XTestException {
+		compareResult(expectedResults, null, false, null);
+	}
+	
+	/**
+	 * Compare the actual result with the expected result, stopping once a number of differences is found
+	 * @param expectedResults the expected result
+	 * @param maxDifferences the number of differences after which the comparison stops, overriding the one of the database config
+	 * @throws XTestException
+	 */
+	public void compareResult(DataTable expectedResults, int maxDifferences) throws XTestException {
+		compareResult(expectedResults, null, false, maxDifferences);
+	}
+	
+	/**
+	 * Compare the actual result with the expected result, matching the records on their key.
+	 * Records with the same key are reported once with the columns that are different.
+	 * @param expectedResults the expected result
+	 * @param keyFieldNames the names of the key fields
+	 * @throws XTestException
+	 */
+	public void compareKeyedResult(DataTable expectedResults, List<String> keyFieldNames) throws XTestException {
+		if (keyFieldNames == null || keyFieldNames.isEmpty()) {
+			throw new XTestException("No key fields are specified to compare the result on");
+		}
+		compareResult(expectedResults, keyFieldNames, false, null);
+	}
+	
+	/**
+	 * Check the actual result contains the expected result, matching the records on their key. Actual records with a key that is not
+	 * in the expected result are ignored. When the actual result is the contents of a table, only the records with a key in the 
+	 * expected result are read.
+	 * @param expectedResults the expected result
+	 * @param keyFieldNames the names of the key fields
+	 * @throws XTestException
+	 */
+	public void compareContainedResult(DataTable expectedResults, List<String> keyFieldNames) throws XTestException {
+		if (keyFieldNames == null || keyFieldNames.isEmpty()) {
+			throw new XTestException("No key fields are specified to compare the result on");
+		}
+		compareResult(expectedResults, keyFieldNames, true, null);
+	}
+	
+	private void compareResult(DataTable expectedResults, List<String> keyFieldNames, boolean containsOnly, Integer stepMaxDifferences) throws XTestException {
 		try {
 			DatabaseConfig databaseConfig = this.getDatabaseConfig();
+			int maxDifferences = (stepMaxDifferences != null) ? stepMaxDifferences : databaseConfig.getResolvedMaxDifferences();
+			String compareMode = databaseConfig.getResolvedCompareMode();
+			//Compare the data of a table on the database server if configured, so the table isn't read
+			if (keyFieldNames == null && this._result == null && this._tableName != null 
+					&& DatabaseServerConfig.COMPARE_MODE_DATABASE.equalsIgnoreCase(compareMode)) {
+				DatabaseResultComparison databaseComparison = new DatabaseResultComparison(this, this._dataHelper, databaseConfig, this._tableName);
+				if (databaseComparison.isSupported(expectedResults)) {
+					//Check the columns of the expected result like in memory, before the data is compared
+					this._result = this._dataHelper.getStructureResult(this._dataHelper.getSQLSelectFrom(expectedResults, this._tableName, databaseConfig), databaseConfig);
+					resultSetMetaDataIsEqual(createExpectedRowSet(expectedResults, databaseConfig));
+					databaseComparison.compare(expectedResults, maxDifferences);
+					return;
+				}
+			}
 			//Define actual rowset first
+			String streamedQuery = null;
+			String probedQuery = null;
+			String filteredQuery = null;
 			if (this._result == null) {
 				//Only possible if connection and table are set
 				if (this._tableName == null) {
 					throw new XTestException(String.format("Trying to compare result but connection or table is not set in result context, retrieve data first"));
 				}
-				this._result = DatabaseCommandExecutor.executeCommandWithCachedResult(this._dataHelper.getConnection(databaseConfig), this._dataHelper.getSQLSelectFrom(expectedResults, this._tableName, databaseConfig), databaseConfig);
+				String selectQuery = this._dataHelper.getSQLSelectFrom(expectedResults, this._tableName, databaseConfig);
+				//When streaming or comparing in sort order, only the structure of the result is cached and the rows are hashed while they are read
+				//A table is also streamed when the comparison stops after a number of differences, so the rows after them aren't read
+				if (keyFieldNames == null && selectQuery != null && (maxDifferences > 0
+						|| DatabaseServerConfig.COMPARE_MODE_STREAM.equalsIgnoreCase(compareMode)
+						|| DatabaseServerConfig.COMPARE_MODE_SORTED.equalsIgnoreCase(compareMode)
+						|| DatabaseServerConfig.COMPARE_MODE_SPOTCHECK.equalsIgnoreCase(compareMode))) {
+					streamedQuery = selectQuery;
+				}
+				//When probing, the records are only read when the probe doesn't find a difference
+				if (!containsOnly && selectQuery != null && !DatabaseServerConfig.PROBE_RESULT_FALSE.equalsIgnoreCase(databaseConfig.getResolvedProbeResult())) {
+					probedQuery = selectQuery;
+				}
+				//When checking the table contains the expected result, only the records with an expected key are read
+				if (containsOnly && selectQuery != null) {
+					filteredQuery = selectQuery;
+				}
+				if (streamedQuery != null || probedQuery != null || filteredQuery != null) {
+					this._result = this._dataHelper.getStructureResult(selectQuery, databaseConfig);
+				}
+				else {
+					this._result = DatabaseCommandExecutor.executeCommandWithCachedResult(this._dataHelper.getConnection(databaseConfig), selectQuery, databaseConfig);
+				}
 			}
 			else {
 				if (this._result.getMetaData() == null) {
@@ -258,33 +496,69 @@ public class ResultContext {
 			}
 			
 			RowSet actualRowSet = this._result;
+			//Get list of fields to compare
+			LinkedList<String> columnNames = getColumnNames(expectedResults);
 			
-			RowSetFactory factory = RowSetProvider.newFactory();
-			CachedRowSet expectedRowSet = factory.createCachedRowSet();
-			// Set the metadata of the cached rowset to the same as one the actual rowset.
-			expectedRowSet.setMetaData((RowSetMetaData)actualRowSet.getMetaData());
-			expectedRowSet.setTypeMap(actualRowSet.getTypeMap());
-			this._dataHelper.populateCachedRowSetFromDataTable(expectedRowSet, expectedResults, false, true, true, databaseConfig);
+			//When the expected values are only hashed, they are normalized to the values of the actual columns without building an expected rowset
+			boolean sortedCompare = streamedQuery != null && DatabaseServerConfig.COMPARE_MODE_SORTED.equalsIgnoreCase(compareMode);
+			if (columnNames != null && keyFieldNames == null && probedQuery == null && !sortedCompare) {
+				ExpectedResult expectedResult = this._dataHelper.getExpectedResult(new TableMetaData(actualRowSet.getMetaData()), expectedResults, databaseConfig);
+				if (streamedQuery != null) {
+					streamedResultDataIsEqual(streamedQuery, expectedResult, columnNames, maxDifferences);
+				}
+				else {
+					resultSetDataIsEqual(expectedResult, columnNames, maxDifferences);
+				}
+				return;
+			}
+			
+			CachedRowSet expectedRowSet = createExpectedRowSet(expectedResults, databaseConfig);
 			//CachedRowSet ExpectedRowSet = DataHelper.dataTableToRowSet(ResultContext.getResultContext().getTableName(), expectedResults, ResultContext.getResultContext().getConnection(), true, false, ResultContext.getResultContext().getDatabaseConfig());
 			
 			
 			
 			//Compare metadata
 			resultSetMetaDataIsEqual(expectedRowSet);		
-			//Get list of fields to compare
-			List<List<String>> list = expectedResults.asLists();
-			if (list.size() > 0) {
-				//Get column names from first row			}
-				LinkedList<String>columnNames = new LinkedList<>();
-				for (String colName: list.get(0)) {
-					if (colName == null) {
-						columnNames.addLast("");
+			if (columnNames != null) {
+				if (probedQuery != null) {
+					new ResultProbe(this._dataHelper, databaseConfig).probe(probedQuery, expectedRowSet, columnNames);
+					//An equal probe is accepted as the result when configured, otherwise it only saves reading a different table
+					if (DatabaseServerConfig.PROBE_RESULT_SKIP.equalsIgnoreCase(databaseConfig.getResolvedProbeResult())) {
+						logger.info("The probe of the actual result is equal, the records aren't compared");
+						return;
 					}
-					else {
-						columnNames.addLast(colName.toLowerCase());
+					//Read the records if they are compared in memory
+					if (streamedQuery == null) {
+						this._result = DatabaseCommandExecutor.executeCommandWithCachedResult(this._dataHelper.getConnection(databaseConfig), probedQuery, databaseConfig);
+					}
+				}
+				if (filteredQuery != null) {
+					LinkedList<String> keyFields = new LinkedList<>();
+					keyFieldNames.forEach(keyFieldName -> keyFields.add(keyFieldName.toLowerCase()));
+					if (columnNames.containsAll(keyFields)) {
+						this._result = new ExpectedKeyFilter(this._dataHelper, databaseConfig, this._tableName).retrieve(filteredQuery, expectedRowSet, keyFields);
 					}
-				}				
-				resultSetDataIsEqual(expectedRowSet, columnNames);
+				}
+				if (keyFieldNames != null) {
+					keyedResultDataIsEqual(expectedRowSet, columnNames, keyFieldNames, containsOnly);
+				}
+				else if (sortedCompare) {
+					SortMergeResultComparison sortMergeComparison = new SortMergeResultComparison(this, this._dataHelper, databaseConfig, this._dataHelper.getConfig().getSortBufferSize());
+					if (!sortMergeComparison.determineSortKey(expectedRowSet.getMetaData(), columnNames)) {
+						logger.info("No numeric or date/time columns to compare in sort order, comparing the streamed result instead");
+						streamedResultDataIsEqual(streamedQuery, this._dataHelper.getExpectedResult(new TableMetaData(expectedRowSet.getMetaData()), expectedResults, databaseConfig), columnNames, maxDifferences);
+					}
+					else if (!sortMergeComparison.compare(streamedQuery, expectedRowSet, columnNames)) {
+						logger.info("Too many records with the same sort key to compare in sort order, comparing the streamed result instead");
+						streamedResultDataIsEqual(streamedQuery, this._dataHelper.getExpectedResult(new TableMetaData(expectedRowSet.getMetaData()), expectedResults, databaseConfig), columnNames, maxDifferences);
+					}
+				}
+				else if (streamedQuery != null) {
+					streamedResultDataIsEqual(streamedQuery, this._dataHelper.getExpectedResult(new TableMetaData(expectedRowSet.getMetaData()), expectedResults, databaseConfig), columnNames, maxDifferences);
+				}
+				else {
+					resultSetDataIsEqual(this._dataHelper.getExpectedResult(new TableMetaData(expectedRowSet.getMetaData()), expectedResults, databaseConfig), columnNames, maxDifferences);
+				}
 			}
 					
 		} catch (SQLException e) {
@@ -295,6 +569,117 @@ public class ResultContext {
 		}
 	}
 	
+	/**
+	 * Compare the actual result with the expected result record by record, in the order of both results.
+	 * The actual result has to be retrieved with a query, because the records of a table have no defined order.
+	 * @param expectedResults the expected result
+	 * @throws XTestException
+	 */
+	public void compareOrderedResult(DataTable expectedResults) throws XTestException {
+		compareOrderedResult(expectedResults, null);
+	}
+	
+	/**
+	 * Compare the actual result with the expected result record by record, in the order of both results.
+	 * When the actual result is the contents of a table it is streamed ordered by the order fields, otherwise the retrieved result is compared in the order of its query.
+	 * @param expectedResults the expected result
+	 * @param orderFieldNames the names of the fields to order the records of a table by, or null
+	 * @throws XTestException
+	 */
+	public void compareOrderedResult(DataTable expectedResults, List<String> orderFieldNames) throws XTestException {
+		try {
+			DatabaseConfig databaseConfig = this.getDatabaseConfig();
+			String streamedQuery = null;
+			if (this._result == null) {
+				//Only possible if connection and table are set
+				if (this._tableName == null) {
+					throw new XTestException(String.format("Trying to compare result but connection or table is not set in result context, retrieve data first"));
+				}
+				//Without an ORDER BY the database can return the records of a table in any order
+				if (orderFieldNames == null || orderFieldNames.isEmpty()) {
+					throw new XTestException(String.format("The records of table %s have no defined order, specify the fields to order them by or retrieve them with a query with an ORDER BY", this._tableName));
+				}
+				streamedQuery = this._dataHelper.getSQLSelectFrom(expectedResults, this._tableName, databaseConfig);
+				if (streamedQuery == null) {
+					throw new XTestException("There are no columns to compare in the expected result");
+				}
+				StringBuilder orderBy = new StringBuilder();
+				for (String orderFieldName : orderFieldNames) {
+					orderBy.append((orderBy.length() == 0) ? " ORDER BY " : ", ").append(databaseConfig.getFormattedColumnName(orderFieldName));
+				}
+				streamedQuery = streamedQuery.concat(orderBy.toString());
+				//Only the structure of the result is cached, the rows are compared while they are read
+				this._result = this._dataHelper.getStructureResult(streamedQuery, databaseConfig);
+			}
+			else if (this._result.getMetaData() == null) {
+				throw new XTestException("There is no actual result to compare with");
+			}
+			
+			CachedRowSet expectedRowSet = createExpectedRowSet(expectedResults, databaseConfig);
+			
+			//Compare metadata
+			resultSetMetaDataIsEqual(expectedRowSet);
+			LinkedList<String> columnNames = getColumnNames(expectedResults);
+			if (columnNames != null) {
+				OrderedResultComparison orderedComparison = new OrderedResultComparison(this, this._dataHelper, databaseConfig.getResolvedMaxDifferences());
+				if (streamedQuery != null) {
+					DatabaseCommandExecutor.executeCommandWithStreamedResult(this._dataHelper.getConnection(databaseConfig), streamedQuery, databaseConfig, 
+							resultSet -> orderedComparison.compare(resultSet, expectedRowSet, columnNames));
+				}
+				else {
+					this._result.beforeFirst();
+					orderedComparison.compare(this._result, expectedRowSet, columnNames);
+				}
+			}
+		} catch (SQLException e) {
+			throw new XTestException(e.getMessage());
+		} finally {
+			//Unset result after comparison to allow for multiple compares in one scenario
+			this._result = null;
+		}
+	}
+	
+	/**
+	 * Create the expected rowset with the structure of the actual result
+	 * @param expectedResults the expected result
+	 * @param databaseConfig the database config
+	 * @return the expected rowset
+	 * @throws SQLException
+	 * @throws XTestException
+	 */
+	private CachedRowSet createExpectedRowSet(DataTable expectedResults, DatabaseConfig databaseConfig) throws SQLException, XTestException {
+		RowSetFactory factory = RowSetProvider.newFactory();
+		CachedRowSet expectedRowSet = factory.createCachedRowSet();
+		// Set the metadata of the cached rowset to the same as one the actual rowset.
+		expectedRowSet.setMetaData((RowSetMetaData)this._result.getMetaData());
+		expectedRowSet.setTypeMap(this._result.getTypeMap());
+		this._dataHelper.populateCachedRowSetFromDataTable(expectedRowSet, expectedResults, false, true, true, databaseConfig);
+		return expectedRowSet;
+	}
+	
+	/**
+	 * Get the lower case names of the fields to compare from the header of the expected result
+	 * @param expectedResults the expected result
+	 * @return the field names, or null if the expected result is empty
+	 */
+	private static LinkedList<String> getColumnNames(DataTable expectedResults) {
+		List<List<String>> list = expectedResults.asLists();
+		if (list.size() == 0) {
+			return null;
+		}
+		//Get column names from first row
+		LinkedList<String> columnNames = new LinkedList<>();
+		for (String colName: list.get(0)) {
+			if (colName == null) {
+				columnNames.addLast("");
+			}
+			else {
+				columnNames.addLast(colName.toLowerCase());
+			}
+		}
+		return columnNames;
+	}
+	
 	private void resultSetMetaDataIsEqual(RowSet expectedResult) throws XTestException{
 		try {
 			ResultSetMetaData actualMetaData = _result.getMetaData();
@@ -328,65 +713,178 @@ public class ResultContext {
 		}
 	}
 
-	private LinkedList<LinkedList<String>> getRecordsToReport(String baseSetName, HashMap<String, RecordInformation> baseHashes, RowSet baseRows, String compareWithSetName, HashMap<String, RecordInformation> compareWithHashes, boolean doCompareOccurences, StringBuilder findingsSB)
+	/**
+	 * Report the records of the base set which aren't found in the compare-with set
+	 * @param baseSetName the name of the base set
+	 * @param baseHashes the row hashes of the base set
+	 * @param baseRows the rows of the base set
+	 * @param compareWithSetName the name of the compare-with set
+	 * @param compareWithOccurences returns the number of occurrences in the compare-with set of the hash in a slot of the base hashes
+	 * @param doCompareOccurences whether a different number of occurrences is reported
+	 * @param reportFilePrefix the prefix of the file name when the records are written to a file
+	 * @param maxRecordsToReport the maximum number of records to report, 0 means all records are reported
+	 * @param findingsSB the findings
+	 * @return the records to report, or null if there are none
+	 * @throws XTestException
+	 */
+	private DifferenceReport getRecordsToReport(String baseSetName, RowHashIndex baseHashes, RowSet baseRows, String compareWithSetName, IntUnaryOperator compareWithOccurences, boolean doCompareOccurences, String reportFilePrefix, int maxRecordsToReport, StringBuilder findingsSB)
+			throws XTestException {
+		return getRecordsToReport(baseSetName, baseHashes, this._dataHelper.rowSetHeader(baseRows), new RowSetRecordReader(baseRows), compareWithSetName, compareWithOccurences, doCompareOccurences, reportFilePrefix, maxRecordsToReport, findingsSB);
+	}
+	
+	/**
+	 * Report the records of the expected result which aren't found in the compare-with set
+	 * @see #getRecordsToReport(String, RowHashIndex, RowSet, String, IntUnaryOperator, boolean, String, int, StringBuilder)
+	 */
+	private DifferenceReport getRecordsToReport(String baseSetName, RowHashIndex baseHashes, ExpectedResult baseRecords, String compareWithSetName, IntUnaryOperator compareWithOccurences, boolean doCompareOccurences, String reportFilePrefix, int maxRecordsToReport, StringBuilder findingsSB)
+			throws XTestException {
+		return getRecordsToReport(baseSetName, baseHashes, baseRecords.getHeader(), baseRecords::getRecord, compareWithSetName, compareWithOccurences, doCompareOccurences, reportFilePrefix, maxRecordsToReport, findingsSB);
+	}
+	
+	private DifferenceReport getRecordsToReport(String baseSetName, RowHashIndex baseHashes, String[] baseHeader, RecordReader baseRecords, String compareWithSetName, IntUnaryOperator compareWithOccurences, boolean doCompareOccurences, String reportFilePrefix, int maxRecordsToReport, StringBuilder findingsSB)
 			throws XTestException {
-		LinkedList<LinkedList<String>> recordsToReport = new LinkedList<>();
-		for (String baseHash:baseHashes.keySet()) {
+		// Collect the numbers of all rows to report first, so the base rows only need to be read once.
+		BitSet recordNumbersToReport = new BitSet(baseHashes.getRowCount() + 1);
+		for (int baseSlot = 0; baseSlot < baseHashes.getCapacity(); baseSlot++) {
+			if (!baseHashes.isUsed(baseSlot)) {
+				continue;
+			}
+			int compareWithOccurenceCount = compareWithOccurences.applyAsInt(baseSlot);
 			// If an base hash can't be found in the compare-with-hashset, we have one or multiple base-set-rows which aren't found in the compare-with-set.
-			if (!compareWithHashes.containsKey(baseHash)) {
-				int currentRowNumber = 0;
-				int reportedRowsCount = 0;
-				LinkedList<Integer> recordNumbersToReport = baseHashes.get(baseHash).getRecords();
-				// Loop through the expected records which match the current hash, and report the records.
-				try {
-					// Perform the first in an if because we shouldn't call .next when the rowset is empty.
-					baseRows.beforeFirst();
-					while (baseRows.next()) {
-						// Increase the row counter.
-						currentRowNumber++;
-						// If the current row number is in the list of records to report, report it.
-						if (recordNumbersToReport.contains(currentRowNumber)) {
-							findingsSB.append(String.format("%s record %d not found in %s result ", baseSetName, currentRowNumber, compareWithSetName)).append("\n");
-							logger.info(String.format("%s record %d not found in %s result ", baseSetName, currentRowNumber, compareWithSetName));
-							recordsToReport.addLast(this._dataHelper.rowSetRecordToList(baseRows));
-							reportedRowsCount++;
-
-							// Break out of the while loop if we have reported all rows.
-							if (reportedRowsCount == recordNumbersToReport.size())
-								break;
-						}
+			if (compareWithOccurenceCount == 0) {
+				for (int recordNumber = baseHashes.getFirstRow(baseSlot); recordNumber != 0; recordNumber = baseHashes.getNextRow(recordNumber)) {
+					recordNumbersToReport.set(recordNumber);
+				}
+			}
+			// If an expected hash can be found in the actual set, but the number of occurrences doesn't match, report it.
+			else if (doCompareOccurences && baseHashes.getOccurences(baseSlot) != compareWithOccurenceCount) {
+				int rowToFind = baseHashes.getFirstRow(baseSlot);
+				findingsSB.append(String.format("%s record %d has a different number of duplicate rows in the %s and %s result (%d rows vs %d rows).", baseSetName, rowToFind, baseSetName, compareWithSetName, baseHashes.getOccurences(baseSlot), compareWithOccurenceCount)).append("\n");
+				logger.info(String.format("%s record %d has a different number of duplicate rows in the %s and %s result (%d rows vs %d rows).", baseSetName, rowToFind, baseSetName, compareWithSetName, baseHashes.getOccurences(baseSlot), compareWithOccurenceCount));
+			}
+		}
+		
+		// Read the base records to report in order, and report them.
+		int recordCountToReport = recordNumbersToReport.cardinality();
+		if (recordCountToReport == 0) {
+			return null;
+		}
+		DifferenceReport recordsToReport = createDifferenceReport(baseHeader, reportFilePrefix);
+		try {
+			try {
+				for (int recordNumberToReport = recordNumbersToReport.nextSetBit(0); recordNumberToReport != -1; recordNumberToReport = recordNumbersToReport.nextSetBit(recordNumberToReport + 1)) {
+					String[] record = baseRecords.read(recordNumberToReport);
+					if (record == null) {
+						break;
 					}
-
-					// If we haven't reported the rows whe should have, throw an exception.
-					if (reportedRowsCount != recordNumbersToReport.size()) {
-						logger.severe("We haven't reported all records which can't be found!");
+					recordsToReport.addRecord(record);
+					if (!recordsToReport.isTruncated()) {
+						findingsSB.append(String.format("%s record %d not found in %s result ", baseSetName, recordNumberToReport, compareWithSetName)).append("\n");
+						logger.info(String.format("%s record %d not found in %s result ", baseSetName, recordNumberToReport, compareWithSetName));
+					}
+					if (maxRecordsToReport > 0 && recordsToReport.getRecordCount() >= maxRecordsToReport) {
+						break;
 					}
 				}
-				catch(SQLException exc) {
-					throw new XTestException(String.format("Error getting records from %s results: %s", baseSetName, exc.getMessage()));
+				
+				// If we haven't reported the rows whe should have, log it.
+				if (recordsToReport.getRecordCount() != recordCountToReport && (maxRecordsToReport <= 0 || recordsToReport.getRecordCount() < maxRecordsToReport)) {
+					logger.severe("We haven't reported all records which can't be found!");
+				}
+				if (recordsToReport.isTruncated()) {
+					int recordsNotShown = recordsToReport.getRecordCount() - recordsToReport.getInlineRecords().size();
+					findingsSB.append(String.format("%d more %s records not found in %s result ", recordsNotShown, baseSetName, compareWithSetName)).append("\n");
+					logger.info(String.format("%d more %s records not found in %s result ", recordsNotShown, baseSetName, compareWithSetName));
 				}
 			}
-			// If an expected hash can be found in the actual set, but the number of occurrences doesn't match, report it.
-			else if (doCompareOccurences && baseHashes.get(baseHash).getOccurences() != compareWithHashes.get(baseHash).getOccurences()) {
-				int rowToFind = baseHashes.get(baseHash).getRecords().getFirst();
-				findingsSB.append(String.format("%s record %d has a different number of duplicate rows in the %s and %s result (%d rows vs %d rows).", baseSetName, rowToFind, baseSetName, compareWithSetName, baseHashes.get(baseHash).getOccurences(), compareWithHashes.get(baseHash).getOccurences())).append("\n");
-				logger.info(String.format("%s record %d has a different number of duplicate rows in the %s and %s result (%d rows vs %d rows).", baseSetName, rowToFind, baseSetName, compareWithSetName, baseHashes.get(baseHash).getOccurences(), compareWithHashes.get(baseHash).getOccurences()));
+			catch(SQLException exc) {
+				throw new XTestException(String.format("Error getting records from %s results: %s", baseSetName, exc.getMessage()));
+			}
+			finally {
+				recordsToReport.close();
 			}
 		}
-		//If records were found, add header
-		if (recordsToReport.size() > 0) {
-			recordsToReport.addFirst(this._dataHelper.rowSetHeader(baseRows));
-		}
-		else {
-			recordsToReport = null;
+		catch(IOException exc) {
+			throw new XTestException(String.format("Error writing records of %s results: %s", baseSetName, exc.getMessage()));
 		}
 		return recordsToReport;
 	}
 	
-	private void resultSetDataIsEqual(RowSet expectedResult, LinkedList<String> fieldsToCheck) throws XTestException, CucumberDataComparisonException {
+	/**
+	 * The value of a shared variable computed in the transaction of the scenario, with the version of the variable it was computed for
+	 */
+	private static final class TransactionValue {
+		private final Object _value;
+		private final long _version;
 		
-		HashMap<String, RecordInformation> actualHashes = this._dataHelper.getHashSet(this._result, fieldsToCheck);
-		HashMap<String, RecordInformation> expectedHashes = this._dataHelper.getHashSet(expectedResult, fieldsToCheck);
+		private TransactionValue(Object value, long version) {
+			this._value = value;
+			this._version = version;
+		}
+	}
+	
+	/**
+	 * Reads records by their 1-based record number, which is called with increasing record numbers
+	 */
+	@FunctionalInterface
+	private interface RecordReader {
+		String[] read(int recordNumber) throws SQLException, XTestException;
+	}
+	
+	/**
+	 * Reads the records of a rowset, moving forward through the rowset so it is read once
+	 */
+	private final class RowSetRecordReader implements RecordReader {
+		private final RowSet _rowSet;
+		private int _currentRowNumber = -1;
+		
+		private RowSetRecordReader(RowSet rowSet) {
+			this._rowSet = rowSet;
+		}
+		
+		@Override
+		public String[] read(int recordNumber) throws SQLException, XTestException {
+			if (this._currentRowNumber == -1) {
+				this._rowSet.beforeFirst();
+				this._currentRowNumber = 0;
+			}
+			while (this._currentRowNumber < recordNumber) {
+				if (!this._rowSet.next()) {
+					return null;
+				}
+				this._currentRowNumber++;
+			}
+			return _dataHelper.rowSetRecordToArray(this._rowSet);
+		}
+	}
+	
+	/**
+	 * Create a report for the records of a difference. Only the first records are shown in the message, 
+	 * all records are written to the difference report folder.
+	 * @param header the column names
+	 * @param reportFilePrefix the prefix of the file name when the records are written to a file
+	 * @return the difference report
+	 */
+	DifferenceReport createDifferenceReport(String[] header, String reportFilePrefix) {
+		XTestConfig config = this._dataHelper.getConfig();
+		int maxInlineDifferences = (config.getMaxInlineDifferences() != null) ? config.getMaxInlineDifferences() : 0;
+		File reportFolder = (config.getDifferenceReportFolder() != null) ? new File(config.getDifferenceReportFolder()) : null;
+		return new DifferenceReport(header, maxInlineDifferences, reportFolder, reportFilePrefix);
+	}
+	
+	/**
+	 * Compare the expected result with the actual result in memory, by indexing the hashes of the records of both results.
+	 * When a maximum number of differences is set, the records are reported until this number is reached.
+	 * @param expectedResult the expected result
+	 * @param fieldsToCheck the fields to compare
+	 * @param maxDifferences the number of differences after which the comparison stops, 0 means all differences are reported
+	 * @throws XTestException
+	 * @throws CucumberDataComparisonException
+	 */
+	private void resultSetDataIsEqual(ExpectedResult expectedResult, LinkedList<String> fieldsToCheck, int maxDifferences) throws XTestException, CucumberDataComparisonException {
+
+		RowHashIndex actualHashes = this._dataHelper.getRowHashIndex(this._result, fieldsToCheck);
+		RowHashIndex expectedHashes = this._dataHelper.getRowHashIndex(expectedResult, fieldsToCheck);
 		
 		StringBuilder findingsSB = new StringBuilder();
 		// Both hashsets should have the same nr of records
@@ -398,11 +896,110 @@ public class ResultContext {
 		//Check if all records expected are found
 		//Add rows not found to the expectedNotfound table
 		logger.info("Comparing expected against actual");
-		LinkedList<LinkedList<String>> expectedNotFound =  getRecordsToReport("expected", expectedHashes, expectedResult, "actual", actualHashes, true, findingsSB);
+		DifferenceReport expectedNotFound =  getRecordsToReport("expected", expectedHashes, expectedResult, "actual", slot -> actualHashes.getOccurences(expectedHashes.getHashHigh(slot), expectedHashes.getHashLow(slot)), true, "expected_not_found_", maxDifferences, findingsSB);
+		int differences = (expectedNotFound != null) ? expectedNotFound.getRecordCount() : 0;
 		
-		//Check if all records found are expected
-		logger.info("Comparing actual against expected");
-		LinkedList<LinkedList<String>> foundNotExpected = getRecordsToReport("actual", actualHashes, this._result, "expected", expectedHashes, false, findingsSB);
+		//Check if all records found are expected, unless the maximum number of differences is reached
+		DifferenceReport foundNotExpected = null;
+		if (maxDifferences <= 0 || differences < maxDifferences) {
+			logger.info("Comparing actual against expected");
+			foundNotExpected = getRecordsToReport("actual", actualHashes, this._result, "expected", slot -> expectedHashes.getOccurences(actualHashes.getHashHigh(slot), actualHashes.getHashLow(slot)), false, "found_not_expected_", (maxDifferences > 0) ? maxDifferences - differences : 0, findingsSB);
+			differences += (foundNotExpected != null) ? foundNotExpected.getRecordCount() : 0;
+		}
+		if (maxDifferences > 0 && differences >= maxDifferences) {
+			addMaxDifferencesFinding(maxDifferences, findingsSB);
+		}
+		
+		//Findings should be an empty string
+		String findings = findingsSB.toString();
+		if (findings.length() > 0) {
+			throw new CucumberDataComparisonException(findings, expectedNotFound, foundNotExpected);
+		}
+	}
+	
+	/**
+	 * Compare the expected result with the actual result on their key fields. The records of both results are indexed on the hash
+	 * of their key, records of which the key is only in one result are reported as not found. The records with the same key are
+	 * compared column by column, so a changed record is reported once with its different values.
+	 * @param expectedResult the expected result
+	 * @param fieldsToCheck the fields to compare
+	 * @param keyFieldNames the names of the key fields
+	 * @param containsOnly whether actual records with a key that is not in the expected result are ignored
+	 * @throws XTestException
+	 * @throws CucumberDataComparisonException
+	 */
+	private void keyedResultDataIsEqual(RowSet expectedResult, LinkedList<String> fieldsToCheck, List<String> keyFieldNames, boolean containsOnly) throws XTestException, CucumberDataComparisonException {
+		LinkedList<String> keyFields = new LinkedList<>();
+		for (String keyFieldName : keyFieldNames) {
+			if (!fieldsToCheck.contains(keyFieldName.toLowerCase())) {
+				throw new XTestException(String.format("Key field %s is not in the expected result", keyFieldName));
+			}
+			keyFields.add(keyFieldName.toLowerCase());
+		}
+		LinkedList<String> valueFields = new LinkedList<>(fieldsToCheck);
+		valueFields.removeAll(keyFields);
+		
+		RowHashIndex expectedKeys = this._dataHelper.getRowHashIndex(expectedResult, keyFields);
+		RowHashIndex actualKeys = this._dataHelper.getRowHashIndex(this._result, keyFields);
+		
+		StringBuilder findingsSB = new StringBuilder();
+		// Records with the same key can't be matched
+		this.addDuplicateKeyFindings("expected", expectedKeys, null, findingsSB);
+		this.addDuplicateKeyFindings("actual", actualKeys, containsOnly ? expectedKeys : null, findingsSB);
+		
+		logger.info("Comparing the records with the same key");
+		int maxInlineDifferences = (this._dataHelper.getConfig().getMaxInlineDifferences() != null) ? this._dataHelper.getConfig().getMaxInlineDifferences() : 0;
+		int changedRecords = 0;
+		try {
+			ColumnConverter[] expectedKeyConverters = this._dataHelper.getHashConverters(expectedResult, keyFields);
+			ColumnConverter[] expectedValueConverters = this._dataHelper.getHashConverters(expectedResult, valueFields);
+			ColumnConverter[] actualKeyConverters = this._dataHelper.getHashConverters(this._result, keyFields);
+			ColumnConverter[] actualValueConverters = this._dataHelper.getHashConverters(this._result, valueFields);
+			RowHasher hasher = new RowHasher();
+			int actualRowNumber = 0;
+			this._result.beforeFirst();
+			while (this._result.next()) {
+				actualRowNumber++;
+				this._dataHelper.hashRecord(hasher, actualKeyConverters, this._result);
+				int expectedSlot = expectedKeys.find(hasher.getHashHigh(), hasher.getHashLow());
+				if (expectedSlot == -1 || expectedKeys.getOccurences(expectedSlot) > 1 || actualKeys.getOccurences(hasher.getHashHigh(), hasher.getHashLow()) > 1) {
+					continue;
+				}
+				int expectedRowNumber = expectedKeys.getFirstRow(expectedSlot);
+				expectedResult.absolute(expectedRowNumber);
+				StringBuilder differencesSB = new StringBuilder();
+				for (int i = 0; i < expectedValueConverters.length; i++) {
+					String expectedValue = expectedValueConverters[i].getValue(expectedResult);
+					String actualValue = actualValueConverters[i].getValue(this._result);
+					if (!Objects.equals(expectedValue, actualValue)) {
+						differencesSB.append((differencesSB.length() > 0) ? ", " : "").append(String.format("%s ('%s' vs '%s')", expectedValueConverters[i].getColumnName(), expectedValue, actualValue));
+					}
+				}
+				if (differencesSB.length() > 0) {
+					changedRecords++;
+					if (maxInlineDifferences == 0 || changedRecords <= maxInlineDifferences) {
+						String finding = String.format("expected record %d with key %s is different from actual record %d: %s", expectedRowNumber, getKeyText(expectedKeyConverters, expectedResult), actualRowNumber, differencesSB);
+						findingsSB.append(finding).append("\n");
+						logger.info(finding);
+					}
+				}
+			}
+		}
+		catch (SQLException exc) {
+			throw new XTestDatabaseException(String.format("Error comparing records on their key: %s", exc.getMessage()));
+		}
+		if (maxInlineDifferences > 0 && changedRecords > maxInlineDifferences) {
+			findingsSB.append(String.format("%d more records with the same key are different ", changedRecords - maxInlineDifferences)).append("\n");
+			logger.info(String.format("%d more records with the same key are different ", changedRecords - maxInlineDifferences));
+		}
+		
+		logger.info("Comparing the keys of expected against actual");
+		DifferenceReport expectedNotFound = getRecordsToReport("expected", expectedKeys, expectedResult, "actual", slot -> actualKeys.getOccurences(expectedKeys.getHashHigh(slot), expectedKeys.getHashLow(slot)), false, "expected_not_found_", 0, findingsSB);
+		DifferenceReport foundNotExpected = null;
+		if (!containsOnly) {
+			logger.info("Comparing the keys of actual against expected");
+			foundNotExpected = getRecordsToReport("actual", actualKeys, this._result, "expected", slot -> expectedKeys.getOccurences(actualKeys.getHashHigh(slot), actualKeys.getHashLow(slot)), false, "found_not_expected_", 0, findingsSB);
+		}
 		
 		//Findings should be an empty string
 		String findings = findingsSB.toString();
@@ -411,6 +1008,171 @@ public class ResultContext {
 		}
 	}
 	
+	/**
+	 * Report the keys which are in a result more than once
+	 * @param setName the name of the result
+	 * @param keys the key hashes of the result
+	 * @param expectedKeys if set, only the keys in the expected result are reported
+	 * @param findingsSB the findings
+	 */
+	private void addDuplicateKeyFindings(String setName, RowHashIndex keys, RowHashIndex expectedKeys, StringBuilder findingsSB) {
+		for (int slot = 0; slot < keys.getCapacity(); slot++) {
+			if (keys.isUsed(slot) && keys.getOccurences(slot) > 1 
+					&& (expectedKeys == null || expectedKeys.getOccurences(keys.getHashHigh(slot), keys.getHashLow(slot)) > 0)) {
+				findingsSB.append(String.format("%s record %d has the same key as %d other %s records ", setName, keys.getFirstRow(slot), keys.getOccurences(slot) - 1, setName)).append("\n");
+				logger.info(String.format("%s record %d has the same key as %d other %s records ", setName, keys.getFirstRow(slot), keys.getOccurences(slot) - 1, setName));
+			}
+		}
+	}
+	
+	private static String getKeyText(ColumnConverter[] keyConverters, ResultSet rs) throws SQLException, XTestException {
+		StringBuilder keySB = new StringBuilder("(");
+		for (int i = 0; i < keyConverters.length; i++) {
+			keySB.append((i > 0) ? ", " : "").append(String.format("%s=%s", keyConverters[i].getColumnName(), keyConverters[i].getValue(rs)));
+		}
+		return keySB.append(")").toString();
+	}
+	
+	/**
+	 * Add the finding that the comparison is stopped after the maximum number of differences
+	 * @param maxDifferences the maximum number of differences
+	 * @param findingsSB the findings
+	 */
+	static void addMaxDifferencesFinding(int maxDifferences, StringBuilder findingsSB) {
+		findingsSB.append(String.format("Stopped comparing after %d differences, there are at least %d differences ", maxDifferences, maxDifferences)).append("\n");
+		logger.info(String.format("Stopped comparing after %d differences", maxDifferences));
+	}
+	
+	/**
+	 * Compare the expected result with a query result which is streamed, so the actual rows are not kept in memory.
+	 * Every actual row is hashed while it is read. Rows of which the hash is in the expected result are only counted,
+	 * the other rows are reported directly as found not expected.
+	 * With compareMode spotcheck the actual rows are first checked with a Bloom filter of the expected hashes, and unless a full report
+	 * is configured the rows which aren't expected are only counted, so only memory for the expected result is used.
+	 * When a maximum number of differences is set and that number of actual rows isn't expected, the query is cancelled.
+	 * @param query the query returning the actual result
+	 * @param expectedResult the expected result
+	 * @param fieldsToCheck the fields to compare
+	 * @param maxDifferences the number of differences after which the comparison stops, 0 means all rows are read
+	 * @throws XTestException
+	 * @throws CucumberDataComparisonException
+	 */
+	private void streamedResultDataIsEqual(String query, ExpectedResult expectedResult, LinkedList<String> fieldsToCheck, int maxDifferences) throws XTestException, CucumberDataComparisonException {
+		RowHashIndex expectedHashes = this._dataHelper.getRowHashIndex(expectedResult, fieldsToCheck);
+		boolean spotCheck = DatabaseServerConfig.COMPARE_MODE_SPOTCHECK.equalsIgnoreCase(this._dbconfig.getResolvedCompareMode());
+		boolean summarizeNotExpected = spotCheck && !this._dbconfig.getResolvedFullReport();
+		RowHashLookup expectedLookup = spotCheck ? new RowHashBloomFilter(expectedHashes) : expectedHashes;
+		// The number of occurrences in the actual result per slot of the expected hashes
+		int[] actualOccurences = new int[expectedHashes.getCapacity()];
+		// The hashes of the actual rows not found, only used to count the unique records
+		RowHashIndex notExpectedHashes = summarizeNotExpected ? null : new RowHashIndex();
+		StringBuilder notExpectedFindingsSB = new StringBuilder();
+		// When summarizing, the rows not found are only counted after the first ones (maxSummarizedDifferences if there is no maximum), without writing them to a file
+		int maxInlineDifferences = (this._dataHelper.getConfig().getMaxInlineDifferences() != null) ? this._dataHelper.getConfig().getMaxInlineDifferences() : 0;
+		int maxSummarizedDifferences = (maxInlineDifferences > 0) ? maxInlineDifferences : this._dataHelper.getConfig().getMaxSummarizedDifferences();
+		DifferenceReport foundNotExpected = summarizeNotExpected
+				? new DifferenceReport(this._dataHelper.rowSetHeader(this._result), maxSummarizedDifferences, null, "found_not_expected_")
+				: createDifferenceReport(this._dataHelper.rowSetHeader(this._result), "found_not_expected_");
+		
+		// Count the hashed actual rows in the expected hashes, and report the ones which aren't expected
+		HashedRowHandler rowHandler = (rowNumber, expectedSlot, hashHigh, hashLow, record) -> {
+			if (expectedSlot != -1) {
+				actualOccurences[expectedSlot]++;
+			}
+			else {
+				if (notExpectedHashes != null) {
+					notExpectedHashes.add(hashHigh, hashLow, notExpectedHashes.getRowCount() + 1);
+				}
+				try {
+					foundNotExpected.addRecord(record);
+				}
+				catch (IOException exc) {
+					throw new XTestException(String.format("Error writing records of actual results: %s", exc.getMessage()));
+				}
+				if (!foundNotExpected.isTruncated()) {
+					notExpectedFindingsSB.append(String.format("actual record %d not found in expected result ", rowNumber)).append("\n");
+					logger.info(String.format("actual record %d not found in expected result ", rowNumber));
+				}
+			}
+			// Stop reading once the maximum number of differences is found
+			return maxDifferences <= 0 || foundNotExpected.getRecordCount() < maxDifferences;
+		};
+		int compareThreads = (this._dataHelper.getConfig().getCompareThreads() != null) ? this._dataHelper.getConfig().getCompareThreads() : 1;
+		
+		logger.info("Comparing actual against expected");
+		try {
+			try {
+				DatabaseCommandExecutor.executeCommandWithStreamedResult(this._dataHelper.getConnection(this._dbconfig), query, this._dbconfig, resultSet -> {
+					ColumnConverter[] converters = this._dataHelper.getHashConverters(resultSet, fieldsToCheck);
+					int rowCounter = 0;
+					if (compareThreads > 1) {
+						rowCounter = new ParallelRowHasher(this._dataHelper, converters, expectedLookup, compareThreads).hash(resultSet, rowHandler);
+					}
+					else {
+						RowHasher hasher = new RowHasher();
+						int[] columnTypes = DataHelper.getColumnTypes(resultSet.getMetaData());
+						Object[] values = new Object[converters.length];
+						while (resultSet.next()) {
+							rowCounter++;
+							this._dataHelper.hashRecord(hasher, converters, resultSet, values);
+							int expectedSlot = expectedLookup.find(hasher.getHashHigh(), hasher.getHashLow());
+							// A record which would only be counted isn't read
+							boolean readRecord = expectedSlot == -1 && !foundNotExpected.isFull();
+							if (!rowHandler.handle(rowCounter, expectedSlot, hasher.getHashHigh(), hasher.getHashLow(), readRecord ? this._dataHelper.rowSetRecordToArray(resultSet, columnTypes, converters, values) : null)) {
+								break;
+							}
+						}
+					}
+					// Cancel the query if not all rows are read, so closing it doesn't read the remaining rows
+					if (maxDifferences > 0 && foundNotExpected.getRecordCount() >= maxDifferences) {
+						DatabaseCommandExecutor.cancelStatement(resultSet);
+					}
+					logger.info(String.format("Compared %d actual records", rowCounter));
+				});
+			}
+			finally {
+				foundNotExpected.close();
+			}
+		}
+		catch (IOException exc) {
+			throw new XTestException(String.format("Error writing records of actual results: %s", exc.getMessage()));
+		}
+		if (foundNotExpected.isTruncated()) {
+			int recordsNotShown = foundNotExpected.getRecordCount() - foundNotExpected.getInlineRecords().size();
+			notExpectedFindingsSB.append(String.format("%d more actual records not found in expected result ", recordsNotShown)).append("\n");
+			logger.info(String.format("%d more actual records not found in expected result ", recordsNotShown));
+		}
+		
+		// When the comparison is stopped, the expected rows not found are unknown
+		if (maxDifferences > 0 && foundNotExpected.getRecordCount() >= maxDifferences) {
+			addMaxDifferencesFinding(maxDifferences, notExpectedFindingsSB);
+			throw new CucumberDataComparisonException(notExpectedFindingsSB.toString(), (DifferenceReport)null, foundNotExpected);
+		}
+		
+		StringBuilder findingsSB = new StringBuilder();
+		// Both hashsets should have the same nr of records, when summarizing the unique records not found aren't known
+		int actualUniqueRecords = (notExpectedHashes != null) ? notExpectedHashes.size() : 0;
+		for (int occurences : actualOccurences) {
+			if (occurences > 0) {
+				actualUniqueRecords++;
+			}
+		}
+		if (actualUniqueRecords != expectedHashes.size() && (notExpectedHashes != null || foundNotExpected.getRecordCount() == 0)) {
+			findingsSB.append(String.format("Expected %d unique records but found %d unique records ", expectedHashes.size(), actualUniqueRecords)).append("\n");
+			logger.info(String.format("Expected %d unique records but found %d unique records ", expectedHashes.size(), actualUniqueRecords));
+		}
+		
+		logger.info("Comparing expected against actual");
+		DifferenceReport expectedNotFound = getRecordsToReport("expected", expectedHashes, expectedResult, "actual", slot -> actualOccurences[slot], true, "expected_not_found_", 0, findingsSB);
+		findingsSB.append(notExpectedFindingsSB);
+		
+		//Findings should be an empty string
+		String findings = findingsSB.toString();
+		if (findings.length() > 0) {
+			throw new CucumberDataComparisonException(findings, expectedNotFound, (foundNotExpected.getRecordCount() > 0) ? foundNotExpected : null);
+		}
+	}
+	
 	/**
 	private LinkedList<LinkedList<String>> getMissingRecords(HashMap<String, Integer> baseSet, HashMap<String, Integer> targetSet, RowSet targetRowSet)throws SQLException, XTestException{
 		LinkedList<LinkedList<String>> missingRecords = new LinkedList<>();
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import javax.sql.RowSet;
+
+import com.xbreeze.xtest.CucumberDataComparison.DifferenceReport;
+import com.xbreeze.xtest.CucumberDataComparison.Exceptions.CucumberDataComparisonException;
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.database.helpers.DataHelper;
+import com.xbreeze.xtest.database.helpers.DatabaseCommandExecutor;
+import com.xbreeze.xtest.exception.XTestException;
+
+/**
+ * Probes a query result on the database before its records are compared, so a result that is different fails without reading its records.
+ * The number of records and the minimum, maximum and sum of the compared numeric columns are calculated in a single query and compared 
+ * with the same aggregates of the expected result. Equal aggregates don't prove the results are equal, so the records are still compared after the probe,
+ * unless the probe is configured to skip comparing the records.
+ * Text and date columns are not probed, since their order and format depend on the database.
+ * @author Willem
+ *
+ */
+public class ResultProbe {
+	static final Logger logger = Logger.getLogger(ResultProbe.class.getName());
+	
+	private DataHelper _dataHelper;
+	private DatabaseConfig _dbConfig;
+	
+	/**
+	 * Constructor
+	 * @param dataHelper the data helper
+	 * @param dbConfig the database config of the query
+	 */
+	public ResultProbe(DataHelper dataHelper, DatabaseConfig dbConfig) {
+		this._dataHelper = dataHelper;
+		this._dbConfig = dbConfig;
+	}
+	
+	/**
+	 * Probe the result of a query
+	 * @param query the query of the actual result
+	 * @param expectedResult the expected result, with the same structure as the actual result
+	 * @param fieldsToCheck the fields to compare
+	 * @throws XTestException
+	 * @throws CucumberDataComparisonException when an aggregate is different
+	 */
+	public void probe(String query, RowSet expectedResult, LinkedList<String> fieldsToCheck) throws XTestException, CucumberDataComparisonException {
+		List<ProbeAggregate> aggregates = new ArrayList<>();
+		StringBuilder probeQuery = new StringBuilder("SELECT COUNT(*)");
+		try {
+			ResultSetMetaData meta = expectedResult.getMetaData();
+			for (int i = 1; i <= meta.getColumnCount(); i++) {
+				if (meta.getColumnName(i) == null || !fieldsToCheck.contains(meta.getColumnName(i).toLowerCase())) {
+					continue;
+				}
+				String columnName = this._dbConfig.getFormattedColumnName(meta.getColumnName(i));
+				switch (meta.getColumnType(i)) {
+				case Types.BIGINT:
+				case Types.INTEGER:
+				case Types.SMALLINT:
+				case Types.TINYINT:
+					// Integer sums can overflow the integer type on the database
+					aggregates.add(new ProbeAggregate(i, meta.getColumnName(i), true));
+					probeQuery.append(String.format(", MIN(%1$s), MAX(%1$s), SUM(CAST(%1$s AS DECIMAL(38)))", columnName));
+					break;
+				case Types.DECIMAL:
+				case Types.NUMERIC:
+					aggregates.add(new ProbeAggregate(i, meta.getColumnName(i), true));
+					probeQuery.append(String.format(", MIN(%1$s), MAX(%1$s), SUM(%1$s)", columnName));
+					break;
+				case Types.DOUBLE:
+				case Types.FLOAT:
+				case Types.REAL:
+					// The sum of approximate numbers depends on the order they are added in
+					aggregates.add(new ProbeAggregate(i, meta.getColumnName(i), false));
+					probeQuery.append(String.format(", MIN(%1$s), MAX(%1$s)", columnName));
+					break;
+				default:
+					break;
+				}
+			}
+			probeQuery.append(String.format(" FROM (%s) XTEST_PROBE", query));
+			
+			// Calculate the aggregates of the expected result
+			long expectedCount = 0;
+			expectedResult.beforeFirst();
+			while (expectedResult.next()) {
+				expectedCount++;
+				for (ProbeAggregate aggregate : aggregates) {
+					aggregate.addExpectedValue(expectedResult.getBigDecimal(aggregate._position));
+				}
+			}
+			
+			// Calculate the aggregates of the actual result on the database
+			StringBuilder findingsSB = new StringBuilder();
+			long expectedRecordCount = expectedCount;
+			DatabaseCommandExecutor.executeCommandWithStreamedResult(this._dataHelper.getConnection(this._dbConfig), probeQuery.toString(), this._dbConfig, resultSet -> {
+				resultSet.next();
+				long actualCount = resultSet.getLong(1);
+				if (actualCount != expectedRecordCount) {
+					findingsSB.append(String.format("Expected %d records but found %d records ", expectedRecordCount, actualCount)).append("\n");
+				}
+				int column = 2;
+				for (ProbeAggregate aggregate : aggregates) {
+					aggregate.check("minimum", aggregate._expectedMin, resultSet.getBigDecimal(column++), findingsSB);
+					aggregate.check("maximum", aggregate._expectedMax, resultSet.getBigDecimal(column++), findingsSB);
+					if (aggregate._probeSum) {
+						aggregate.check("sum", aggregate._expectedSum, resultSet.getBigDecimal(column++), findingsSB);
+					}
+				}
+			});
+			
+			String findings = findingsSB.toString();
+			if (findings.length() > 0) {
+				logger.info(String.format("The probe of the actual result is different: %s", findings));
+				throw new CucumberDataComparisonException(findings, (DifferenceReport)null, (DifferenceReport)null);
+			}
+			logger.info(String.format("The probe of the actual result is equal to the expected result (%d records, %d numeric columns)", expectedCount, aggregates.size()));
+		}
+		catch (SQLException exc) {
+			throw new XTestException(String.format("Error probing the actual result: %s", exc.getMessage()));
+		}
+	}
+	
+	/**
+	 * The aggregates of a numeric column
+	 */
+	private static final class ProbeAggregate {
+		private final int _position;
+		private final String _columnName;
+		private final boolean _probeSum;
+		private BigDecimal _expectedMin;
+		private BigDecimal _expectedMax;
+		private BigDecimal _expectedSum;
+		
+		private ProbeAggregate(int position, String columnName, boolean probeSum) {
+			this._position = position;
+			this._columnName = columnName;
+			this._probeSum = probeSum;
+		}
+		
+		private void addExpectedValue(BigDecimal value) {
+			// Null values are ignored by the aggregates, like on the database
+			if (value == null) {
+				return;
+			}
+			this._expectedMin = (this._expectedMin == null || value.compareTo(this._expectedMin) < 0) ? value : this._expectedMin;
+			this._expectedMax = (this._expectedMax == null || value.compareTo(this._expectedMax) > 0) ? value : this._expectedMax;
+			this._expectedSum = (this._expectedSum == null) ? value : this._expectedSum.add(value);
+		}
+		
+		private void check(String aggregateName, BigDecimal expectedValue, BigDecimal actualValue, StringBuilder findingsSB) {
+			boolean isEqual = (expectedValue == null || actualValue == null) ? Objects.equals(expectedValue, actualValue) : expectedValue.compareTo(actualValue) == 0;
+			if (!isEqual) {
+				findingsSB.append(String.format("Expected %s %s for column %s but found %s ", aggregateName, expectedValue, this._columnName, actualValue)).append("\n");
+			}
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.xbreeze.xtest.exception.XTestException;
+
+/**
+ * A variable holding a column of a result, with the SQL type of the column. Integer columns are stored as a long array,
+ * other columns as the text of their values. Dates and times are stored in the JDBC escape format, so they can be bound with their type.
+ * @author Willem
+ *
+ */
+public class ResultVariable {
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private final int _sqlType;
+	private final int _precision;
+	private final int _scale;
+	private long[] _longValues;
+	private String[] _textValues;
+	private int _size;
+	// The temporary tables the values are loaded in, on the name of the database server config
+	private final HashMap<String, String> _temporaryTables = new HashMap<>();
+	
+	private ResultVariable(int sqlType, int precision, int scale) {
+		this._sqlType = sqlType;
+		this._precision = precision;
+		this._scale = scale;
+		if (isIntegerType(sqlType)) {
+			this._longValues = new long[INITIAL_CAPACITY];
+		}
+		else {
+			this._textValues = new String[INITIAL_CAPACITY];
+		}
+	}
+	
+	/**
+	 * Read a column of all records of a result into a variable
+	 * @param result the result, which is read from the first record
+	 * @param fieldName the name of the field, used in messages
+	 * @param column the position of the column to read
+	 * @return the variable
+	 * @throws XTestException exception when a value is null
+	 * @throws SQLException
+	 */
+	public static ResultVariable fromResult(ResultSet result, String fieldName, int column) throws XTestException, SQLException {
+		ResultSetMetaData meta = result.getMetaData();
+		ResultVariable variable = new ResultVariable(meta.getColumnType(column), meta.getPrecision(column), meta.getScale(column));
+		result.beforeFirst();
+		while (result.next()) {
+			if (variable._longValues != null) {
+				variable.add(result.getLong(column));
+			}
+			else {
+				variable.add(readText(result, column));
+			}
+			if (result.wasNull()) {
+				throw new XTestException(String.format("Result read for %s was null in record %d", fieldName, variable._size));
+			}
+		}
+		return variable;
+	}
+	
+	/**
+	 * Read a value of the current record as text, dates and times in the JDBC escape format so the text is the same on every server and can be bound as a typed value again
+	 * @param result the result, positioned on a record
+	 * @param column the position of the column to read
+	 * @return the text, or null if the value is null
+	 * @throws SQLException
+	 */
+	static String readText(ResultSet result, int column) throws SQLException {
+		Object value;
+		switch (result.getMetaData().getColumnType(column)) {
+		case Types.DATE:
+			value = result.getDate(column);
+			break;
+		case Types.TIME:
+			value = result.getTime(column);
+			break;
+		case Types.TIMESTAMP:
+			value = result.getTimestamp(column);
+			break;
+		default:
+			return result.getString(column);
+		}
+		return (value != null) ? value.toString() : null;
+	}
+	
+	/**
+	 * @return a variable with the same values, which are not loaded in a temporary table yet
+	 */
+	public ResultVariable copy() {
+		ResultVariable variable = new ResultVariable(this._sqlType, this._precision, this._scale);
+		variable._longValues = this._longValues;
+		variable._textValues = this._textValues;
+		variable._size = this._size;
+		return variable;
+	}
+	
+	private static boolean isIntegerType(int sqlType) {
+		return sqlType == Types.TINYINT || sqlType == Types.SMALLINT || sqlType == Types.INTEGER || sqlType == Types.BIGINT;
+	}
+	
+	private static boolean isNumericType(int sqlType) {
+		return isIntegerType(sqlType) || sqlType == Types.DECIMAL || sqlType == Types.NUMERIC || sqlType == Types.REAL || sqlType == Types.FLOAT || sqlType == Types.DOUBLE;
+	}
+	
+	private void add(long value) {
+		if (this._size == this._longValues.length) {
+			this._longValues = Arrays.copyOf(this._longValues, this._size * 2);
+		}
+		this._longValues[this._size++] = value;
+	}
+	
+	private void add(String value) {
+		if (this._size == this._textValues.length) {
+			this._textValues = Arrays.copyOf(this._textValues, this._size * 2);
+		}
+		this._textValues[this._size++] = value;
+	}
+	
+	/**
+	 * @return the number of values
+	 */
+	public int size() {
+		return this._size;
+	}
+	
+	/**
+	 * @return the SQL type of the column the values are read from
+	 */
+	public int getSqlType() {
+		return this._sqlType;
+	}
+	
+	/**
+	 * @return the precision of the column the values are read from
+	 */
+	public int getPrecision() {
+		return this._precision;
+	}
+	
+	/**
+	 * @return the scale of the column the values are read from
+	 */
+	public int getScale() {
+		return this._scale;
+	}
+	
+	/**
+	 * @return whether the values are integers
+	 */
+	public boolean isInteger() {
+		return this._longValues != null;
+	}
+	
+	/**
+	 * @param index the position of the value, starting at 0
+	 * @return the text of a value, as it was read from the result
+	 */
+	public String getText(int index) {
+		return isInteger() ? Long.toString(this._longValues[index]) : this._textValues[index];
+	}
+	
+	/**
+	 * @param index the position of the value, starting at 0
+	 * @return the value to bind as a parameter: a Long for integers, a BigDecimal for other numbers, a Date, Time or Timestamp for dates and times and a String otherwise
+	 */
+	public Object getValue(int index) {
+		if (isInteger()) {
+			return this._longValues[index];
+		}
+		if (isNumericType(this._sqlType)) {
+			return new BigDecimal(this._textValues[index]);
+		}
+		switch (this._sqlType) {
+		case Types.DATE:
+			return Date.valueOf(this._textValues[index]);
+		case Types.TIME:
+			return Time.valueOf(this._textValues[index]);
+		case Types.TIMESTAMP:
+			return Timestamp.valueOf(this._textValues[index]);
+		default:
+			return this._textValues[index];
+		}
+	}
+	
+	/**
+	 * @return the values as a comma separated list of SQL literals, numbers as they are and other values quoted
+	 */
+	public String getLiteralList() {
+		StringBuilder literals = new StringBuilder();
+		boolean numeric = isNumericType(this._sqlType);
+		for (int i = 0; i < this._size; i++) {
+			if (i > 0) {
+				literals.append(", ");
+			}
+			if (numeric) {
+				literals.append(getText(i));
+			}
+			else {
+				literals.append('\'').append(this._textValues[i].replace("'", "''")).append('\'');
+			}
+		}
+		return literals.toString();
+	}
+	
+	/**
+	 * @param serverName the name of the database server config
+	 * @return the temporary table the values are loaded in on the server, or null if they aren't loaded yet
+	 */
+	String getTemporaryTable(String serverName) {
+		return this._temporaryTables.get(serverName);
+	}
+	
+	void setTemporaryTable(String serverName, String temporaryTableName) {
+		this._temporaryTables.put(serverName, temporaryTableName);
+	}
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.exception.XTestException;
+
+/**
+ * A variable shared by the scenarios of a feature or of the run, which is computed by a query when it is first used.
+ * The value is kept until the variable is invalidated, explicitly or because one of the tables it depends on is written.
+ * @author Willem
+ *
+ */
+public class SharedVariable {
+	static final Logger logger = Logger.getLogger(SharedVariable.class.getName());
+	
+	/**
+	 * Reads the value of a shared variable from the database
+	 */
+	public interface ValueReader {
+		/**
+		 * @param variable the variable to compute
+		 * @return the value, a String or a ResultVariable
+		 * @throws XTestException
+		 */
+		Object read(SharedVariable variable) throws XTestException;
+	}
+	
+	private final String _name;
+	private final DatabaseConfig _dbConfig;
+	private final String _fieldName;
+	private final String _query;
+	// The unqualified lower case names of the tables the value depends on
+	private final Set<String> _tables = new HashSet<>();
+	private Object _value;
+	// Incremented when the variable is invalidated, so a value computed for a single scenario can be checked as well
+	private long _version = 0;
+	
+	/**
+	 * Constructor
+	 * @param name the variable name, without prefix
+	 * @param dbConfig the database config to execute the query on
+	 * @param fieldName the field of the query result to store
+	 * @param query the query computing the value
+	 * @param tableNames the names of the tables which invalidate the value when they are written
+	 */
+	public SharedVariable(String name, DatabaseConfig dbConfig, String fieldName, String query, List<String> tableNames) {
+		this._name = name;
+		this._dbConfig = dbConfig;
+		this._fieldName = fieldName;
+		this._query = query;
+		for (String tableName : tableNames) {
+			this._tables.add(getUnqualifiedName(tableName));
+		}
+	}
+	
+	/**
+	 * Get the last part of a (qualified) table name, without quotes or brackets, in lower case
+	 * @param tableName the table name
+	 * @return the unqualified name
+	 */
+	static String getUnqualifiedName(String tableName) {
+		String name = tableName.trim();
+		name = name.substring(name.lastIndexOf('.') + 1);
+		return name.replaceAll("[\\[\\]\"`]", "").toLowerCase();
+	}
+	
+	public String getName() {
+		return this._name;
+	}
+	
+	public DatabaseConfig getDatabaseConfig() {
+		return this._dbConfig;
+	}
+	
+	public String getFieldName() {
+		return this._fieldName;
+	}
+	
+	public String getQuery() {
+		return this._query;
+	}
+	
+	/**
+	 * @return whether the variable is defined with the same query, field and database config, so its value can be kept
+	 */
+	boolean isDefinedAs(SharedVariable variable) {
+		return this._query.equals(variable._query) && this._fieldName.equalsIgnoreCase(variable._fieldName) 
+				&& this._dbConfig.getName().equals(variable._dbConfig.getName()) && this._tables.equals(variable._tables);
+	}
+	
+	/**
+	 * @param unqualifiedTableName the unqualified lower case table name
+	 * @return whether the value depends on the table
+	 */
+	boolean dependsOn(String unqualifiedTableName) {
+		return this._tables.contains(unqualifiedTableName);
+	}
+	
+	/**
+	 * Get the value, computing it if this is the first use since it was defined or invalidated. 
+	 * Scenarios using the variable at the same time wait for the value to be computed once.
+	 * @param reader the reader computing the value
+	 * @return the value, a String or a ResultVariable
+	 * @throws XTestException
+	 */
+	public synchronized Object getValue(ValueReader reader) throws XTestException {
+		if (this._value == null) {
+			logger.info(String.format("Computing shared variable %s", this._name));
+			this._value = reader.read(this);
+		}
+		return this._value;
+	}
+	
+	/**
+	 * Get the value if it is computed already, without computing it
+	 * @return the value, or null if it isn't computed since it was defined or invalidated
+	 */
+	public synchronized Object getComputedValue() {
+		return this._value;
+	}
+	
+	/**
+	 * @return the number of times the variable is invalidated
+	 */
+	public synchronized long getVersion() {
+		return this._version;
+	}
+	
+	/**
+	 * Clear the value, so it is computed again when it is used
+	 */
+	public synchronized void invalidate() {
+		this._version++;
+		if (this._value != null) {
+			logger.info(String.format("Invalidating shared variable %s", this._name));
+			this._value = null;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the variables which are shared by the scenarios of a feature or of the complete run, shared by all instances.
+ * Feature variables are kept on the feature they are defined in, a feature variable hides a run variable with the same name.
+ * @author Willem
+ *
+ */
+public class SharedVariableCache {
+	public static final String SCOPE_RUN = "run";
+	public static final String SCOPE_FEATURE = "feature";
+	
+	private static final Map<String, SharedVariable> _variables = new ConcurrentHashMap<>();
+	private static final Pattern WORD_PATTERN = Pattern.compile("[^a-z0-9_@$#]+");
+	
+	private static String getKey(String scope, String feature, String variableName) {
+		return SCOPE_FEATURE.equalsIgnoreCase(scope) ? String.format("%s|%s|%s", SCOPE_FEATURE, feature, variableName) : String.format("%s|%s", SCOPE_RUN, variableName);
+	}
+	
+	/**
+	 * Define a shared variable. When it is already defined the same way, for example in the background of a feature, its value is kept.
+	 * @param scope the scope, run or feature
+	 * @param feature the feature the variable is defined in
+	 * @param variable the variable
+	 * @return the defined variable
+	 */
+	public static SharedVariable define(String scope, String feature, SharedVariable variable) {
+		return _variables.compute(getKey(scope, feature, variable.getName()), (key, existing) -> (existing != null && existing.isDefinedAs(variable)) ? existing : variable);
+	}
+	
+	/**
+	 * Get a shared variable visible to a scenario
+	 * @param feature the feature of the scenario
+	 * @param variableName the variable name, without prefix
+	 * @return the variable of the feature, the variable of the run or null if neither is defined
+	 */
+	public static SharedVariable get(String feature, String variableName) {
+		SharedVariable variable = _variables.get(getKey(SCOPE_FEATURE, feature, variableName));
+		return (variable != null) ? variable : _variables.get(getKey(SCOPE_RUN, feature, variableName));
+	}
+	
+	/**
+	 * Invalidate a shared variable, so it is computed again when it is used
+	 * @param scope the scope, run or feature
+	 * @param feature the feature of the scenario
+	 * @param variableName the variable name, without prefix
+	 * @return whether the variable was defined
+	 */
+	public static boolean invalidate(String scope, String feature, String variableName) {
+		SharedVariable variable = _variables.get(getKey(scope, feature, variableName));
+		if (variable != null) {
+			variable.invalidate();
+		}
+		return variable != null;
+	}
+	
+	/**
+	 * Invalidate the shared variables depending on a table which is written
+	 * @param tableName the (qualified) name of the table
+	 */
+	public static void invalidateTable(String tableName) {
+		String unqualifiedTableName = SharedVariable.getUnqualifiedName(tableName);
+		for (SharedVariable variable : _variables.values()) {
+			if (variable.dependsOn(unqualifiedTableName)) {
+				variable.invalidate();
+			}
+		}
+	}
+	
+	/**
+	 * Invalidate the shared variables depending on a table which is named in an executed statement
+	 * @param statement the statement text
+	 */
+	public static void invalidateStatement(String statement) {
+		if (_variables.isEmpty()) {
+			return;
+		}
+		String[] words = WORD_PATTERN.split(statement.toLowerCase());
+		for (SharedVariable variable : _variables.values()) {
+			for (String word : words) {
+				if (variable.dependsOn(word)) {
+					variable.invalidate();
+					break;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,476 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.sql.RowSet;
+
+import com.xbreeze.xtest.CucumberDataComparison.DifferenceReport;
+import com.xbreeze.xtest.CucumberDataComparison.Exceptions.CucumberDataComparisonException;
+import com.xbreeze.xtest.config.DatabaseConfig;
+import com.xbreeze.xtest.database.helpers.ColumnConverter;
+import com.xbreeze.xtest.database.helpers.DataHelper;
+import com.xbreeze.xtest.database.helpers.DatabaseCommandExecutor;
+import com.xbreeze.xtest.database.helpers.RecordSorter;
+import com.xbreeze.xtest.database.helpers.RowHashIndex;
+import com.xbreeze.xtest.database.helpers.RowHasher;
+import com.xbreeze.xtest.database.helpers.SortRecord;
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+import com.xbreeze.xtest.exception.XTestException;
+
+/**
+ * Compares the expected result with a query result in sort order, so neither result needs to fit in memory.
+ * The query result is ordered on the database on the compared columns with a numeric or date/time datatype (the sort key),
+ * since only their order is the same in the database and in Java. The expected result is sorted locally, using temporary files 
+ * when it has more records than the sort buffer size. Both are merged on the sort key, the records having the same sort key 
+ * (a block) are compared on their row hash. A block is kept in memory, so when a block has more records than the sort buffer size
+ * the comparison is stopped and the results should be compared otherwise.
+ * @author Willem
+ *
+ */
+public class SortMergeResultComparison {
+	static final Logger logger = Logger.getLogger(SortMergeResultComparison.class.getName());
+	//Length of a timestamp formatted as yyyy-mm-dd hh:mm:ss, fractional seconds are not compared
+	private static final int TIMESTAMP_LENGTH = 19;
+	
+	private ResultContext _resultContext;
+	private DataHelper _dataHelper;
+	private DatabaseConfig _dbConfig;
+	private int _sortBufferSize;
+	private int[] _keyColumns;
+	private int[] _keyTypes;
+	private Comparator<SortRecord> _keyComparator;
+	
+	private StringBuilder _expectedFindingsSB;
+	private StringBuilder _actualFindingsSB;
+	private DifferenceReport _expectedNotFound;
+	private DifferenceReport _foundNotExpected;
+	private int _expectedUniqueRecords;
+	private int _actualUniqueRecords;
+	
+	/**
+	 * Constructor
+	 * @param resultContext the result context, used to create the difference reports
+	 * @param dataHelper the data helper
+	 * @param dbConfig the database config of the query
+	 * @param sortBufferSize the maximum number of expected records sorted in memory and of records with the same sort key
+	 */
+	public SortMergeResultComparison(ResultContext resultContext, DataHelper dataHelper, DatabaseConfig dbConfig, int sortBufferSize) {
+		this._resultContext = resultContext;
+		this._dataHelper = dataHelper;
+		this._dbConfig = dbConfig;
+		this._sortBufferSize = sortBufferSize;
+	}
+	
+	/**
+	 * Determine the sort key, which are the compared columns with a datatype that is ordered the same in the database and in Java
+	 * @param meta the structure of the result
+	 * @param fieldsToCheck the compared fields
+	 * @return true if there is a sort key, otherwise the results can't be compared in sort order
+	 * @throws SQLException
+	 */
+	public boolean determineSortKey(ResultSetMetaData meta, LinkedList<String> fieldsToCheck) throws SQLException {
+		List<Integer> keyColumns = new ArrayList<>();
+		List<Integer> keyTypes = new ArrayList<>();
+		int timestampColumn = 0;
+		for (int i = 1; i <= meta.getColumnCount(); i++) {
+			if (meta.getColumnName(i) == null || !fieldsToCheck.contains(meta.getColumnName(i).toLowerCase())) {
+				continue;
+			}
+			switch (meta.getColumnType(i)) {
+			case Types.BIGINT:
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+			case Types.DOUBLE:
+			case Types.FLOAT:
+			case Types.REAL:
+				keyColumns.add(i);
+				keyTypes.add(Types.NUMERIC);
+				break;
+			case Types.DATE:
+			case Types.TIME:
+				keyColumns.add(i);
+				keyTypes.add(meta.getColumnType(i));
+				break;
+			case Types.TIMESTAMP:
+				if (timestampColumn == 0) {
+					timestampColumn = i;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		//Timestamps are compared without fractional seconds, while the database orders them on the fractional seconds as well.
+		//The order on the full timestamp is only the same as the order on the truncated timestamp for the last column of the sort key,
+		//so one timestamp column is added at the end and other timestamp columns aren't part of the sort key.
+		if (timestampColumn > 0) {
+			keyColumns.add(timestampColumn);
+			keyTypes.add(Types.TIMESTAMP);
+		}
+		this._keyColumns = keyColumns.stream().mapToInt(Integer::intValue).toArray();
+		this._keyTypes = keyTypes.stream().mapToInt(Integer::intValue).toArray();
+		boolean[] numeric = new boolean[this._keyTypes.length];
+		for (int i = 0; i < numeric.length; i++) {
+			numeric[i] = this._keyTypes[i] == Types.NUMERIC;
+		}
+		this._keyComparator = (a, b) -> compareKeys(a.getKey(), b.getKey(), numeric);
+		return this._keyColumns.length > 0;
+	}
+	
+	/**
+	 * Compare the expected result with the result of a query
+	 * @param query the query returning the actual result, without order by
+	 * @param expectedResult the expected result
+	 * @param fieldsToCheck the fields to compare
+	 * @return true if the results are compared, false if a block has more records than the sort buffer size and nothing is reported
+	 * @throws XTestException
+	 * @throws CucumberDataComparisonException
+	 */
+	public boolean compare(String query, RowSet expectedResult, LinkedList<String> fieldsToCheck) throws XTestException, CucumberDataComparisonException {
+		this._expectedFindingsSB = new StringBuilder();
+		this._actualFindingsSB = new StringBuilder();
+		this._expectedNotFound = this._resultContext.createDifferenceReport(this._dataHelper.rowSetHeader(expectedResult), "expected_not_found_");
+		this._foundNotExpected = this._resultContext.createDifferenceReport(this._dataHelper.rowSetHeader(expectedResult), "found_not_expected_");
+		this._expectedUniqueRecords = 0;
+		this._actualUniqueRecords = 0;
+		
+		try (RecordSorter expectedSorter = new RecordSorter(this._keyComparator, this._sortBufferSize)) {
+			try {
+				// Sort the expected records
+				ColumnConverter[] hashConverters = this._dataHelper.getHashConverters(expectedResult, fieldsToCheck);
+				RowHasher hasher = new RowHasher();
+				int rowCounter = 0;
+				expectedResult.beforeFirst();
+				while (expectedResult.next()) {
+					expectedSorter.add(this.readRecord(expectedResult, ++rowCounter, hasher, hashConverters));
+				}
+				expectedSorter.sort();
+				
+				// Merge the sorted expected records with the actual records, ordered on the database
+				logger.info("Comparing expected and actual in sort order");
+				DatabaseCommandExecutor.executeCommandWithStreamedResult(this._dataHelper.getConnection(this._dbConfig), this.getOrderedQuery(query, expectedResult.getMetaData()), this._dbConfig, resultSet -> {
+					ColumnConverter[] actualHashConverters = this._dataHelper.getHashConverters(resultSet, fieldsToCheck);
+					RowHasher actualHasher = new RowHasher();
+					int[] actualRowCounter = new int[1];
+					SortRecord[] previousActual = new SortRecord[1];
+					try {
+						this.merge(
+							() -> expectedSorter.next(),
+							() -> {
+								if (!resultSet.next()) {
+									return null;
+								}
+								SortRecord actual = this.readRecord(resultSet, ++actualRowCounter[0], actualHasher, actualHashConverters);
+								// The merge is only correct if the database returns the records in the same order as the comparator
+								if (previousActual[0] != null && this._keyComparator.compare(previousActual[0], actual) > 0) {
+									throw new XTestException(String.format("The actual result is not sorted as expected at record %d, the results can't be compared in sort order", actual.getRowNumber()));
+								}
+								previousActual[0] = actual;
+								return actual;
+						});
+					}
+					catch (IOException exc) {
+						throw new UncheckedIOException(exc);
+					}
+					catch (BlockTooLargeException exc) {
+						// Don't read the remaining records when the result is closed
+						DatabaseCommandExecutor.cancelStatement(resultSet);
+						throw exc;
+					}
+				});
+			}
+			finally {
+				this._expectedNotFound.close();
+				this._foundNotExpected.close();
+			}
+		}
+		catch (BlockTooLargeException exc) {
+			logger.info(exc.getMessage());
+			return false;
+		}
+		catch (IOException | UncheckedIOException exc) {
+			throw new XTestException(String.format("Error sorting or writing records: %s", exc.getMessage()));
+		}
+		catch (SQLException exc) {
+			throw new XTestDatabaseException(exc.getMessage());
+		}
+		
+		this.addRemainingRecordsFinding(this._expectedNotFound, "expected", "actual", this._expectedFindingsSB);
+		this.addRemainingRecordsFinding(this._foundNotExpected, "actual", "expected", this._actualFindingsSB);
+		StringBuilder findingsSB = new StringBuilder();
+		// Both results should have the same nr of unique records
+		if (this._actualUniqueRecords != this._expectedUniqueRecords) {
+			findingsSB.append(String.format("Expected %d unique records but found %d unique records ", this._expectedUniqueRecords, this._actualUniqueRecords)).append("\n");
+			logger.info(String.format("Expected %d unique records but found %d unique records ", this._expectedUniqueRecords, this._actualUniqueRecords));
+		}
+		findingsSB.append(this._expectedFindingsSB).append(this._actualFindingsSB);
+		
+		//Findings should be an empty string
+		String findings = findingsSB.toString();
+		if (findings.length() > 0) {
+			throw new CucumberDataComparisonException(findings, 
+					(this._expectedNotFound.getRecordCount() > 0) ? this._expectedNotFound : null, 
+					(this._foundNotExpected.getRecordCount() > 0) ? this._foundNotExpected : null);
+		}
+		return true;
+	}
+	
+	/**
+	 * Merge the expected and actual records, which are both sorted on the sort key, and compare them per block of records with the same sort key
+	 * @param expectedRecords the sorted expected records
+	 * @param actualRecords the sorted actual records
+	 * @throws XTestException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	private void merge(RecordSource expectedRecords, RecordSource actualRecords) throws XTestException, IOException, SQLException {
+		BlockReader expectedBlocks = new BlockReader(expectedRecords);
+		BlockReader actualBlocks = new BlockReader(actualRecords);
+		List<SortRecord> expectedBlock = expectedBlocks.nextBlock();
+		List<SortRecord> actualBlock = actualBlocks.nextBlock();
+		List<SortRecord> emptyBlock = new ArrayList<>();
+		while (!expectedBlock.isEmpty() || !actualBlock.isEmpty()) {
+			int compareResult;
+			if (expectedBlock.isEmpty()) {
+				compareResult = 1;
+			}
+			else if (actualBlock.isEmpty()) {
+				compareResult = -1;
+			}
+			else {
+				compareResult = this._keyComparator.compare(expectedBlock.get(0), actualBlock.get(0));
+			}
+			if (compareResult < 0) {
+				this.compareBlocks(expectedBlock, emptyBlock);
+				expectedBlock = expectedBlocks.nextBlock();
+			}
+			else if (compareResult > 0) {
+				this.compareBlocks(emptyBlock, actualBlock);
+				actualBlock = actualBlocks.nextBlock();
+			}
+			else {
+				this.compareBlocks(expectedBlock, actualBlock);
+				expectedBlock = expectedBlocks.nextBlock();
+				actualBlock = actualBlocks.nextBlock();
+			}
+		}
+	}
+	
+	/**
+	 * Compare the expected and actual records having the same sort key on their row hash
+	 * @param expectedBlock the expected records
+	 * @param actualBlock the actual records
+	 * @throws IOException
+	 */
+	private void compareBlocks(List<SortRecord> expectedBlock, List<SortRecord> actualBlock) throws IOException {
+		RowHashIndex expectedHashes = getBlockHashes(expectedBlock);
+		RowHashIndex actualHashes = getBlockHashes(actualBlock);
+		this._expectedUniqueRecords += expectedHashes.size();
+		this._actualUniqueRecords += actualHashes.size();
+		for (int i = 0; i < expectedBlock.size(); i++) {
+			SortRecord expected = expectedBlock.get(i);
+			int actualOccurences = actualHashes.getOccurences(expected.getHashHigh(), expected.getHashLow());
+			if (actualOccurences == 0) {
+				this.reportRecord(expected, "expected", "actual", this._expectedNotFound, this._expectedFindingsSB);
+			}
+			else {
+				// Report a different number of occurrences once, on the first record of the hash
+				int expectedSlot = expectedHashes.find(expected.getHashHigh(), expected.getHashLow());
+				if (expectedHashes.getFirstRow(expectedSlot) == i + 1 && expectedHashes.getOccurences(expectedSlot) != actualOccurences) {
+					this._expectedFindingsSB.append(String.format("expected record %d has a different number of duplicate rows in the expected and actual result (%d rows vs %d rows).", expected.getRowNumber(), expectedHashes.getOccurences(expectedSlot), actualOccurences)).append("\n");
+					logger.info(String.format("expected record %d has a different number of duplicate rows in the expected and actual result (%d rows vs %d rows).", expected.getRowNumber(), expectedHashes.getOccurences(expectedSlot), actualOccurences));
+				}
+			}
+		}
+		for (SortRecord actual : actualBlock) {
+			if (expectedHashes.getOccurences(actual.getHashHigh(), actual.getHashLow()) == 0) {
+				this.reportRecord(actual, "actual", "expected", this._foundNotExpected, this._actualFindingsSB);
+			}
+		}
+	}
+	
+	private static RowHashIndex getBlockHashes(List<SortRecord> block) {
+		RowHashIndex hashes = new RowHashIndex(block.size());
+		for (int i = 0; i < block.size(); i++) {
+			hashes.add(block.get(i).getHashHigh(), block.get(i).getHashLow(), i + 1);
+		}
+		return hashes;
+	}
+	
+	private void reportRecord(SortRecord record, String baseSetName, String compareWithSetName, DifferenceReport report, StringBuilder findingsSB) throws IOException {
+		report.addRecord(record.getRecord());
+		if (!report.isTruncated()) {
+			findingsSB.append(String.format("%s record %d not found in %s result ", baseSetName, record.getRowNumber(), compareWithSetName)).append("\n");
+			logger.info(String.format("%s record %d not found in %s result ", baseSetName, record.getRowNumber(), compareWithSetName));
+		}
+	}
+	
+	private void addRemainingRecordsFinding(DifferenceReport report, String baseSetName, String compareWithSetName, StringBuilder findingsSB) {
+		if (report.isTruncated()) {
+			int recordsNotShown = report.getRecordCount() - report.getInlineRecords().size();
+			findingsSB.append(String.format("%d more %s records not found in %s result ", recordsNotShown, baseSetName, compareWithSetName)).append("\n");
+			logger.info(String.format("%d more %s records not found in %s result ", recordsNotShown, baseSetName, compareWithSetName));
+		}
+	}
+	
+	private SortRecord readRecord(ResultSet rs, int rowNumber, RowHasher hasher, ColumnConverter[] hashConverters) throws SQLException, XTestException {
+		this._dataHelper.hashRecord(hasher, hashConverters, rs);
+		String[] key = new String[this._keyColumns.length];
+		for (int i = 0; i < this._keyColumns.length; i++) {
+			key[i] = getKeyValue(rs, this._keyColumns[i], this._keyTypes[i]);
+		}
+		return new SortRecord(key, hasher.getHashHigh(), hasher.getHashLow(), rowNumber, this._dataHelper.rowSetRecordToArray(rs));
+	}
+	
+	/**
+	 * Get the value of a sort key column, independent of the configured formats.
+	 * Dates and times are returned in the JDBC escape format, which is ordered the same as the value.
+	 * Timestamps are truncated to seconds, like they are when the values are hashed.
+	 */
+	private static String getKeyValue(ResultSet rs, int column, int keyType) throws SQLException {
+		Object value;
+		switch (keyType) {
+		case Types.NUMERIC:
+			BigDecimal decimalValue = rs.getBigDecimal(column);
+			value = (decimalValue != null) ? decimalValue.toPlainString() : null;
+			break;
+		case Types.DATE:
+			value = rs.getDate(column);
+			break;
+		case Types.TIME:
+			value = rs.getTime(column);
+			break;
+		default:
+			Timestamp timestampValue = rs.getTimestamp(column);
+			value = (timestampValue != null) ? timestampValue.toString().substring(0, TIMESTAMP_LENGTH) : null;
+			break;
+		}
+		return (value != null) ? value.toString() : null;
+	}
+	
+	/**
+	 * Add the order by on the sort key to the query, null values are ordered first on every database
+	 */
+	private String getOrderedQuery(String query, ResultSetMetaData meta) throws SQLException {
+		StringBuilder orderedQuery = new StringBuilder(query).append(" ORDER BY ");
+		for (int i = 0; i < this._keyColumns.length; i++) {
+			String columnName = this._dbConfig.getFormattedColumnName(meta.getColumnName(this._keyColumns[i]));
+			if (i > 0) {
+				orderedQuery.append(", ");
+			}
+			orderedQuery.append(String.format("CASE WHEN %1$s IS NULL THEN 0 ELSE 1 END, %1$s", columnName));
+		}
+		return orderedQuery.toString();
+	}
+	
+	/**
+	 * Compare sort keys, an empty value (null) is ordered first
+	 */
+	private static int compareKeys(String[] a, String[] b, boolean[] numeric) {
+		for (int i = 0; i < a.length; i++) {
+			boolean aEmpty = a[i] == null || a[i].isEmpty();
+			boolean bEmpty = b[i] == null || b[i].isEmpty();
+			int result;
+			if (aEmpty || bEmpty) {
+				result = Boolean.compare(!aEmpty, !bEmpty);
+			}
+			else if (numeric[i]) {
+				result = new BigDecimal(a[i]).compareTo(new BigDecimal(b[i]));
+			}
+			else {
+				result = a[i].compareTo(b[i]);
+			}
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+	
+	@FunctionalInterface
+	private interface RecordSource {
+		SortRecord next() throws XTestException, IOException, SQLException;
+	}
+	
+	/**
+	 * Reads the records of a sorted source per block of records having the same sort key
+	 */
+	private final class BlockReader {
+		private final RecordSource _source;
+		private SortRecord _next;
+		private boolean _started;
+		
+		private BlockReader(RecordSource source) {
+			this._source = source;
+		}
+		
+		private List<SortRecord> nextBlock() throws XTestException, IOException, SQLException {
+			if (!this._started) {
+				this._next = this._source.next();
+				this._started = true;
+			}
+			List<SortRecord> block = new ArrayList<>();
+			if (this._next == null) {
+				return block;
+			}
+			block.add(this._next);
+			this._next = this._source.next();
+			while (this._next != null && _keyComparator.compare(block.get(0), this._next) == 0) {
+				if (_sortBufferSize > 0 && block.size() >= _sortBufferSize) {
+					throw new BlockTooLargeException(String.format("More than %d records have the same sort key, the results can't be compared in sort order", _sortBufferSize));
+				}
+				block.add(this._next);
+				this._next = this._source.next();
+			}
+			return block;
+		}
+	}
+	
+	/**
+	 * Thrown when a block has more records than the sort buffer size, so it isn't kept in memory
+	 */
+	private static final class BlockTooLargeException extends XTestException {
+		private static final long serialVersionUID = 1L;
+		
+		private BlockTooLargeException(String message) {
+			super(message);
+		}
+	}
+}
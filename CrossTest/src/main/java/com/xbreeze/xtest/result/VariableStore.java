@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Stores the variables of a scenario, a variable holds either a single value or a column of values. 
+ * The values of a column are referenced as name[index], the column as a whole by its name.
+ * @author Willem
+ *
+ */
+public class VariableStore {
+	private static final Pattern INTEGER_PATTERN = Pattern.compile("-?[0-9]{1,18}");
+	private static final Pattern DECIMAL_PATTERN = Pattern.compile("-?[0-9]+(\\.[0-9]+)?");
+	
+	// The variables on their name, including the prefix
+	private final HashMap<String, String> _values = new HashMap<>();
+	private final HashMap<String, ResultVariable> _columns = new HashMap<>();
+	
+	/**
+	 * Store a single value, replacing a column with the same name
+	 * @param name the variable name, including the prefix
+	 * @param value the value
+	 */
+	public void put(String name, String value) {
+		this._columns.remove(name);
+		this._values.put(name, value);
+	}
+	
+	/**
+	 * Store a column of values, replacing a single value with the same name
+	 * @param name the variable name, including the prefix
+	 * @param column the values
+	 */
+	public void putColumn(String name, ResultVariable column) {
+		this._values.remove(name);
+		this._columns.put(name, column);
+	}
+	
+	/**
+	 * @param name the variable name, including the prefix
+	 * @return the column stored under the name, or null if there is none
+	 */
+	public ResultVariable getColumn(String name) {
+		return this._columns.get(name);
+	}
+	
+	/**
+	 * Get the text of a variable, a value of a column (name[index]) or a column as a list of literals
+	 * @param name the variable name, including the prefix
+	 * @return the text, or null if the variable doesn't exist
+	 */
+	public String getText(String name) {
+		String value = this._values.get(name);
+		if (value != null) {
+			return value;
+		}
+		ResultVariable column = this._columns.get(name);
+		if (column != null) {
+			return column.getLiteralList();
+		}
+		int index = getIndex(name);
+		if (index != -1) {
+			return this._columns.get(name.substring(0, name.lastIndexOf('['))).getText(index);
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the value to bind as a parameter for a variable. The value of a column has the type of the column. A single value is bound 
+	 * if it is a literal, as a number or as the text between its quotes, the same way the database would interpret it when substituted.
+	 * @param name the variable name, including the prefix
+	 * @return the value, or null if the variable doesn't exist or its value isn't a literal
+	 */
+	public Object getParameterValue(String name) {
+		String value = this._values.get(name);
+		if (value == null) {
+			int index = getIndex(name);
+			return (index != -1) ? this._columns.get(name.substring(0, name.lastIndexOf('['))).getValue(index) : null;
+		}
+		if (INTEGER_PATTERN.matcher(value).matches()) {
+			return Long.valueOf(value);
+		}
+		if (DECIMAL_PATTERN.matcher(value).matches()) {
+			return new BigDecimal(value);
+		}
+		if (value.length() >= 2 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'') {
+			String text = value.substring(1, value.length() - 1);
+			// Only a single literal, with its quotes escaped by doubling them
+			if (text.replace("''", "").indexOf('\'') == -1) {
+				return text.replace("''", "'");
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the index of a reference to a value of an existing column (name[index]), or -1 if it isn't one
+	 */
+	private int getIndex(String name) {
+		int indexStart = name.lastIndexOf('[');
+		if (indexStart <= 0 || !name.endsWith("]")) {
+			return -1;
+		}
+		ResultVariable column = this._columns.get(name.substring(0, indexStart));
+		if (column == null) {
+			return -1;
+		}
+		try {
+			int index = Integer.parseInt(name.substring(indexStart + 1, name.length() - 1));
+			return (index >= 0 && index < column.size()) ? index : -1;
+		}
+		catch (NumberFormatException exc) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xbreeze.xtest.exception.XTestDatabaseException;
+
+/**
+ * A text in which the references to variables (XTestVariables.name or XTestVariables.name[index]) are located in one pass.
+ * Templates are cached by their text, so a statement which is executed repeatedly is only scanned once.
+ * A template can also be rendered as a parameterized statement, in which the references are replaced by a ? for their value.
+ * @author Willem
+ *
+ */
+public class VariableTemplate {
+	private static final int MAX_CACHED_TEMPLATES = 1000;
+	private static final Map<String, VariableTemplate> _templateCache = Collections.synchronizedMap(new LinkedHashMap<String, VariableTemplate>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, VariableTemplate> eldest) {
+			return size() > MAX_CACHED_TEMPLATES;
+		}
+	});
+	
+	/**
+	 * Loads the values of a column variable in a temporary table
+	 */
+	public interface ColumnTableProvider {
+		/**
+		 * @param column the column variable
+		 * @return the query selecting the values from the temporary table
+		 * @throws XTestDatabaseException
+		 */
+		String getColumnQuery(ResultVariable column) throws XTestDatabaseException;
+	}
+	
+	private final String _text;
+	// The literal text before each reference, with one extra literal for the text after the last reference
+	private final String[] _literals;
+	// The longest possible variable name of each reference, including the prefix
+	private final String[] _references;
+	// Whether each reference is within a quoted literal in the text
+	private final boolean[] _quoted;
+	
+	private VariableTemplate(String text) {
+		this._text = text;
+		List<String> literals = new ArrayList<>();
+		List<String> references = new ArrayList<>();
+		List<Boolean> quoted = new ArrayList<>();
+		boolean inQuotes = false;
+		int literalStart = 0;
+		int referenceStart = text.indexOf(ResultContext.VARIABLE_PREFIX);
+		while (referenceStart != -1) {
+			int nameStart = referenceStart + ResultContext.VARIABLE_PREFIX.length();
+			int nameEnd = getNameEnd(text, nameStart);
+			if (nameEnd > nameStart) {
+				String literal = text.substring(literalStart, referenceStart);
+				inQuotes ^= (countQuotes(literal) % 2 == 1);
+				literals.add(literal);
+				references.add(text.substring(referenceStart, nameEnd));
+				quoted.add(inQuotes);
+				literalStart = nameEnd;
+			}
+			referenceStart = text.indexOf(ResultContext.VARIABLE_PREFIX, nameEnd);
+		}
+		literals.add(text.substring(literalStart));
+		this._literals = literals.toArray(new String[literals.size()]);
+		this._references = references.toArray(new String[references.size()]);
+		this._quoted = new boolean[quoted.size()];
+		for (int i = 0; i < this._quoted.length; i++) {
+			this._quoted[i] = quoted.get(i);
+		}
+	}
+	
+	private static int countQuotes(String literal) {
+		int quotes = 0;
+		for (int i = 0; i < literal.length(); i++) {
+			if (literal.charAt(i) == '\'') {
+				quotes++;
+			}
+		}
+		return quotes;
+	}
+	
+	/**
+	 * Get the template of a text, scanning the text only when it isn't cached yet
+	 * @param text the text containing variable references
+	 * @return the template
+	 */
+	public static VariableTemplate compile(String text) {
+		VariableTemplate template = _templateCache.get(text);
+		if (template == null) {
+			template = new VariableTemplate(text);
+			_templateCache.put(text, template);
+		}
+		return template;
+	}
+	
+	/**
+	 * Returns the position after a variable name (characters allowed in a variable name, optionally followed by an array index)
+	 */
+	private static int getNameEnd(String text, int nameStart) {
+		int pos = nameStart;
+		while (pos < text.length() && isNameCharacter(text.charAt(pos))) {
+			pos++;
+		}
+		if (pos > nameStart && pos < text.length() && text.charAt(pos) == '[') {
+			int indexEnd = pos + 1;
+			while (indexEnd < text.length() && Character.isDigit(text.charAt(indexEnd))) {
+				indexEnd++;
+			}
+			if (indexEnd > pos + 1 && indexEnd < text.length() && text.charAt(indexEnd) == ']') {
+				pos = indexEnd + 1;
+			}
+		}
+		return pos;
+	}
+	
+	private static boolean isNameCharacter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '@' || c == '$' || c == '#';
+	}
+	
+	/**
+	 * @return the longest possible variable name of each reference, including the prefix
+	 */
+	String[] getReferences() {
+		return this._references;
+	}
+	
+	/**
+	 * Substitute the referenced variables with their values. When there is no variable with the full name of a reference, the longest variable 
+	 * name which the reference starts with is used. References to variables which don't exist are kept as they are.
+	 * @param variables the variables
+	 * @return the text with substituted variables
+	 */
+	public String render(VariableStore variables) {
+		if (this._references.length == 0) {
+			return this._text;
+		}
+		StringBuilder result = new StringBuilder(this._text.length());
+		for (int i = 0; i < this._references.length; i++) {
+			result.append(this._literals[i]);
+			appendReference(result, this._references[i], variables);
+		}
+		result.append(this._literals[this._references.length]);
+		return result.toString();
+	}
+	
+	/**
+	 * Substitute the referenced variables, binding the ones with a literal value as parameters (see {@link VariableStore#getParameterValue(String)}).
+	 * A column is bound as a list of parameters, or when it has more values than the maximum number of parameters it is replaced by a query of 
+	 * the temporary table it is loaded in. References within quotes and references to variables with another value (such as NULL or a name) 
+	 * are substituted in the text.
+	 * @param variables the variables
+	 * @param parameters the list to which the values of the parameters are added, in order
+	 * @param maxParameters the maximum number of parameters
+	 * @param columnTableProvider loads a column in a temporary table
+	 * @return the text with a ? for each parameter
+	 * @throws XTestDatabaseException
+	 */
+	public String renderParameterized(VariableStore variables, List<Object> parameters, int maxParameters, ColumnTableProvider columnTableProvider) throws XTestDatabaseException {
+		if (this._references.length == 0) {
+			return this._text;
+		}
+		StringBuilder result = new StringBuilder(this._text.length());
+		for (int i = 0; i < this._references.length; i++) {
+			result.append(this._literals[i]);
+			ResultVariable column = this._quoted[i] ? null : variables.getColumn(this._references[i]);
+			Object parameter = (this._quoted[i] || column != null) ? null : variables.getParameterValue(this._references[i]);
+			if (column != null && parameters.size() + column.size() <= maxParameters) {
+				for (int row = 0; row < column.size(); row++) {
+					result.append((row > 0) ? ", ?" : "?");
+					parameters.add(column.getValue(row));
+				}
+			}
+			else if (column != null) {
+				result.append(columnTableProvider.getColumnQuery(column));
+			}
+			else if (parameter != null) {
+				result.append('?');
+				parameters.add(parameter);
+			}
+			else {
+				appendReference(result, this._references[i], variables);
+			}
+		}
+		result.append(this._literals[this._references.length]);
+		return result.toString();
+	}
+	
+	private static void appendReference(StringBuilder result, String reference, VariableStore variables) {
+		String value = variables.getText(reference);
+		if (value != null) {
+			result.append(value);
+			return;
+		}
+		// Look for the longest variable name the reference starts with, the remainder is kept as text
+		int nameEnd = reference.indexOf('[');
+		int length = (nameEnd == -1) ? reference.length() - 1 : nameEnd;
+		for (; length > ResultContext.VARIABLE_PREFIX.length(); length--) {
+			value = variables.getText(reference.substring(0, length));
+			if (value != null) {
+				result.append(value).append(reference, length, reference.length());
+				return;
+			}
+		}
+		result.append(reference);
+	}
+}
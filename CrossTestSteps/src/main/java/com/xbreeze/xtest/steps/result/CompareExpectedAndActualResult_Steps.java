@@ -45,5 +45,145 @@ public class CompareExpectedAndActualResult_Steps
         );
     }
 
+    @Then("^I expect the following result, stopping after (\\d+) differences:$")
+    public void Then_EN_CompareExpectedAndActualResultWithMaxDifferences_700B6461_45B4_4196_B113_D0650A54DF79(
+        int max_differences,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualResultWithMaxDifferences(
+            max_differences,
+            expected_results
+        );
+    }
+
+    @Dan("^verwacht ik het volgende resultaat, stoppend na (\\d+) verschillen:$")
+    public void Then_NL_CompareExpectedAndActualResultWithMaxDifferences_AAE61E04_7766_43F4_BDE4_7ECFBF4C1D6B(
+        int max_differences,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualResultWithMaxDifferences(
+            max_differences,
+            expected_results
+        );
+    }
+
+    @Then("I expect exactly the following ordered result:")
+    public void Then_EN_CompareExpectedAndActualOrderedResult_C338EDE5_26B3_4476_A05C_3D823DC911C0(
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualOrderedResult(
+            expected_results
+        );
+    }
+
+    @Dan("verwacht ik exact het volgende geordende resultaat:")
+    public void Then_NL_CompareExpectedAndActualOrderedResult_59F04807_EC4F_4B68_8968_9CBD75001BA7(
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualOrderedResult(
+            expected_results
+        );
+    }
+
+    @Then("^I expect exactly the following result ordered by (\\(.*\\)):$")
+    public void Then_EN_CompareExpectedAndActualOrderedResultOnFields_4E7A2C91_8D3B_4F60_A1E5_93C2B7D0F846(
+        String order_fields,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualOrderedResultOnFields(
+            order_fields,
+            expected_results
+        );
+    }
+
+    @Dan("^verwacht ik exact het volgende resultaat geordend op (\\(.*\\)):$")
+    public void Then_NL_CompareExpectedAndActualOrderedResultOnFields_B2D95F3A_61C8_4E07_9A4B_D8F1E360C725(
+        String order_fields,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualOrderedResultOnFields(
+            order_fields,
+            expected_results
+        );
+    }
+
+    @Then("^I expect the following result with key (\\(.*\\)):$")
+    public void Then_EN_CompareExpectedAndActualResultOnKey_1B374F80_C619_4561_91CA_BE0F062950DE(
+        String key_fields,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualResultOnKey(
+            key_fields,
+            expected_results
+        );
+    }
+
+    @Dan("^verwacht ik het volgende resultaat met sleutel (\\(.*\\)):$")
+    public void Then_NL_CompareExpectedAndActualResultOnKey_ADF6D5C0_6F51_4903_8F0C_4A68870AF1CC(
+        String key_fields,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualResultOnKey(
+            key_fields,
+            expected_results
+        );
+    }
+
+    @Then("^I expect the following result with the key of object (.+):$")
+    public void Then_EN_CompareExpectedAndActualResultOnKeyOfObject_555E8AB9_388F_4C71_8FB0_60455D954C19(
+        String composite_object,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualResultOnKeyOfObject(
+            composite_object,
+            expected_results
+        );
+    }
+
+    @Dan("^verwacht ik het volgende resultaat met de sleutel van object (.+):$")
+    public void Then_NL_CompareExpectedAndActualResultOnKeyOfObject_81711BAD_3379_43C3_89BA_9B0A138CE560(
+        String composite_object,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedAndActualResultOnKeyOfObject(
+            composite_object,
+            expected_results
+        );
+    }
+
+    @Then("^I expect the result to contain the following records with key (\\(.*\\)):$")
+    public void Then_EN_CompareExpectedContainedInActualResultOnKey_35493DF2_0BA5_4000_8981_F21B05426EBA(
+        String key_fields,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedContainedInActualResultOnKey(
+            key_fields,
+            expected_results
+        );
+    }
+
+    @Dan("^verwacht ik dat het resultaat de volgende records bevat met sleutel (\\(.*\\)):$")
+    public void Then_NL_CompareExpectedContainedInActualResultOnKey_1224CD21_0C88_4FBC_8687_5F839B2CBDF9(
+        String key_fields,
+        DataTable expected_results
+    ) throws Throwable
+    {
+        _Result_helper.CompareExpectedContainedInActualResultOnKey(
+            key_fields,
+            expected_results
+        );
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.xbreeze.xtest.steps.result;
+import com.xbreeze.xtest.modules.result.Result_Helper;
+
+import io.cucumber.java.Before;
+import io.cucumber.java.Scenario;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.When;
+
+public class DefineSharedVariable_Steps
+{
+
+    private Result_Helper _Result_helper;
+    
+    public DefineSharedVariable_Steps(Result_Helper Result_helper) {
+        _Result_helper = Result_helper;
+    }
+
+    @Given("^I define the (run|feature) variable ([a-zA-Z0-9_@$#]+) as the field (.+) of the following query on ([a-zA-Z0-9_@$#-]+):$")
+    public void Given_EN_DefineSharedVariable_0880244E_ED44_4EDE_8F36_6AF71E504A2D(
+        String scope,
+        String variable_name,
+        String field_name,
+        String db_config,
+        String query
+    ) throws Throwable
+    {
+        _Result_helper.DefineSharedVariable(
+            scope,
+            variable_name,
+            field_name,
+            db_config,
+            null,
+            query
+        );
+    }
+
+    @Given("^I define the (run|feature) variable ([a-zA-Z0-9_@$#]+) as the field (.+) of the following query on ([a-zA-Z0-9_@$#-]+), invalidated by tables? (.+):$")
+    public void Given_EN_DefineSharedVariable_0CC5752D_5876_493A_B7C8_E4AE8A9B345A(
+        String scope,
+        String variable_name,
+        String field_name,
+        String db_config,
+        String table_names,
+        String query
+    ) throws Throwable
+    {
+        _Result_helper.DefineSharedVariable(
+            scope,
+            variable_name,
+            field_name,
+            db_config,
+            table_names,
+            query
+        );
+    }
+
+    @When("^I invalidate the (run|feature) variable ([a-zA-Z0-9_@$#]+)$")
+    public void When_EN_InvalidateSharedVariable_BE718032_737C_4D78_A5BF_F29AFC53566D(
+        String scope,
+        String variable_name
+    ) throws Throwable
+    {
+        _Result_helper.InvalidateSharedVariable(
+            scope,
+            variable_name
+        );
+    }
+
+    @Before("")
+    public void Before_SetFeature(
+        Scenario scenario
+    ) throws Throwable
+    {
+        _Result_helper.SetFeature(
+            scenario.getUri().toString()
+        );
+    }
+
+
+}
\ No newline at end of file
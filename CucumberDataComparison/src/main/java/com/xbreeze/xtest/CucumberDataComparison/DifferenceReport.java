@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2019 CrossBreeze
+ *
+ *  This file is part of CrossTest.
+ *
+ *     CrossTest is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     CrossTest is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with CrossTest.  If not, see <https://www.gnu.org/licenses/>.
+ *     
+ * Contributors:
+ *     Willem Otten - CrossBreeze
+ *     Harmen Wessels - CrossBreeze
+ *******************************************************************************/
+package com.xbreeze.xtest.CucumberDataComparison;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the records of a difference between the expected and actual result.
+ * Only the first records are kept in memory to show in the assertion message, when there are more records
+ * all records are written to a tab separated file in the report folder.
+ * @author Willem
+ *
+ */
+public class DifferenceReport implements Closeable {
+	
+	private String[] _header;
+	/**
+	 * The maximum number of records to keep in memory, 0 means no limit.
+	 */
+	private int _maxInlineRecords;
+	/**
+	 * The folder to write the file with all records to, if null the records which aren't kept in memory are only counted.
+	 */
+	private File _reportFolder;
+	private String _reportFilePrefix;
+	private List<String[]> _inlineRecords;
+	private int _recordCount;
+	private File _reportFile;
+	private Writer _reportWriter;
+	
+	/**
+	 * Constructor
+	 * @param header The column names of the records.
+	 * @param maxInlineRecords The maximum number of records to keep in memory, 0 means no limit.
+	 * @param reportFolder The folder to write all records to when there are more records than kept in memory, or null.
+	 * @param reportFilePrefix The prefix of the report file name.
+	 */
+	public DifferenceReport(String[] header, int maxInlineRecords, File reportFolder, String reportFilePrefix) {
+		this._header = header;
+		this._maxInlineRecords = maxInlineRecords;
+		this._reportFolder = reportFolder;
+		this._reportFilePrefix = reportFilePrefix;
+		this._inlineRecords = new ArrayList<>();
+	}
+	
+	/**
+	 * Add a record to the report.
+	 * @param record The field values of the record.
+	 * @throws IOException
+	 */
+	public void addRecord(String[] record) throws IOException {
+		this._recordCount++;
+		if (this._maxInlineRecords <= 0 || this._inlineRecords.size() < this._maxInlineRecords) {
+			this._inlineRecords.add(record);
+		}
+		else if (this._reportFolder != null) {
+			// Write the header and the records kept in memory when the first record doesn't fit anymore.
+			if (this._reportWriter == null) {
+				this._reportFolder.mkdirs();
+				this._reportFile = File.createTempFile(this._reportFilePrefix, ".tsv", this._reportFolder);
+				this._reportWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this._reportFile), StandardCharsets.UTF_8));
+				this.writeRecord(this._header);
+				for (String[] inlineRecord : this._inlineRecords) {
+					this.writeRecord(inlineRecord);
+				}
+			}
+			this.writeRecord(record);
+		}
+	}
+	
+	/**
+	 * Close the report file, if it was created.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this._reportWriter != null) {
+			this._reportWriter.close();
+			this._reportWriter = null;
+		}
+	}
+	
+	public String[] getHeader() {
+		return this._header;
+	}
+	
+	/**
+	 * @return The records kept in memory.
+	 */
+	public List<String[]> getInlineRecords() {
+		return this._inlineRecords;
+	}
+	
+	/**
+	 * @return The total number of records added.
+	 */
+	public int getRecordCount() {
+		return this._recordCount;
+	}
+	
+	/**
+	 * @return Whether there are more records than kept in memory.
+	 */
+	public boolean isTruncated() {
+		return this._recordCount > this._inlineRecords.size();
+	}
+	
+	/**
+	 * @return Whether a next record would only be counted, because it is neither kept in memory nor written to a file.
+	 */
+	public boolean isFull() {
+		return this._maxInlineRecords > 0 && this._inlineRecords.size() >= this._maxInlineRecords && this._reportFolder == null;
+	}
+	
+	/**
+	 * @return The file containing all records, or null if no file was written.
+	 */
+	public File getReportFile() {
+		return this._reportFile;
+	}
+	
+	private void writeRecord(String[] record) throws IOException {
+		for (int i = 0; i < record.length; i++) {
+			if (i > 0) {
+				this._reportWriter.write('\t');
+			}
+			this._reportWriter.write(escapeValue(record[i]));
+		}
+		this._reportWriter.write('\n');
+	}
+	
+	/**
+	 * Escape the characters which would break the tab separated format.
+	 * @param value The value to escape.
+	 * @return The escaped value.
+	 */
+	private static String escapeValue(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf('\\') == -1 && value.indexOf('\t') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+			return value;
+		}
+		return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+}
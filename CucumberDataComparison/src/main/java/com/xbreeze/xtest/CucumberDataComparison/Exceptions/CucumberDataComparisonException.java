@@ -22,8 +22,13 @@
  *******************************************************************************/
 package com.xbreeze.xtest.CucumberDataComparison.Exceptions;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.LinkedList;
 
+import com.xbreeze.xtest.CucumberDataComparison.DifferenceReport;
+
 public class CucumberDataComparisonException extends AssertionError {
 	
 	/**
@@ -31,10 +36,14 @@ public class CucumberDataComparisonException extends AssertionError {
 	 */
 	private static final long serialVersionUID = -4512280558619984142L;
 
-	private LinkedList<LinkedList<String>> expectedNotFound;
-	private LinkedList<LinkedList<String>> foundNotExpected;
+	private DifferenceReport expectedNotFound;
+	private DifferenceReport foundNotExpected;
 	private String shortMessage;
 	public CucumberDataComparisonException(String message, LinkedList<LinkedList<String>> expectedNotFound, LinkedList<LinkedList<String>> foundNotExpected) {
+		this(message, toDifferenceReport(expectedNotFound), toDifferenceReport(foundNotExpected));
+	}
+	
+	public CucumberDataComparisonException(String message, DifferenceReport expectedNotFound, DifferenceReport foundNotExpected) {
 		super(buildFullMessage(message, expectedNotFound, foundNotExpected));
 		this.expectedNotFound = expectedNotFound;
 		this.foundNotExpected = foundNotExpected;
@@ -44,27 +53,44 @@ public class CucumberDataComparisonException extends AssertionError {
 	public String getShortMessage () {
 		return this.shortMessage;
 	}
+	
+	/**
+	 * Returns the expected records not found which are shown in the message, including the header.
+	 * @return
+	 */
 	public LinkedList<LinkedList<String>> getExpectedNotFound() {
-		return this.expectedNotFound;
+		return toRecordList(this.expectedNotFound);
 	}
 	
+	/**
+	 * Returns the found records not expected which are shown in the message, including the header.
+	 * @return
+	 */
 	public LinkedList<LinkedList<String>> getFoundNotExpected(){		
+		return toRecordList(this.foundNotExpected);
+	}
+	
+	public DifferenceReport getExpectedNotFoundReport() {
+		return this.expectedNotFound;
+	}
+	
+	public DifferenceReport getFoundNotExpectedReport() {
 		return this.foundNotExpected;
 	}
 	
-	private static String buildFullMessage(String findings, LinkedList<LinkedList<String>> expectedNotFound, LinkedList<LinkedList<String>> foundNotExpected) {
-		StringBuffer message = new StringBuffer();
+	private static String buildFullMessage(String findings, DifferenceReport expectedNotFound, DifferenceReport foundNotExpected) {
+		StringBuilder message = new StringBuilder();
 		message.append("Differences found:\n");
 
-		if (expectedNotFound != null && expectedNotFound.size() > 0) {
+		if (expectedNotFound != null && expectedNotFound.getRecordCount() > 0) {
 			message.append("Expected not found: \n");
-			message.append(transformRecordsToMessage(expectedNotFound));
+			appendRecordsToMessage(message, expectedNotFound);
 			message.append("\n");
 		}
 		
-		if (foundNotExpected != null && foundNotExpected.size() > 0) {
+		if (foundNotExpected != null && foundNotExpected.getRecordCount() > 0) {
 			message.append("Found not expected: \n");
-			message.append(transformRecordsToMessage(foundNotExpected));
+			appendRecordsToMessage(message, foundNotExpected);
 			message.append("\n");
 		}
 
@@ -75,32 +101,81 @@ public class CucumberDataComparisonException extends AssertionError {
 		return message.toString();
 	}
 	
-	private static String transformRecordsToMessage(LinkedList<LinkedList<String>> diffTable) {
-		StringBuffer message = new StringBuffer();
-		LinkedList<Integer> fieldLengths = new LinkedList<>();
-		//Loop over columns
-		for (int i = 0;i < diffTable.get(0).size(); i++) {
-			//For each column, determine max length of values in diffTable
-			fieldLengths.addLast(1);
-			for (LinkedList<String> record : diffTable) {
-				if (record.get(i).length() > fieldLengths.get(i)) {
-					fieldLengths.set(i, record.get(i).length());
-				}
-			}
+	private static void appendRecordsToMessage(StringBuilder message, DifferenceReport diffTable) {
+		String[] header = diffTable.getHeader();
+		//For each column, determine max length of values in diffTable
+		int[] fieldLengths = new int[header.length];
+		updateFieldLengths(fieldLengths, header);
+		for (String[] record : diffTable.getInlineRecords()) {
+			updateFieldLengths(fieldLengths, record);
 		}
 		//Add all records, padd to proper column length
-		for (LinkedList<String> record : diffTable) {
-			for (int i = 0;i < record.size(); i++) {
-				String fieldValue = record.get(i);
-				int fieldPadding = fieldLengths.get(i) + 1;
-				 
-				message.append("| ").append(String.format("%1$-" + fieldPadding + "s", fieldValue));
+		appendRecordToMessage(message, header, fieldLengths);
+		for (String[] record : diffTable.getInlineRecords()) {
+			appendRecordToMessage(message, record, fieldLengths);
+		}
+		if (diffTable.isTruncated()) {
+			int recordsNotShown = diffTable.getRecordCount() - diffTable.getInlineRecords().size();
+			if (diffTable.getReportFile() != null) {
+				message.append(String.format("... %d more records not shown, all %d records are written to %s\n", recordsNotShown, diffTable.getRecordCount(), diffTable.getReportFile().getAbsolutePath()));
+			}
+			else {
+				message.append(String.format("... %d more records not shown\n", recordsNotShown));
 			}
-			message.append("|\n");
 		}
-		return message.toString();
 	}
 	
+	private static void updateFieldLengths(int[] fieldLengths, String[] record) {
+		for (int i = 0; i < fieldLengths.length && i < record.length; i++) {
+			if (record[i].length() > fieldLengths[i]) {
+				fieldLengths[i] = record[i].length();
+			}
+		}
+	}
 	
-
+	private static void appendRecordToMessage(StringBuilder message, String[] record, int[] fieldLengths) {
+		for (int i = 0; i < record.length; i++) {
+			message.append("| ").append(record[i]);
+			// Pad the value to the column length plus one space
+			int fieldLength = (i < fieldLengths.length) ? Math.max(fieldLengths[i], 1) : 1;
+			for (int padding = record[i].length(); padding <= fieldLength; padding++) {
+				message.append(' ');
+			}
+		}
+		message.append("|\n");
+	}
+	
+	/**
+	 * Convert a list of records, of which the first record is the header, to a difference report without limit.
+	 * @param records The records.
+	 * @return The difference report, or null if there are no records.
+	 */
+	private static DifferenceReport toDifferenceReport(LinkedList<LinkedList<String>> records) {
+		if (records == null || records.size() == 0) {
+			return null;
+		}
+		DifferenceReport report = new DifferenceReport(records.getFirst().toArray(new String[0]), 0, null, null);
+		try {
+			for (LinkedList<String> record : records.subList(1, records.size())) {
+				report.addRecord(record.toArray(new String[0]));
+			}
+		}
+		catch (IOException exc) {
+			// Can't happen, all records are kept in memory.
+			throw new UncheckedIOException(exc);
+		}
+		return report;
+	}
+	
+	private static LinkedList<LinkedList<String>> toRecordList(DifferenceReport report) {
+		if (report == null || report.getRecordCount() == 0) {
+			return null;
+		}
+		LinkedList<LinkedList<String>> records = new LinkedList<>();
+		records.add(new LinkedList<>(Arrays.asList(report.getHeader())));
+		for (String[] record : report.getInlineRecords()) {
+			records.add(new LinkedList<>(Arrays.asList(record)));
+		}
+		return records;
+	}
 }
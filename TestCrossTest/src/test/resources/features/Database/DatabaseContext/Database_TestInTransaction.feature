@@ -98,6 +98,38 @@ Feature: Running a test in a transaction
       | Customer_ID | Customer_Name | Country | IsActive |
       |           1 | Smith         | NL      |        1 |
       
+  @Positive
+  # The pool of server pooled_test has one connection, so the next scenario gets the same connection.
+  Scenario: Switch the database in a transaction on a pooled connection
+    Given the test is being executed within a transaction
+    When I insert the following data in pooled_source table Customer:
+      | Customer_ID | Customer_Name | Country | IsActive |
+      |           1 | Smith         | NL      |        1 |
+    And I execute the following statement on pooled_source:
+      """
+      	USE TestOtherDB;
+      """
+    And I execute the following query on pooled_source:
+      """
+      	SELECT DB_NAME() AS DatabaseName, @@TRANCOUNT AS TransactionCount;
+      """
+    Then I expect the following result:
+      | DatabaseName | TransactionCount |
+      | TestOtherDB  |                1 |
+
+  @Positive
+  Scenario: Check the session of the pooled connection is reset
+    When I execute the following query on pooled_source:
+      """
+      	SELECT DB_NAME() AS DatabaseName, @@TRANCOUNT AS TransactionCount;
+      """
+    Then I expect the following result:
+      | DatabaseName | TransactionCount |
+      | TestDB       |                0 |
+    When I retrieve the contents of the pooled_source Customer table
+    Then I expect the following result:
+      | Customer_ID | Customer_Name | Country | IsActive |
+
   @Positive
   # When running in parallel the tests within one feature should be run sequential.
   # So this means when this feature file is the only one to use transactions, there can be nog active transactions during the following scenario.
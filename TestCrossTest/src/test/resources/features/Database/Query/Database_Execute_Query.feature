@@ -126,3 +126,26 @@ Feature: Execute a query or statement on a database
     Then I expect the following result:
       | ID | Fie#ld with \\Strange namë |
       |  1 | Test                        |
+
+  @Positive
+  Scenario: Insert data after changing the table structure with a statement
+    Given I execute the following statement on source:
+      """
+      DROP TABLE IF EXISTS [Source].[MetaDataCacheTest];
+      CREATE TABLE [Source].[MetaDataCacheTest] (ID int);
+      """
+    And I insert the following data in source table MetaDataCacheTest:
+      | ID |
+      |  1 |
+    When I execute the following statement on source:
+      """
+      ALTER TABLE [Source].[MetaDataCacheTest] ADD NAME varchar(50);
+      """
+    And I insert the following data in source table MetaDataCacheTest:
+      | ID | NAME |
+      |  2 | Test |
+    And I retrieve the contents of the source MetaDataCacheTest table
+    Then I expect the following result:
+      | ID | NAME |
+      |  1 |      |
+      |  2 | Test |
@@ -0,0 +1,26 @@
+@Teradata
+Feature: Compare CLOB and BLOB columns in Teradata
+
+  # The table is created on the Teradata server with:
+  # CREATE TABLE CrossTest.LobTest (ID INTEGER, PAYLOAD BLOB(1M), DOCUMENT CLOB(1M) CHARACTER SET UNICODE);
+  Scenario Outline: Compare CLOB and BLOB columns in memory <scenario>
+    Given the teradata table LobTest is empty
+    When I insert the following data in teradata table LobTest:
+      | ID | PAYLOAD                                    | DOCUMENT                                   |
+      |  1 | 0x43726F7373                               | Small document                             |
+      |  2 | @file:src/test/resources/files/payload.txt | @file:src/test/resources/files/payload.txt |
+    And I retrieve the contents of the teradata LobTest table
+    Then I expect the following result:
+      | ID | PAYLOAD                                    | DOCUMENT       |
+      |  1 | <expectedOutput>                           | Small document |
+      |  2 | @file:src/test/resources/files/payload.txt | CrossTest      |
+
+    @Positive
+    Examples:
+      | scenario | expectedOutput |
+      | No error | 43726f7373     |
+
+    @Negative
+    Examples:
+      | scenario   | expectedOutput |
+      | With error | 43726F7374     |
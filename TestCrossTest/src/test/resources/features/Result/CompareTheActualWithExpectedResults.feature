@@ -73,3 +73,411 @@ Feature: Compare the actual with expected results
     Then I expect the following result:
       | CUST_ID | CREATE_DD  |
       |    1234 | 2019-11-01 |
+
+  Scenario Outline: Compare the result on the database server <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |    1234 | 2019-11-01 |
+      |     431 |            |
+    And I retrieve the contents of the database_compare_source CUST_HUB table
+    Then I expect the following result:
+      | CUST_ID          | CREATE_DD  |
+      |             1234 | 2019-11-01 |
+      |             1234 | 2019-11-01 |
+      | <expectedOutput> |            |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error |            431 |
+
+    @Negative
+    Examples: 
+      | scenario   | expectedOutput |
+      | With error |            432 |
+
+  @Negative
+  Scenario: Compare non-expected duplicate records on the database server
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |    1234 | 2019-11-01 |
+    And I retrieve the contents of the database_compare_source CUST_HUB table
+    Then I expect the following result:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+
+  Scenario Outline: Compare character values case sensitively on the database server <scenario>
+    Given the source table Customer is empty
+    When I insert the following data in source table Customer:
+      | Customer_ID | Customer_Name | Country | IsActive |
+      |           1 | Smith         | NL      |        1 |
+    And I retrieve the contents of the database_compare_source Customer table
+    Then I expect the following result:
+      | Customer_ID | Customer_Name    | Country | IsActive |
+      |           1 | <expectedOutput> | NL      |        1 |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error | Smith          |
+
+    @Negative
+    Examples: 
+      | scenario        | expectedOutput |
+      | With other case | SMITH          |
+
+  Scenario Outline: Compare the result while it is read <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |    1234 | 2019-11-01 |
+      |     431 |            |
+    And I retrieve the contents of the stream_compare_source CUST_HUB table
+    Then I expect the following result:
+      | CUST_ID          | CREATE_DD  |
+      |             1234 | 2019-11-01 |
+      |             1234 | 2019-11-01 |
+      | <expectedOutput> |            |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error |            431 |
+
+    @Negative
+    Examples: 
+      | scenario   | expectedOutput |
+      | With error |            432 |
+
+  Scenario Outline: Compare the result in sort order <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 |            |
+      |    1234 | 2019-11-01 |
+      |      12 | 2019-11-02 |
+    And I retrieve the contents of the sorted_compare_source CUST_HUB table
+    Then I expect the following result:
+      | CUST_ID          | CREATE_DD  |
+      |               12 | 2019-11-02 |
+      |             1234 | 2019-11-01 |
+      | <expectedOutput> |            |
+      |             1234 | 2019-11-01 |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error |            431 |
+
+    @Negative
+    Examples: 
+      | scenario   | expectedOutput |
+      | With error |            432 |
+
+  Scenario Outline: Compare the ordered result of a query <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 | 2019-11-02 |
+      |      12 | 2019-11-03 |
+    And I execute the following query on source:
+      """
+      SELECT CUST_ID, CREATE_DD
+      FROM source.CUST_HUB
+      ORDER BY CUST_ID
+      """
+    Then I expect exactly the following ordered result:
+      | CUST_ID          | CREATE_DD  |
+      |               12 | 2019-11-03 |
+      | <expectedOutput> | 2019-11-02 |
+      |             1234 | 2019-11-01 |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error |            431 |
+
+    @Negative
+    Examples: 
+      | scenario   | expectedOutput |
+      | With error |            432 |
+
+  Scenario Outline: Compare the ordered result of a query in <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 | 2019-11-02 |
+      |      12 | 2019-11-03 |
+    And I execute the following query on source:
+      """
+      SELECT CUST_ID, CREATE_DD
+      FROM source.CUST_HUB
+      ORDER BY CUST_ID <direction>
+      """
+    Then I expect exactly the following ordered result:
+      | CUST_ID | CREATE_DD  |
+      |      12 | 2019-11-03 |
+      |     431 | 2019-11-02 |
+      |    1234 | 2019-11-01 |
+
+    @Positive
+    Examples: 
+      | scenario           | direction |
+      | the same order     | ASC       |
+
+    @Negative
+    Examples: 
+      | scenario           | direction |
+      | a different order  | DESC      |
+
+  @Negative
+  Scenario: Compare the ordered result of a table with a missing record
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+    And I retrieve the contents of the source CUST_HUB table
+    Then I expect exactly the following result ordered by (CUST_ID):
+      | CUST_ID | CREATE_DD  |
+      |     431 | 2019-11-02 |
+      |    1234 | 2019-11-01 |
+
+  Scenario Outline: Compare the ordered result of a table <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 | 2019-11-02 |
+      |      12 | 2019-11-03 |
+    And I retrieve the contents of the source CUST_HUB table
+    Then I expect exactly the following result ordered by (<orderFields>):
+      | CUST_ID | CREATE_DD  |
+      |      12 | 2019-11-03 |
+      |     431 | 2019-11-02 |
+      |    1234 | 2019-11-01 |
+
+    @Positive
+    Examples: 
+      | scenario               | orderFields |
+      | ordered by the key     | CUST_ID     |
+
+    @Negative
+    Examples: 
+      | scenario               | orderFields |
+      | ordered by another key | CREATE_DD   |
+
+  @Negative
+  Scenario: Compare the ordered result of a table without order fields
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+    And I retrieve the contents of the source CUST_HUB table
+    Then I expect exactly the following ordered result:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+
+  Scenario Outline: Compare the result on its key <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 | 2019-11-02 |
+    And I retrieve the contents of the source CUST_HUB table
+    Then I expect the following result with key (CUST_ID):
+      | CUST_ID | CREATE_DD        |
+      |     431 | 2019-11-02       |
+      |    1234 | <expectedOutput> |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error | 2019-11-01     |
+
+    @Negative
+    Examples: 
+      | scenario   | expectedOutput |
+      | With error | 2019-11-03     |
+
+  Scenario Outline: Compare the result on the key of an object <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 | 2019-11-02 |
+    And I retrieve the contents of the source CUST_HUB table
+    Then I expect the following result with the key of object CustomerWithKey:
+      | CUST_ID          | CREATE_DD  |
+      |             1234 | 2019-11-01 |
+      | <expectedOutput> | 2019-11-02 |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error |            431 |
+
+    @Negative
+    Examples: 
+      | scenario   | expectedOutput |
+      | With error |            432 |
+
+  Scenario Outline: Probe the result before comparing it <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 |            |
+    And I retrieve the contents of the <dbconfig> CUST_HUB table
+    Then I expect the following result:
+      | CUST_ID          | CREATE_DD  |
+      |             1234 | 2019-11-01 |
+      | <expectedOutput> |            |
+
+    @Positive
+    Examples: 
+      | scenario                  | dbconfig                  | expectedOutput |
+      | No error                  | probe_compare_source      |            431 |
+      | No error, skip the diff   | probe_skip_compare_source |            431 |
+
+    @Negative
+    Examples: 
+      | scenario                  | dbconfig                  | expectedOutput |
+      | With error                | probe_compare_source      |            432 |
+      | With error, skip the diff | probe_skip_compare_source |            432 |
+
+  @Negative
+  Scenario: Probe the result before comparing it with a different number of records
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+    And I retrieve the contents of the probe_compare_source CUST_HUB table
+    Then I expect the following result:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |    1234 | 2019-11-01 |
+
+  Scenario Outline: Check the result contains the expected records <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 | 2019-11-02 |
+      |      12 | 2019-11-03 |
+    And I retrieve the contents of the <dbconfig> CUST_HUB table
+    Then I expect the result to contain the following records with key (CUST_ID):
+      | CUST_ID          | CREATE_DD  |
+      |             1234 | 2019-11-01 |
+      | <expectedOutput> | 2019-11-02 |
+
+    @Positive
+    Examples: 
+      | scenario                   | dbconfig          | expectedOutput |
+      | No error                   | source            |            431 |
+      | No error with a temp table | key_filter_source |            431 |
+
+    @Negative
+    Examples: 
+      | scenario                     | dbconfig          | expectedOutput |
+      | With error                   | source            |            432 |
+      | With error with a temp table | key_filter_source |            432 |
+
+  @Positive
+  Scenario Outline: Check the result contains the expected records with a null key <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 |            |
+      |      12 | 2019-11-03 |
+    And I retrieve the contents of the <dbconfig> CUST_HUB table
+    Then I expect the result to contain the following records with key (CUST_ID, CREATE_DD):
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 |            |
+
+    Examples: 
+      | scenario          | dbconfig          |
+      | with parameters   | source            |
+      | with a temp table | key_filter_source |
+
+  Scenario Outline: Spot check the result with a Bloom filter <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 |            |
+    And I retrieve the contents of the spotcheck_compare_source CUST_HUB table
+    Then I expect the following result:
+      | CUST_ID          | CREATE_DD  |
+      |             1234 | 2019-11-01 |
+      | <expectedOutput> |            |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error |            431 |
+
+    @Negative
+    Examples: 
+      | scenario   | expectedOutput |
+      | With error |            432 |
+
+  Scenario Outline: Compare the result stopping after a number of differences <scenario>
+    Given the source table CUST_HUB is empty
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID | CREATE_DD  |
+      |    1234 | 2019-11-01 |
+      |     431 |            |
+      |      12 | 2019-11-02 |
+    And I retrieve the contents of the source CUST_HUB table
+    Then I expect the following result, stopping after 1 differences:
+      | CUST_ID          | CREATE_DD  |
+      |             1234 | 2019-11-01 |
+      | <expectedOutput> |            |
+      |               12 | 2019-11-02 |
+
+    @Positive
+    Examples: 
+      | scenario | expectedOutput |
+      | No error |            431 |
+
+    @Negative
+    Examples: 
+      | scenario   | expectedOutput |
+      | With error |            432 |
+
+  Scenario Outline: Compare binary and large object columns <scenario>
+    Given I execute the following statement on source:
+      """
+      DROP TABLE IF EXISTS [Source].[LobTest];
+      CREATE TABLE [Source].[LobTest] (ID int, PAYLOAD varbinary(max), DOCUMENT nvarchar(max));
+      """
+    And I insert the following data in source table LobTest:
+      | ID | PAYLOAD                                    | DOCUMENT                                   |
+      |  1 | 0x43726F7373                               | Small document                             |
+      |  2 | @file:src/test/resources/files/payload.txt | @file:src/test/resources/files/payload.txt |
+    And I retrieve the contents of the <dbconfig> LobTest table
+    Then I expect the following result:
+      | ID | PAYLOAD                                    | DOCUMENT       |
+      |  1 | <expectedOutput>                           | Small document |
+      |  2 | @file:src/test/resources/files/payload.txt | CrossTest      |
+
+    @Positive
+    Examples: 
+      | scenario           | dbconfig              | expectedOutput |
+      | No error           | source                | 43726f7373     |
+      | No error streamed  | stream_compare_source | 0x43726F7373   |
+
+    @Negative
+    Examples: 
+      | scenario   | dbconfig | expectedOutput |
+      | With error | source   | 43726F7374     |
@@ -0,0 +1,106 @@
+@Unit @Variables
+Feature: Use variables shared by the scenarios of a feature or run
+
+  Background: 
+    Given I define the feature variable LowestCustomerID as the field CUST_ID of the following query on source, invalidated by table CUST_HUB:
+      """
+      SELECT MIN(CUST_ID) AS CUST_ID FROM [Source].CUST_HUB
+      """
+
+  @Positive
+  Scenario: Test using a feature variable computed on first use
+    Given the source table CUST_HUB is empty
+    And I insert the following data in source table CUST_HUB:
+      | CUST_ID |
+      |    1234 |
+      |     431 |
+    When I execute the following query on source:
+      """
+      SELECT CUST_ID FROM [Source].CUST_HUB WHERE CUST_ID = XTestVariables.LowestCustomerID
+      """
+    Then I expect the following result:
+      | CUST_ID |
+      |     431 |
+
+  @Positive
+  Scenario: Test a feature variable is computed again after its table is written
+    Given the source table CUST_HUB is empty
+    And I insert the following data in source table CUST_HUB:
+      | CUST_ID |
+      |     500 |
+    When I execute the following query on source:
+      """
+      SELECT XTestVariables.LowestCustomerID AS CUST_ID
+      """
+    Then I expect the following result:
+      | CUST_ID |
+      |     500 |
+
+  @Positive
+  Scenario: Test invalidating a run variable
+    Given the source table CUST_HUB is empty
+    And I insert the following data in source table CUST_HUB:
+      | CUST_ID |
+      |       1 |
+      |       2 |
+    And I define the run variable CustomerCount as the field CUST_COUNT of the following query on source:
+      """
+      SELECT COUNT(*) AS CUST_COUNT FROM [Source].CUST_HUB
+      """
+    When I execute the following query on source:
+      """
+      SELECT XTestVariables.CustomerCount AS CUST_COUNT
+      """
+    Then I expect the following result:
+      | CUST_COUNT |
+      |          2 |
+    When I insert the following data in source table CUST_HUB:
+      | CUST_ID |
+      |       3 |
+    And I execute the following query on source:
+      """
+      SELECT XTestVariables.CustomerCount AS CUST_COUNT
+      """
+    Then I expect the following result:
+      | CUST_COUNT |
+      |          2 |
+    When I invalidate the run variable CustomerCount
+    And I execute the following query on source:
+      """
+      SELECT XTestVariables.CustomerCount AS CUST_COUNT
+      """
+    Then I expect the following result:
+      | CUST_COUNT |
+      |          3 |
+
+  @Positive
+  Scenario: Test a feature variable computed in a transaction, set up the committed data
+    Given the source table CUST_HUB is empty
+    And I insert the following data in source table CUST_HUB:
+      | CUST_ID |
+      |      10 |
+      |      20 |
+
+  @Positive
+  Scenario: Test a feature variable computed in a transaction is only used by the scenario
+    Given the test is being executed within a transaction
+    And I insert the following data in source table CUST_HUB:
+      | CUST_ID |
+      |       5 |
+    When I execute the following query on source:
+      """
+      SELECT XTestVariables.LowestCustomerID AS CUST_ID
+      """
+    Then I expect the following result:
+      | CUST_ID |
+      |       5 |
+
+  @Positive
+  Scenario: Test a feature variable computed in a rolled back transaction is computed again
+    When I execute the following query on source:
+      """
+      SELECT XTestVariables.LowestCustomerID AS CUST_ID
+      """
+    Then I expect the following result:
+      | CUST_ID |
+      |      10 |
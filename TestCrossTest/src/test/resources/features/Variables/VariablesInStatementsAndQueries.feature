@@ -76,3 +76,48 @@ Feature: Use variables in statements and queries
     Then I expect the following result:
       | CUST_ID                      |
       | XTestVariables.CustomerID[1] |
+
+  @Positive
+  Scenario: Test binding variables as parameters
+    When I execute the following query on source:
+      """
+      SELECT CUST_ID FROM [Source].CUST_HUB ORDER BY CUST_ID
+      """
+    And I store the contents of the field Cust_ID into variable CustomerID
+    And I execute the following statement on bind_source:
+      """
+      UPDATE [Source].CUST_HUB SET CUST_ID = CUST_ID + 1 WHERE CUST_ID = XTestVariables.CustomerID[0]
+      """
+    And I execute the following statement on bind_source:
+      """
+      UPDATE [Source].CUST_HUB SET CUST_ID = CUST_ID + 1 WHERE CUST_ID = XTestVariables.CustomerID[0] + 1
+      """
+    And I execute the following query on bind_source:
+      """
+      SELECT CUST_ID, 'Customer XTestVariables.CustomerID[1]' AS CUST_NAME FROM [Source].CUST_HUB WHERE CUST_ID IN (XTestVariables.CustomerID[0] + 2, XTestVariables.CustomerID[1])
+      """
+    Then I expect the following result:
+      | CUST_ID | CUST_NAME     |
+      |     433 | Customer 1234 |
+      |    1234 | Customer 1234 |
+
+  @Positive
+  Scenario Outline: Test using a multi-record variable as a list <scenario>
+    When I execute the following query on source:
+      """
+      SELECT CUST_ID FROM [Source].CUST_HUB ORDER BY CUST_ID
+      """
+    And I store the contents of the field Cust_ID into variable CustomerIDs
+    And I execute the following query on <dbconfig>:
+      """
+      SELECT CUST_ID FROM [Source].CUST_HUB WHERE CUST_ID IN (XTestVariables.CustomerIDs) AND CUST_ID >= XTestVariables.CustomerIDs[1]
+      """
+    Then I expect the following result:
+      | CUST_ID |
+      |    1234 |
+
+    Examples: 
+      | scenario             | dbconfig                 |
+      | substituted          | source                   |
+      | bound                | bind_source              |
+      | in temporary table   | bind_table_source        |